@@ -106,6 +106,15 @@ local function call_save(path, content)
   return false
 end
 
+-- Explicit save of a journaled buffer: write it, then restart its autosave journal
+local function call_save_journaled(buf, path, content)
+  if buf and buf.journaled and buf.path == path and type(project) == "table" and type(project.journal_save) == "function" then
+    local ok, res = pcall(function() return project.journal_save(path, content) end)
+    if ok then return res end
+  end
+  return call_save(path, content)
+end
+
 local function call_read(path)
   if type(project) == "table" and type(project.read) == "function" then
     local ok, res = pcall(function() return project.read(path) end)
@@ -126,6 +135,14 @@ local function call_run(path)
   return false
 end
 
+local function call_export()
+  if type(sys) == "table" and is_func(sys.export) then
+    local ok, res, err = pcall(function() return sys.export() end)
+    if ok then return res, err end
+  end
+  return nil, "export unavailable"
+end
+
 local function call_import_dialog()
   if is_func(import_file_dialog) then
     local ok, res = pcall(function() return import_file_dialog() end)
@@ -156,7 +173,8 @@ local controls = {
   height = 40,
   buttons = {
     {id = "save", label = "Save", x = 10, w = 80},
-    {id = "run",  label = "Run",  x = 100, w = 80}
+    {id = "run",  label = "Run",  x = 100, w = 80},
+    {id = "export", label = "Cart", x = 190, w = 80}
   }
 }
 
@@ -260,8 +278,76 @@ local function close_tab(idx)
   if current_tab > #tabs then current_tab = math.max(1, #tabs) end
 end
 
+-- ============================================================================
+-- AUTOSAVE JOURNAL
+-- ============================================================================
+-- With project.journal_open the host logs every edit to a crash-safe journal next to
+-- the file and folds it into the file on save and when idle. Each mutation reports the
+-- lines it replaced: journal_begin (byte offset and length of lines y1..y2) before,
+-- journal_end (new text of lines y1..y2) after, so a keystroke logs one line.
+local function journal_begin(buf, y1, y2)
+  if not buf.journaled then return nil end
+  local n = #buf.lines
+  local off = 0
+  for i = 1, math.min(y1 - 1, n) do off = off + #buf.lines[i] + 1 end
+  -- The cursor can sit past the last line (e.g. after an undo): the edit appends lines
+  if y1 > n then return { off = off - 1, len = 0, append = true } end
+  local len = math.min(y2, n) - y1
+  for i = y1, math.min(y2, n) do len = len + #buf.lines[i] end
+  return { off = off, len = len }
+end
+
+local function journal_end(buf, j, y1, y2)
+  if not j then return end
+  local parts = {}
+  for i = y1, y2 do parts[#parts + 1] = buf.lines[i] or "" end
+  local text = table.concat(parts, "\n")
+  if j.append then text = "\n" .. text end
+  pcall(project.journal_edit, buf.path, j.off, j.len, text)
+end
+
+-- Whole-buffer replacement (undo/redo); cursor and selection must stay inside the new
+-- text, or the next edit would address lines that no longer exist.
+-- Only the lines between the common head and tail of the old and new text are
+-- journaled, so undoing a keystroke logs one line, not the file
+local function journal_set_lines(buf, lines)
+  local old = buf.lines
+  local n_old, n_new = #old, #lines
+  local m = math.min(n_old, n_new)
+  local head = 0
+  while head < m and old[head + 1] == lines[head + 1] do head = head + 1 end
+  if head == m and n_old == n_new then
+    buf.lines = lines -- same text: nothing to log
+  else
+    -- Keep a line on both sides: an empty range has no byte offset to replace
+    if head == m then head = math.max(m - 1, 0) end
+    local tail = 0
+    while tail < m - head - 1 and old[n_old - tail] == lines[n_new - tail] do tail = tail + 1 end
+    local j = journal_begin(buf, head + 1, n_old - tail)
+    buf.lines = lines
+    journal_end(buf, j, head + 1, n_new - tail)
+  end
+  buf.cy = math.max(1, math.min(buf.cy, #buf.lines))
+  buf.cx = math.min(buf.cx, #(buf.lines[buf.cy] or ""))
+  buf.sel_start_x, buf.sel_start_y, buf.sel_end_x, buf.sel_end_y = nil, nil, nil, nil
+end
+
+-- main.lua through the journal (replaying edits lost in a crash) when the host has one
+local function open_main_journaled()
+  if type(project) ~= "table" or type(project.journal_open) ~= "function" then return nil end
+  local ok, content, recovered = pcall(project.journal_open, "main.lua")
+  if not ok or content == nil then return nil end
+  local b = open_tab("main.lua", (#content > 0) and content or "-- New file\n")
+  b.journaled = true
+  -- The buffer always ends in a line break: log it (or the new-file text) so both agree
+  local now = table.concat(b.lines, "\n")
+  if now ~= content then pcall(project.journal_edit, "main.lua", 0, #content, now) end
+  if recovered then b.modified = true; call_toast("Recovered unsaved edits", 2) end
+  return b
+end
+
 -- On startup, prefer loading project's main.lua if present; otherwise open a blank main.lua
-if #tabs == 0 then
+if #tabs == 0 and not open_main_journaled() then
   local loaded = nil
   if type(project) == "table" and type(project.read) == "function" then
     local ok, content = pcall(function() return project.read("main.lua") end)
@@ -279,7 +365,7 @@ end
 
 -- ensure current_tab is valid before any cur() use
 local function ensure_current_tab()
-  if #tabs == 0 then
+  if #tabs == 0 and not open_main_journaled() then
     local loaded = nil
     if type(project) == "table" and type(project.read) == "function" then
       local ok, content = pcall(function() return project.read("main.lua") end)
@@ -399,6 +485,7 @@ local function delete_selection(buf)
   local sy,sx,ey,ex = get_selection_bounds(buf)
   if not sy then return end
   buf.undo:push(get_state())
+  local j = journal_begin(buf, sy, ey)
   if sy == ey then
     local line = buf.lines[sy] or ""
     buf.lines[sy] = string.sub(line, 1, sx) .. string.sub(line, ex + 1)
@@ -408,6 +495,7 @@ local function delete_selection(buf)
     buf.lines[sy] = first .. last
     for i = ey, sy + 1, -1 do table.remove(buf.lines, i) end
   end
+  journal_end(buf, j, sy, sy)
   buf.cy, buf.cx = sy, sx
   buf.sel_start_x, buf.sel_start_y, buf.sel_end_x, buf.sel_end_y = nil, nil, nil, nil
   buf.modified = true
@@ -508,18 +596,20 @@ local function handle_keyboard()
         local lines = {}
         for s in string.gmatch(buf.clipboard, "([^\n]*)\n?") do table.insert(lines, s) end
         if #lines == 0 then return end
+        local j = journal_begin(buf, buf.cy, buf.cy)
         buf.lines[buf.cy] = before .. lines[1]
         for i = 2, #lines do table.insert(buf.lines, buf.cy + i -1, lines[i]) end
+        journal_end(buf, j, buf.cy, buf.cy + #lines - 1)
         if #lines > 1 then buf.cy = buf.cy + #lines -1; buf.cx = #lines[#lines] else buf.cx = buf.cx + #lines[1] end
         buf.modified = true
       end
       return
     end
     if btnp_safe(KEY_X) then if buffer_has_selection(buf) then buf.clipboard = get_selected_text(buf); delete_selection(buf) end; return end
-    if btnp_safe(KEY_Z) then local s = buf.undo:undo(); if s then buf.lines = s end; return end
-    if btnp_safe(KEY_Y) then local s = buf.undo:redo(); if s then buf.lines = s end; return end
+    if btnp_safe(KEY_Z) then local s = buf.undo:undo(); if s then journal_set_lines(buf, s) end; return end
+    if btnp_safe(KEY_Y) then local s = buf.undo:redo(); if s then journal_set_lines(buf, s) end; return end
     if btnp_safe(KEY_F) then buf.find_mode = not buf.find_mode; return end
-    if btnp_safe(KEY_S) then local path = buf.path or current_file; local ok = call_save(path, table.concat(buf.lines, "\n")); if ok then buf.path = path; buf.modified = false; call_toast("Saved " .. path, 1.2) end; return end
+    if btnp_safe(KEY_S) then local path = buf.path or current_file; local ok = call_save_journaled(buf, path, table.concat(buf.lines, "\n")); if ok then buf.path = path; buf.modified = false; call_toast("Saved " .. path, 1.2) end; return end
     if btnp_safe(KEY_R) then local path = buf.path or current_file; call_run(path); call_toast("Running " .. path, 1.2); return end
   end
 
@@ -545,8 +635,8 @@ local function handle_keyboard()
   if btnp_safe(KEY_BACK) then
     if buffer_has_selection(buf) then delete_selection(buf) else
       buf.undo:push(get_state())
-      if buf.cx > 0 then local line = buf.lines[buf.cy] or ""; buf.lines[buf.cy] = string.sub(line,1,buf.cx -1) .. string.sub(line, buf.cx + 1); buf.cx = buf.cx - 1
-      elseif buf.cy > 1 then local current = buf.lines[buf.cy] or ""; local prev = buf.lines[buf.cy -1] or ""; buf.cx = #prev; buf.lines[buf.cy -1] = prev .. current; table.remove(buf.lines, buf.cy); buf.cy = buf.cy - 1 end
+      if buf.cx > 0 then local j = journal_begin(buf, buf.cy, buf.cy); local line = buf.lines[buf.cy] or ""; buf.lines[buf.cy] = string.sub(line,1,buf.cx -1) .. string.sub(line, buf.cx + 1); buf.cx = buf.cx - 1; journal_end(buf, j, buf.cy, buf.cy)
+      elseif buf.cy > 1 then local j = journal_begin(buf, buf.cy - 1, buf.cy); local current = buf.lines[buf.cy] or ""; local prev = buf.lines[buf.cy -1] or ""; buf.cx = #prev; buf.lines[buf.cy -1] = prev .. current; table.remove(buf.lines, buf.cy); buf.cy = buf.cy - 1; journal_end(buf, j, buf.cy, buf.cy) end
       buf.modified = true
     end
     return
@@ -556,8 +646,8 @@ local function handle_keyboard()
     if buffer_has_selection(buf) then delete_selection(buf) else
       buf.undo:push(get_state())
       local line = buf.lines[buf.cy] or ""
-      if buf.cx < #line then buf.lines[buf.cy] = string.sub(line,1,buf.cx) .. string.sub(line, buf.cx + 2)
-      elseif buf.cy < #buf.lines then local next_line = buf.lines[buf.cy + 1] or ""; buf.lines[buf.cy] = line .. next_line; table.remove(buf.lines, buf.cy + 1) end
+      if buf.cx < #line then local j = journal_begin(buf, buf.cy, buf.cy); buf.lines[buf.cy] = string.sub(line,1,buf.cx) .. string.sub(line, buf.cx + 2); journal_end(buf, j, buf.cy, buf.cy)
+      elseif buf.cy < #buf.lines then local j = journal_begin(buf, buf.cy, buf.cy + 1); local next_line = buf.lines[buf.cy + 1] or ""; buf.lines[buf.cy] = line .. next_line; table.remove(buf.lines, buf.cy + 1); journal_end(buf, j, buf.cy, buf.cy) end
       buf.modified = true
     end
     return
@@ -571,7 +661,9 @@ local function handle_keyboard()
     local spaces = string.match(before, "^(%s*)") or ""; local indent = #spaces
     local trimmed = string.match(before, "^%s*(.-)%s*$")
     if trimmed and (trimmed:match("^function") or trimmed:match("^if") or trimmed:match("^for") or trimmed:match("^while") or trimmed:match("^repeat") or trimmed == "do" or trimmed:match("then%s*$")) then indent = indent + config.tab_width end
-    buf.lines[buf.cy] = before; table.insert(buf.lines, buf.cy + 1, string.rep(" ", indent) .. after); buf.cy = buf.cy + 1; buf.cx = indent; buf.modified = true
+    local j = journal_begin(buf, buf.cy, buf.cy)
+    buf.lines[buf.cy] = before; table.insert(buf.lines, buf.cy + 1, string.rep(" ", indent) .. after); journal_end(buf, j, buf.cy, buf.cy + 1)
+    buf.cy = buf.cy + 1; buf.cx = indent; buf.modified = true
     return
   end
 
@@ -580,7 +672,9 @@ local function handle_keyboard()
     if buffer_has_selection(buf) then delete_selection(buf) end
     local spaces = string.rep(" ", config.tab_width)
     local line = buf.lines[buf.cy] or ""
+    local j = journal_begin(buf, buf.cy, buf.cy)
     buf.lines[buf.cy] = string.sub(line,1,buf.cx) .. spaces .. string.sub(line, buf.cx + 1)
+    journal_end(buf, j, buf.cy, buf.cy)
     buf.cx = buf.cx + config.tab_width
     buf.modified = true
     return
@@ -592,7 +686,9 @@ local function handle_keyboard()
       buf.undo:push(get_state())
       if buffer_has_selection(buf) then delete_selection(buf) end
       local line = buf.lines[buf.cy] or ""
+      local j = journal_begin(buf, buf.cy, buf.cy)
       buf.lines[buf.cy] = string.sub(line,1,buf.cx) .. ch .. string.sub(line, buf.cx + 1)
+      journal_end(buf, j, buf.cy, buf.cy)
       buf.cx = buf.cx + 1
       buf.modified = true
     end
@@ -696,13 +792,16 @@ function _update(win_x, win_y, win_w, win_h)
             ensure_current_tab()
             local buf = cur()
             if buf then
-              local ok = call_save(buf.path or current_file, table.concat(buf.lines, "\n"))
+              local ok = call_save_journaled(buf, buf.path or current_file, table.concat(buf.lines, "\n"))
               if ok then buf.path = buf.path or current_file; buf.modified = false; call_toast("Saved", 1.0) end
             end
           elseif b.id == "run" then
             ensure_current_tab()
             local buf = cur()
             if buf then call_run(buf.path or current_file); call_toast("Running", 1.0) end
+          elseif b.id == "export" then
+            local path, err = call_export()
+            if path then call_toast("Exported " .. path, 2.0) else call_toast("Export failed: " .. tostring(err), 2.0) end
           end
         end
       end
@@ -766,6 +865,18 @@ end
 -- ============================================================================
 -- DRAW
 -- ============================================================================
+-- Cursor blink: time-based when the host has time()/wake() (idle rendering),
+-- otherwise frame-counted as before.
+local BLINK_PERIOD = 0.5
+local function cursor_visible(buf)
+  if is_func(time) and is_func(wake) then
+    local t = time()
+    wake(BLINK_PERIOD - (t % BLINK_PERIOD))
+    return math.floor(t / BLINK_PERIOD) % 2 == 0
+  end
+  return (buf.blink or 0) % 30 < 15
+end
+
 function _draw(win_x, win_y, win_w, win_h)
   ensure_current_tab()
   win_x = win_x or 0; win_y = win_y or 0; win_w = win_w or config.win_min_width; win_h = win_h or config.win_min_height
@@ -828,7 +939,7 @@ function _draw(win_x, win_y, win_w, win_h)
       end
     end
 
-    if line_idx == buf.cy and (buf.blink or 0) % 30 < 15 then
+    if line_idx == buf.cy and cursor_visible(buf) then
       local cursor_x = win_x + 40 + 4 + (buf.cx * config.font_w)
       if rect then rect(cursor_x, line_y - config.font_h, 2, config.line_h - 4, safe_col(config.colors.cursor)) end
     end
@@ -845,12 +956,23 @@ end
 -- ============================================================================
 -- EXPOSE API
 -- ============================================================================
+-- Host hook: the tool was pointed at a project; reopen its main.lua (journaled if possible)
+function _on_project_loaded()
+  for i = #tabs, 1, -1 do
+    if tabs[i].path == "main.lua" then table.remove(tabs, i) end
+  end
+  if not open_main_journaled() then
+    local content = call_read("main.lua")
+    open_tab("main.lua", (content and #content > 0) and content or "-- New file\n")
+  end
+end
+
 CodeEditor.open_tab = function(path, content) open_tab(path, content) end
 CodeEditor.close_tab = function(i) close_tab(i) end
 CodeEditor.current_tab_index = function() return current_tab end
 CodeEditor.get_tabs = function() return tabs end
 CodeEditor.save_current_tab = function()
-  ensure_current_tab(); local b = cur(); if b and call_save(b.path or current_file, table.concat(b.lines, "\n")) then b.modified = false; call_toast("Saved", 1.2) end
+  ensure_current_tab(); local b = cur(); if b and call_save_journaled(b, b.path or current_file, table.concat(b.lines, "\n")) then b.modified = false; call_toast("Saved", 1.2) end
 end
 CodeEditor.run_current_tab = function()
   ensure_current_tab(); local b = cur(); if b then call_run(b.path or current_file); call_toast("Running",1.2) end
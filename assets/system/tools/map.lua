@@ -1,11 +1,156 @@
--- GENERIC TOOL PLACEHOLDER
+-- NerdOS Map Editor
+-- Paints sprites from the shared sheet into map memory. The sheet follows the
+-- sprite editor live (project store), and edits are published as map.bin.
+
+-- STATE
+cur_spr = 1      -- Sprite painted with the left button (0 = erase)
+cam_x, cam_y = 0, 0
+TILE = 8         -- map() and spr() draw cells 1:1
+MAP_W, MAP_H = 128, 64
+
+map_dirty = false
+m_down = false
+toast_msg = ""
+toast_timer = 0
+toast_until = 0
+TOAST_SECONDS = 1.5
+
+-- UI MEASUREMENTS
+view_x, view_y, view_w, view_h = 0, 0, 0, 0
+sheet_x, sheet_y, sheet_size = 0, 0, 128
+
 function _init()
+    show_toast("Map Ready - Arrows scroll, right click picks")
+end
+
+function show_toast(msg)
+    toast_msg = msg
+    toast_timer = 90
+    if type(time) == "function" and type(wake) == "function" then
+        toast_until = time() + TOAST_SECONDS
+        wake(TOAST_SECONDS) -- a frame to take it down again
+    end
+    if log then log(msg) end
+end
+
+-- Time-based when the host has time()/wake(): with idle rendering no frames run to
+-- count toast_timer down, so the tool asks to be woken when the toast should go
+function toast_visible()
+    if type(time) == "function" and type(wake) == "function" then
+        local left = toast_until - time()
+        if left > 0 then wake(left) end
+        return left > 0
+    end
+    return toast_timer > 0
+end
+
+function layout()
+    local sw = display_width()
+    local sh = display_height()
+    local padding = 10
+
+    sheet_x = sw - sheet_size - padding
+    sheet_y = sh - sheet_size - padding
+
+    view_x = padding
+    view_y = padding
+    view_w = sheet_x - (padding * 2)
+    view_h = sh - (padding * 2)
 end
 
 function _update()
+    layout()
+
+    -- Arrows scroll by one cell (buttons 0-3: left, right, up, down)
+    if btnp(0) then cam_x = math.max(0, cam_x - 1) end
+    if btnp(1) then cam_x = math.min(MAP_W - 1, cam_x + 1) end
+    if btnp(2) then cam_y = math.min(MAP_H - 1, cam_y + 1) end
+    if btnp(3) then cam_y = math.max(0, cam_y - 1) end
+
+    local m = mouse()
+    if m.left then
+        handle_click(m.x, m.y, m.click and not m_down)
+        m_down = true
+    elseif m.right and m.click then
+        pick(m.x, m.y)
+    else
+        m_down = false
+    end
+
+    -- Publish once per stroke (mouse up), not per cell
+    if map_dirty and not m_down then
+        map_dirty = false
+        if project then project.commit("map.bin") end
+    end
+
+    if toast_timer > 0 then toast_timer = toast_timer - 1 end
+end
+
+-- Map cell under the mouse, or nil
+function cell_at(mx, my)
+    if mx < view_x or mx >= view_x + view_w or my < view_y or my >= view_y + view_h then return nil end
+    local cx = cam_x + math.floor((mx - view_x) / TILE)
+    local cy = cam_y + math.floor((my - view_y) / TILE) -- map() draws row 0 at the bottom
+    if cx >= MAP_W or cy >= MAP_H then return nil end
+    return cx, cy
+end
+
+function handle_click(mx, my, just_clicked)
+    local cx, cy = cell_at(mx, my)
+    if cx then
+        if mget(cx, cy) ~= cur_spr then
+            mset(cx, cy, cur_spr)
+            map_dirty = true
+        end
+        return
+    end
+
+    -- Sheet click selects the brush
+    if just_clicked and mx >= sheet_x and mx < sheet_x + sheet_size and my >= sheet_y and my < sheet_y + sheet_size then
+        local sx = math.floor((mx - sheet_x) / TILE)
+        local sy = 15 - math.floor((my - sheet_y) / TILE)
+        cur_spr = sx + (sy * 16)
+        show_toast("Sprite: " .. cur_spr)
+    end
+end
+
+function pick(mx, my)
+    local cx, cy = cell_at(mx, my)
+    if cx then
+        cur_spr = mget(cx, cy)
+        show_toast("Picked: " .. cur_spr)
+    end
+end
+
+-- The sprite editor (or a file change) replaced a shared asset; memory and sheet are
+-- already reloaded, this only says so
+function _on_asset_changed(path)
+    if path == "sprites.png" then show_toast("Sprites updated")
+    elseif path == "map.bin" then show_toast("Map reloaded") end
 end
 
 function _draw()
-  cls(0) -- Black background
-  print("Tool Module Not Implemented Yet", 100, 100, 7)
+    cls(1)
+    layout()
+
+    -- 1. MAP VIEW
+    rect(view_x - 2, view_y - 2, view_w + 4, view_h + 4, 6)
+    rect(view_x, view_y, view_w, view_h, 0)
+    local cols = math.min(math.floor(view_w / TILE), MAP_W - cam_x)
+    local rows = math.min(math.floor(view_h / TILE), MAP_H - cam_y)
+    map(cam_x, cam_y, view_x, view_y, cols, rows)
+
+    -- 2. SHEET (row 0 at the top, as in the sprite editor)
+    rect(sheet_x - 2, sheet_y - 2, sheet_size + 4, sheet_size + 4, 6)
+    rect(sheet_x, sheet_y, sheet_size, sheet_size, 0)
+    for id = 0, 255 do
+        spr(id, sheet_x + (id % 16) * TILE, sheet_y + (15 - math.floor(id / 16)) * TILE)
+    end
+    local bx = sheet_x + (cur_spr % 16) * TILE
+    local by = sheet_y + (15 - math.floor(cur_spr / 16)) * TILE
+    rect(bx, by, TILE, 1, 7); rect(bx, by + TILE - 1, TILE, 1, 7)
+    rect(bx, by, 1, TILE, 7); rect(bx + TILE - 1, by, 1, TILE, 7)
+
+    print("X:" .. cam_x .. " Y:" .. cam_y .. "  Sprite " .. cur_spr, sheet_x, sheet_y - 20, 7)
+    if toast_visible() then print(toast_msg, sheet_x, sheet_y - 44, 11) end
 end
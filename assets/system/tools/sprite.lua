@@ -26,9 +26,14 @@ MAX_UNDO = 20
 -- CLIPBOARD
 clipboard_data = nil
 
+-- SHARING: edits reach the other tools (map) and Run through project.commit
+sheet_dirty = false
+
 -- UI STATE
 toast_msg = ""
 toast_timer = 0
+toast_until = 0
+TOAST_SECONDS = 1.5
 m_down = false
 
 -- UI MEASUREMENTS
@@ -45,9 +50,24 @@ end
 function show_toast(msg)
     toast_msg = msg
     toast_timer = 90
+    if type(time) == "function" and type(wake) == "function" then
+        toast_until = time() + TOAST_SECONDS
+        wake(TOAST_SECONDS) -- a frame to take it down again
+    end
     if log then log(msg) end
 end
 
+-- Time-based when the host has time()/wake(): with idle rendering no frames run to
+-- count toast_timer down, so the tool asks to be woken when the toast should go
+function toast_visible()
+    if type(time) == "function" and type(wake) == "function" then
+        local left = toast_until - time()
+        if left > 0 then wake(left) end
+        return left > 0
+    end
+    return toast_timer > 0
+end
+
 function layout()
     local sw = display_width()
     local sh = display_height()
@@ -127,9 +147,26 @@ function _update()
         m_down = false
     end
 
+    -- Publish once per stroke (mouse up) or key edit, not per pixel
+    if sheet_dirty and not m_down then commit_sheet() end
+
     if toast_timer > 0 then toast_timer = toast_timer - 1 end
 end
 
+function commit_sheet()
+    sheet_dirty = false
+    if project then project.commit("sprites") end
+end
+
+-- Another tool changed a shared asset; the sheet itself is already reloaded
+function _on_asset_changed(path)
+    if path == "sprites.png" then
+        undo_stack = {}
+        redo_stack = {}
+        show_toast("Sprites changed elsewhere")
+    end
+end
+
 function handle_click(mx, my, just_clicked)
     -- 1. CANVAS CLICK
     if is_hovering(mx, my, canvas_x, canvas_y, canvas_size, canvas_size) then
@@ -222,6 +259,7 @@ function push_undo()
     table.insert(undo_stack, {id = spr_id, pixels = data})
     if #undo_stack > MAX_UNDO then table.remove(undo_stack, 1) end
     redo_stack = {} -- Clear redo on new action
+    sheet_dirty = true -- every edit saves its undo state first
 end
 
 function do_undo()
@@ -242,6 +280,7 @@ function do_undo()
     local state = table.remove(undo_stack)
     spr_id = state.id
     restore_sprite(state.pixels)
+    sheet_dirty = true
     show_toast("Undo")
 end
 
@@ -426,7 +465,7 @@ function _draw()
     print("Sprite: " .. spr_id .. " | Frame: " .. curr_frame .. "/" .. #timeline, 20, sh - 35, 7)
     print("Color: " .. curr_col, 20, sh - 10, 7)
 
-    if toast_timer > 0 then
+    if toast_visible() then
         local tw = #toast_msg * 12
         rect(sw / 2 - tw / 2 - 8, sh / 2 - 15, tw + 16, 30, 0)
         print(toast_msg, sw / 2 - tw / 2, sh / 2 - 5, 7)
@@ -5,12 +5,20 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.nerddaygames.engine.CartData;
+import com.nerddaygames.engine.WriteBehind;
 import com.nerddaygames.shell.DesktopScreen;
+import com.nerddaygames.shell.DirectoryIndex;
+import com.nerddaygames.shell.FileOperations;
+import com.nerddaygames.shell.RunScreen;
 
 public class Main extends Game {
     public SpriteBatch batch;
     public BitmapFont font;
     public OrthographicCamera camera; // ADD THIS
+    // One per app: every DesktopScreen shares their threads
+    public DirectoryIndex directories;
+    public FileOperations fileOps; // keeps running (and reporting) across screen switches
 
     @Override
     public void create() {
@@ -21,6 +29,20 @@ public class Main extends Game {
         camera = new OrthographicCamera();
         camera.setToOrtho(false, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
 
+        directories = new DirectoryIndex();
+        fileOps = new FileOperations();
+
         this.setScreen(new DesktopScreen(this));
     }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        RunScreen.releaseSpare();
+        fileOps.dispose();
+        directories.dispose();
+        // Pending saves and cartdata must reach the disk before the JVM exits (the writers are daemons)
+        if (!CartData.awaitDrained(2000)) System.err.println("cartdata still writing at exit");
+        WriteBehind.shared().close();
+    }
 }
@@ -0,0 +1,197 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.BitmapFontData;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+import com.badlogic.gdx.utils.Json;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * BakedAssets - build-time artifacts the engine uses instead of redoing the work per VM.
+ *
+ * `gradlew lwjgl3:bakeAssets` (AssetBaker) writes system/baked/:
+ *  - manifest.json: every artifact with its source: for scripts the asset path, length and
+ *    SHA-256 of the source, for fonts its CRC32 and length and the generator settings
+ *  - os.fnt/os.png, game.fnt/game.png: the system fonts rasterized at the sizes FantasyVM
+ *    uses (BMFont text format with a metrics line, so the font lays out exactly as the
+ *    FreeType one; one PNG page each)
+ *  - lua/...luac: system Lua scripts sugared with LuaSyntaxCandy and compiled to luaj bytecode
+ *
+ * Every VM (desktop, each tool, the run screen) used to rasterize both fonts with FreeType and
+ * sugar and compile its scripts. With a bake, a font is loaded once per process (its texture is
+ * shared by every VM's BitmapFont) and a script loaded under a baked path, with exactly the
+ * source it was baked from, runs from the bytecode. Anything missing, or baked from a different source or with different settings, is
+ * ignored and the caller does the work itself.
+ */
+public class BakedAssets {
+    public static final String DIR = "system/baked";
+    public static final String MANIFEST = "manifest.json";
+    public static final int FORMAT = 2;
+
+    public static class Manifest {
+        public int format = FORMAT;
+        public FontEntry[] fonts = new FontEntry[0];
+        public ScriptEntry[] scripts = new ScriptEntry[0];
+    }
+
+    public static class FontEntry {
+        public String name, source, spec, fnt, page;
+        public long sourceCrc, sourceLength;
+    }
+
+    public static class ScriptEntry {
+        public String path, luac, sha256;
+        public long length;
+    }
+
+    private static BakedAssets shared;
+
+    /** The bake shipped with the internal assets (empty if there is none). */
+    public static synchronized BakedAssets shared() {
+        if (shared == null) shared = new BakedAssets((Gdx.files != null) ? Gdx.files.internal(DIR) : null);
+        return shared;
+    }
+
+    private final FileHandle dir;
+    private final Manifest manifest;
+    private final Map<String, ScriptEntry> scriptsByPath = new HashMap<>();
+    private final Map<String, byte[]> chunks = new HashMap<>();          // guarded by this
+    private final Map<String, LoadedFont> fonts = new HashMap<>();       // guarded by this
+    private final Set<String> staleFonts = new HashSet<>();              // guarded by this
+
+    private static final class LoadedFont {
+        final BitmapFontData data;
+        final TextureRegion page;
+
+        LoadedFont(BitmapFontData data, TextureRegion page) {
+            this.data = data;
+            this.page = page;
+        }
+    }
+
+    // --- STATS ---
+    public volatile long chunkHits, chunkMisses, fontHits;
+
+    public BakedAssets(FileHandle dir) {
+        this.dir = dir;
+        Manifest m = null;
+        try {
+            if (dir != null && dir.child(MANIFEST).exists()) {
+                m = new Json().fromJson(Manifest.class, dir.child(MANIFEST).readString("UTF-8"));
+                if (m != null && m.format != FORMAT) m = null;
+            }
+        } catch (Exception e) {
+            System.err.println("BakedAssets: unreadable " + MANIFEST + ", ignoring the bake: " + e.getMessage());
+        }
+        this.manifest = (m != null) ? m : new Manifest();
+        for (ScriptEntry s : manifest.scripts) scriptsByPath.put(s.path, s);
+    }
+
+    public Manifest manifest() { return manifest; }
+
+    // --- SCRIPTS ---
+
+    /**
+     * Bytecode baked from path with exactly this (unsugared) source, or null. A script under
+     * another name, or edited since the bake, never gets baked bytecode.
+     * The returned array is shared: do not modify.
+     */
+    public byte[] chunk(String path, String source) {
+        if (scriptsByPath.isEmpty() || path == null || source == null) return null;
+        ScriptEntry s = scriptsByPath.get(path.startsWith("/") ? path.substring(1) : path);
+        byte[] bytes = (s != null) ? source.getBytes(StandardCharsets.UTF_8) : null;
+        if (s == null || bytes.length != s.length || !sha256(bytes).equals(s.sha256)) {
+            chunkMisses++;
+            return null;
+        }
+        synchronized (this) {
+            byte[] luac = chunks.get(s.luac);
+            if (luac == null) {
+                FileHandle f = dir.child(s.luac);
+                if (!f.exists()) return null;
+                chunks.put(s.luac, luac = f.readBytes());
+            }
+            chunkHits++;
+            return luac;
+        }
+    }
+
+    // --- FONTS ---
+
+    /**
+     * A BitmapFont for the baked font `name`, if it was baked from source with parameter's
+     * settings. Needs a GL context (the page texture is created on first use and shared).
+     * @return null if there is no such bake; the caller then generates the font itself
+     */
+    public synchronized BitmapFont font(String name, FileHandle source, FreeTypeFontParameter parameter) {
+        LoadedFont f = fonts.get(name);
+        if (f == null) {
+            if (staleFonts.contains(name)) return null;
+            FontEntry e = fontEntry(name);
+            if (e == null || !e.spec.equals(spec(parameter)) || !matches(e, source)) {
+                staleFonts.add(name); // checked once; every VM then generates it
+                return null;
+            }
+            try {
+                BitmapFontData data = new BitmapFontData(dir.child(e.fnt), false);
+                Texture page = new Texture(dir.child(e.page));
+                page.setFilter(parameter.minFilter, parameter.magFilter);
+                fonts.put(name, f = new LoadedFont(data, new TextureRegion(page)));
+            } catch (Exception ex) {
+                System.err.println("BakedAssets: font " + name + " not loaded: " + ex.getMessage());
+                return null;
+            }
+        }
+        fontHits++;
+        // Regions passed in: the font does not own (or dispose) the shared page
+        return new BitmapFont(f.data, f.page, true);
+    }
+
+    public FontEntry fontEntry(String name) {
+        for (FontEntry e : manifest.fonts) if (e.name.equals(name)) return e;
+        return null;
+    }
+
+    private static boolean matches(FontEntry e, FileHandle source) {
+        if (source == null || !source.exists() || source.length() != e.sourceLength) return false;
+        byte[] b = source.readBytes();
+        return crc(b, b.length) == e.sourceCrc;
+    }
+
+    /** The generator settings a bake must have been made with. */
+    public static String spec(FreeTypeFontParameter p) {
+        CRC32 chars = new CRC32();
+        chars.update(p.characters.getBytes(StandardCharsets.UTF_8));
+        return "size=" + p.size + " mono=" + p.mono + " hinting=" + p.hinting + " min=" + p.minFilter + " mag=" + p.magFilter
+            + " color=" + p.color + " kerning=" + p.kerning + " chars=" + Long.toHexString(chars.getValue());
+    }
+
+    public static String sha256(byte[] b) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(b);
+            StringBuilder hex = new StringBuilder(d.length * 2);
+            for (byte x : d) hex.append(Character.forDigit((x >> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM and Android ships SHA-256
+        }
+    }
+
+    public static long crc(byte[] b, int length) {
+        CRC32 c = new CRC32();
+        c.update(b, 0, length);
+        return c.getValue();
+    }
+}
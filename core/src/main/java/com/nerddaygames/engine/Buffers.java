@@ -0,0 +1,56 @@
+package com.nerddaygames.engine;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Buffers - absolute-index bulk copies between ByteBuffers and arrays.
+ *
+ * The JDK's absolute bulk get/put overloads and slice(int, int) are Java 13/16 and
+ * only reach Android at API 34/35, while the app supports 21. These do the same with
+ * duplicate() + position/limit, which every level has. The source's and destination's
+ * own position, limit and byte order are never touched.
+ *
+ * Position/limit go through Buffer: the covariant ByteBuffer overrides are newer than
+ * some of the runtimes this runs on.
+ */
+final class Buffers {
+    private Buffers() {}
+
+    /** Independent buffer over [index, index + len) of b (big endian, like slice()). */
+    static ByteBuffer range(ByteBuffer b, int index, int len) {
+        ByteBuffer d = b.duplicate();
+        ((Buffer) d).limit(index + len);
+        ((Buffer) d).position(index);
+        return d;
+    }
+
+    /** Same bytes as range(), as a buffer indexed from 0 in b's byte order. */
+    static ByteBuffer slice(ByteBuffer b, int index, int len) {
+        return range(b, index, len).slice().order(b.order());
+    }
+
+    static void get(ByteBuffer src, int index, byte[] dst, int off, int len) {
+        range(src, index, len).get(dst, off, len);
+    }
+
+    static void put(ByteBuffer dst, int index, byte[] src, int off, int len) {
+        range(dst, index, len).put(src, off, len);
+    }
+
+    /**
+     * Copy len bytes from src[srcIndex] to dst[dstIndex]. mayOverlap must be set when
+     * the two can share memory (the same buffer, or two views of it): the bytes then go
+     * through a temporary array, as memmove would.
+     */
+    static void copy(ByteBuffer src, int srcIndex, ByteBuffer dst, int dstIndex, int len, boolean mayOverlap) {
+        if (len <= 0) return;
+        if (mayOverlap) {
+            byte[] tmp = new byte[len];
+            get(src, srcIndex, tmp, 0, len);
+            put(dst, dstIndex, tmp, 0, len);
+        } else {
+            range(dst, dstIndex, len).put(range(src, srcIndex, len));
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.nerddaygames.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * CartData - persistent CART_DATA_BASE region (cartdata/dget/dset).
+ *
+ * The render thread only compares the 512-byte region against the last staged
+ * image once per frame (sync) and marks changed 4-byte slots. A background
+ * flusher waits coalesceMs, takes every slot changed since its last pass and
+ * appends them as ONE journal record followed by ONE fsync, so a burst of
+ * dset calls over many frames costs a single disk write.
+ *
+ * Journal file (little endian):
+ *  - header: "FOCD", version u8
+ *  - records: payload length u32, payload, CRC32(payload) u32
+ *  - payload: type u8 (SNAPSHOT / DELTA), then spans of offset u16, length u16, bytes
+ *
+ * Recovery replays records up to the first torn or corrupt one and truncates
+ * the rest, so a crash mid-flush loses at most that flush, never mixes halves
+ * of it. When the journal grows past compactBytes it is rewritten as a single
+ * SNAPSHOT in a temp file and atomically renamed over the old one.
+ *
+ * close() never waits on the render thread: it hands the last changes to the
+ * flusher and returns; the flusher writes them and closes the file on its own.
+ * Opening the same cart again while that is still going on takes the draining
+ * journal over instead of reading the file under it. awaitDrained() (app exit)
+ * waits for every draining journal, since the flushers are daemon threads.
+ */
+public class CartData {
+    public static final int SIZE = Ram.CART_DATA_SIZE;
+    public static final int SLOTS = SIZE / 4;
+
+    private static final int MAGIC = 0x44434F46; // "FOCD"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+    private static final int SNAPSHOT = 1, DELTA = 2;
+    private static final int MAX_RECORD = 1 + SLOTS * 4 + SIZE; // every span split
+
+    // Closed journals whose flusher is still writing, by file (guarded by itself)
+    private static final Map<File, Journal> draining = new HashMap<>();
+
+    // Tunables (the crash check shrinks them to stress flushes and compaction)
+    public long coalesceMs = 50;
+    public int compactBytes = 64 * 1024;
+
+    private final Ram ram;
+    private final File dir;
+    private String id;
+    private Journal journal;
+
+    // Render thread: last image handed to the flusher
+    private final byte[] staged = new byte[SIZE];
+    private final byte[] scratch = new byte[SIZE];
+
+    // --- STATS ---
+    public volatile long flushes, records, compactions, bytesWritten;
+
+    public CartData(Ram ram, File dir) {
+        this.ram = ram;
+        this.dir = dir;
+    }
+
+    public String getId() { return id; }
+    public boolean isOpen() { return id != null; }
+
+    /**
+     * Bind the region to a cart id, restoring saved data.
+     * @return true if saved data existed
+     */
+    public boolean open(String cartId) throws IOException {
+        String clean = cartId.replaceAll("[^A-Za-z0-9_-]", "_");
+        if (clean.isEmpty() || clean.length() > 64) throw new IOException("Bad cartdata id: " + cartId);
+        if (clean.equals(id)) return true;
+        close();
+
+        if (!dir.exists()) dir.mkdirs();
+        File f = new File(dir, clean + ".cdata").getAbsoluteFile();
+        byte[] image = new byte[SIZE];
+        Journal j = takeOver(f, image);
+        boolean existed = true;
+        if (j == null) {
+            existed = f.exists() && f.length() > 0;
+            long validEnd = existed ? recover(f, image) : -1;
+
+            FileChannel ch = FileIo.openReadWrite(f);
+            if (validEnd < 0) {
+                // New file, or not a journal at all: start over
+                ch.truncate(0);
+                ch.write(header(), 0);
+                validEnd = HEADER_SIZE;
+                existed = false;
+            } else if (validEnd < ch.size()) {
+                ch.truncate(validEnd); // drop a torn tail
+            }
+            ch.position(validEnd); // the flusher makes the header/truncation durable before its first record
+            j = new Journal(this, f, ch, validEnd, image);
+            j.start("cartdata-" + clean);
+        }
+
+        this.id = clean;
+        this.journal = j;
+        System.arraycopy(image, 0, staged, 0, SIZE);
+        ram.write(Ram.CART_DATA_BASE, image, 0, SIZE);
+        return existed;
+    }
+
+    /**
+     * Once per frame: stage slots that changed since the last call (no IO).
+     */
+    public void sync() {
+        if (id == null) return;
+        ram.read(Ram.CART_DATA_BASE, scratch, 0, SIZE);
+        long lo = 0, hi = 0;
+        for (int s = 0; s < SLOTS; s++) {
+            int o = s * 4;
+            if (scratch[o] != staged[o] || scratch[o + 1] != staged[o + 1] || scratch[o + 2] != staged[o + 2] || scratch[o + 3] != staged[o + 3]) {
+                if (s < 64) lo |= 1L << s; else hi |= 1L << s;
+            }
+        }
+        if ((lo | hi) == 0) return;
+        System.arraycopy(scratch, 0, staged, 0, SIZE);
+        journal.stage(scratch, lo, hi);
+    }
+
+    public int dget(int index) {
+        if (index < 0 || index >= SLOTS) return 0;
+        return ram.peek4(Ram.CART_DATA_BASE + index * 4);
+    }
+
+    public void dset(int index, int value) {
+        if (index < 0 || index >= SLOTS) return;
+        ram.poke4(Ram.CART_DATA_BASE + index * 4, value);
+    }
+
+    /**
+     * Stage the current region and block until it is on disk.
+     */
+    public void flush() {
+        if (id == null) return;
+        sync();
+        journal.awaitWritten();
+    }
+
+    /**
+     * Hand outstanding changes to the flusher and detach; returns without waiting
+     * for the write (see awaitDrained).
+     */
+    public void close() {
+        if (id == null) return;
+        sync();
+        Journal j = journal;
+        synchronized (draining) { draining.put(j.file, j); }
+        j.stop(staged);
+        id = null;
+        journal = null;
+    }
+
+    /**
+     * Wait up to timeoutMs for every closed journal to finish writing (app exit).
+     * @return false if some were still writing
+     */
+    public static boolean awaitDrained(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (draining) {
+            while (!draining.isEmpty()) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) return false;
+                try { draining.wait(left); } catch (InterruptedException e) { Thread.currentThread().interrupt(); return false; }
+            }
+        }
+        return true;
+    }
+
+    // A still-draining journal of f, revived for a new owner (image gets its latest state)
+    private Journal takeOver(File f, byte[] image) {
+        Journal j;
+        synchronized (draining) { j = draining.remove(f); }
+        if (j == null || !j.revive(this, image)) return null;
+        return j;
+    }
+
+    // --- FLUSHER ---
+
+    /**
+     * One open journal file and its flusher thread. Outlives close() until the
+     * last changes are on disk.
+     */
+    private static final class Journal {
+        final File file;
+        private volatile CartData owner; // tunables and stats; changes on takeOver
+        private FileChannel channel;     // flusher thread only
+        private long journalBytes;       // flusher thread only
+        private final byte[] durable = new byte[SIZE]; // flusher thread only
+
+        // Shared with the flusher (guarded by lock)
+        private final Object lock = new Object();
+        private final byte[] pendingImage = new byte[SIZE];
+        private final long[] pendingSlots = new long[2]; // SLOTS == 128
+        private final byte[] latest = new byte[SIZE];    // last staged image, for revive()
+        private boolean hasPending = false;
+        private boolean running = true;
+        private boolean exited = false;
+        private Thread flusher;
+
+        Journal(CartData owner, File file, FileChannel channel, long journalBytes, byte[] image) {
+            this.owner = owner;
+            this.file = file;
+            this.channel = channel;
+            this.journalBytes = journalBytes;
+            System.arraycopy(image, 0, durable, 0, SIZE);
+            System.arraycopy(image, 0, latest, 0, SIZE);
+        }
+
+        void start(String name) {
+            flusher = new Thread(this::flushLoop, name);
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+
+        void stage(byte[] image, long lo, long hi) {
+            synchronized (lock) {
+                System.arraycopy(image, 0, pendingImage, 0, SIZE);
+                System.arraycopy(image, 0, latest, 0, SIZE);
+                pendingSlots[0] |= lo;
+                pendingSlots[1] |= hi;
+                hasPending = true;
+                lock.notifyAll();
+            }
+        }
+
+        // Flusher: write what is pending, then close the file
+        void stop(byte[] image) {
+            synchronized (lock) {
+                System.arraycopy(image, 0, latest, 0, SIZE);
+                running = false;
+                lock.notifyAll();
+            }
+        }
+
+        // Back to running for a new owner, unless the flusher has already closed the file
+        boolean revive(CartData newOwner, byte[] image) {
+            synchronized (lock) {
+                if (exited) return false;
+                owner = newOwner;
+                running = true;
+                System.arraycopy(latest, 0, image, 0, SIZE);
+                return true;
+            }
+        }
+
+        void awaitWritten() {
+            synchronized (lock) {
+                while (hasPending && !exited) {
+                    lock.notifyAll();
+                    try { lock.wait(10); } catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+                }
+            }
+        }
+
+        private void flushLoop() {
+            byte[] image = new byte[SIZE];
+            long[] slots = new long[pendingSlots.length];
+            // open() created or trimmed the journal; its fsync happens here, off the render thread
+            try {
+                channel.force(true);
+            } catch (IOException e) {
+                System.err.println("cartdata " + file.getName() + " sync failed: " + e.getMessage());
+            }
+            while (true) {
+                synchronized (lock) {
+                    while (!hasPending && running) {
+                        try { lock.wait(); } catch (InterruptedException e) { exited = true; break; }
+                    }
+                    // Decided under the lock, so revive() either sees exited or keeps this thread going
+                    if (exited || (!hasPending && !running)) { exited = true; break; }
+                    // Let more frames pile on before paying for the fsync; close() cuts the wait short
+                    long until = System.currentTimeMillis() + owner.coalesceMs;
+                    while (running) {
+                        long left = until - System.currentTimeMillis();
+                        if (left <= 0) break;
+                        try { lock.wait(left); } catch (InterruptedException e) { break; }
+                    }
+                    System.arraycopy(pendingImage, 0, image, 0, SIZE);
+                    System.arraycopy(pendingSlots, 0, slots, 0, slots.length);
+                    Arrays.fill(pendingSlots, 0L);
+                }
+                try {
+                    appendDelta(image, slots);
+                    if (journalBytes > owner.compactBytes) compact();
+                } catch (IOException e) {
+                    System.err.println("cartdata " + file.getName() + " flush failed: " + e.getMessage());
+                }
+                synchronized (lock) {
+                    // New changes may have arrived while writing; pendingSlots says so
+                    boolean more = false;
+                    for (long w : pendingSlots) more |= w != 0;
+                    hasPending = more;
+                    if (!hasPending && !running) exited = true;
+                    lock.notifyAll();
+                    if (exited) break;
+                }
+            }
+            exit();
+        }
+
+        // Once exited is set: nothing is pending and no owner is left
+        private void exit() {
+            synchronized (lock) { lock.notifyAll(); }
+            try { channel.close(); } catch (IOException ignored) {}
+            synchronized (draining) {
+                draining.remove(file, this);
+                draining.notifyAll();
+            }
+        }
+
+        private void appendDelta(byte[] image, long[] slots) throws IOException {
+            ByteBuffer payload = ByteBuffer.allocate(MAX_RECORD).order(ByteOrder.LITTLE_ENDIAN);
+            payload.put((byte) DELTA);
+            int s = 0;
+            while (s < SLOTS) {
+                if ((slots[s >>> 6] & (1L << s)) == 0) { s++; continue; }
+                int start = s;
+                while (s < SLOTS && (slots[s >>> 6] & (1L << s)) != 0) s++;
+                payload.putShort((short) (start * 4)).putShort((short) ((s - start) * 4));
+                payload.put(image, start * 4, (s - start) * 4);
+            }
+            if (payload.position() == 1) return;
+            writeRecord(payload);
+            for (int i = 0; i < SLOTS; i++) {
+                if ((slots[i >>> 6] & (1L << i)) != 0) System.arraycopy(image, i * 4, durable, i * 4, 4);
+            }
+        }
+
+        private void writeRecord(ByteBuffer payload) throws IOException {
+            payload.flip();
+            ByteBuffer rec = record(payload);
+            long pos = journalBytes;
+            while (rec.hasRemaining()) pos += channel.write(rec, pos);
+            channel.force(false); // one fsync per flush
+            CartData o = owner;
+            o.bytesWritten += pos - journalBytes;
+            journalBytes = pos;
+            o.records++;
+            o.flushes++;
+        }
+
+        // Rewrite the journal as one snapshot: temp file, fsync, atomic rename
+        private void compact() throws IOException {
+            File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+            ByteBuffer payload = ByteBuffer.allocate(1 + 4 + SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            payload.put((byte) SNAPSHOT).putShort((short) 0).putShort((short) SIZE).put(durable);
+            payload.flip();
+            try (FileChannel out = FileIo.openWrite(tmp)) {
+                out.write(header());
+                out.write(record(payload));
+                out.force(true);
+            }
+            channel.close();
+            FileIo.replace(tmp, file);
+            channel = FileIo.openReadWrite(file);
+            journalBytes = channel.size();
+            owner.compactions++;
+        }
+    }
+
+    // --- FILE FORMAT ---
+
+    private static ByteBuffer header() {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        h.putInt(MAGIC).put((byte) VERSION);
+        h.flip();
+        return h;
+    }
+
+    private static ByteBuffer record(ByteBuffer payload) {
+        int len = payload.remaining();
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), payload.arrayOffset() + payload.position(), len); // update(ByteBuffer) needs Android API 26
+        ByteBuffer rec = ByteBuffer.allocate(4 + len + 4).order(ByteOrder.LITTLE_ENDIAN);
+        rec.putInt(len).put(payload).putInt((int) crc.getValue());
+        rec.flip();
+        return rec;
+    }
+
+    /**
+     * Replay a journal into image.
+     * @return end offset of the last intact record, or -1 if the file is not a journal
+     */
+    static long recover(File f, byte[] image) throws IOException {
+        byte[] all = FileIo.readAll(f);
+        ByteBuffer in = ByteBuffer.wrap(all).order(ByteOrder.LITTLE_ENDIAN);
+        if (all.length < HEADER_SIZE || in.getInt(0) != MAGIC || all[4] != VERSION) return -1;
+
+        long validEnd = HEADER_SIZE;
+        int pos = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (pos + 4 <= all.length) {
+            int len = in.getInt(pos);
+            if (len <= 0 || len > MAX_RECORD || pos + 4 + len + 4 > all.length) break; // torn
+            crc.reset();
+            crc.update(all, pos + 4, len);
+            if ((int) crc.getValue() != in.getInt(pos + 4 + len)) break; // corrupt
+            if (!applyPayload(all, pos + 4, len, image)) break;
+            pos += 4 + len + 4;
+            validEnd = pos;
+        }
+        return validEnd;
+    }
+
+    private static boolean applyPayload(byte[] buf, int off, int len, byte[] image) {
+        int type = buf[off];
+        if (type != SNAPSHOT && type != DELTA) return false;
+        int p = off + 1, end = off + len;
+        // Validate every span first so a bad record is applied all-or-nothing
+        while (p < end) {
+            if (p + 4 > end) return false;
+            int so = (buf[p] & 0xFF) | ((buf[p + 1] & 0xFF) << 8);
+            int sl = (buf[p + 2] & 0xFF) | ((buf[p + 3] & 0xFF) << 8);
+            if (so + sl > SIZE || p + 4 + sl > end) return false;
+            p += 4 + sl;
+        }
+        p = off + 1;
+        while (p < end) {
+            int so = (buf[p] & 0xFF) | ((buf[p + 1] & 0xFF) << 8);
+            int sl = (buf[p + 2] & 0xFF) | ((buf[p + 3] & 0xFF) << 8);
+            System.arraycopy(buf, p + 4, image, so, sl);
+            p += 4 + sl;
+        }
+        return true;
+    }
+}
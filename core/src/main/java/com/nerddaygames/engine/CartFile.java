@@ -0,0 +1,384 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.nerddaygames.engine.graphics.Palette;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.compiler.DumpState;
+import org.luaj.vm2.compiler.LuaC;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * CartFile - single-file .cart container.
+ *
+ * Layout (little endian):
+ *  - header: "FCRT", version u16, section count u16
+ *  - section table: id u32 (4-char tag), flags u32, offset u32, stored length u32, raw length u32
+ *  - section data
+ *
+ * Sections are LZ4 block compressed when that makes them smaller (FLAG_LZ4).
+ * A cart is opened with one memory map; sections decompress straight from the
+ * map into their Ram region (map, flags, sfx) or a Pixmap (sprites).
+ *
+ * CODE holds the sugared Lua source; LUAC the same chunk precompiled with luaj,
+ * used first when present so a cart run skips LuaSyntaxCandy and the compiler.
+ * Every other .lua file of the project is a section of its own (moduleId), listed
+ * with its project path in MODULES; a running cart require()s them from "cart/".
+ */
+public class CartFile {
+    public static final String EXTENSION = "cart";
+    private static final int MAGIC = tag("FCRT");
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = 20;
+
+    public static final int FLAG_LZ4 = 1;
+
+    // --- SECTION IDS ---
+    public static final int CODE    = tag("CODE");
+    public static final int LUAC    = tag("LUAC");
+    public static final int SPRITES = tag("SPRT"); // 128x128 palette indices, one byte each
+    public static final int MAP     = tag("MAP ");
+    public static final int FLAGS   = tag("FLAG");
+    public static final int SFX     = tag("SFX ");
+    public static final int MUSIC   = tag("MUSC");
+    public static final int META    = tag("META"); // project.json
+    public static final int MODULES = tag("MODS"); // per module: section id u32, path length u16, UTF-8 path
+
+    // Module sections: "LM" and a 16-bit index
+    private static final int MODULE_TAG = tag("LM\0\0");
+
+    public static final int SHEET_SIZE = 128;
+
+    public static class Section {
+        public final int id, flags, offset, storedLength, rawLength;
+
+        Section(int id, int flags, int offset, int storedLength, int rawLength) {
+            this.id = id; this.flags = flags; this.offset = offset;
+            this.storedLength = storedLength; this.rawLength = rawLength;
+        }
+    }
+
+    private final File file;
+    private final MappedByteBuffer data;
+    private final Map<Integer, Section> sections = new LinkedHashMap<>();
+
+    private CartFile(File file, MappedByteBuffer data) {
+        this.file = file;
+        this.data = data;
+    }
+
+    /**
+     * Map a cart file and read its section table.
+     */
+    public static CartFile open(File file) throws IOException {
+        MappedByteBuffer map;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel ch = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        CartFile cart = new CartFile(file, map);
+
+        if (map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC) throw new IOException("Not a cart: " + file);
+        int version = map.getShort(4) & 0xFFFF;
+        if (version != VERSION) throw new IOException("Unsupported cart version " + version + ": " + file);
+        int count = map.getShort(6) & 0xFFFF;
+        if (HEADER_SIZE + count * ENTRY_SIZE > map.capacity()) throw new IOException("Truncated cart: " + file);
+
+        for (int i = 0; i < count; i++) {
+            int e = HEADER_SIZE + i * ENTRY_SIZE;
+            Section s = new Section(map.getInt(e), map.getInt(e + 4), map.getInt(e + 8), map.getInt(e + 12), map.getInt(e + 16));
+            if (s.offset < 0 || s.storedLength < 0 || s.rawLength < 0 || s.offset + s.storedLength > map.capacity()) {
+                throw new IOException("Bad section " + tagName(s.id) + " in " + file);
+            }
+            cart.sections.put(s.id, s);
+        }
+        return cart;
+    }
+
+    public File getFile() { return file; }
+    public boolean has(int id) { return sections.containsKey(id); }
+    public Section get(int id) { return sections.get(id); }
+    public Iterable<Section> sections() { return sections.values(); }
+
+    public static int moduleId(int index) {
+        return MODULE_TAG | (index << 16);
+    }
+
+    /**
+     * The packed modules: project path ("lib/util.lua") to section id, in pack order.
+     */
+    public Map<String, Integer> modules() {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        byte[] index = readBytes(MODULES);
+        if (index == null) return out;
+        ByteBuffer b = ByteBuffer.wrap(index).order(ByteOrder.LITTLE_ENDIAN);
+        while (b.remaining() >= 6) {
+            int id = b.getInt();
+            int len = b.getShort() & 0xFFFF;
+            if (len > b.remaining()) break;
+            out.put(new String(index, b.position(), len, StandardCharsets.UTF_8), id);
+            b.position(b.position() + len);
+        }
+        return out;
+    }
+
+    public int rawLength(int id) {
+        Section s = sections.get(id);
+        return (s != null) ? s.rawLength : 0;
+    }
+
+    /**
+     * Decompress (or copy) up to maxLen bytes of a section into dst at dstOff.
+     * @return bytes written, 0 if the section is missing
+     */
+    public int readInto(int id, ByteBuffer dst, int dstOff, int maxLen) {
+        Section s = sections.get(id);
+        if (s == null) return 0;
+        if ((s.flags & FLAG_LZ4) == 0) {
+            int n = Math.min(s.rawLength, maxLen);
+            Buffers.copy(data, s.offset, dst, dstOff, n, false);
+            return n;
+        }
+        if (s.rawLength <= maxLen) {
+            Lz4.decompress(data, s.offset, s.storedLength, dst, dstOff, s.rawLength);
+            return s.rawLength;
+        }
+        // Larger than the target region: decode aside, keep the prefix
+        byte[] tmp = readBytes(id);
+        Buffers.put(dst, dstOff, tmp, 0, maxLen);
+        return maxLen;
+    }
+
+    /**
+     * Decompress a section into Ram at addr (clamped to maxLen).
+     */
+    public int readInto(int id, Ram ram, int addr, int maxLen) {
+        int n = Math.min(rawLength(id), maxLen);
+        if (n <= 0) return 0;
+        ByteBuffer region = ram.region(addr, n);
+        if (region != null) return readInto(id, region, 0, n);
+        // Region crosses a bank window edge: fall back to a bulk write
+        byte[] tmp = readBytes(id);
+        ram.write(addr, tmp, 0, n);
+        return n;
+    }
+
+    public byte[] readBytes(int id) {
+        Section s = sections.get(id);
+        if (s == null) return null;
+        byte[] out = new byte[s.rawLength];
+        ByteBuffer wrapped = ByteBuffer.wrap(out);
+        if ((s.flags & FLAG_LZ4) == 0) Buffers.get(data, s.offset, out, 0, s.rawLength);
+        else Lz4.decompress(data, s.offset, s.storedLength, wrapped, 0, s.rawLength);
+        return out;
+    }
+
+    /**
+     * CRC32 of the code sections (CODE, LUAC, MODULES and the modules) as stored, read
+     * from the map in small chunks: identifies the cart's code without decompressing
+     * or copying the cart.
+     */
+    public long codeHash() {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        for (Section s : sections.values()) {
+            if (s.id != CODE && s.id != LUAC && s.id != MODULES && (s.id & 0xFFFF) != MODULE_TAG) continue;
+            for (int off = 0; off < s.storedLength; off += chunk.length) {
+                int n = Math.min(chunk.length, s.storedLength - off);
+                Buffers.get(data, s.offset + off, chunk, 0, n);
+                crc.update(chunk, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    public String readString(int id) {
+        byte[] b = readBytes(id);
+        return (b != null) ? new String(b, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Decode the SPRITES section into an RGBA8888 pixmap (128x128) using palette colors.
+     */
+    public Pixmap readSprites(Palette palette) {
+        byte[] indices = readBytes(SPRITES);
+        if (indices == null) return null;
+        Pixmap pixmap = new Pixmap(SHEET_SIZE, SHEET_SIZE, Pixmap.Format.RGBA8888);
+        int[] rgba = new int[32];
+        for (int i = 0; i < rgba.length; i++) rgba[i] = com.badlogic.gdx.graphics.Color.rgba8888(palette.get(i));
+        ByteBuffer pixels = pixmap.getPixels().duplicate().order(ByteOrder.BIG_ENDIAN); // RGBA byte order
+        int n = Math.min(indices.length, SHEET_SIZE * SHEET_SIZE);
+        for (int i = 0; i < n; i++) pixels.putInt(i * 4, rgba[indices[i] & 31]);
+        return pixmap;
+    }
+
+    // --- WRITING ---
+
+    public static class Writer {
+        private final List<Integer> ids = new ArrayList<>();
+        private final List<byte[]> payloads = new ArrayList<>();
+        private final List<Integer> flags = new ArrayList<>();
+        private final List<Integer> rawLengths = new ArrayList<>();
+
+        /** Add a section; it is stored compressed only if that saves space. */
+        public Writer add(int id, byte[] raw) {
+            byte[] packed = new byte[Lz4.maxCompressedLength(raw.length)];
+            int n = Lz4.compress(raw, 0, raw.length, packed, 0);
+            ids.add(id);
+            rawLengths.add(raw.length);
+            if (n < raw.length) {
+                payloads.add(java.util.Arrays.copyOf(packed, n));
+                flags.add(FLAG_LZ4);
+            } else {
+                payloads.add(raw);
+                flags.add(0);
+            }
+            return this;
+        }
+
+        public Writer add(int id, String text) {
+            return add(id, text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public void write(File out) throws IOException {
+            File parent = out.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) parent.mkdirs();
+            int count = ids.size();
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE + count * ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            head.putInt(MAGIC).putShort((short) VERSION).putShort((short) count);
+            int offset = head.capacity();
+            for (int i = 0; i < count; i++) {
+                head.putInt(ids.get(i)).putInt(flags.get(i)).putInt(offset)
+                    .putInt(payloads.get(i).length).putInt(rawLengths.get(i));
+                offset += payloads.get(i).length;
+            }
+            // Write beside the target and rename, so a running cart never maps a half-written file
+            File tmp = new File(out.getPath() + ".tmp");
+            try (DataOutputStream dos = new DataOutputStream(new java.io.BufferedOutputStream(new FileOutputStream(tmp)))) {
+                dos.write(head.array());
+                for (byte[] p : payloads) dos.write(p);
+            }
+            FileIo.replace(tmp, out);
+        }
+    }
+
+    /**
+     * Pack a project folder into a cart:
+     *  - main.lua -> CODE (sugared) + LUAC (if it compiles)
+     *  - every other .lua file (subfolders too) -> a module section, listed in MODULES
+     *  - sprites.png -> SPRITES (palette indices)
+     *  - map.bin, flags.bin, sfx.bin, music.bin -> raw Ram images, when present
+     *  - project.json -> META
+     */
+    public static void pack(FileHandle projectDir, File out, Palette palette) throws IOException {
+        Writer w = new Writer();
+
+        FileHandle main = projectDir.child("main.lua");
+        if (main.exists()) {
+            String sugared = LuaSyntaxCandy.process(main.readString("UTF-8"));
+            w.add(CODE, sugared);
+            byte[] luac = compile(sugared, "main.lua");
+            if (luac != null) w.add(LUAC, luac);
+        }
+
+        // Sources as written: require() sugars and compiles them through the chunk cache
+        List<String> modules = new ArrayList<>();
+        collectModules(projectDir, "", modules);
+        if (modules.size() > 0xFFFF) throw new IOException("Too many Lua files to pack: " + modules.size());
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        for (int i = 0; i < modules.size(); i++) {
+            String path = modules.get(i);
+            w.add(moduleId(i), projectDir.child(path).readBytes());
+            byte[] name = path.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer entry = ByteBuffer.allocate(6 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+            entry.putInt(moduleId(i)).putShort((short) name.length).put(name);
+            index.write(entry.array(), 0, entry.capacity());
+        }
+        if (!modules.isEmpty()) w.add(MODULES, index.toByteArray());
+
+        FileHandle sprites = projectDir.child("sprites.png");
+        if (sprites.exists()) {
+            Pixmap pm = new Pixmap(sprites);
+            try {
+                byte[] indices = new byte[SHEET_SIZE * SHEET_SIZE];
+                int wdt = Math.min(pm.getWidth(), SHEET_SIZE), hgt = Math.min(pm.getHeight(), SHEET_SIZE);
+                for (int y = 0; y < hgt; y++) {
+                    for (int x = 0; x < wdt; x++) indices[y * SHEET_SIZE + x] = (byte) palette.rgbaToIndex(pm.getPixel(x, y));
+                }
+                w.add(SPRITES, indices);
+            } finally {
+                pm.dispose();
+            }
+        }
+
+        addRaw(w, projectDir, "map.bin", MAP);
+        addRaw(w, projectDir, "flags.bin", FLAGS);
+        addRaw(w, projectDir, "sfx.bin", SFX);
+        addRaw(w, projectDir, "music.bin", MUSIC);
+
+        FileHandle meta = projectDir.child("project.json");
+        if (meta.exists()) w.add(META, meta.readBytes());
+
+        w.write(out);
+    }
+
+    /**
+     * Compile Lua source to a luaj binary chunk (debug info kept for error lines).
+     * @return null if the source does not compile (the cart then falls back to CODE)
+     */
+    public static byte[] compile(String source, String chunkName) {
+        try {
+            Prototype p = LuaC.instance.compile(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), chunkName);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DumpState.dump(p, bytes, false);
+            return bytes.toByteArray();
+        } catch (Exception e) {
+            System.err.println("Cart: " + chunkName + " not precompiled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Project-relative paths of the .lua files other than main.lua, sorted
+    private static void collectModules(FileHandle dir, String prefix, List<String> out) {
+        FileHandle[] children = dir.list();
+        java.util.Arrays.sort(children, (a, b) -> a.name().compareTo(b.name()));
+        for (FileHandle f : children) {
+            String path = prefix + f.name();
+            if (f.name().startsWith(".")) continue;
+            if (f.isDirectory()) collectModules(f, path + "/", out);
+            else if ("lua".equals(f.extension()) && !path.equals("main.lua")) out.add(path);
+        }
+    }
+
+    private static void addRaw(Writer w, FileHandle dir, String name, int id) {
+        FileHandle f = dir.child(name);
+        if (f.exists()) w.add(id, f.readBytes());
+    }
+
+    public static int tag(String s) {
+        return (s.charAt(0) & 0xFF) | ((s.charAt(1) & 0xFF) << 8) | ((s.charAt(2) & 0xFF) << 16) | ((s.charAt(3) & 0xFF) << 24);
+    }
+
+    public static String tagName(int id) {
+        return new String(new char[] { (char) (id & 0xFF), (char) ((id >>> 8) & 0xFF), (char) ((id >>> 16) & 0xFF), (char) (id >>> 24) });
+    }
+}
@@ -0,0 +1,86 @@
+package com.nerddaygames.engine;
+
+import org.luaj.vm2.Prototype;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ChunkCache - compiled Lua chunks (luaj Prototypes) by chunk name and exact source text,
+ * shared by every VM in the process (one per process, shared()).
+ *
+ * ScriptEngine compiles main chunks, require()d modules and dofile()d files through it, so
+ * running a project again compiles only the files whose text changed since the last run,
+ * and the tool VMs share one compile of the system scripts. A Prototype is not modified
+ * after compiling; each VM wraps it in its own closure. Bounded by total source length
+ * (LRU). Thread safe (one lock).
+ */
+public class ChunkCache {
+    public static final long DEFAULT_MAX_CHARS = 8L * 1024 * 1024;
+
+    private static final class Key {
+        final String name, source;
+        final int hash;
+
+        Key(String name, String source) {
+            this.name = name;
+            this.source = source;
+            this.hash = name.hashCode() * 31 + source.hashCode();
+        }
+
+        @Override public int hashCode() { return hash; }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return hash == k.hash && name.equals(k.name) && source.equals(k.source);
+        }
+    }
+
+    private static ChunkCache shared;
+
+    public static synchronized ChunkCache shared() {
+        if (shared == null) shared = new ChunkCache(DEFAULT_MAX_CHARS);
+        return shared;
+    }
+
+    private final LinkedHashMap<Key, Prototype> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxChars;
+    private long chars;
+
+    // --- STATS ---
+    public volatile long hits, misses, evictions;
+
+    public ChunkCache(long maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    /** @return the chunk compiled from exactly this source under this name, or null (a miss) */
+    public synchronized Prototype get(String name, String source) {
+        Prototype p = entries.get(new Key(name, source));
+        if (p != null) hits++;
+        else misses++;
+        return p;
+    }
+
+    public synchronized void put(String name, String source, Prototype p) {
+        if (source.length() > maxChars / 4) return;
+        Key key = new Key(name, source);
+        if (entries.put(key, p) == null) chars += source.length();
+        Iterator<Map.Entry<Key, Prototype>> it = entries.entrySet().iterator();
+        while (chars > maxChars && it.hasNext()) {
+            Key eldest = it.next().getKey();
+            it.remove();
+            chars -= eldest.source.length();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        chars = 0;
+    }
+
+    public synchronized int size() { return entries.size(); }
+}
@@ -0,0 +1,81 @@
+package com.nerddaygames.engine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ContentCache - whole-file contents for FileSystem, bounded by total bytes (LRU).
+ *
+ * An entry is only returned while the file's last-modified time and size still match
+ * what was cached, so edits made outside the process are picked up on the next read.
+ * Files larger than a quarter of the budget are not cached. Thread safe (one lock).
+ */
+public class ContentCache {
+    private static final class Entry {
+        final long modified, length;
+        final String text;
+        final long weight;
+
+        Entry(long modified, long length, String text) {
+            this.modified = modified;
+            this.length = length;
+            this.text = text;
+            this.weight = 2L * text.length() + 64; // UTF-16 chars + entry overhead
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxBytes;
+    private long bytes;
+    private long hits, misses, evictions;
+
+    public ContentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** @return cached text if the file still has this mtime and size, else null (a miss) */
+    public synchronized String get(String key, long modified, long length) {
+        Entry e = entries.get(key);
+        if (e != null && e.modified == modified && e.length == length) {
+            hits++;
+            return e.text;
+        }
+        if (e != null) remove(key);
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(String key, long modified, long length, String text) {
+        Entry e = new Entry(modified, length, text);
+        remove(key);
+        if (e.weight > maxBytes / 4) return;
+        entries.put(key, e);
+        bytes += e.weight;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            bytes -= eldest.weight;
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(String key) { remove(key); }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) bytes -= old.weight;
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getBytes() { return bytes; }
+    public synchronized int size() { return entries.size(); }
+}
@@ -0,0 +1,373 @@
+package com.nerddaygames.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * EditJournal - crash-safe autosave for a text file being edited.
+ *
+ * Instead of rewriting the whole file, the editor reports each change as one record
+ * (byte offset, bytes deleted, bytes inserted). Records are appended to a journal next
+ * to the file (".name.journal") by a shared daemon thread, one write and one fsync per
+ * batch, so an autosave costs about the size of the edit. The thread also keeps the
+ * current text in memory.
+ *
+ * The journal is compacted (the text written to the real file through the Sink, then
+ * the journal restarted from it) after idleMs without edits, and on close(). After an
+ * explicit save the caller reports saved(text) and the journal restarts the same way.
+ * The journal header holds the length and CRC32 of the file it started from, and every
+ * record has its own CRC32: after a crash, open() replays the valid records onto the
+ * file if it is still the one the journal started from, and drops a torn last record.
+ * A journal for a file that was changed some other way is discarded.
+ */
+public class EditJournal {
+    /** Where compaction writes the text (e.g. FileSystem.writeBytes). */
+    public interface Sink {
+        void write(byte[] text) throws IOException;
+    }
+
+    private static final int MAGIC = 0x454A4E4C; // "EJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private static final class Edit {
+        final int offset, delete;
+        final byte[] insert;
+        final long seq;
+
+        Edit(int offset, int delete, byte[] insert, long seq) {
+            this.offset = offset;
+            this.delete = delete;
+            this.insert = insert;
+            this.seq = seq;
+        }
+    }
+
+    private static final class Rebase {
+        final byte[] text;
+        final long seq;
+
+        Rebase(byte[] text, long seq) {
+            this.text = text;
+            this.seq = seq;
+        }
+    }
+
+    // --- SHARED WRITER (one thread for all journals) ---
+    private static final Object lock = new Object();
+    private static final List<EditJournal> journals = new ArrayList<>(); // guarded by lock
+    private static Thread writer;
+
+    // Tunable (the benchmark lowers it)
+    public static volatile long idleMs = 2000;
+
+    // --- STATS ---
+    public static volatile long records, appendedBytes, syncs, compactions, recoveries;
+
+    private final File target;
+    private final File file;
+    private final Sink sink;
+    private final byte[] initial;
+    private final boolean recovered;
+
+    // Guarded by lock
+    private final ArrayDeque<Object> queue = new ArrayDeque<>();
+    private long seq;          // last edit queued
+    private long lastEditTime;
+    private boolean closing, closed;
+
+    // Writer thread only
+    private FileChannel channel;
+    private byte[] text;
+    private int length;
+    private long appliedSeq;   // last edit in text and the journal
+    private long baseSeq;      // last edit in the real file (-1: recovered edits not yet written)
+
+    private EditJournal(File target, Sink sink, byte[] initial, boolean recovered) {
+        this.target = target;
+        this.file = journalFile(target);
+        this.sink = sink;
+        this.initial = initial;
+        this.recovered = recovered;
+    }
+
+    public static File journalFile(File target) {
+        return new File(target.getAbsoluteFile().getParentFile(), "." + target.getName() + ".journal");
+    }
+
+    /**
+     * Start journaling target, first replaying a journal left by a crash.
+     * @return the journal; text() is what the editor should show
+     */
+    public static EditJournal open(File target, Sink sink) throws IOException {
+        WriteBehind.shared().await(target); // the journal's base is what is on disk
+        byte[] disk = target.isFile() ? FileIo.readAll(target) : new byte[0];
+        File file = journalFile(target);
+
+        byte[] text = disk;
+        int textLength = disk.length;
+        long goodEnd = -1;
+        if (file.isFile()) {
+            try (FileChannel ch = FileIo.openRead(file)) {
+                ByteBuffer all = ByteBuffer.allocate((int) ch.size());
+                while (all.hasRemaining() && ch.read(all) >= 0) { }
+                all.flip();
+                if (all.remaining() >= HEADER_BYTES && all.getInt() == MAGIC && all.getInt() == VERSION
+                        && all.getLong() == disk.length && all.getLong() == crc(disk, 0, disk.length)) {
+                    goodEnd = all.position();
+                    Replay r = new Replay(disk);
+                    while (all.remaining() >= 8) {
+                        int n = all.getInt();
+                        long crc = all.getInt() & 0xFFFFFFFFL;
+                        if (n < 8 || n > all.remaining() || crc(all.array(), all.position(), n) != crc) break; // torn tail
+                        int offset = all.getInt(), delete = all.getInt();
+                        byte[] insert = new byte[n - 8];
+                        all.get(insert);
+                        r.apply(offset, delete, insert);
+                        goodEnd = all.position();
+                    }
+                    text = r.text;
+                    textLength = r.length;
+                }
+            } catch (Exception e) {
+                System.err.println("Edit journal " + file + " unreadable, discarded: " + e.getMessage());
+                goodEnd = -1;
+            }
+        }
+
+        boolean recovered = goodEnd > HEADER_BYTES;
+        byte[] initial = Arrays.copyOf(text, textLength);
+        EditJournal j = new EditJournal(target, sink, initial, recovered);
+        j.text = initial.clone();
+        j.length = textLength;
+        j.channel = FileIo.openReadWrite(file);
+        if (recovered) {
+            // Keep the valid records and append after them; they reach the file at the next compaction
+            j.channel.truncate(goodEnd);
+            j.channel.position(goodEnd);
+            j.baseSeq = -1;
+            recoveries++;
+            System.out.println("Recovered unsaved edits of " + target.getName() + " from " + file.getName());
+        } else {
+            j.restart(disk, disk.length);
+        }
+        synchronized (lock) {
+            journals.add(j);
+            if (writer == null) {
+                writer = new Thread(EditJournal::writeLoop, "edit-journal");
+                writer.setDaemon(true);
+                writer.start();
+            }
+        }
+        return j;
+    }
+
+    /** Text at open: the file, plus any edits recovered from a crash. */
+    public byte[] text() { return initial.clone(); }
+
+    /** true if open() replayed edits the file does not have yet */
+    public boolean wasRecovered() { return recovered; }
+
+    /** Replace `delete` bytes at offset with insert (the array is owned by the journal). */
+    public void edit(int offset, int delete, byte[] insert) {
+        synchronized (lock) {
+            if (closing) return;
+            queue.add(new Edit(offset, delete, insert, ++seq));
+            lastEditTime = System.currentTimeMillis();
+            lock.notifyAll();
+        }
+    }
+
+    /** The caller wrote text to the file itself (explicit save); restart the journal from it. */
+    public void saved(byte[] text) {
+        synchronized (lock) {
+            if (closing) return;
+            queue.add(new Rebase(text, seq));
+            lock.notifyAll();
+        }
+    }
+
+    /** Write unsaved edits to the file, remove the journal and stop (blocks until done). */
+    public void close() {
+        synchronized (lock) {
+            closing = true;
+            lock.notifyAll();
+            while (!closed && writer != null) {
+                try { lock.wait(10); } catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+            }
+        }
+    }
+
+    // --- WRITER ---
+
+    private static void writeLoop() {
+        List<EditJournal> work = new ArrayList<>();
+        while (true) {
+            synchronized (lock) {
+                while (true) {
+                    if (journals.isEmpty()) {
+                        writer = null;
+                        lock.notifyAll();
+                        return;
+                    }
+                    long now = System.currentTimeMillis(), wait = 0;
+                    boolean ready = false;
+                    for (EditJournal j : journals) {
+                        if (!j.queue.isEmpty() || j.closing) { ready = true; break; }
+                        if (j.seq != j.baseSeq) {
+                            long left = j.lastEditTime + idleMs - now;
+                            if (left <= 0) { ready = true; break; }
+                            wait = (wait == 0) ? left : Math.min(wait, left);
+                        }
+                    }
+                    if (ready) break;
+                    try { lock.wait(wait); } catch (InterruptedException e) { return; }
+                }
+                work.clear();
+                work.addAll(journals);
+            }
+            for (EditJournal j : work) {
+                try {
+                    j.service();
+                } catch (Exception e) {
+                    System.err.println("Edit journal " + j.file + " failed: " + e.getMessage());
+                    j.finish(false);
+                }
+            }
+        }
+    }
+
+    private void service() throws IOException {
+        List<Object> ops = new ArrayList<>();
+        boolean close, idle;
+        synchronized (lock) {
+            ops.addAll(queue);
+            queue.clear();
+            close = closing;
+            idle = System.currentTimeMillis() - lastEditTime >= idleMs;
+        }
+
+        ByteBuffer batch = null;
+        for (Object op : ops) {
+            if (op instanceof Edit) {
+                Edit e = (Edit) op;
+                int need = 16 + e.insert.length;
+                if (batch == null || batch.remaining() < need) {
+                    if (batch != null) append(batch);
+                    batch = ByteBuffer.allocate(Math.max(4096, need));
+                }
+                int start = batch.position();
+                batch.putInt(8 + e.insert.length).putInt(0).putInt(e.offset).putInt(e.delete).put(e.insert);
+                batch.putInt(start + 4, (int) crc(batch.array(), start + 8, 8 + e.insert.length));
+                apply(e.offset, e.delete, e.insert);
+                appliedSeq = e.seq;
+                records++;
+            } else {
+                if (batch != null) { append(batch); batch = null; }
+                Rebase r = (Rebase) op;
+                WriteBehind.shared().await(target); // the journal may only restart once the file has the text
+                restart(r.text, r.text.length);
+                baseSeq = r.seq;
+            }
+        }
+        if (batch != null) append(batch);
+        if (!ops.isEmpty()) {
+            channel.force(false);
+            syncs++;
+        }
+
+        if ((close || idle) && appliedSeq != baseSeq && queueEmpty()) compact();
+        if (close) finish(true);
+    }
+
+    private boolean queueEmpty() {
+        synchronized (lock) { return queue.isEmpty(); }
+    }
+
+    private void append(ByteBuffer batch) throws IOException {
+        batch.flip();
+        appendedBytes += batch.remaining();
+        while (batch.hasRemaining()) channel.write(batch);
+    }
+
+    // Text to the file, then the journal starts over from it
+    private void compact() throws IOException {
+        byte[] out = Arrays.copyOf(text, length);
+        sink.write(out);
+        WriteBehind.shared().await(target);
+        restart(out, out.length);
+        baseSeq = appliedSeq;
+        compactions++;
+    }
+
+    private void restart(byte[] base, int n) throws IOException {
+        channel.truncate(0);
+        ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES);
+        h.putInt(MAGIC).putInt(VERSION).putLong(n).putLong(crc(base, 0, n));
+        h.flip();
+        channel.position(0);
+        while (h.hasRemaining()) channel.write(h);
+        channel.force(false);
+        if (base != text) {
+            text = Arrays.copyOf(base, Math.max(16, n));
+            length = n;
+        }
+    }
+
+    private void finish(boolean delete) {
+        try { channel.close(); } catch (IOException ignored) {}
+        if (delete) file.delete();
+        synchronized (lock) {
+            journals.remove(this);
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+
+    private void apply(int offset, int delete, byte[] insert) {
+        if (offset < 0 || offset > length || delete < 0 || offset + delete > length) {
+            System.err.println("Edit journal " + file.getName() + ": edit out of range (" + offset + "+" + delete + " of " + length + ")");
+            offset = Math.max(0, Math.min(offset, length));
+            delete = Math.max(0, Math.min(delete, length - offset));
+        }
+        int n = length - delete + insert.length;
+        if (n > text.length) text = Arrays.copyOf(text, Math.max(n, text.length * 2));
+        System.arraycopy(text, offset + delete, text, offset + insert.length, length - offset - delete);
+        System.arraycopy(insert, 0, text, offset, insert.length);
+        length = n;
+    }
+
+    // Same edit semantics for crash replay (before the journal exists)
+    private static final class Replay {
+        byte[] text;
+        int length;
+
+        Replay(byte[] base) {
+            text = base.clone();
+            length = base.length;
+        }
+
+        void apply(int offset, int delete, byte[] insert) {
+            offset = Math.max(0, Math.min(offset, length));
+            delete = Math.max(0, Math.min(delete, length - offset));
+            int n = length - delete + insert.length;
+            if (n > text.length) text = Arrays.copyOf(text, Math.max(n, text.length * 2));
+            System.arraycopy(text, offset + delete, text, offset + insert.length, length - offset - delete);
+            System.arraycopy(insert, 0, text, offset, insert.length);
+            length = n;
+        }
+    }
+
+    private static long crc(byte[] b, int off, int len) {
+        CRC32 c = new CRC32();
+        c.update(b, off, len);
+        return c.getValue();
+    }
+}
@@ -2,6 +2,7 @@ package com.nerddaygames.engine;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
@@ -16,10 +17,15 @@ import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFont
 import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.utils.viewport.Viewport;
+import com.nerddaygames.engine.graphics.FrameBufferPool;
 import com.nerddaygames.engine.graphics.Palette;
 import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaValue;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class FantasyVM {
 
@@ -29,6 +35,9 @@ public class FantasyVM {
     private FrameBuffer osBuffer;
     private FrameBuffer gameBuffer;
     private FrameBuffer currentTarget;
+    private final FrameBufferPool osBufferPool = new FrameBufferPool(Pixmap.Format.RGBA8888, 2);
+    public final RenderScaleController scaleController;
+    private boolean scaleChanged = false;
 
     private OrthographicCamera osCamera;
     private OrthographicCamera gameCamera;
@@ -45,7 +54,9 @@ public class FantasyVM {
 
     // --- SPRITE EDITING ---
     private Pixmap spriteSheetPixmap;
+    private boolean spritesDirty;          // sset since the texture was last uploaded
     private Texture spriteSheetTexture;
+    public volatile String spriteSaveError; // last saveSpriteSheet write that failed, null once one lands
 
     // --- SUBSYSTEMS ---
     public ScriptEngine scriptEngine;
@@ -53,6 +64,31 @@ public class FantasyVM {
     public InputManager input;
     public FileSystem fs;
     public Ram ram;
+    public final FrameScheduler scheduler = new FrameScheduler();
+    public RewindBuffer rewind; // null when profile.rewindBufferBytes == 0
+    public final CartData cartData;
+    private Vfs.Mount cartMount;          // the loaded cart's sections, at "cart/" in fs
+
+    // --- PROJECT ASSETS (shared with the project's other VMs; null outside a project) ---
+    public ProjectStore store;
+    private ProjectStore.Subscription storeFeed;
+
+    // --- HOT RELOAD (profile.hotReload; ScriptEngine.hotReload) ---
+    private SourceWatcher.Feed rootFeed;   // the storage root (user disk or project folder)
+    private SourceWatcher.Feed systemFeed; // loose system assets, when not packaged
+    private final Set<String> changedSources = new LinkedHashSet<>();
+
+    // --- SNAPSHOTS ---
+    public VmSnapshot initSnapshot;  // taken after _init; restart() and reboot() restore it
+    public long sourceHash;          // identifies the loaded code (VmSnapshot.hash), set by the loader
+
+    // --- INPUT LOG ---
+    private InputLog.Recorder recorder;
+    private InputLog.Player player;
+    private boolean fixedStep = false; // time() advances by the log's timestep per update
+    private long logFrames = 0;
+    private long logUpdateNanos = 0;
+    private float logTimestep;
 
     // --- MEMORY MAP ---
     public static final int MEM_MAP_BASE    = 0x1000;
@@ -67,6 +103,8 @@ public class FantasyVM {
     private boolean isBatchDrawing = false;
     private boolean isShapeDrawing = false;
     private boolean enableTimeout = true;
+    private boolean frameActive = true; // false when the scheduler skipped this frame
+    private long bootTime = System.nanoTime();
 
     public FantasyVM(Profile profile) {
         this(profile, 1); // Default: enable timeout
@@ -75,6 +113,7 @@ public class FantasyVM {
     public FantasyVM(Profile profile, int timeoutFlag) {
         this.profile = profile;
         this.enableTimeout = (timeoutFlag != 0);
+        this.scaleController = new RenderScaleController(profile.minRenderScale, profile.maxRenderScale, profile.frameBudgetMs);
 
         // 1. INIT TOOLS FIRST (Fix for NullPointerException)
         this.batch = new SpriteBatch();
@@ -87,7 +126,8 @@ public class FantasyVM {
         this.palette = new Palette();
         this.input = new InputManager();
         this.fs = new FileSystem();
-        this.ram = new Ram(); // Ram uses fixed 64KB size
+        this.ram = createRam(profile); // 64KB, USER_DATA banked
+        this.cartData = new CartData(ram, Gdx.files.local(profile.cartDataDir).file());
 
         // Default Palette Mapping
         for(int i=0; i<32; i++) ram.poke(MEM_PALETTE_MAP + i, i);
@@ -98,11 +138,165 @@ public class FantasyVM {
 
         // 5. Boot Lua
         this.scriptEngine = new ScriptEngine(this, enableTimeout);
+
+        if (profile.rewindBufferBytes > 0) {
+            this.rewind = new RewindBuffer(ram, profile.rewindBufferBytes);
+            rewind.setCheckpointHook(new LuaCheckpointHook());
+        }
+
+        scheduler.setEnabled(profile.idleRendering);
+        watchSources();
+    }
+
+    /**
+     * Point the VM's file system at a project directory (tools and RunScreen).
+     */
+    public void setProjectDir(com.badlogic.gdx.files.FileHandle dir) {
+        if (storeFeed != null) storeFeed.close();
+        storeFeed = ProjectStore.subscribe(dir);
+        store = storeFeed.store();
+        store.revalidate(); // edited outside the app since the store was filled?
+        this.fs = new FileSystem(dir, storeFeed);
+        // The project's sprites and memory images, as loadCart does for a .cart
+        ProjectStore.Sheet sheet = store.sprites();
+        if (sheet != null) restoreSpriteSheet(sheet.width, sheet.height, sheet.format, sheet.pixels);
+        for (String path : MEMORY_ASSETS) loadMemoryAsset(path);
+        watchSources();
+        scheduler.invalidate();
+    }
+
+    // --- PROJECT STORE ---
+
+    // Project files that are Ram images (the cart sections loadCart reads into Ram)
+    private static final String[] MEMORY_ASSETS = { "map.bin", "flags.bin", "music.bin" };
+
+    private static int[] memoryRegion(String path) {
+        switch (path) {
+            case "map.bin":   return new int[] { MEM_MAP_BASE, MEM_MAP_WIDTH * Ram.MAP_HEIGHT };
+            case "flags.bin": return new int[] { Ram.GFX_FLAGS_BASE, Ram.GFX_FLAGS_SIZE };
+            case "music.bin": return new int[] { Ram.MUSIC_BASE, Ram.MUSIC_SIZE };
+            default: return null;
+        }
+    }
+
+    private void loadMemoryAsset(String path) {
+        int[] region = memoryRegion(path);
+        byte[] bytes = store.bytes(path);
+        if (region == null || bytes == null) return;
+        int n = Math.min(bytes.length, region[1]);
+        for (int i = 0; i < n; i++) ram.poke(region[0] + i, bytes[i] & 0xFF);
+    }
+
+    /** Publish the edited sprite sheet to the project's other VMs (and, in the background, disk). */
+    public boolean commitSprites() {
+        if (store == null || spriteSheetPixmap == null) return false;
+        store.putSprites(ProjectStore.Sheet.of(spriteSheetPixmap), storeFeed);
+        return true;
+    }
+
+    /** Publish a Ram image (map.bin, flags.bin, music.bin) the same way. */
+    public boolean commitMemory(String path) {
+        int[] region = memoryRegion(path);
+        if (store == null || region == null) return false;
+        byte[] bytes = new byte[region[1]];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) ram.peek(region[0] + i);
+        store.putBytes(path, bytes, storeFeed);
+        return true;
+    }
+
+    // Apply assets changed by the project's other VMs, then tell the Lua side
+    private void pollStore() {
+        for (String path; (path = storeFeed.poll()) != null; ) {
+            if (ProjectStore.SPRITES.equals(path)) {
+                ProjectStore.Sheet sheet = store.sprites();
+                if (sheet != null) restoreSpriteSheet(sheet.width, sheet.height, sheet.format, sheet.pixels);
+            } else if (memoryRegion(path) != null) {
+                loadMemoryAsset(path);
+            } else if (path.endsWith(".lua")) {
+                changedSources.add(path);
+            }
+            scheduler.invalidate();
+            if (scriptEngine == null || hasCrashed) continue;
+            LuaValue hook = scriptEngine.globals.get("_on_asset_changed");
+            if (!hook.isfunction()) continue;
+            try { hook.call(LuaValue.valueOf(path)); }
+            catch (LuaError e) { triggerCrash(e); }
+        }
+    }
+
+    // --- HOT RELOAD ---
+
+    // Follow the storage root and the loose system assets (again after the root changes).
+    // SourceWatcher is java.nio.file, so it is never loaded where that is missing (Android)
+    private void watchSources() {
+        if (rootFeed != null) rootFeed.close();
+        boolean watch = profile.hotReload && FileIo.NIO_FILES;
+        if (systemFeed == null && watch) {
+            FileHandle system = Gdx.files.internal("system");
+            if (system.file().isDirectory()) systemFeed = SourceWatcher.shared().watch(system.file(), "system/");
+        }
+        rootFeed = watch ? SourceWatcher.shared().watch(fs.rootDir(), "") : null;
+    }
+
+    // Files changed on disk. Project files are re-read through the store, which tells every
+    // VM on the project (pollStore picks up the .lua ones); the rest go to hot reload directly
+    private void pollSources() {
+        boolean project = false;
+        if (rootFeed != null) {
+            for (String path; (path = rootFeed.poll()) != null; ) {
+                if (store != null) project = true;
+                else if (path.endsWith(".lua")) changedSources.add(path);
+            }
+        }
+        if (systemFeed != null) {
+            for (String path; (path = systemFeed.poll()) != null; ) {
+                if (path.endsWith(".lua")) changedSources.add(path);
+            }
+        }
+        if (project) store.revalidate();
+    }
+
+    // Run the changed chunks again; a successful reload also clears a crash, so a fix shows at once
+    private void hotReload() {
+        if (scriptEngine == null) {
+            changedSources.clear();
+            return;
+        }
+        HotReload reload = scriptEngine.hotReload;
+        long failures = reload.failures;
+        List<String> run = reload.reload(changedSources);
+        changedSources.clear();
+        if (run.isEmpty()) return;
+        if (profile.logTimings) System.out.printf("Hot reload: %s in %.2f ms%n", run, reload.lastReloadNanos / 1e6);
+        scheduler.invalidate();
+        initSnapshot = null; // restart() would bring back the old code
+        if (sourceHash != 0 && store != null) sourceHash = VmSnapshot.hashSources(fs);
+        if (reload.failures != failures) return;
+        hasCrashed = false;
+        LuaValue hook = scriptEngine.globals.get("_on_reload");
+        if (!hook.isfunction()) return;
+        for (String path : run) {
+            try { hook.call(LuaValue.valueOf(path)); }
+            catch (LuaError e) { triggerCrash(e); return; }
+        }
+    }
+
+    private static Ram createRam(Profile profile) {
+        if (profile.ramStorage != RamStorage.Kind.HEAP) {
+            try {
+                RamStorage storage = RamStorage.create(profile.ramStorage, Ram.MEMORY_SIZE, new java.io.File(profile.ramFile));
+                return new Ram(profile.memoryBanks, storage);
+            } catch (Exception e) {
+                System.err.println("RAM backend " + profile.ramStorage + " unavailable, using heap: " + e.getMessage());
+            }
+        }
+        return new Ram(profile.memoryBanks);
     }
 
     public void resize(int width, int height) {
         this.profile.width = width;
         this.profile.height = height;
+        allocateOsBuffer();
         osCamera.setToOrtho(false, width, height);
         osCamera.update();
         // Update projection matrices after camera resize
@@ -110,6 +304,7 @@ public class FantasyVM {
             batch.setProjectionMatrix(osCamera.combined);
             shapes.setProjectionMatrix(osCamera.combined);
         }
+        scheduler.invalidate();
     }
 
     public com.badlogic.gdx.graphics.Texture getScreenTexture() {
@@ -117,8 +312,8 @@ public class FantasyVM {
     }
 
     private void initVideo() {
-        // OS SCREEN (1920x1080)
-        osBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, profile.width, profile.height, false);
+        // OS SCREEN (1920x1080, times the render scale)
+        allocateOsBuffer();
         osCamera = new OrthographicCamera();
         osCamera.setToOrtho(false, profile.width, profile.height);
 
@@ -133,37 +328,77 @@ public class FantasyVM {
         setTarget("os");
     }
 
+    /**
+     * (Re)allocate osBuffer at profile size * render scale. The camera stays in
+     * profile units, so Lua coordinates are unaffected by the scale.
+     */
+    private void allocateOsBuffer() {
+        float scale = scaleController.getScale();
+        int bw = Math.max(1, Math.round(profile.width * scale));
+        int bh = Math.max(1, Math.round(profile.height * scale));
+        if (osBuffer != null && osBuffer.getWidth() == bw && osBuffer.getHeight() == bh) return;
+
+        if (osBuffer != null) {
+            if (currentTarget == osBuffer) {
+                endDrawing();
+                osBuffer.end();
+                currentTarget = null;
+            }
+            osBufferPool.free(osBuffer);
+        }
+        osBuffer = osBufferPool.obtain(bw, bh);
+    }
+
+    public float getRenderScale() { return scaleController.getScale(); }
+
+    public static final String OS_FONT = "system/JetBrainsMono-Regular.ttf";
+    public static final String GAME_FONT = "system/PressStart2P.ttf";
+
+    /** OS font (JetBrains Mono) settings; AssetBaker bakes the same ones. */
+    public static FreeTypeFontParameter osFontParameter() {
+        FreeTypeFontParameter p = new FreeTypeFontParameter();
+        p.size = 20;
+        p.color = Color.WHITE;
+        p.minFilter = TextureFilter.Linear;
+        p.magFilter = TextureFilter.Linear;
+        p.mono = true; // Force monospace rendering
+        return p;
+    }
+
+    /** Game font (PressStart2P) settings; AssetBaker bakes the same ones. */
+    public static FreeTypeFontParameter gameFontParameter() {
+        FreeTypeFontParameter p = new FreeTypeFontParameter();
+        p.size = 8;
+        p.color = Color.WHITE;
+        p.minFilter = TextureFilter.Nearest;
+        p.magFilter = TextureFilter.Nearest;
+        return p;
+    }
+
     private void loadFonts() {
         // OS FONT (JetBrains Mono)
+        osFont = loadFont("os", OS_FONT, osFontParameter());
+        osFont.setUseIntegerPositions(true); // Use integer positions for crisp rendering
+        osFont.getData().setScale(1.0f);
+
+        // GAME FONT (PressStart2P)
+        gameFont = loadFont("game", GAME_FONT, gameFontParameter());
+        gameFont.setUseIntegerPositions(true);
+    }
+
+    // Baked at build time if possible (BakedAssets), else rasterized here with FreeType
+    private BitmapFont loadFont(String name, String file, FreeTypeFontParameter p) {
         try {
-            FreeTypeFontGenerator gen = new FreeTypeFontGenerator(fs.resolve("system/JetBrainsMono-Regular.ttf"));
-            FreeTypeFontParameter p = new FreeTypeFontParameter();
-            p.size = 20;
-            p.color = Color.WHITE;
-            p.minFilter = TextureFilter.Linear;
-            p.magFilter = TextureFilter.Linear;
-            p.mono = true; // Force monospace rendering
-            osFont = gen.generateFont(p);
-            osFont.setUseIntegerPositions(true); // Use integer positions for crisp rendering
-            osFont.getData().setScale(1.0f);
-            gen.dispose();
+            FileHandle ttf = fs.resolve(file);
+            BitmapFont baked = BakedAssets.shared().font(name, ttf, p);
+            if (baked != null) return baked;
+            FreeTypeFontGenerator gen = new FreeTypeFontGenerator(ttf);
+            try { return gen.generateFont(p); }
+            finally { gen.dispose(); }
         } catch (Exception e) {
             // Fallback
-            osFont = new BitmapFont();
+            return new BitmapFont();
         }
-
-        // GAME FONT (PressStart2P)
-        try {
-            FreeTypeFontGenerator gen = new FreeTypeFontGenerator(fs.resolve("system/PressStart2P.ttf"));
-            FreeTypeFontParameter p = new FreeTypeFontParameter();
-            p.size = 8;
-            p.color = Color.WHITE;
-            p.minFilter = TextureFilter.Nearest;
-            p.magFilter = TextureFilter.Nearest;
-            gameFont = gen.generateFont(p);
-            gameFont.setUseIntegerPositions(true);
-            gen.dispose();
-        } catch (Exception e) { gameFont = new BitmapFont(); }
     }
 
     // TARGET SWITCHING
@@ -186,11 +421,26 @@ public class FantasyVM {
         }
     }
 
+    /** Size of the surface Lua draws to: the OS screen or, after setTarget("game"), the game screen. */
+    public int displayWidth() { return (currentTarget == gameBuffer) ? profile.gameWidth : profile.width; }
+    public int displayHeight() { return (currentTarget == gameBuffer) ? profile.gameHeight : profile.height; }
+
     public BitmapFont getCurrentFont() {
         return (currentTarget == gameBuffer) ? gameFont : osFont;
     }
 
     public void render() {
+        // Idle frame: osBuffer still holds the last drawn image
+        if (!frameActive) return;
+
+        // Apply a scale change decided last frame (before drawing, so nothing is lost)
+        if (scaleChanged) {
+            scaleChanged = false;
+            allocateOsBuffer();
+        }
+        // Only drawing depends on the buffer size: _update and the reallocation are not timed
+        long drawStart = System.nanoTime();
+
         // Start frame on OS Buffer
         setTarget("os");
 
@@ -210,6 +460,12 @@ public class FantasyVM {
 
         endDrawing();
         if (currentTarget != null) currentTarget.end();
+
+        float drawMs = (System.nanoTime() - drawStart) / 1_000_000f;
+        if (scaleController.sample(drawMs)) {
+            scaleChanged = true;
+            scheduler.invalidate();
+        }
     }
 
     // --- GRAPHICS API HELPERS ---
@@ -277,18 +533,133 @@ public class FantasyVM {
     public Texture getGameTexture() { return gameBuffer.getColorBufferTexture(); }
 
     public void update(float delta) {
+        if (rootFeed != null || systemFeed != null) pollSources();
+        if (storeFeed != null) pollStore();
+        if (!changedSources.isEmpty()) hotReload();
         if (hasCrashed) {
             if (Gdx.input.isKeyJustPressed(Input.Keys.ESCAPE)) reboot();
+            frameActive = scheduler.beginFrame(false);
             return;
         }
         input.update();
+        frameActive = scheduler.beginFrame(input.pollActivity() || player != null);
+        if (!frameActive) return;
+
+        // Rewind: step back a frame instead of running _update; _draw shows the restored state
+        if (rewind != null && !fixedStep && Gdx.input.isKeyPressed(profile.rewindKey)) {
+            rewind.stepBack();
+            scheduler.invalidate();
+            return;
+        }
+
+        if (player != null) {
+            InputLog.Frame f = player.next();
+            if (f != null) input.applyFrame(f);
+            else finishReplay();
+        } else if (recorder != null) {
+            try { recorder.record(input.captureFrame()); }
+            catch (java.io.IOException e) { System.err.println("Input recording stopped: " + e.getMessage()); stopInputLog(); }
+        }
+
         for(int i=0; i<8; i++) ram.poke(MEM_INPUT + i, input.btn(i) ? 1 : 0);
         ram.poke2(MEM_INPUT + 16, input.mouseX);
         ram.poke2(MEM_INPUT + 18, input.mouseY);
         ram.poke(MEM_INPUT + 20, input.mouseDownLeft ? 1 : 0);
 
+        long updateStart = System.nanoTime();
         try { scriptEngine.executeFunction("_update"); }
         catch (LuaError e) { triggerCrash(e); }
+        long updateNanos = System.nanoTime() - updateStart;
+        if (fixedStep) { logFrames++; logUpdateNanos += updateNanos; }
+        cartData.sync(); // stages changes only; the journal is written off-thread
+
+        if (rewind != null && !hasCrashed) rewind.capture();
+    }
+
+    // --- INPUT RECORD / REPLAY ---
+
+    /**
+     * Log every frame's input to file. Call before the cart's main chunk runs so
+     * math.random is seeded before any cart code.
+     */
+    public void startRecording(java.io.File file, long seed) {
+        stopInputLog();
+        try {
+            recorder = new InputLog.Recorder(file, seed, profile.fixedTimestep);
+            beginFixedStep(seed, recorder.timestep);
+            System.out.println("Recording input to " + file + " (seed " + seed + ")");
+        } catch (java.io.IOException e) {
+            System.err.println("Could not record input: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Feed a recorded log back in place of live input (fixed timestep, same seed).
+     */
+    public void startReplay(java.io.File file) {
+        stopInputLog();
+        try {
+            player = new InputLog.Player(file);
+            beginFixedStep(player.seed, player.timestep);
+            System.out.println("Replaying input from " + file);
+        } catch (java.io.IOException e) {
+            System.err.println("Could not replay input: " + e.getMessage());
+        }
+    }
+
+    public boolean isReplaying() { return player != null; }
+
+    public void stopInputLog() {
+        if (recorder != null) {
+            recorder.close();
+            System.out.println("Recorded " + recorder.frames + " frames");
+            recorder = null;
+        }
+        if (player != null) { player.close(); player = null; }
+        input.endLog();
+        fixedStep = false;
+    }
+
+    private void beginFixedStep(long seed, float timestep) {
+        fixedStep = true;
+        logTimestep = timestep;
+        logFrames = 0;
+        logUpdateNanos = 0;
+        LuaValue randomseed = scriptEngine.globals.get("math").get("randomseed");
+        if (randomseed.isfunction()) randomseed.call(LuaValue.valueOf(seed));
+    }
+
+    // Same log, same frames: the _update total is the workload's cost
+    private void finishReplay() {
+        System.out.printf("Replay finished: %d frames, _update total %.2f ms, avg %.3f ms%n",
+            logFrames, logUpdateNanos / 1e6, logFrames == 0 ? 0 : logUpdateNanos / 1e6 / logFrames);
+        stopInputLog();
+    }
+
+    /**
+     * Carts may define _checkpoint() -> string and _restore(string) so Lua-side
+     * state rewinds together with RAM.
+     */
+    private class LuaCheckpointHook implements RewindBuffer.CheckpointHook {
+        @Override public byte[] save() {
+            LuaValue f = scriptEngine.globals.get("_checkpoint");
+            if (!f.isfunction()) return null;
+            try {
+                LuaValue s = f.call();
+                if (!s.isstring()) return null;
+                LuaString ls = s.checkstring();
+                byte[] out = new byte[ls.m_length];
+                ls.copyInto(0, out, 0, out.length);
+                return out;
+            } catch (LuaError e) { triggerCrash(e); return null; }
+        }
+
+        @Override public void restore(byte[] data) {
+            LuaValue f = scriptEngine.globals.get("_restore");
+            if (!f.isfunction()) return;
+            try { f.call(LuaString.valueUsing(data)); }
+            catch (LuaError e) { triggerCrash(e); }
+        }
     }
 
     private void drawBSOD() {
@@ -304,8 +675,26 @@ public class FantasyVM {
         batch.end();
     }
 
+    /**
+     * True if the VM wants another frame right away (dirty, or input still held).
+     */
+    public boolean needsFrame() {
+        return hasCrashed ? scheduler.hasPendingWork() : scheduler.hasPendingWork() || input.isInputHeld();
+    }
+
+    public void invalidate() { scheduler.invalidate(); }
+
+    /**
+     * Seconds since the VM booted.
+     */
+    public float time() {
+        if (fixedStep) return logFrames * logTimestep;
+        return (System.nanoTime() - bootTime) / 1_000_000_000f;
+    }
+
     private void triggerCrash(LuaError e) {
         hasCrashed = true;
+        scheduler.invalidate();
         crashMessage = e.getMessage();
         System.err.println("=== CRASH DETECTED ===");
         System.err.println(crashMessage);
@@ -314,6 +703,8 @@ public class FantasyVM {
 
     public void reboot() {
         hasCrashed = false;
+        if (rewind != null) rewind.reset();
+        if (initSnapshot != null && restart()) return;
         try {
             String bootScript = fs.read("system/desktop.lua");
             if (bootScript == null) throw new Exception("Could not read system/desktop.lua");
@@ -322,6 +713,79 @@ public class FantasyVM {
         } catch (Exception e) { triggerCrash(new LuaError("Reboot failed: " + e.getMessage())); }
     }
 
+    // --- SNAPSHOTS (VmSnapshot) ---
+
+    /**
+     * Capture the post-_init state for restart(); call right after _init.
+     */
+    public VmSnapshot captureInitSnapshot() {
+        long t0 = System.nanoTime();
+        try {
+            initSnapshot = VmSnapshot.capture(this);
+            if (profile.logTimings) System.out.printf("Snapshot taken in %.2f ms%n", (System.nanoTime() - t0) / 1e6);
+            if (initSnapshot.unbound > 0) System.err.println("Snapshot: " + initSnapshot.unbound + " values not saved");
+        } catch (LuaError e) {
+            System.err.println("Snapshot failed: " + e.getMessage());
+            initSnapshot = null;
+        }
+        return initSnapshot;
+    }
+
+    /**
+     * Back to the state right after _init without re-reading, re-compiling or re-running anything.
+     * @return false if there is no snapshot (or it could not be applied)
+     */
+    public boolean restart() {
+        if (initSnapshot == null) return false;
+        return applySnapshot(initSnapshot);
+    }
+
+    /**
+     * Continue a suspended session: runs the snapshot's main chunk (already compiled, so
+     * functions and required modules exist again), then applies its state instead of _init.
+     */
+    public boolean resume(VmSnapshot snapshot) {
+        try {
+            scriptEngine.runPrototype(snapshot.main, snapshot.chunkName);
+        } catch (LuaError e) {
+            triggerCrash(e);
+            return false;
+        }
+        sourceHash = snapshot.sourceHash;
+        return applySnapshot(snapshot);
+    }
+
+    private boolean applySnapshot(VmSnapshot snapshot) {
+        long t0 = System.nanoTime();
+        try {
+            snapshot.restore(this);
+        } catch (LuaError e) {
+            triggerCrash(e);
+            return false;
+        }
+        hasCrashed = false;
+        bootTime = System.nanoTime();
+        if (rewind != null) rewind.reset();
+        scheduler.invalidate();
+        if (profile.logTimings) System.out.printf("Snapshot restored in %.2f ms%n", (System.nanoTime() - t0) / 1e6);
+        return true;
+    }
+
+    Pixmap getSpriteSheetPixmap() { return spriteSheetPixmap; }
+
+    // Same size/format: overwrite pixels and re-upload; otherwise install a new sheet
+    void restoreSpriteSheet(int width, int height, Pixmap.Format format, byte[] pixels) {
+        Pixmap target = spriteSheetPixmap;
+        boolean reuse = target != null && target.getWidth() == width && target.getHeight() == height && target.getFormat() == format;
+        if (!reuse) target = new Pixmap(width, height, format);
+        java.nio.ByteBuffer dst = target.getPixels();
+        dst.clear();
+        dst.put(pixels, 0, Math.min(pixels.length, dst.remaining()));
+        dst.clear();
+        if (reuse) refreshSpriteTexture();
+        else installSheet(target);
+    }
+
     public void setViewport(Viewport v) { input.setViewport(v); }
 
     private void loadSprites() {
@@ -333,37 +797,86 @@ public class FantasyVM {
     private void loadSheet(String f) {
         try {
             // Load the pixmap for editing (Y=0 at top, PNG format)
-            spriteSheetPixmap = new Pixmap(fs.resolve(f));
+            installSheet(new Pixmap(fs.resolve(f)));
+        } catch(Exception e) {
+            System.err.println("Failed to load sprite sheet: " + e.getMessage());
+        }
+    }
 
-            // Create texture from pixmap
-            spriteSheetTexture = new Texture(spriteSheetPixmap);
-            spriteSheetTexture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+    // Make pixmap the editable sprite sheet and split it into 8x8 regions
+    private void installSheet(Pixmap pixmap) {
+        if (spriteSheetTexture != null) spriteSheetTexture.dispose();
+        if (spriteSheetPixmap != null && spriteSheetPixmap != pixmap) spriteSheetPixmap.dispose();
+        spriteSheets.clear();
+        spriteSheetPixmap = pixmap;
 
-            // Split into 8x8 sprites
-            TextureRegion[][] tmp = TextureRegion.split(spriteSheetTexture, 8, 8);
+        // Create texture from pixmap
+        spriteSheetTexture = new Texture(spriteSheetPixmap);
+        spriteSheetTexture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
 
-            // Flip all regions vertically to fix upside-down rendering
-            // PNG has Y=0 at top, OpenGL has Y=0 at bottom
-            for(TextureRegion[] row : tmp) {
-                for(TextureRegion region : row) {
-                    region.flip(false, true);
-                }
+        // Split into 8x8 sprites
+        TextureRegion[][] tmp = TextureRegion.split(spriteSheetTexture, 8, 8);
+
+        // Flip all regions vertically to fix upside-down rendering
+        // PNG has Y=0 at top, OpenGL has Y=0 at bottom
+        for(TextureRegion[] row : tmp) {
+            for(TextureRegion region : row) {
+                region.flip(false, true);
             }
+        }
 
-            // Flatten to 1D array
-            TextureRegion[] s = new TextureRegion[tmp.length * tmp[0].length];
-            int i = 0;
-            for(TextureRegion[] r : tmp) {
-                for(TextureRegion c : r) {
-                    s[i++] = c;
-                }
+        // Flatten to 1D array
+        TextureRegion[] s = new TextureRegion[tmp.length * tmp[0].length];
+        int i = 0;
+        for(TextureRegion[] r : tmp) {
+            for(TextureRegion c : r) {
+                s[i++] = c;
             }
-            spriteSheets.add(s);
-        } catch(Exception e) {
-            System.err.println("Failed to load sprite sheet: " + e.getMessage());
+        }
+        spriteSheets.add(s);
+    }
+
+    /**
+     * Load a .cart (CartFile): one mmap, sections decompress into Ram and the sprite
+     * sheet, then the precompiled chunk (or source) runs. Does not call _init.
+     * The sections stay readable as files under "cart/" (fs.read("cart/project.json")).
+     */
+    public boolean loadCart(java.io.File file) {
+        try {
+            CartFile cart = CartFile.open(file);
+            unmountCart();
+            cartMount = Vfs.ArchiveMount.cart(file, cart);
+            fs.mount("cart/", cartMount);
+            // The cart's own modules before anything on disk
+            LuaValue pkg = scriptEngine.globals.get("package");
+            pkg.set("path", "cart/?.lua;" + pkg.get("path").optjstring("?.lua"));
+            cart.readInto(CartFile.MAP, ram, MEM_MAP_BASE, MEM_MAP_WIDTH * Ram.MAP_HEIGHT);
+            cart.readInto(CartFile.FLAGS, ram, Ram.GFX_FLAGS_BASE, Ram.GFX_FLAGS_SIZE);
+            cart.readInto(CartFile.MUSIC, ram, Ram.MUSIC_BASE, Ram.MUSIC_SIZE);
+            // SFX has no Ram region yet; the section is kept for the sfx tool
+            if (cart.has(CartFile.SPRITES)) installSheet(cart.readSprites(palette));
+
+            String name = file.getName();
+            if (cart.has(CartFile.LUAC)) scriptEngine.runChunk(cart.readBytes(CartFile.LUAC), name);
+            else if (cart.has(CartFile.CODE)) scriptEngine.runScript(cart.readString(CartFile.CODE), name);
+            scheduler.invalidate();
+            return true;
+        } catch (LuaError e) {
+            triggerCrash(e);
+            return false;
+        } catch (Exception e) {
+            System.err.println("Failed to load cart " + file + ": " + e.getMessage());
+            return false;
         }
     }
+    private void unmountCart() {
+        if (cartMount == null) return;
+        fs.unmount(cartMount);
+        cartMount = null;
+    }
+
     public TextureRegion[] getActiveSprites() {
+        if (spritesDirty) refreshSpriteTexture();
         if (activeSheetIndex >= spriteSheets.size()) return null;
         return spriteSheets.get(activeSheetIndex);
     }
@@ -397,33 +910,87 @@ public class FantasyVM {
         // Set pixel in pixmap (Y=0 at top)
         spriteSheetPixmap.setColor(c);
         spriteSheetPixmap.drawPixel(x, y);
+        spritesDirty = true; // re-uploaded once, before the next spr/map draws
     }
 
     public void refreshSpriteTexture() {
+        spritesDirty = false;
         if (spriteSheetTexture == null || spriteSheetPixmap == null) return;
 
         // Update texture from pixmap
         spriteSheetTexture.draw(spriteSheetPixmap, 0, 0);
     }
 
+    /**
+     * Queue the sheet as a PNG (WriteBehind): the pixels are copied here, the PNG is
+     * encoded and written on the writer thread, so saving never stalls a frame. The write
+     * finishes later: it ends up in spriteSaveError (null once a save has landed).
+     * @return false if there is no sheet or nothing could be queued
+     */
     public boolean saveSpriteSheet(String path) {
         if (spriteSheetPixmap == null) return false;
         try {
-            // Write pixmap to PNG file
-            com.badlogic.gdx.graphics.PixmapIO.writePNG(Gdx.files.local("disk/" + path), spriteSheetPixmap);
-            return true;
-        } catch (Exception e) {
-            System.err.println("Failed to save sprite sheet: " + e.getMessage());
+            WriteBehind.shared().submit(Gdx.files.local("disk/" + path).file(), ProjectStore.png(ProjectStore.Sheet.of(spriteSheetPixmap)),
+                (target, error) -> spriteSaveError = (error != null) ? "Could not save " + path + ": " + error.getMessage() : null);
+        } catch (IllegalStateException e) {
+            spriteSaveError = "Could not save " + path + ": " + e.getMessage(); // writer closed (exiting)
             return false;
         }
+        return true;
     }
 
     public boolean isSpriteSheetLoaded() {
         return spriteSheetPixmap != null && spriteSheetTexture != null;
     }
 
+    /**
+     * Back to the state right after construction, keeping what is costly to make: GL
+     * buffers, fonts, batches, Ram storage. The Lua state is new (compiled chunks come from
+     * ChunkCache), Ram is zeroed, cart data and project feeds are dropped. A VM kept warm
+     * for the next Run (RunScreen); before running code on it again, give it a new
+     * InputManager (constructing one takes input focus) and call setProjectDir.
+     */
+    public void recycle() {
+        stopInputLog();
+        cartData.close();
+        unmountCart();
+        scriptEngine.dispose();
+        if (storeFeed != null) storeFeed.close();
+        if (rootFeed != null) rootFeed.close();
+        if (systemFeed != null) systemFeed.close();
+        storeFeed = null;
+        rootFeed = null;
+        systemFeed = null;
+        store = null;
+        changedSources.clear();
+        hasCrashed = false;
+        crashMessage = "";
+        crashLine = "";
+        initSnapshot = null;
+        sourceHash = 0;
+
+        ram.clear();
+        for (int i = 0; i < 32; i++) ram.poke(MEM_PALETTE_MAP + i, i);
+        this.fs = new FileSystem();
+        activeSheetIndex = 0;
+        loadSheet("sprites.png");
+
+        if (rewind != null) rewind.reset();
+        this.scriptEngine = new ScriptEngine(this, enableTimeout);
+        bootTime = System.nanoTime();
+        scheduler.invalidate();
+    }
+
     public void dispose() {
+        if (storeFeed != null) storeFeed.close();
+        if (rootFeed != null) rootFeed.close();
+        if (systemFeed != null) systemFeed.close();
+        stopInputLog();
+        cartData.close();
+        unmountCart();
+        scheduler.dispose();
         if(osBuffer!=null)osBuffer.dispose();
+        osBufferPool.dispose();
         if(gameBuffer!=null)gameBuffer.dispose();
         if(batch!=null)batch.dispose();
         if(shapes!=null)shapes.dispose();
@@ -432,6 +999,7 @@ public class FantasyVM {
         if(palette!=null)palette.dispose();
         if(spriteSheetPixmap!=null)spriteSheetPixmap.dispose();
         if(spriteSheetTexture!=null)spriteSheetTexture.dispose();
+        if(ram!=null)ram.close();
     }
 
     public void circle(int x, int y, int r, int c, boolean f) {
@@ -0,0 +1,83 @@
+package com.nerddaygames.engine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * FileIo - file primitives core uses instead of java.nio.file.
+ *
+ * java.nio.file needs Android API 26 and the app supports 21, so core code opens channels
+ * and reads files through java.io (RandomAccessFile / stream channels, available
+ * everywhere). The few things only java.nio.file does well live in Desktop, which is
+ * loaded only when NIO_FILES is true:
+ *  - replace(): atomic rename over an existing file (File.renameTo cannot replace one on
+ *    Windows; on Android it is rename(2), which is atomic and replaces)
+ *  - isSymlink(): copies and deletes do not follow links
+ * The WatchService users (SourceWatcher, DirectoryIndex) check NIO_FILES themselves.
+ */
+public final class FileIo {
+    /** java.nio.file may be used (not on Android, whose VM reports itself as Dalvik). */
+    public static final boolean NIO_FILES = !"Dalvik".equals(System.getProperty("java.vm.name"));
+
+    private FileIo() {}
+
+    /** The whole file. */
+    public static byte[] readAll(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            long n = raf.length();
+            if (n > Integer.MAX_VALUE - 8) throw new IOException("file too large for one read: " + f);
+            byte[] out = new byte[(int) n];
+            raf.readFully(out);
+            return out;
+        }
+    }
+
+    /** Read-only channel (closing it closes the file). */
+    public static FileChannel openRead(File f) throws IOException {
+        return new FileInputStream(f).getChannel();
+    }
+
+    /** Read/write channel, creating the file if needed; existing bytes are kept. */
+    public static FileChannel openReadWrite(File f) throws IOException {
+        return new RandomAccessFile(f, "rw").getChannel();
+    }
+
+    /** Write channel on an empty file (created or truncated). */
+    public static FileChannel openWrite(File f) throws IOException {
+        return new FileOutputStream(f).getChannel();
+    }
+
+    /** Rename tmp over target, atomically where the platform can; tmp is gone afterwards. */
+    public static void replace(File tmp, File target) throws IOException {
+        if (NIO_FILES) {
+            Desktop.replace(tmp, target);
+        } else if (!tmp.renameTo(target)) {
+            throw new IOException("could not rename " + tmp + " to " + target);
+        }
+    }
+
+    /** @return true if f itself is a symbolic link (false where links cannot be detected) */
+    public static boolean isSymlink(File f) {
+        return NIO_FILES && Desktop.isSymlink(f);
+    }
+
+    // Only loaded when NIO_FILES (references java.nio.file)
+    private static final class Desktop {
+        static void replace(File tmp, File target) throws IOException {
+            try {
+                java.nio.file.Files.move(tmp.toPath(), target.toPath(),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            } catch (java.nio.file.AtomicMoveNotSupportedException e) {
+                java.nio.file.Files.move(tmp.toPath(), target.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        static boolean isSymlink(File f) {
+            return java.nio.file.Files.isSymbolicLink(f.toPath());
+        }
+    }
+}
@@ -1,37 +1,138 @@
 package com.nerddaygames.engine;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Files;
 import com.badlogic.gdx.files.FileHandle;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * FileSystem - simple project/file abstraction.
  * Added constructor that accepts a FileHandle for a custom storage root (used by FantasyVM.setProjectDir).
+ *
+ * read() goes through a ContentCache: a hit costs one stat (mtime + size), so repeated
+ * require()s and tool polling do not re-read files. write() replaces the cached entry.
+ *
+ * The storage root (user disk or project folder) is the writable top layer; below it is
+ * the read-only Vfs mount table (system pack, internal assets; Vfs.shared()).
+ *
+ * resolve() memoizes path -> handle + origin (user disk, Vfs mount, not found).
+ * A user-disk hit costs no syscalls (callers stat the handle anyway and forget it if it is
+ * gone); mount/not-found hits re-check only that no user file has appeared since.
+ * write()/openWrite() forget the path; invalidatePaths() drops everything (directory changes).
+ * mkdir()/delete() and the desktop's file operations call invalidateAllPaths(), which every
+ * FileSystem in the process notices on its next resolve().
+ *
+ * Binary access (no String, no size ceiling): readBytes (whole or ranged), writeBytes,
+ * openRead/openWrite/openChannel over FileChannel, and map(), which memory-maps files of
+ * MAP_THRESHOLD bytes or more. Packaged assets are read through their stream instead.
+ *
+ * write()/writeBytes() hand the bytes to WriteBehind and return without disk IO. Every
+ * read path checks WriteBehind.pending() first, so the last write is what this process
+ * sees; openWrite()/openChannel() wait for a pending write of the same file.
+ *
+ * On a project folder (FantasyVM.setProjectDir) reads (read, readBytes, openRead, map,
+ * length) and writes of project files go through the project's ProjectStore instead, so
+ * every VM on the project sees one in-memory copy; the store persists through WriteBehind
+ * the same way. openChannel() is the disk file itself.
  */
 public class FileSystem {
+    public static final long DEFAULT_CACHE_BYTES = 8L * 1024 * 1024;
+    // Smaller files are read onto the heap by map(); mapping costs more than it saves
+    public static final long MAP_THRESHOLD = 1024 * 1024;
+
     private FileHandle storageRoot;
+    public final ContentCache cache = new ContentCache(DEFAULT_CACHE_BYTES);
+
+    // --- RESOLVE CACHE ---
+    private enum Origin { USER, MOUNT, MISSING }
+
+    private static final class Resolved {
+        final FileHandle handle;
+        final FileHandle userFile; // the storage-root candidate (shadowing check for MOUNT/MISSING)
+        final Origin origin;
+
+        Resolved(FileHandle handle, FileHandle userFile, Origin origin) {
+            this.handle = handle;
+            this.userFile = userFile;
+            this.origin = origin;
+        }
+    }
+
+    private static final int MAX_RESOLVED = 4096;
+    private final ConcurrentHashMap<String, Resolved> resolved = new ConcurrentHashMap<>();
+    private volatile String canonicalRoot;
+    // Bumped by invalidateAllPaths(); a resolve() that sees a new value starts over
+    private static final AtomicInteger pathGeneration = new AtomicInteger();
+    private int seenGeneration = pathGeneration.get();
+
+    private final WriteBehind writeBehind = WriteBehind.shared();
+    private Vfs vfs = Vfs.shared(); // a private copy once mount() is used
+    // Shared project assets (null outside a project); also identifies this VM's writes
+    private final ProjectStore.Subscription store;
 
     // Default constructor: local disk/disk/ root
     public FileSystem() {
+        this.store = null;
         this.storageRoot = Gdx.files.local("disk/");
         if (!storageRoot.exists()) storageRoot.mkdirs();
     }
 
     // New constructor: explicit storage root (project directory)
     public FileSystem(FileHandle root) {
+        this(root, null);
+    }
+
+    /**
+     * Project root whose files are held in store (store.store().getDir() must be root).
+     */
+    public FileSystem(FileHandle root, ProjectStore.Subscription store) {
+        this.store = store;
         if (root != null) this.storageRoot = root;
         else this.storageRoot = Gdx.files.local("disk/");
         if (!storageRoot.exists()) storageRoot.mkdirs();
     }
 
+    /**
+     * Entries of a directory, "/" suffix for directories. Below the root the read-only
+     * mounts are merged in (e.g. system/tools lists the pack and internal assets); the
+     * root itself lists only the storage root, not every internal asset.
+     */
     public List<String> list(String path) {
         FileHandle handle = resolve(path);
+        String clean = cleanPath(path);
         List<String> results = new ArrayList<>();
-        if (handle != null && handle.isDirectory()) {
+        Resolved r = resolved.get(clean);
+        if (r != null && r.origin == Origin.MOUNT && handle.isDirectory()) {
+            results.addAll(vfs.list(clean));
+        } else if (handle != null && handle.isDirectory()) {
             for (FileHandle child : handle.list()) {
+                if (child.name().startsWith(".") && child.name().contains(".tmp")) continue; // WriteBehind temp
+                if (child.name().startsWith(".") && child.name().endsWith(".journal")) continue; // EditJournal
                 results.add(child.name() + (child.isDirectory() ? "/" : ""));
             }
+            // Saved but not on disk yet
+            for (String name : writeBehind.pendingNames(handle.file())) {
+                if (!results.contains(name)) results.add(name);
+            }
+            if (!clean.isEmpty()) {
+                for (String name : vfs.list(clean)) {
+                    if (!results.contains(name)) results.add(name);
+                }
+            }
+        } else {
+            forget(path);
         }
         return results;
     }
@@ -39,28 +140,293 @@ public class FileSystem {
     public String read(String path) {
         if (isPathInvalid(path)) return null;
         FileHandle handle = resolve(path);
-        if (handle != null && handle.exists() && !handle.isDirectory()) return handle.readString();
-        return null;
+        if (handle == null) return null;
+        if (inStore(path)) {
+            String text = store.store().text(cleanPath(path));
+            if (text != null) return text;
+        }
+
+        byte[] pending = writeBehind.pending(handle.file());
+        if (pending != null) return new String(pending, StandardCharsets.UTF_8);
+
+        String key = cacheKey(handle);
+        long modified, length;
+        if (isPackaged(handle)) {
+            // Classpath/jar assets cannot change while running
+            modified = 0;
+            length = -1;
+        } else {
+            File f = handle.file();
+            modified = f.lastModified();
+            if (modified == 0) { // missing (deleted since it was resolved)
+                cache.invalidate(key);
+                forget(path);
+                return null;
+            }
+            length = f.length();
+        }
+
+        String text = cache.get(key, modified, length);
+        if (text != null) return text;
+        if (!handle.exists() || handle.isDirectory()) return null;
+        text = handle.readString("UTF-8");
+        cache.put(key, modified, length, text);
+        return text;
+    }
+
+    // Internal assets not present as plain files (packaged in the jar / APK, or in an archive mount)
+    private static boolean isPackaged(FileHandle handle) {
+        if (handle instanceof Vfs.ArchiveHandle) return true;
+        Files.FileType type = handle.type();
+        if (type == Files.FileType.Classpath) return true;
+        return type == Files.FileType.Internal && !handle.file().exists();
+    }
+
+    private static String cacheKey(FileHandle handle) {
+        return handle.type() + ":" + handle.path();
     }
 
     public boolean write(String path, String content) {
-        if (path.startsWith("/system")) return false;
-        if (isPathInvalid(path)) return false;
         if (content == null) return false;
-        if (content.length() > 10 * 1024 * 1024) return false;
+        FileHandle handle = writable(path);
+        if (handle == null) return false;
+        if (store != null) store.store().putText(cleanPath(path), content, store);
+        else writeBehind.submit(handle.file(), content.getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
+
+    // Project file held by the store (resolve() must have run for path)
+    private boolean inStore(String path) {
+        if (store == null) return false;
+        Resolved r = resolved.get(cleanPath(path));
+        return r != null && r.origin == Origin.USER;
+    }
+
+    // The store's bytes for a project file (shared: read-only use), or null to go to the disk
+    private byte[] stored(String path) {
+        return inStore(path) ? store.store().bytes(cleanPath(path)) : null;
+    }
+
+    // --- BINARY ---
+
+    /** @return the whole file, or null if the path is invalid, missing or a directory */
+    public byte[] readBytes(String path) {
+        return readBytes(path, 0, -1);
+    }
+
+    /**
+     * Up to `length` bytes starting at `offset` (-1 = to the end); shorter at end of file.
+     * @return null if the path is invalid, missing or a directory
+     */
+    public byte[] readBytes(String path, long offset, int length) {
+        if (isPathInvalid(path) || offset < 0) return null;
+        FileHandle handle = resolve(path);
+        if (handle == null) return null;
+        byte[] stored = stored(path);
+        if (stored != null) return slice(stored, offset, length);
+        byte[] pending = writeBehind.pending(handle.file());
+        if (pending != null) return slice(pending, offset, length);
+        if (!handle.exists() || handle.isDirectory()) return null;
+        try {
+            if (isPackaged(handle)) return slice(handle.readBytes(), offset, length);
+            try (FileChannel ch = FileIo.openRead(handle.file())) {
+                long avail = Math.max(0, ch.size() - offset);
+                if (length < 0 && avail > Integer.MAX_VALUE - 8) throw new IOException("file too large for one read");
+                int n = (int) ((length < 0) ? avail : Math.min(length, avail));
+                ByteBuffer dst = ByteBuffer.allocate(n);
+                while (dst.hasRemaining()) {
+                    if (ch.read(dst, offset + dst.position()) < 0) break;
+                }
+                if (dst.position() == n) return dst.array();
+                byte[] out = new byte[dst.position()];
+                System.arraycopy(dst.array(), 0, out, 0, out.length);
+                return out;
+            }
+        } catch (Exception e) {
+            System.err.println("readBytes " + path + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // A copy is returned; pending WriteBehind and stored arrays must not be handed out
+    private static byte[] slice(byte[] all, long offset, int length) {
+        int from = (int) Math.min(offset, all.length);
+        int n = (length < 0) ? all.length - from : Math.min(length, all.length - from);
+        byte[] out = new byte[n];
+        System.arraycopy(all, from, out, 0, n);
+        return out;
+    }
+
+    public boolean writeBytes(String path, byte[] data, int offset, int length) {
+        if (data == null) return false;
+        return writeBytes(path, ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Replaces the file with the buffer's remaining bytes (copied, so the caller may reuse
+     * it); same rules as write(), and like write() the disk IO happens in WriteBehind.
+     */
+    public boolean writeBytes(String path, ByteBuffer data) {
+        if (data == null) return false;
+        FileHandle handle = writable(path);
+        if (handle == null) return false;
+        byte[] copy = new byte[data.remaining()];
+        data.duplicate().get(copy);
+        if (store != null) store.store().putBytes(cleanPath(path), copy, store);
+        else writeBehind.submit(handle.file(), copy);
+        return true;
+    }
+
+    /**
+     * Read-only bytes of the whole file: memory-mapped when it is at least MAP_THRESHOLD
+     * bytes on disk (no copy; pages load on access), otherwise read onto the heap.
+     * @return null if the path is invalid, missing or a directory
+     */
+    public ByteBuffer map(String path) {
+        if (isPathInvalid(path)) return null;
+        FileHandle handle = resolve(path);
+        if (handle == null) return null;
+        byte[] stored = stored(path);
+        if (stored != null) return ByteBuffer.wrap(stored).asReadOnlyBuffer();
+        byte[] pending = writeBehind.pending(handle.file());
+        if (pending != null) return ByteBuffer.wrap(pending).asReadOnlyBuffer();
+        if (!handle.exists() || handle.isDirectory()) return null;
+        if (!isPackaged(handle) && handle.file().length() >= MAP_THRESHOLD) {
+            try (FileChannel ch = FileIo.openRead(handle.file())) {
+                // The mapping stays valid after the channel is closed
+                return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } catch (Exception e) {
+                System.err.println("map " + path + " failed: " + e.getMessage());
+                return null;
+            }
+        }
+        byte[] bytes = readBytes(path);
+        return (bytes != null) ? ByteBuffer.wrap(bytes).asReadOnlyBuffer() : null;
+    }
+
+    /** @return size in bytes, or -1 if missing or a directory */
+    public long length(String path) {
+        if (isPathInvalid(path)) return -1;
+        FileHandle handle = resolve(path);
+        if (handle == null) return -1;
+        byte[] stored = stored(path);
+        if (stored != null) return stored.length;
+        byte[] pending = writeBehind.pending(handle.file());
+        if (pending != null) return pending.length;
+        if (!handle.exists() || handle.isDirectory()) return -1;
+        return handle.length();
+    }
+
+    /**
+     * A FileChannel on a storage-root file: read-only, or (write) created/truncated with the
+     * same rules as write(). Packaged assets have no channel.
+     * @return null if the path is invalid, missing (read) or read-only (write)
+     */
+    public FileChannel openChannel(String path, boolean write) {
+        try {
+            if (write) {
+                FileHandle handle = writable(path);
+                if (handle == null) return null;
+                writeBehind.await(handle.file()); // or the queued write would land on top
+                return FileIo.openWrite(handle.file());
+            }
+            if (isPathInvalid(path)) return null;
+            FileHandle handle = resolve(path);
+            if (handle == null) return null;
+            writeBehind.await(handle.file());
+            if (!handle.exists() || handle.isDirectory() || isPackaged(handle)) return null;
+            return FileIo.openRead(handle.file());
+        } catch (Exception e) { return null; }
+    }
+
+    /** The storage root (user disk or project folder) as a file. */
+    public File rootDir() {
+        return storageRoot.file();
+    }
+
+    /** The file a write to path would replace (the user copy, never a mount), or null. */
+    public File userFile(String path) {
+        if (path == null || path.startsWith("/system") || isPathInvalid(path)) return null;
+        return storageRoot.child(cleanPath(path)).file();
+    }
+
+    // Storage-root handle for replacing a file: checks the path, creates parents, drops cached state
+    private FileHandle writable(String path) {
+        if (path == null || path.startsWith("/system")) return null;
+        if (isPathInvalid(path)) return null;
         try {
             FileHandle handle = storageRoot.child(cleanPath(path));
             FileHandle parent = handle.parent();
             if (parent != null && !parent.exists()) parent.mkdirs();
-            handle.writeString(content, false, "UTF-8");
-            return true;
-        } catch (Exception e) { return false; }
+            cache.invalidate(cacheKey(handle));
+            forget(path);
+            return handle;
+        } catch (Exception e) { return null; }
+    }
+
+    /**
+     * Stream a file's bytes (no String decoding), e.g. for LuaSerializer/LuaJson.
+     * @return null if the path is invalid, missing or a directory
+     */
+    public InputStream openRead(String path) {
+        if (isPathInvalid(path)) return null;
+        FileHandle handle = resolve(path);
+        if (handle == null) return null;
+        byte[] stored = stored(path);
+        if (stored != null) return new ByteArrayInputStream(stored);
+        byte[] pending = writeBehind.pending(handle.file());
+        if (pending != null) return new ByteArrayInputStream(pending);
+        if (!handle.exists() || handle.isDirectory()) return null;
+        try {
+            if (isPackaged(handle)) return handle.read();
+            return Channels.newInputStream(FileIo.openRead(handle.file()));
+        } catch (Exception e) { return null; }
+    }
+
+    /**
+     * Open a file in the storage root for writing (replaces it); same rules as write().
+     * The stream is unbuffered; callers write in large chunks.
+     * @return null if the path is read-only or invalid
+     */
+    public OutputStream openWrite(String path) {
+        FileChannel ch = openChannel(path, true);
+        return (ch != null) ? Channels.newOutputStream(ch) : null;
+    }
+
+    // --- DIRECTORIES ---
+
+    /** Create a directory (and its parents) in the storage root. @return true if it exists now */
+    public boolean mkdir(String path) {
+        File dir = userFile(path);
+        if (dir == null) return false;
+        boolean ok = dir.isDirectory() || dir.mkdirs();
+        invalidateAllPaths();
+        return ok;
+    }
+
+    /**
+     * Delete a storage-root file or directory tree (never a mount); pending writes to a file
+     * land first so they cannot recreate it. @return true if it is gone
+     */
+    public boolean delete(String path) {
+        if (userFile(path) == null || cleanPath(path).isEmpty()) return false;
+        FileHandle handle = storageRoot.child(cleanPath(path));
+        File f = handle.file();
+        if (!f.exists() && !writeBehind.isPending(f)) return false;
+        writeBehind.await(f);
+        boolean ok = f.isDirectory() ? handle.deleteDirectory() : handle.delete();
+        cache.invalidate(cacheKey(handle));
+        invalidateAllPaths();
+        if (store != null) store.store().revalidate(); // drops the project's copy of deleted files
+        return ok;
     }
 
     public boolean exists(String path) {
         if (isPathInvalid(path)) return false;
         FileHandle handle = resolve(path);
-        return handle != null && handle.exists();
+        if (handle != null && (handle.exists() || writeBehind.isPending(handle.file()))) return true;
+        forget(path);
+        return false;
     }
 
     private boolean isPathInvalid(String path) {
@@ -69,26 +435,80 @@ public class FileSystem {
 
     public FileHandle resolve(String path) {
         path = cleanPath(path);
+        int generation = pathGeneration.get();
+        if (generation != seenGeneration) {
+            seenGeneration = generation;
+            resolved.clear();
+        }
+        Resolved r = resolved.get(path);
+        // A user file created outside write() shadows a cached mount/missing result
+        if (r != null && (r.origin == Origin.USER || !r.userFile.exists())) return r.handle;
+
+        r = resolveUncached(path);
+        if (resolved.size() >= MAX_RESOLVED) resolved.clear();
+        resolved.put(path, r);
+        return r.handle;
+    }
+
+    private Resolved resolveUncached(String path) {
+        FileHandle userFile = storageRoot.child(path);
+        // Written but not on disk yet: still shadows a mounted file
+        if (writeBehind.isPending(userFile.file())) return new Resolved(userFile, userFile, Origin.USER);
         try {
-            FileHandle userFile = storageRoot.child(path);
             // ensure canonical path still within storageRoot
-            try {
-                if (userFile.file().getCanonicalPath().startsWith(storageRoot.file().getCanonicalPath())) {
-                    if (userFile.exists()) return userFile;
-                }
-            } catch (Exception ignored) {}
+            String canonical = userFile.file().getCanonicalPath();
+            String root = canonicalRoot();
+            if (canonical.equals(root) || canonical.startsWith(root + File.separator)) {
+                if (userFile.exists()) return new Resolved(userFile, userFile, Origin.USER);
+            }
         } catch (Exception ignored) {}
 
-        // fallback to internal assets
-        FileHandle internalFile = Gdx.files.internal(path);
-        if (internalFile.exists()) return internalFile;
+        // fallback to the read-only mounts (system pack, internal assets)
+        FileHandle mounted = vfs.resolve(path);
+        if (mounted != null) return new Resolved(mounted, userFile, Origin.MOUNT);
 
         // if not found, return a handle inside storage root (for create/write)
-        return storageRoot.child(path);
+        return new Resolved(userFile, userFile, Origin.MISSING);
+    }
+
+    private String canonicalRoot() throws java.io.IOException {
+        String root = canonicalRoot;
+        if (root == null) canonicalRoot = root = storageRoot.file().getCanonicalPath();
+        return root;
+    }
+
+    private void forget(String path) {
+        resolved.remove(cleanPath(path));
+    }
+
+    /** Drop all memoized resolves, e.g. after directories were created, moved or deleted. */
+    public void invalidatePaths() {
+        resolved.clear();
+    }
+
+    /** Mount m read-only at prefix for this FileSystem only (below the storage root). */
+    public void mount(String prefix, Vfs.Mount m) {
+        if (vfs == Vfs.shared()) vfs = new Vfs(vfs);
+        vfs.mount(prefix, m, true);
+        invalidatePaths();
+    }
+
+    /** Undo mount() and close m. */
+    public void unmount(Vfs.Mount m) {
+        if (vfs != Vfs.shared() && vfs.unmount(m)) invalidatePaths();
+    }
+
+    /** invalidatePaths() on every FileSystem (directories changed outside one VM). */
+    public static void invalidateAllPaths() {
+        pathGeneration.incrementAndGet();
     }
 
+    // Backslashes to '/', no leading '/' (no regex: this runs on every call)
     private String cleanPath(String path) {
         if (path == null) return "";
-        return path.replace("\\", "/").replaceAll("^/+", "");
+        if (path.indexOf('\\') >= 0) path = path.replace('\\', '/');
+        int start = 0;
+        while (start < path.length() && path.charAt(start) == '/') start++;
+        return (start == 0) ? path : path.substring(start);
     }
 }
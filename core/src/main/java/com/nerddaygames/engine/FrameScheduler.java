@@ -0,0 +1,120 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Timer;
+
+/**
+ * FrameScheduler - damage tracking for on-demand (non-continuous) rendering.
+ *  - invalidate(): something changed, run _update/_draw on the next frame
+ *  - wakeAfter(seconds): request a frame later (cursor blink, toasts)
+ *  - beginFrame(inputActive): decides whether the VM does any work this frame
+ *
+ * When disabled every frame runs (the old behaviour). Counters are public so
+ * the effective frame rate can be observed from a test or a debug overlay.
+ */
+public class FrameScheduler {
+    private static final long NO_WAKE = Long.MAX_VALUE;
+
+    private boolean enabled = false;
+    private boolean dirty = true;
+    private long wakeAt = NO_WAKE; // System.nanoTime() deadline
+    private Timer.Task wakeTask;
+    // Set when the timer fires: it can fire a little before wakeAt, and the frame it
+    // requests must still count as the wake or nothing asks for another one
+    private volatile boolean wakeFired = false;
+
+    // --- COUNTERS ---
+    public long framesRun = 0;
+    public long framesSkipped = 0;
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        invalidate();
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    /**
+     * Mark the VM dirty; the next frame runs and a render is requested.
+     */
+    public void invalidate() {
+        dirty = true;
+        requestRendering();
+    }
+
+    /**
+     * Request a frame after the given delay. Only the earliest pending wake is kept.
+     */
+    public void wakeAfter(float seconds) {
+        if (!enabled) return;
+        if (seconds <= 0) { invalidate(); return; }
+        long at = System.nanoTime() + (long) (seconds * 1_000_000_000L);
+        if (at >= wakeAt) return; // an earlier wake is already pending
+        wakeAt = at;
+
+        if (wakeTask != null) wakeTask.cancel();
+        try {
+            // Task's constructor needs Gdx.app too
+            wakeTask = new Timer.Task() {
+                @Override public void run() { fireWake(); }
+            };
+            Timer.schedule(wakeTask, seconds);
+        } catch (Exception e) {
+            // No Gdx application (headless); the deadline is still honoured by beginFrame
+            wakeTask = null;
+        }
+    }
+
+    /**
+     * Called once per frame before _update.
+     * @param inputActive true if an input event arrived or a key/button is held
+     * @return true if the VM should run _update/_draw this frame
+     */
+    public boolean beginFrame(boolean inputActive) {
+        if (!enabled) { framesRun++; return true; }
+
+        boolean wakeDue = isWakeDue();
+        if (wakeDue) {
+            wakeAt = NO_WAKE;
+            wakeFired = false;
+            wakeTask = null;
+        }
+
+        if (dirty || inputActive || wakeDue) {
+            // Input frames get one trailing frame so per-frame state (clicks, scroll) settles
+            dirty = inputActive;
+            framesRun++;
+            return true;
+        }
+        framesSkipped++;
+        return false;
+    }
+
+    /**
+     * True if another frame is needed without waiting for input or a timer.
+     */
+    public boolean hasPendingWork() {
+        return !enabled || dirty || isWakeDue();
+    }
+
+    public void dispose() {
+        if (wakeTask != null) wakeTask.cancel();
+        wakeTask = null;
+        wakeAt = NO_WAKE;
+        wakeFired = false;
+    }
+
+    // The wake timer's task
+    void fireWake() {
+        wakeFired = true;
+        requestRendering();
+    }
+
+    private boolean isWakeDue() {
+        return wakeAt != NO_WAKE && (wakeFired || System.nanoTime() >= wakeAt);
+    }
+
+    private void requestRendering() {
+        if (Gdx.graphics != null) Gdx.graphics.requestRendering();
+    }
+}
@@ -0,0 +1,296 @@
+package com.nerddaygames.engine;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaClosure;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.UpValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.OneArgFunction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HotReload - runs changed Lua chunks again in a live Lua state, without a restart.
+ *
+ * Tracking: the main chunk, every require()d module and every dofile()d file is a Module,
+ * keyed by the path its source was read from, with that source's hash. The require/dofile
+ * calls a chunk makes while it runs are its dependencies; requires made later (from
+ * functions) count for the main chunk. ScriptEngine reports loads with enter/found/exit;
+ * install() wraps require.
+ *
+ * reload(paths): each module whose source really changed runs again, then every module
+ * that depends on it, transitively, dependencies first (dofile'd files run again as part
+ * of their parent). Code is replaced, data is kept:
+ *  - a module that returned a table keeps that table, patched in place: functions and new
+ *    fields come from the new run, data fields keep their values, so references held
+ *    elsewhere (require results, metatables of instances) stay valid; the new functions'
+ *    upvalues that point at the new table are pointed at the kept one
+ *  - globals that held data keep it (tables merged the same way); functions are replaced
+ * Locals of a chunk that runs again start over. A chunk that fails (a syntax error while
+ * typing) is reported and the code that is running stays; the next change tries again.
+ */
+public class HotReload {
+    public enum Kind { MAIN, REQUIRE, DOFILE }
+
+    /** Current source of path (null if gone). */
+    public interface Source {
+        String read(String path);
+    }
+
+    /** Compiles source into a chunk (kind MAIN: it becomes the main chunk). */
+    public interface Loader {
+        LuaValue load(String source, String path, Kind kind);
+    }
+
+    private static final class Module {
+        final String path;
+        final Set<String> names = new LinkedHashSet<>(); // require names that resolved here
+        final Set<Module> dependencies = new LinkedHashSet<>();
+        final Set<Module> dependents = new LinkedHashSet<>();
+        Kind kind;
+        int hash;
+        int order; // when it last finished loading: dependencies finish before dependents
+
+        Module(String path) {
+            this.path = path;
+        }
+    }
+
+    private static final class Frame {
+        final Kind kind;
+        final String name;
+        Module module; // null until its source is found (or for a require already loaded)
+
+        Frame(Kind kind, String name) {
+            this.kind = kind;
+            this.name = name;
+        }
+    }
+
+    private final Globals globals;
+    private final Source source;
+    private final Loader loader;
+    private final Map<String, Module> byPath = new HashMap<>();
+    private final Map<String, Module> byName = new HashMap<>();
+    private final ArrayDeque<Frame> loading = new ArrayDeque<>();
+    private Module main;
+    private int finished;
+
+    // --- STATS ---
+    public volatile long reloads, chunksRun, failures;
+    public volatile long lastReloadNanos;
+
+    public HotReload(Globals globals, Source source, Loader loader) {
+        this.globals = globals;
+        this.source = source;
+        this.loader = loader;
+    }
+
+    /** Wrap the global require so modules and their dependencies are tracked. */
+    public void install() {
+        final LuaValue require = globals.get("require");
+        globals.set("require", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue name) {
+                enter(Kind.REQUIRE, name.checkjstring());
+                try { return require.call(name); }
+                finally { exit(); }
+            }
+        });
+    }
+
+    // --- TRACKING ---
+
+    /** A chunk of kind starts loading (name: the require name, else null). */
+    public void enter(Kind kind, String name) {
+        loading.push(new Frame(kind, name));
+    }
+
+    /** The loading chunk's source was read from path (first call per chunk counts). */
+    public void found(String path, String text) {
+        Frame f = loading.peek();
+        if (f == null || f.module != null) return;
+        Module m = byPath.get(path);
+        if (m == null) byPath.put(path, m = new Module(path));
+        for (Module d : m.dependencies) d.dependents.remove(m);
+        m.dependencies.clear(); // recorded again as it runs
+        m.kind = f.kind;
+        m.hash = text.hashCode();
+        if (f.name != null) {
+            m.names.add(f.name);
+            byName.put(f.name, m);
+        }
+        if (f.kind == Kind.MAIN) main = m;
+        f.module = m;
+    }
+
+    /** The loading chunk finished (or failed). */
+    public void exit() {
+        Frame f = loading.pop();
+        Module m = f.module;
+        if (m != null) m.order = ++finished;
+        else if (f.name != null) m = byName.get(f.name); // require of a loaded module
+        if (m == null) return;
+        Frame parentFrame = loading.peek();
+        Module parent = (parentFrame != null) ? parentFrame.module : main;
+        if (parent == null || parent == m) return;
+        parent.dependencies.add(m);
+        m.dependents.add(parent);
+    }
+
+    public boolean isTracked(String path) {
+        return byPath.containsKey(path);
+    }
+
+    // --- RELOAD ---
+
+    /**
+     * Run the chunks of paths again if their source changed, then their dependents.
+     * @return the paths run, in order (empty if nothing changed)
+     */
+    public List<String> reload(Collection<String> paths) {
+        Map<Module, String> changed = new HashMap<>();
+        Set<Module> affected = new HashSet<>();
+        for (String path : paths) {
+            Module m = byPath.get(path);
+            if (m == null || changed.containsKey(m)) continue;
+            String text = source.read(path);
+            if (text == null || text.hashCode() == m.hash) continue; // deleted, or saved unchanged
+            changed.put(m, text);
+            collect(m, affected);
+        }
+        if (affected.isEmpty()) return Collections.emptyList();
+
+        long t0 = System.nanoTime();
+        List<Module> order = new ArrayList<>(affected);
+        order.sort((a, b) -> Integer.compare(a.order, b.order));
+        List<String> run = new ArrayList<>();
+        for (Module m : order) {
+            if (m.kind == Kind.DOFILE && !Collections.disjoint(m.dependents, affected)) continue;
+            String text = changed.containsKey(m) ? changed.get(m) : source.read(m.path);
+            if (text == null) continue;
+            int finishedAt = m.order;
+            try {
+                run(m, text);
+                run.add(m.path);
+            } catch (LuaError e) {
+                m.order = finishedAt; // still before its dependents
+                failures++;
+                System.err.println("Hot reload: " + m.path + " failed, keeping the running code: " + e.getMessage());
+                break;
+            }
+        }
+        reloads++;
+        chunksRun += run.size();
+        lastReloadNanos = System.nanoTime() - t0;
+        return run;
+    }
+
+    private static void collect(Module m, Set<Module> into) {
+        if (!into.add(m)) return;
+        for (Module d : m.dependents) collect(d, into);
+    }
+
+    private void run(Module m, String text) {
+        Map<LuaValue, LuaValue> data = data(globals);
+        LuaTable loaded = globals.get("package").get("loaded").checktable();
+        String name = m.names.isEmpty() ? null : m.names.iterator().next();
+        LuaValue old = (name != null) ? loaded.get(name) : LuaValue.NIL;
+        LuaValue result;
+        enter(m.kind, name);
+        try {
+            found(m.path, text);
+            LuaValue chunk = loader.load(text, m.path, m.kind);
+            result = (name != null) ? chunk.call(LuaValue.valueOf(name), LuaValue.valueOf(m.path)) : chunk.call();
+        } finally {
+            exit();
+        }
+
+        Map<LuaValue, LuaValue> kept = new IdentityHashMap<>(); // new table -> the one kept instead
+        List<LuaValue> functions = new ArrayList<>();
+        if (name != null) {
+            LuaValue now = loaded.get(name);
+            LuaValue fresh = !result.isnil() ? result : (now != old && !now.isnil()) ? now : LuaValue.TRUE;
+            LuaValue value = (old.istable() && fresh.istable()) ? patch(old, fresh, kept, functions) : fresh;
+            for (String n : m.names) loaded.set(n, value);
+        }
+        for (Map.Entry<LuaValue, LuaValue> e : data.entrySet()) {
+            LuaValue was = e.getValue(), now = globals.rawget(e.getKey());
+            if (now == was || now.isfunction()) continue;
+            globals.rawset(e.getKey(), (was.istable() && now.istable()) ? patch(was, now, kept, functions) : was);
+        }
+        functions.addAll(closures(globals));
+        rebind(functions, kept);
+    }
+
+    // Global values that are data (not functions) before a chunk runs
+    private static Map<LuaValue, LuaValue> data(LuaTable t) {
+        Map<LuaValue, LuaValue> data = new HashMap<>();
+        LuaValue k = LuaValue.NIL;
+        while (true) {
+            Varargs n = t.next(k);
+            if ((k = n.arg1()).isnil()) break;
+            LuaValue v = n.arg(2);
+            if (!v.isfunction()) data.put(k, v);
+        }
+        return data;
+    }
+
+    private static List<LuaValue> closures(LuaTable t) {
+        List<LuaValue> out = new ArrayList<>();
+        LuaValue k = LuaValue.NIL;
+        while (true) {
+            Varargs n = t.next(k);
+            if ((k = n.arg1()).isnil()) break;
+            if (n.arg(2) instanceof LuaClosure) out.add(n.arg(2));
+        }
+        return out;
+    }
+
+    // Merge fresh into old: functions and missing fields from fresh, data from old
+    private static LuaValue patch(LuaValue old, LuaValue fresh, Map<LuaValue, LuaValue> kept, List<LuaValue> functions) {
+        if (old == fresh || kept.containsKey(fresh)) return old;
+        kept.put(fresh, old);
+        LuaValue k = LuaValue.NIL;
+        while (true) {
+            Varargs n = fresh.next(k);
+            if ((k = n.arg1()).isnil()) break;
+            LuaValue v = n.arg(2), was = old.rawget(k);
+            if (v.isfunction()) {
+                old.rawset(k, v);
+                functions.add(v);
+            } else if (was.isnil()) {
+                old.rawset(k, v);
+            } else if (was.istable() && v.istable()) {
+                patch(was, v, kept, functions);
+            }
+        }
+        if (old.getmetatable() == null && fresh.getmetatable() != null) old.setmetatable(fresh.getmetatable());
+        return old;
+    }
+
+    // New functions close over the new tables; point those upvalues at the kept ones
+    private static void rebind(List<LuaValue> functions, Map<LuaValue, LuaValue> kept) {
+        if (kept.isEmpty()) return;
+        Set<UpValue> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (LuaValue f : functions) {
+            if (!(f instanceof LuaClosure)) continue;
+            for (UpValue u : ((LuaClosure) f).upValues) {
+                if (u == null || !seen.add(u)) continue;
+                LuaValue replacement = kept.get(u.getValue());
+                if (replacement != null) u.setValue(replacement);
+            }
+        }
+    }
+}
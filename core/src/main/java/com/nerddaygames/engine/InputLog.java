@@ -0,0 +1,202 @@
+package com.nerddaygames.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * InputLog - per-frame input stream for deterministic record / replay.
+ *
+ * File layout (big endian):
+ *  - header: "FOSI", version u8, RNG seed i64, fixed timestep in microseconds i32
+ *  - records: run length (varint), then one Frame; identical consecutive frames
+ *    without typed characters share a record
+ *
+ * A Frame is what FantasyVM writes to MEM_INPUT plus btnp edges, modifiers,
+ * scroll, the characters typed that frame and the raw keys held / just pressed
+ * (key(), keyp(), btn(id > 7)). Version 1 logs have no raw keys and replay with
+ * none held.
+ */
+public class InputLog {
+    private static final int MAGIC = 0x464F5349; // "FOSI"
+    private static final int VERSION = 2;
+
+    // Frame.flags
+    public static final int MOUSE_LEFT = 1, MOUSE_RIGHT = 2, MOUSE_CLICKED = 4, MOUSE_RELEASED = 8;
+    public static final int CTRL = 16, SHIFT = 32;
+
+    private static final int[] NO_KEYS = new int[0];
+
+    public static class Frame {
+        public int buttons;   // btn(0..7) bits
+        public int pressed;   // btnp(0..7) bits
+        public int mouseX, mouseY;
+        public int flags;
+        public int scroll;
+        public String chars = "";
+        public int[] keys = NO_KEYS;         // held Gdx keycodes, ascending
+        public int[] keysPressed = NO_KEYS;  // just-pressed Gdx keycodes, ascending
+
+        public boolean keyHeld(int keycode) { return Arrays.binarySearch(keys, keycode) >= 0; }
+        public boolean keyPressed(int keycode) { return Arrays.binarySearch(keysPressed, keycode) >= 0; }
+
+        boolean sameAs(Frame o) {
+            return o != null && buttons == o.buttons && pressed == o.pressed && mouseX == o.mouseX
+                && mouseY == o.mouseY && flags == o.flags && scroll == o.scroll
+                && Arrays.equals(keys, o.keys) && Arrays.equals(keysPressed, o.keysPressed)
+                && chars.isEmpty() && o.chars.isEmpty();
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(buttons);
+            out.writeByte(pressed);
+            out.writeShort(mouseX);
+            out.writeShort(mouseY);
+            out.writeByte(flags);
+            out.writeByte(scroll);
+            out.writeUTF(chars);
+            writeKeys(out, keys);
+            writeKeys(out, keysPressed);
+        }
+
+        static Frame read(DataInputStream in, int version) throws IOException {
+            Frame f = new Frame();
+            f.buttons = in.readUnsignedByte();
+            f.pressed = in.readUnsignedByte();
+            f.mouseX = in.readShort();
+            f.mouseY = in.readShort();
+            f.flags = in.readUnsignedByte();
+            f.scroll = in.readByte();
+            f.chars = in.readUTF();
+            if (version >= 2) {
+                f.keys = readKeys(in);
+                f.keysPressed = readKeys(in);
+            }
+            return f;
+        }
+
+        // Count, then one byte per keycode (Gdx keycodes stop at Input.Keys.MAX_KEYCODE = 255)
+        private static void writeKeys(DataOutputStream out, int[] keys) throws IOException {
+            out.writeByte(keys.length);
+            for (int k : keys) out.writeByte(k);
+        }
+
+        private static int[] readKeys(DataInputStream in) throws IOException {
+            int n = in.readUnsignedByte();
+            if (n == 0) return NO_KEYS;
+            int[] keys = new int[n];
+            for (int i = 0; i < n; i++) keys[i] = in.readUnsignedByte();
+            return keys;
+        }
+    }
+
+    // --- RECORDING ---
+    public static class Recorder {
+        private final DataOutputStream out;
+        public final long seed;
+        public final float timestep;
+        private Frame pending;
+        private int run;
+        public int frames;
+
+        public Recorder(File file, long seed, float timestep) throws IOException {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) parent.mkdirs();
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+            this.seed = seed;
+            this.timestep = timestep;
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            out.writeInt(Math.round(timestep * 1_000_000f));
+        }
+
+        public void record(Frame f) throws IOException {
+            frames++;
+            if (f.sameAs(pending) && run < Integer.MAX_VALUE) { run++; return; }
+            flushRun();
+            pending = f;
+            run = 1;
+        }
+
+        private void flushRun() throws IOException {
+            if (pending == null) return;
+            writeVarint(out, run);
+            pending.write(out);
+        }
+
+        public void close() {
+            try { flushRun(); out.close(); }
+            catch (IOException e) { System.err.println("Input log close failed: " + e.getMessage()); }
+        }
+    }
+
+    // --- REPLAY ---
+    public static class Player {
+        private final DataInputStream in;
+        public final long seed;
+        public final float timestep;
+        private final int version;
+        private Frame current;
+        private int remaining;
+        public int frames;
+
+        public Player(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            try {
+                if (in.readInt() != MAGIC) throw new IOException("Not an input log: " + file);
+                this.version = in.readUnsignedByte();
+                if (version < 1 || version > VERSION) throw new IOException("Unsupported input log version " + version);
+                this.seed = in.readLong();
+                this.timestep = in.readInt() / 1_000_000f;
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /** Next frame, or null at the end of the log. */
+        public Frame next() {
+            try {
+                if (remaining == 0) {
+                    remaining = readVarint(in);
+                    current = Frame.read(in, version); // runs never carry typed characters past one frame
+                }
+                remaining--;
+                frames++;
+                return current;
+            } catch (EOFException e) {
+                return null;
+            } catch (IOException e) {
+                System.err.println("Input log read failed: " + e.getMessage());
+                return null;
+            }
+        }
+
+        public void close() {
+            try { in.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) { out.writeByte((v & 0x7F) | 0x80); v >>>= 7; }
+        out.writeByte(v);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int v = 0, shift = 0, b;
+        do {
+            b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+}
@@ -5,6 +5,8 @@ import com.badlogic.gdx.Input;
 import com.badlogic.gdx.InputProcessor;
 import com.badlogic.gdx.utils.viewport.Viewport;
 import com.badlogic.gdx.math.Vector2;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -20,6 +22,14 @@ public class InputManager implements InputProcessor {
     public boolean mouseDownLeft, mouseDownRight;
     private boolean prevMouseLeft, prevMouseRight;
 
+    // Set by any input event; consumed once per frame (idle rendering)
+    private volatile boolean activity = false;
+
+    // Record / replay (InputLog): while logging, typed characters are handed out per frame
+    private InputLog.Frame replay;   // non-null: state comes from the log, not Gdx
+    private boolean logging = false;
+    private final ArrayDeque<Character> frameChars = new ArrayDeque<>();
+
     // --- FANTASY CONSOLE MAPPING ---
     // 0: Left, 1: Right, 2: Up, 3: Down, 4: Z, 5: X, 6: Enter
     private int[] buttonMap = {
@@ -62,12 +72,26 @@ public class InputManager implements InputProcessor {
         }
     }
 
+    /**
+     * True if an input event arrived since the last call, or a key/button is still held.
+     */
+    public boolean pollActivity() {
+        boolean a = activity;
+        activity = false;
+        return a || isInputHeld();
+    }
+
+    public boolean isInputHeld() {
+        return Gdx.input.isTouched() || Gdx.input.isKeyPressed(Input.Keys.ANY_KEY);
+    }
+
     // --- API for Lua ---
 
     // Hybrid Check:
     // IDs 0-7 use Fantasy Map (Z/X/Arrows)
     // IDs > 7 use Raw LibGDX Keycodes (for Editor tools)
     public boolean btn(int id) {
+        if (replay != null) return (id >= 0 && id < 8) ? (replay.buttons & (1 << id)) != 0 : replay.keyHeld(id);
         if (id >= 0 && id < buttonMap.length) {
             return Gdx.input.isKeyPressed(buttonMap[id]);
         }
@@ -75,6 +99,7 @@ public class InputManager implements InputProcessor {
     }
 
     public boolean btnp(int id) {
+        if (replay != null) return (id >= 0 && id < 8) ? (replay.pressed & (1 << id)) != 0 : replay.keyPressed(id);
         if (id >= 0 && id < buttonMap.length) {
             return Gdx.input.isKeyJustPressed(buttonMap[id]);
         }
@@ -83,20 +108,25 @@ public class InputManager implements InputProcessor {
 
     // Key name helpers (for code editor tools)
     public boolean isKeyHeld(String keyName) {
-        try {
-            int keyCode = Input.Keys.valueOf(keyName.toUpperCase());
-            return Gdx.input.isKeyPressed(keyCode);
-        } catch (Exception e) {
-            return false;
-        }
+        int keyCode = keyCode(keyName);
+        if (keyCode < 0) return false;
+        if (replay != null) return replay.keyHeld(keyCode);
+        return Gdx.input.isKeyPressed(keyCode);
     }
 
     public boolean isKeyJustPressed(String keyName) {
+        int keyCode = keyCode(keyName);
+        if (keyCode < 0) return false;
+        if (replay != null) return replay.keyPressed(keyCode);
+        return Gdx.input.isKeyJustPressed(keyCode);
+    }
+
+    // Gdx keycode for a key name, -1 if unknown
+    private static int keyCode(String keyName) {
         try {
-            int keyCode = Input.Keys.valueOf(keyName.toUpperCase());
-            return Gdx.input.isKeyJustPressed(keyCode);
+            return Input.Keys.valueOf(keyName.toUpperCase());
         } catch (Exception e) {
-            return false;
+            return -1;
         }
     }
 
@@ -114,21 +144,94 @@ public class InputManager implements InputProcessor {
     }
 
     // Mouse Helpers
-    public boolean isMouseDownLeft() { return Gdx.input.isButtonPressed(Input.Buttons.LEFT); }
-    public boolean isMouseDownRight() { return Gdx.input.isButtonPressed(Input.Buttons.RIGHT); }
-    public boolean isMouseJustClicked() { return Gdx.input.isButtonJustPressed(Input.Buttons.LEFT); }
-    public boolean isMouseJustReleased() { return prevMouseLeft && !mouseDownLeft; }
+    public boolean isMouseDownLeft() { return (replay != null) ? replayFlag(InputLog.MOUSE_LEFT) : Gdx.input.isButtonPressed(Input.Buttons.LEFT); }
+    public boolean isMouseDownRight() { return (replay != null) ? replayFlag(InputLog.MOUSE_RIGHT) : Gdx.input.isButtonPressed(Input.Buttons.RIGHT); }
+    public boolean isMouseJustClicked() { return (replay != null) ? replayFlag(InputLog.MOUSE_CLICKED) : Gdx.input.isButtonJustPressed(Input.Buttons.LEFT); }
+    public boolean isMouseJustReleased() { return (replay != null) ? replayFlag(InputLog.MOUSE_RELEASED) : prevMouseLeft && !mouseDownLeft; }
 
     // Modifier Helpers
     public boolean isCtrlDown() {
+        if (replay != null) return replayFlag(InputLog.CTRL);
         return Gdx.input.isKeyPressed(Input.Keys.CONTROL_LEFT) || Gdx.input.isKeyPressed(Input.Keys.CONTROL_RIGHT);
     }
 
     public boolean isShiftDown() {
+        if (replay != null) return replayFlag(InputLog.SHIFT);
         return Gdx.input.isKeyPressed(Input.Keys.SHIFT_LEFT) || Gdx.input.isKeyPressed(Input.Keys.SHIFT_RIGHT);
     }
 
+    private boolean replayFlag(int flag) { return (replay.flags & flag) != 0; }
+
+    // --- RECORD / REPLAY ---
+
+    /**
+     * Snapshot this frame's input for InputLog (call after update()).
+     * Characters typed since the last frame move into the per-frame queue.
+     */
+    public InputLog.Frame captureFrame() {
+        logging = true;
+        InputLog.Frame f = new InputLog.Frame();
+        for (int i = 0; i < 8; i++) {
+            if (btn(i)) f.buttons |= 1 << i;
+            if (btnp(i)) f.pressed |= 1 << i;
+        }
+        f.mouseX = mouseX;
+        f.mouseY = mouseY;
+        if (mouseDownLeft) f.flags |= InputLog.MOUSE_LEFT;
+        if (mouseDownRight) f.flags |= InputLog.MOUSE_RIGHT;
+        if (isMouseJustClicked()) f.flags |= InputLog.MOUSE_CLICKED;
+        if (isMouseJustReleased()) f.flags |= InputLog.MOUSE_RELEASED;
+        if (isCtrlDown()) f.flags |= InputLog.CTRL;
+        if (isShiftDown()) f.flags |= InputLog.SHIFT;
+        f.scroll = Math.max(-128, Math.min(127, scrollAmount));
+        f.keys = liveKeys(false);
+        f.keysPressed = liveKeys(true);
+        StringBuilder sb = new StringBuilder();
+        synchronized (typeQueue) {
+            Character c;
+            while ((c = typeQueue.poll()) != null) { sb.append(c.charValue()); frameChars.add(c); }
+        }
+        f.chars = sb.toString();
+        return f;
+    }
+
+    // Raw keys held (or just pressed) right now, ascending; most frames have none
+    private int[] liveKeys(boolean justPressed) {
+        if (justPressed ? !Gdx.input.isKeyJustPressed(Input.Keys.ANY_KEY) : !Gdx.input.isKeyPressed(Input.Keys.ANY_KEY)) return new int[0];
+        int[] keys = new int[8];
+        int n = 0;
+        for (int k = 0; k <= Input.Keys.MAX_KEYCODE; k++) {
+            if (justPressed ? Gdx.input.isKeyJustPressed(k) : Gdx.input.isKeyPressed(k)) {
+                if (n == keys.length) keys = Arrays.copyOf(keys, n * 2);
+                keys[n++] = k;
+            }
+        }
+        return Arrays.copyOf(keys, Math.min(n, 255));
+    }
+
+    /**
+     * Replace this frame's input with a logged frame (call after update()).
+     */
+    public void applyFrame(InputLog.Frame f) {
+        logging = true;
+        replay = f;
+        mouseX = f.mouseX;
+        mouseY = f.mouseY;
+        mouseDownLeft = (f.flags & InputLog.MOUSE_LEFT) != 0;
+        mouseDownRight = (f.flags & InputLog.MOUSE_RIGHT) != 0;
+        scrollAmount = f.scroll;
+        for (int i = 0; i < f.chars.length(); i++) frameChars.add(f.chars.charAt(i));
+    }
+
+    /** Back to live input. */
+    public void endLog() {
+        replay = null;
+        logging = false;
+        frameChars.clear();
+    }
+
     public Character popTypedChar() {
+        if (logging) return frameChars.poll();
         synchronized (typeQueue) {
             return typeQueue.poll();
         }
@@ -138,6 +241,7 @@ public class InputManager implements InputProcessor {
 
     @Override
     public boolean keyTyped(char character) {
+        activity = true;
         // Filter control characters to prevent "Boxes" in text
         // Ignore Backspace, Tab, Enter, Delete (Handled by Key Codes in Lua)
         if (character == '\b' || character == '\t' || character == '\r' || character == '\n' || character == 127) {
@@ -154,16 +258,17 @@ public class InputManager implements InputProcessor {
 
     @Override
     public boolean scrolled(float amountX, float amountY) {
+        activity = true;
         scrollAmount = (int) amountY;
         return true;
     }
 
-    // Unused methods required by interface
-    @Override public boolean keyDown(int keycode) { return false; }
-    @Override public boolean keyUp(int keycode) { return false; }
-    @Override public boolean touchDown(int x, int y, int p, int b) { return false; }
-    @Override public boolean touchUp(int x, int y, int p, int b) { return false; }
-    @Override public boolean touchCancelled(int x, int y, int p, int b) { return false; } // LibGDX 1.13+ compat
-    @Override public boolean touchDragged(int x, int y, int p) { return false; }
-    @Override public boolean mouseMoved(int x, int y) { return false; }
+    // Remaining events are only recorded as activity (not consumed)
+    @Override public boolean keyDown(int keycode) { activity = true; return false; }
+    @Override public boolean keyUp(int keycode) { activity = true; return false; }
+    @Override public boolean touchDown(int x, int y, int p, int b) { activity = true; return false; }
+    @Override public boolean touchUp(int x, int y, int p, int b) { activity = true; return false; }
+    @Override public boolean touchCancelled(int x, int y, int p, int b) { activity = true; return false; } // LibGDX 1.13+ compat
+    @Override public boolean touchDragged(int x, int y, int p) { activity = true; return false; }
+    @Override public boolean mouseMoved(int x, int y) { activity = true; return false; }
 }
@@ -0,0 +1,446 @@
+package com.nerddaygames.engine;
+
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+
+/**
+ * LuaJson - streaming JSON encoder/decoder that maps straight to and from LuaTables.
+ *
+ * Works on UTF-8 bytes end to end: Lua strings are escaped from their raw bytes and
+ * decoded strings become LuaStrings without a Java String in between.
+ *  - encode: tables with keys 1..n (n > 0) become arrays, anything else an object
+ *    (number keys are written as strings); TypedArrays become arrays; integers stay
+ *    integers; NaN/inf become null; cycles raise a Lua error
+ *  - decode: objects and arrays become tables, null becomes nil (leaving a hole in arrays),
+ *    integral numbers that fit an int become Lua integers
+ */
+public class LuaJson {
+    public static final int MAX_DEPTH = 256;
+
+    private LuaJson() {}
+
+    // --- ENCODE ---
+
+    public static LuaString encode(LuaValue v, boolean pretty) {
+        Encoder e = new Encoder(null, pretty);
+        e.value(v, 0);
+        return LuaString.valueUsing(e.buf, 0, e.pos);
+    }
+
+    /** Encode v to out; out is flushed but not closed. */
+    public static void encode(LuaValue v, boolean pretty, OutputStream out) throws IOException {
+        Encoder e = new Encoder(out, pretty);
+        try {
+            e.value(v, 0);
+            e.flush();
+        } catch (StreamError se) {
+            throw se.cause;
+        }
+        out.flush();
+    }
+
+    // Wraps IOExceptions thrown from deep in the recursion
+    private static class StreamError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final IOException cause;
+        StreamError(IOException cause) { super(cause); this.cause = cause; }
+    }
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+    private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+    private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+
+    private static class Encoder {
+        final OutputStream out;   // null = grow buf in memory
+        final boolean pretty;
+        byte[] buf = new byte[8192];
+        int pos;
+        final IdentityHashMap<LuaValue, Boolean> open = new IdentityHashMap<>();
+
+        Encoder(OutputStream out, boolean pretty) {
+            this.out = out;
+            this.pretty = pretty;
+        }
+
+        void ensure(int n) {
+            if (pos + n <= buf.length) return;
+            if (out != null) {
+                flush();
+                if (n <= buf.length) return;
+            }
+            byte[] grown = new byte[Math.max(buf.length * 2, pos + n)];
+            System.arraycopy(buf, 0, grown, 0, pos);
+            buf = grown;
+        }
+
+        void flush() {
+            if (out == null || pos == 0) return;
+            try { out.write(buf, 0, pos); }
+            catch (IOException e) { throw new StreamError(e); }
+            pos = 0;
+        }
+
+        void put(int b) { ensure(1); buf[pos++] = (byte) b; }
+
+        void put(byte[] b) { ensure(b.length); System.arraycopy(b, 0, buf, pos, b.length); pos += b.length; }
+
+        void ascii(String s) {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) buf[pos++] = (byte) s.charAt(i);
+        }
+
+        void newline(int depth) {
+            if (!pretty) return;
+            ensure(1 + depth * 2);
+            buf[pos++] = '\n';
+            for (int i = 0; i < depth * 2; i++) buf[pos++] = ' ';
+        }
+
+        void value(LuaValue v, int depth) {
+            switch (v.type()) {
+                case LuaValue.TNIL: put(NULL); return;
+                case LuaValue.TBOOLEAN: put(v.toboolean() ? TRUE : FALSE); return;
+                case LuaValue.TNUMBER: number(v); return;
+                case LuaValue.TSTRING: string(v.checkstring()); return;
+                case LuaValue.TTABLE: table((LuaTable) v, depth); return;
+                case LuaValue.TUSERDATA:
+                    if (v instanceof TypedArray) { typed((TypedArray) v, depth); return; }
+                    break;
+                default:
+                    break;
+            }
+            throw new LuaError("cannot encode a " + v.typename() + " as json");
+        }
+
+        void number(LuaValue v) {
+            if (v.isinttype()) { ascii(Integer.toString(v.toint())); return; }
+            double d = v.todouble();
+            if (Double.isNaN(d) || Double.isInfinite(d)) put(NULL);
+            else if (d == Math.rint(d) && Math.abs(d) < 9.007199254740992E15) ascii(Long.toString((long) d));
+            else ascii(Double.toString(d));
+        }
+
+        void string(LuaString s) {
+            byte[] b = s.m_bytes;
+            int end = s.m_offset + s.m_length;
+            ensure(s.m_length + 2);
+            buf[pos++] = '"';
+            for (int i = s.m_offset; i < end; i++) {
+                int c = b[i] & 0xFF;
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    if (pos == buf.length) ensure(1);
+                    buf[pos++] = (byte) c;
+                    continue;
+                }
+                ensure(6);
+                buf[pos++] = '\\';
+                switch (c) {
+                    case '"': buf[pos++] = '"'; break;
+                    case '\\': buf[pos++] = '\\'; break;
+                    case '\n': buf[pos++] = 'n'; break;
+                    case '\r': buf[pos++] = 'r'; break;
+                    case '\t': buf[pos++] = 't'; break;
+                    default:
+                        buf[pos++] = 'u'; buf[pos++] = '0'; buf[pos++] = '0';
+                        buf[pos++] = HEX[c >> 4]; buf[pos++] = HEX[c & 15];
+                }
+            }
+            put('"');
+        }
+
+        void table(LuaTable t, int depth) {
+            if (depth >= MAX_DEPTH) throw new LuaError("json: tables nested deeper than " + MAX_DEPTH);
+            if (open.put(t, Boolean.TRUE) != null) throw new LuaError("json: cannot encode a table cycle");
+
+            int n = t.length(), keys = 0;
+            LuaValue k = LuaValue.NIL;
+            while (true) {
+                k = t.next(k).arg1();
+                if (k.isnil()) break;
+                keys++;
+            }
+
+            if (n > 0 && keys == n) {
+                put('[');
+                for (int i = 1; i <= n; i++) {
+                    if (i > 1) put(',');
+                    newline(depth + 1);
+                    value(t.get(i), depth + 1);
+                }
+                newline(depth);
+                put(']');
+            } else {
+                put('{');
+                boolean first = true;
+                k = LuaValue.NIL;
+                while (true) {
+                    Varargs kv = t.next(k);
+                    if ((k = kv.arg1()).isnil()) break;
+                    if (!first) put(',');
+                    first = false;
+                    newline(depth + 1);
+                    if (k.type() == LuaValue.TSTRING) string(k.checkstring());
+                    else if (k.type() == LuaValue.TNUMBER) { put('"'); number(k); put('"'); }
+                    else throw new LuaError("json: cannot encode a " + k.typename() + " key");
+                    put(':');
+                    if (pretty) put(' ');
+                    value(kv.arg(2), depth + 1);
+                }
+                if (!first) newline(depth);
+                put('}');
+            }
+            open.remove(t);
+        }
+
+        void typed(TypedArray a, int depth) {
+            put('[');
+            for (int i = 0; i < a.length; i++) {
+                if (i > 0) put(',');
+                newline(depth + 1);
+                number(LuaValue.valueOf(a.getDouble(i)));
+            }
+            if (a.length > 0) newline(depth);
+            put(']');
+        }
+    }
+
+    // --- DECODE ---
+
+    public static LuaValue decode(LuaString s) {
+        return new Decoder(s.m_bytes, s.m_offset, s.m_length, null).run();
+    }
+
+    public static LuaValue decode(InputStream in) throws IOException {
+        try {
+            return new Decoder(new byte[8192], 0, 0, in).run();
+        } catch (StreamError se) {
+            throw se.cause;
+        }
+    }
+
+    private static class Decoder {
+        final InputStream in;     // null = whole input already in buf
+        byte[] buf;
+        int pos, limit;
+        boolean eof;
+        byte[] scratch = new byte[256];
+        long offset;              // bytes consumed before buf[0], for error messages
+
+        Decoder(byte[] buf, int off, int len, InputStream in) {
+            this.buf = buf;
+            this.pos = off;
+            this.limit = off + len;
+            this.in = in;
+            this.eof = (in == null);
+            this.offset = -off;
+        }
+
+        LuaValue run() {
+            LuaValue v = value(0);
+            if (skipSpace() != -1) throw error("trailing characters");
+            return v;
+        }
+
+        LuaError error(String msg) {
+            return new LuaError("json: " + msg + " at byte " + (offset + pos));
+        }
+
+        // Next byte without consuming it, -1 at end of input
+        int peek() {
+            if (pos < limit) return buf[pos] & 0xFF;
+            if (eof) return -1;
+            offset += limit;
+            pos = limit = 0;
+            try {
+                int r;
+                do { r = in.read(buf, 0, buf.length); } while (r == 0);
+                if (r < 0) { eof = true; return -1; }
+                limit = r;
+            } catch (IOException e) { throw new StreamError(e); }
+            return buf[0] & 0xFF;
+        }
+
+        int next() {
+            int c = peek();
+            if (c < 0) throw error("unexpected end of input");
+            pos++;
+            return c;
+        }
+
+        int skipSpace() {
+            while (true) {
+                int c = peek();
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+                pos++;
+            }
+        }
+
+        void expect(byte[] word) {
+            for (byte b : word) if (next() != b) throw error("invalid literal");
+        }
+
+        LuaValue value(int depth) {
+            int c = skipSpace();
+            switch (c) {
+                case '{': return object(depth);
+                case '[': return array(depth);
+                case '"': pos++; return string();
+                case 't': expect(TRUE); return LuaValue.TRUE;
+                case 'f': expect(FALSE); return LuaValue.FALSE;
+                case 'n': expect(NULL); return LuaValue.NIL;
+                case -1: throw error("unexpected end of input");
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) return number();
+                    throw error("unexpected character '" + (char) c + "'");
+            }
+        }
+
+        LuaTable object(int depth) {
+            if (depth >= MAX_DEPTH) throw error("nested deeper than " + MAX_DEPTH);
+            pos++;
+            LuaTable t = new LuaTable();
+            if (skipSpace() == '}') { pos++; return t; }
+            while (true) {
+                if (skipSpace() != '"') throw error("expected a string key");
+                pos++;
+                LuaString key = string();
+                if (skipSpace() != ':') throw error("expected ':'");
+                pos++;
+                t.rawset(key, value(depth + 1));
+                int c = skipSpace();
+                pos++;
+                if (c == '}') return t;
+                if (c != ',') throw error("expected ',' or '}'");
+            }
+        }
+
+        LuaTable array(int depth) {
+            if (depth >= MAX_DEPTH) throw error("nested deeper than " + MAX_DEPTH);
+            pos++;
+            LuaTable t = new LuaTable();
+            if (skipSpace() == ']') { pos++; return t; }
+            for (int i = 1; ; i++) {
+                t.rawset(i, value(depth + 1));
+                int c = skipSpace();
+                pos++;
+                if (c == ']') return t;
+                if (c != ',') throw error("expected ',' or ']'");
+            }
+        }
+
+        void scratch(int len, int b) {
+            if (len == scratch.length) {
+                byte[] grown = new byte[len * 2];
+                System.arraycopy(scratch, 0, grown, 0, len);
+                scratch = grown;
+            }
+            scratch[len] = (byte) b;
+        }
+
+        // After the opening quote
+        LuaString string() {
+            // Fast path: no escapes and the whole string already buffered
+            for (int i = pos; i < limit; i++) {
+                int c = buf[i];
+                if (c == '"') {
+                    LuaString s = LuaString.valueOf(buf, pos, i - pos);
+                    pos = i + 1;
+                    return s;
+                }
+                if (c == '\\') break;
+            }
+            int len = 0;
+            while (true) {
+                int c = next();
+                if (c == '"') return LuaString.valueOf(scratch, 0, len);
+                if (c != '\\') { scratch(len++, c); continue; }
+                c = next();
+                switch (c) {
+                    case 'n': scratch(len++, '\n'); break;
+                    case 'r': scratch(len++, '\r'); break;
+                    case 't': scratch(len++, '\t'); break;
+                    case 'b': scratch(len++, '\b'); break;
+                    case 'f': scratch(len++, '\f'); break;
+                    case 'u': {
+                        int cp = hex4();
+                        if (cp >= 0xD800 && cp < 0xDC00 && peek() == '\\') {
+                            pos++;
+                            if (next() != 'u') throw error("bad surrogate pair");
+                            int lo = hex4();
+                            cp = 0x10000 + ((cp - 0xD800) << 10) + (lo - 0xDC00);
+                        }
+                        len = utf8(len, cp);
+                        break;
+                    }
+                    default: scratch(len++, c); break; // \" \\ \/
+                }
+            }
+        }
+
+        int hex4() {
+            int v = 0;
+            for (int i = 0; i < 4; i++) {
+                int c = next(), d;
+                if (c >= '0' && c <= '9') d = c - '0';
+                else if (c >= 'a' && c <= 'f') d = c - 'a' + 10;
+                else if (c >= 'A' && c <= 'F') d = c - 'A' + 10;
+                else throw error("bad \\u escape");
+                v = (v << 4) | d;
+            }
+            return v;
+        }
+
+        int utf8(int len, int cp) {
+            if (cp < 0x80) { scratch(len++, cp); }
+            else if (cp < 0x800) { scratch(len++, 0xC0 | (cp >> 6)); scratch(len++, 0x80 | (cp & 0x3F)); }
+            else if (cp < 0x10000) {
+                scratch(len++, 0xE0 | (cp >> 12)); scratch(len++, 0x80 | ((cp >> 6) & 0x3F)); scratch(len++, 0x80 | (cp & 0x3F));
+            } else {
+                scratch(len++, 0xF0 | (cp >> 18)); scratch(len++, 0x80 | ((cp >> 12) & 0x3F));
+                scratch(len++, 0x80 | ((cp >> 6) & 0x3F)); scratch(len++, 0x80 | (cp & 0x3F));
+            }
+            return len;
+        }
+
+        LuaValue number() {
+            int len = 0;
+            boolean integral = true;
+            while (true) {
+                int c = peek();
+                if ((c >= '0' && c <= '9') || c == '-') { /* digit or sign */ }
+                else if (c == '.' || c == 'e' || c == 'E' || c == '+') integral = false;
+                else break;
+                scratch(len++, c);
+                pos++;
+            }
+            if (integral && len <= 10) {
+                long v = 0;
+                int i = (scratch[0] == '-') ? 1 : 0;
+                if (i == len) throw error("bad number");
+                for (; i < len; i++) {
+                    int d = scratch[i] - '0';
+                    if (d < 0 || d > 9) throw error("bad number");
+                    v = v * 10 + d;
+                }
+                if (scratch[0] == '-') v = -v;
+                if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) return LuaValue.valueOf((int) v);
+                return LuaValue.valueOf((double) v);
+            }
+            try {
+                return LuaValue.valueOf(Double.parseDouble(new String(scratch, 0, len, StandardCharsets.US_ASCII)));
+            } catch (NumberFormatException e) {
+                throw error("bad number");
+            }
+        }
+    }
+}
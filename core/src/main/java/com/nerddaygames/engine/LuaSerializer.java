@@ -0,0 +1,448 @@
+package com.nerddaygames.engine;
+
+import org.luaj.vm2.LuaClosure;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.UpValue;
+import org.luaj.vm2.Varargs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * LuaSerializer - compact binary encoding of Lua values (save games, tool state).
+ *
+ * Format: "FOSV", version byte, then one value. Each value is a tag byte and its payload:
+ *  - NIL / FALSE / TRUE
+ *  - INT     zigzag varint (Lua integers stay integers)
+ *  - DOUBLE  8 bytes little endian
+ *  - STRING  varint length + raw bytes (LuaString bytes are copied as-is, no Java String)
+ *  - TABLE   varint n, array values 1..n, key/value pairs ended by a NIL key, then the metatable
+ *            (always nil without a Binder)
+ *  - REF     varint index of an earlier table/closure, so shared tables and cycles survive a round trip
+ *  - TYPED   kind byte + varint length + little-endian elements (TypedArray)
+ *  - NAME    string resolved by a Binder on decode (engine tables, Java functions)
+ *  - CLOSURE varint prototype index + upvalues (each new with its value, or a back reference)
+ *
+ * Without a Binder, functions, coroutines and other userdata raise a Lua error, and metatables
+ * are left out as in version 1 (an object saves as its fields; its class holds the methods).
+ * With one (VmSnapshot) they are bound by name, Lua closures are rebuilt from their
+ * prototype, metatables are kept, and anything else is written as nil.
+ * Encoding and decoding work on a byte array or stream straight to/from a file (see FileSystem.openWrite).
+ */
+public class LuaSerializer {
+    public static final int VERSION = 2; // 2 added metatables, NAME and CLOSURE
+    public static final int MAX_DEPTH = 256;
+
+    private static final byte[] MAGIC = { 'F', 'O', 'S', 'V' };
+    private static final int T_NIL = 0, T_FALSE = 1, T_TRUE = 2, T_INT = 3, T_DOUBLE = 4,
+        T_STRING = 5, T_TABLE = 6, T_REF = 7, T_TYPED = 8, T_NAME = 9, T_CLOSURE = 10;
+
+    private LuaSerializer() {}
+
+    /**
+     * Snapshot hook: values written by name instead of copied, and closure prototypes.
+     */
+    public interface Binder {
+        /** Name to write instead of the value, or null to copy it. */
+        String nameOf(LuaValue v);
+        /** Value for a name written by nameOf (NIL if it no longer exists). */
+        LuaValue lookup(String name);
+        /** Index of a closure's prototype, or -1 if the closure cannot be rebuilt. */
+        int protoIndex(Prototype p);
+        Prototype proto(int index);
+        /** Environment for rebuilt closures (the globals table). */
+        LuaValue env();
+        /** A value that is neither named nor copyable; it is written as nil. */
+        void unbound(LuaValue v);
+    }
+
+    // --- ENCODE ---
+
+    /** Encode v into a Lua string (the byte array backs the string directly). */
+    public static LuaString encode(LuaValue v) {
+        return encode(v, (Binder) null);
+    }
+
+    public static LuaString encode(LuaValue v, Binder binder) {
+        Encoder e = new Encoder(null);
+        e.binder = binder;
+        e.value(v, 0);
+        return LuaString.valueUsing(e.buf, 0, e.pos);
+    }
+
+    /** Encode v to out; out is flushed but not closed. */
+    public static void encode(LuaValue v, OutputStream out) throws IOException {
+        Encoder e = new Encoder(out);
+        try {
+            e.value(v, 0);
+        } catch (StreamError se) {
+            throw se.cause;
+        }
+        e.flush();
+        out.flush();
+    }
+
+    // Wraps IOExceptions thrown from deep in the recursion
+    private static class StreamError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final IOException cause;
+        StreamError(IOException cause) { super(cause); this.cause = cause; }
+    }
+
+    private static class Encoder {
+        final OutputStream out;   // null = grow buf in memory
+        byte[] buf = new byte[8192];
+        int pos;
+        final IdentityHashMap<Object, Integer> seen = new IdentityHashMap<>();
+        final IdentityHashMap<UpValue, Integer> upvalues = new IdentityHashMap<>();
+        Binder binder;
+
+        Encoder(OutputStream out) {
+            this.out = out;
+            System.arraycopy(MAGIC, 0, buf, 0, 4);
+            buf[4] = VERSION;
+            pos = 5;
+        }
+
+        void ensure(int n) {
+            if (pos + n <= buf.length) return;
+            if (out != null) {
+                flush();
+                if (n <= buf.length) return;
+            }
+            byte[] grown = new byte[Math.max(buf.length * 2, pos + n)];
+            System.arraycopy(buf, 0, grown, 0, pos);
+            buf = grown;
+        }
+
+        void flush() {
+            if (out == null || pos == 0) return;
+            try { out.write(buf, 0, pos); }
+            catch (IOException e) { throw new StreamError(e); }
+            pos = 0;
+        }
+
+        void put(int b) { ensure(1); buf[pos++] = (byte) b; }
+
+        void varint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) { buf[pos++] = (byte) ((v & 0x7F) | 0x80); v >>>= 7; }
+            buf[pos++] = (byte) v;
+        }
+
+        void bytes(byte[] b, int off, int len) {
+            if (out != null && len > buf.length) {
+                flush();
+                try { out.write(b, off, len); }
+                catch (IOException e) { throw new StreamError(e); }
+                return;
+            }
+            ensure(len);
+            System.arraycopy(b, off, buf, pos, len);
+            pos += len;
+        }
+
+        void string(String s) {
+            byte[] b = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            varint(b.length);
+            bytes(b, 0, b.length);
+        }
+
+        void value(LuaValue v, int depth) {
+            int type = v.type();
+            if (binder != null && type >= LuaValue.TTABLE) {
+                String name = binder.nameOf(v);
+                if (name != null) { put(T_NAME); string(name); return; }
+            }
+            switch (type) {
+                case LuaValue.TNIL: put(T_NIL); return;
+                case LuaValue.TBOOLEAN: put(v.toboolean() ? T_TRUE : T_FALSE); return;
+                case LuaValue.TNUMBER:
+                    if (v.isinttype()) {
+                        int i = v.toint();
+                        put(T_INT);
+                        varint((i << 1) ^ (i >> 31));
+                    } else {
+                        long bits = Double.doubleToRawLongBits(v.todouble());
+                        ensure(9);
+                        buf[pos++] = T_DOUBLE;
+                        for (int s = 0; s < 64; s += 8) buf[pos++] = (byte) (bits >>> s);
+                    }
+                    return;
+                case LuaValue.TSTRING: {
+                    LuaString s = v.checkstring();
+                    put(T_STRING);
+                    varint(s.m_length);
+                    bytes(s.m_bytes, s.m_offset, s.m_length);
+                    return;
+                }
+                case LuaValue.TTABLE: table((LuaTable) v, depth); return;
+                case LuaValue.TUSERDATA:
+                    if (v instanceof TypedArray) { typed((TypedArray) v); return; }
+                    break;
+                case LuaValue.TFUNCTION:
+                    if (binder != null && v instanceof LuaClosure && closure((LuaClosure) v, depth)) return;
+                    break;
+            }
+            if (binder == null) throw new LuaError("cannot serialize a " + v.typename());
+            binder.unbound(v);
+            put(T_NIL);
+        }
+
+        boolean closure(LuaClosure c, int depth) {
+            Integer ref = seen.get(c);
+            if (ref != null) { put(T_REF); varint(ref); return true; }
+            int proto = binder.protoIndex(c.p);
+            if (proto < 0) return false;
+            if (depth >= MAX_DEPTH) throw new LuaError("serialize: tables nested deeper than " + MAX_DEPTH);
+            seen.put(c, seen.size());
+            put(T_CLOSURE);
+            varint(proto);
+            varint(c.upValues.length);
+            for (UpValue u : c.upValues) {
+                // Closures sharing a local share the UpValue: write it once, then refer back
+                Integer id = upvalues.get(u);
+                if (id != null) { varint(id + 1); continue; }
+                upvalues.put(u, upvalues.size());
+                varint(0);
+                value(u.getValue(), depth + 1);
+            }
+            return true;
+        }
+
+        void table(LuaTable t, int depth) {
+            Integer ref = seen.get(t);
+            if (ref != null) { put(T_REF); varint(ref); return; }
+            if (depth >= MAX_DEPTH) throw new LuaError("serialize: tables nested deeper than " + MAX_DEPTH);
+            seen.put(t, seen.size());
+
+            int n = t.length();
+            put(T_TABLE);
+            varint(n);
+            for (int i = 1; i <= n; i++) value(t.get(i), depth + 1);
+
+            LuaValue k = LuaValue.NIL;
+            while (true) {
+                Varargs kv = t.next(k);
+                if ((k = kv.arg1()).isnil()) break;
+                if (k.isinttype() && k.toint() >= 1 && k.toint() <= n) continue;
+                value(k, depth + 1);
+                value(kv.arg(2), depth + 1);
+            }
+            put(T_NIL);
+            LuaValue mt = (binder != null) ? t.getmetatable() : null;
+            value(mt != null ? mt : LuaValue.NIL, depth + 1);
+        }
+
+        void typed(TypedArray a) {
+            put(T_TYPED);
+            put(a.kind.ordinal());
+            varint(a.length);
+            // Element bytes are already little endian: copy them in buffer-sized chunks
+            ByteBuffer src = a.elementBytes();
+            while (src.hasRemaining()) {
+                if (pos == buf.length) ensure(1);
+                int n = Math.min(src.remaining(), buf.length - pos);
+                src.get(buf, pos, n);
+                pos += n;
+            }
+        }
+    }
+
+    // --- DECODE ---
+
+    /** Decode a value from a Lua string produced by encode. */
+    public static LuaValue decode(LuaString s) {
+        return decode(s, null);
+    }
+
+    public static LuaValue decode(LuaString s, Binder binder) {
+        Decoder d = new Decoder(s.m_bytes, s.m_offset, s.m_length, null);
+        d.binder = binder;
+        return d.run();
+    }
+
+    /** Decode a value from a stream (read to the end of the value only). */
+    public static LuaValue decode(InputStream in) throws IOException {
+        Decoder d = new Decoder(new byte[8192], 0, 0, in);
+        try {
+            return d.run();
+        } catch (StreamError se) {
+            throw se.cause;
+        }
+    }
+
+    private static class Decoder {
+        final InputStream in;     // null = whole input already in buf
+        byte[] buf;
+        int pos, limit;
+        final ArrayList<LuaValue> refs = new ArrayList<>();
+        final ArrayList<UpValue> upvalues = new ArrayList<>();
+        Binder binder;
+        int version;
+
+        Decoder(byte[] buf, int off, int len, InputStream in) {
+            this.buf = buf;
+            this.pos = off;
+            this.limit = off + len;
+            this.in = in;
+        }
+
+        LuaValue run() {
+            for (byte m : MAGIC) if (get() != m) throw new LuaError("deserialize: not a serialized value");
+            version = get();
+            if (version < 1 || version > VERSION) throw new LuaError("deserialize: unsupported version " + version);
+            return value(0);
+        }
+
+        // Make n bytes available at pos (n <= buf.length for streams)
+        void require(int n) {
+            if (limit - pos >= n) return;
+            if (in == null) throw new LuaError("deserialize: truncated data");
+            if (n > buf.length) {
+                byte[] grown = new byte[n];
+                System.arraycopy(buf, pos, grown, 0, limit - pos);
+                buf = grown;
+            } else {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+            }
+            limit -= pos;
+            pos = 0;
+            try {
+                while (limit < n) {
+                    int r = in.read(buf, limit, buf.length - limit);
+                    if (r < 0) throw new LuaError("deserialize: truncated data");
+                    limit += r;
+                }
+            } catch (IOException e) { throw new StreamError(e); }
+        }
+
+        int get() { require(1); return buf[pos++] & 0xFF; }
+
+        int varint() {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = get();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new LuaError("deserialize: bad varint");
+        }
+
+        int length() {
+            int n = varint();
+            if (n < 0) throw new LuaError("deserialize: bad length");
+            return n;
+        }
+
+        LuaValue value(int depth) {
+            int tag = get();
+            switch (tag) {
+                case T_NIL: return LuaValue.NIL;
+                case T_FALSE: return LuaValue.FALSE;
+                case T_TRUE: return LuaValue.TRUE;
+                case T_INT: {
+                    int z = varint();
+                    return LuaValue.valueOf((z >>> 1) ^ -(z & 1));
+                }
+                case T_DOUBLE: {
+                    require(8);
+                    long bits = 0;
+                    for (int s = 0; s < 64; s += 8) bits |= (long) (buf[pos++] & 0xFF) << s;
+                    return LuaValue.valueOf(Double.longBitsToDouble(bits));
+                }
+                case T_STRING: return string();
+                case T_TABLE: return table(depth);
+                case T_REF: {
+                    int i = varint();
+                    if (i < 0 || i >= refs.size()) throw new LuaError("deserialize: bad table reference");
+                    return refs.get(i);
+                }
+                case T_TYPED: return typed();
+                case T_NAME: {
+                    LuaString name = string();
+                    if (binder == null) throw new LuaError("deserialize: bound value '" + name + "' needs a snapshot");
+                    return binder.lookup(name.tojstring());
+                }
+                case T_CLOSURE: return closure(depth);
+                default: throw new LuaError("deserialize: bad tag " + tag);
+            }
+        }
+
+        LuaString string() {
+            int n = length();
+            require(n);
+            LuaString s = LuaString.valueOf(buf, pos, n);
+            pos += n;
+            return s;
+        }
+
+        LuaClosure closure(int depth) {
+            if (binder == null) throw new LuaError("deserialize: closure needs a snapshot");
+            if (depth >= MAX_DEPTH) throw new LuaError("deserialize: tables nested deeper than " + MAX_DEPTH);
+            Prototype p = binder.proto(varint());
+            int n = length();
+            if (p == null || n != p.upvalues.length) throw new LuaError("deserialize: closure does not match its prototype");
+            LuaClosure c = new LuaClosure(p, binder.env());
+            refs.add(c);
+            for (int i = 0; i < n; i++) {
+                int id = varint();
+                if (id > 0) {
+                    if (id > upvalues.size()) throw new LuaError("deserialize: bad upvalue reference");
+                    c.upValues[i] = upvalues.get(id - 1);
+                    continue;
+                }
+                UpValue u = new UpValue(new LuaValue[] { LuaValue.NIL }, 0);
+                upvalues.add(u);
+                c.upValues[i] = u;
+                u.setValue(value(depth + 1));
+            }
+            return c;
+        }
+
+        LuaTable table(int depth) {
+            if (depth >= MAX_DEPTH) throw new LuaError("deserialize: tables nested deeper than " + MAX_DEPTH);
+            int n = length();
+            // Cap the presize so a corrupt count cannot allocate a huge array
+            LuaTable t = new LuaTable(Math.min(n, 1 << 16), 0);
+            refs.add(t);
+            for (int i = 1; i <= n; i++) t.rawset(i, value(depth + 1));
+            while (true) {
+                LuaValue k = value(depth + 1);
+                if (k.isnil()) break;
+                t.rawset(k, value(depth + 1));
+            }
+            if (version >= 2) {
+                LuaValue mt = value(depth + 1);
+                if (!mt.isnil()) t.setmetatable(mt);
+            }
+            return t;
+        }
+
+        TypedArray typed() {
+            int ordinal = get();
+            TypedArray.Kind[] kinds = TypedArray.Kind.values();
+            if (ordinal >= kinds.length) throw new LuaError("deserialize: bad typed array kind");
+            TypedArray.Kind kind = kinds[ordinal];
+            int n = length();
+            if (n > TypedArrayLuaBindings.MAX_LENGTH) throw new LuaError("deserialize: typed array too long");
+            TypedArray a = new TypedArray(kind, n);
+            ByteBuffer dst = a.elementBytes();
+            while (dst.hasRemaining()) {
+                if (pos == limit) require(1);
+                int c = Math.min(dst.remaining(), limit - pos);
+                dst.put(buf, pos, c);
+                pos += c;
+            }
+            return a;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.nerddaygames.engine;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Lz4 - LZ4 block format codec (no frame header), used for cart sections.
+ *  - compress: greedy single-probe hash matcher, 64KB window
+ *  - decompress: reads/writes ByteBuffers with absolute access, so a section can
+ *    go from a mapped cart file straight into a Ram region
+ *
+ * Output is standard LZ4 block data (token, literals, 16-bit offset, match length).
+ */
+public final class Lz4 {
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;   // block must end with literals
+    private static final int MF_LIMIT = 12;       // no match may start in the last 12 bytes
+    private static final int HASH_LOG = 12;
+    private static final int MAX_OFFSET = 0xFFFF;
+
+    private Lz4() {}
+
+    public static int maxCompressedLength(int len) {
+        return len + len / 255 + 16;
+    }
+
+    /**
+     * Compress src[srcOff, srcOff+srcLen) into dst at dstOff.
+     * dst must hold maxCompressedLength(srcLen) bytes.
+     * @return compressed length
+     */
+    public static int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        int end = srcOff + srcLen;
+        int anchor = srcOff;
+        int op = dstOff;
+
+        if (srcLen > MF_LIMIT) {
+            int[] table = new int[1 << HASH_LOG];
+            Arrays.fill(table, -1);
+            int matchLimit = end - LAST_LITERALS;
+            int mfLimit = end - MF_LIMIT;
+            int ip = srcOff;
+
+            while (ip < mfLimit) {
+                int seq = readInt(src, ip);
+                int h = (seq * -1640531535) >>> (32 - HASH_LOG);
+                int ref = table[h];
+                table[h] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) { ip++; continue; }
+
+                // Extend backwards into pending literals, then forwards
+                while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) { ip--; ref--; }
+                int len = MIN_MATCH;
+                while (ip + len < matchLimit && src[ip + len] == src[ref + len]) len++;
+
+                op = writeSequence(src, anchor, ip - anchor, dst, op, ip - ref, len);
+                ip += len;
+                anchor = ip;
+            }
+        }
+
+        // Trailing literals (token with no match)
+        int lit = end - anchor;
+        int token = op++;
+        dst[token] = (byte) (Math.min(lit, 15) << 4);
+        if (lit >= 15) op = writeLength(dst, op, lit - 15);
+        System.arraycopy(src, anchor, dst, op, lit);
+        return op + lit - dstOff;
+    }
+
+    /**
+     * Decompress one block of srcLen bytes at src[srcOff] into exactly dstLen bytes at dst[dstOff].
+     * @throws IllegalArgumentException if the block is malformed
+     */
+    public static void decompress(ByteBuffer src, int srcOff, int srcLen, ByteBuffer dst, int dstOff, int dstLen) {
+        int ip = srcOff, end = srcOff + srcLen;
+        int op = dstOff, oend = dstOff + dstLen;
+
+        while (ip < end) {
+            int token = src.get(ip++) & 0xFF;
+
+            int lit = token >>> 4;
+            if (lit == 15) {
+                int b;
+                do { b = src.get(ip++) & 0xFF; lit += b; } while (b == 255);
+            }
+            if (ip + lit > end || op + lit > oend) throw new IllegalArgumentException("Corrupt LZ4 block (literals)");
+            Buffers.copy(src, ip, dst, op, lit, false);
+            ip += lit;
+            op += lit;
+            if (ip >= end) break; // last sequence has no match
+
+            int offset = (src.get(ip) & 0xFF) | ((src.get(ip + 1) & 0xFF) << 8);
+            ip += 2;
+            int len = token & 15;
+            if (len == 15) {
+                int b;
+                do { b = src.get(ip++) & 0xFF; len += b; } while (b == 255);
+            }
+            len += MIN_MATCH;
+            int ref = op - offset;
+            if (offset == 0 || ref < dstOff || op + len > oend) throw new IllegalArgumentException("Corrupt LZ4 block (match)");
+            if (offset >= len) {
+                Buffers.copy(dst, ref, dst, op, len, false);
+            } else {
+                // Overlapping match repeats the last `offset` bytes
+                for (int i = 0; i < len; i++) dst.put(op + i, dst.get(ref + i));
+            }
+            op += len;
+        }
+        if (op != oend) throw new IllegalArgumentException("Corrupt LZ4 block (size " + (op - dstOff) + " != " + dstLen + ")");
+    }
+
+    private static int writeSequence(byte[] src, int litStart, int lit, byte[] dst, int op, int offset, int len) {
+        int token = op++;
+        int ml = len - MIN_MATCH;
+        dst[token] = (byte) ((Math.min(lit, 15) << 4) | Math.min(ml, 15));
+        if (lit >= 15) op = writeLength(dst, op, lit - 15);
+        System.arraycopy(src, litStart, dst, op, lit);
+        op += lit;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        if (ml >= 15) op = writeLength(dst, op, ml - 15);
+        return op;
+    }
+
+    private static int writeLength(byte[] dst, int op, int n) {
+        while (n >= 255) { dst[op++] = (byte) 255; n -= 255; }
+        dst[op++] = (byte) n;
+        return op;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8) | ((b[i + 2] & 0xFF) << 16) | (b[i + 3] << 24);
+    }
+}
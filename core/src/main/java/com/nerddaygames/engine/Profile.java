@@ -12,6 +12,39 @@ public class Profile {
     // Memory
     public int memorySize = 65536;
     public int memoryBanks = 8;
+    // RAM backend; MAPPED exposes RAM live to other processes through ramFile
+    public RamStorage.Kind ramStorage = RamStorage.Kind.HEAP;
+    public String ramFile = defaultRamFile();
+    // Rewind history in bytes (0 = off); hold rewindKey to step back a frame at a time
+    public int rewindBufferBytes = 0;
+    public int rewindKey = com.badlogic.gdx.Input.Keys.F8;
+
+    // Input log (InputLog): record or replay a run with a fixed timestep and seeded RNG
+    public String inputRecordFile = null;
+    public String inputReplayFile = null;
+    public float fixedTimestep = 1f / 60f;
+
+    // VmSnapshot: restartKey restores the post-_init snapshot; suspendFile (null = off) keeps
+    // the session across runs of the same code
+    public int restartKey = com.badlogic.gdx.Input.Keys.F5;
+    public String suspendFile = null;
+
+    // Print load, snapshot and reload times to stdout
+    public boolean logTimings = false;
+
+    // Hot reload: run Lua files changed on disk (and their dependents) again in the live VM
+    public boolean hotReload = true;
+
+    // cartdata(id) journals, a local (Gdx.files.local) path; hidden so the desktop does not list it
+    public String cartDataDir = "disk/.cdata";
+
+    // Rendering: only run _update/_draw when input, timers or invalidate() ask for it
+    public boolean idleRendering = false;
+
+    // OS buffer resolution as a fraction of width/height (min < max = adaptive)
+    public float minRenderScale = 1f;
+    public float maxRenderScale = 1f;
+    public float frameBudgetMs = 1000f / 60f;
 
     public String title = "FantasyOS";
 
@@ -24,6 +57,24 @@ public class Profile {
         p.gameHeight = 136;
         p.memorySize = 65536;
         p.memoryBanks = 8;
+        // -Dfantasyos.ram=mapped|direct|heap, -Dfantasyos.ram.file=<path>
+        try {
+            p.ramStorage = RamStorage.Kind.valueOf(System.getProperty("fantasyos.ram", "heap").toUpperCase());
+        } catch (IllegalArgumentException ignored) {}
+        p.ramFile = System.getProperty("fantasyos.ram.file", p.ramFile);
+        p.rewindBufferBytes = 4 * 1024 * 1024;
+        // -Dfantasyos.record=<file> / -Dfantasyos.replay=<file>
+        p.inputRecordFile = System.getProperty("fantasyos.record");
+        p.inputReplayFile = System.getProperty("fantasyos.replay");
+        // -Dfantasyos.suspend=<file>: save the cart's state on exit and resume it next run
+        p.suspendFile = System.getProperty("fantasyos.suspend");
+        // -Dfantasyos.timings=true
+        p.logTimings = Boolean.getBoolean("fantasyos.timings");
         return p;
     }
+
+    /** Default mapped RAM file, shared with MemoryViewer. */
+    public static String defaultRamFile() {
+        return new java.io.File(System.getProperty("java.io.tmpdir"), "fantasyos.ram").getPath();
+    }
 }
@@ -0,0 +1,309 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * ProjectStore - one in-memory copy of a project's assets, shared by every VM on it.
+ *
+ * The editor's tool VMs and the run screen each have their own FantasyVM, but for a
+ * project folder they all get the same store (open(dir)), keyed by asset path relative
+ * to the folder:
+ *  - text and binary files (main.lua, project.json, map.bin, ...): FileSystem.read/
+ *    write/readBytes/writeBytes go here for files in the project folder
+ *  - sprite memory: sprites.png decoded once into a Sheet (raw pixels); tools commit
+ *    edited pixels with putSprites and other VMs install them without a PNG round trip
+ *
+ * A put replaces the asset, bumps its version, queues the change on every other
+ * Subscription (VMs apply it in update()) and hands the bytes to WriteBehind, so the
+ * disk catches up in the background. Assets load from disk on first use; revalidate()
+ * reloads the ones changed on disk by something else (checked when a VM attaches).
+ * When the last VM's Subscription closes the store is dropped; the next open() reloads.
+ * Files larger than MAX_ASSET_BYTES are not held; callers fall back to the disk.
+ */
+public class ProjectStore {
+    public static final int MAX_ASSET_BYTES = 4 * 1024 * 1024;
+    public static final String SPRITES = "sprites.png";
+
+    /** Decoded sprite sheet; pixels are never modified once stored. */
+    public static final class Sheet {
+        public final int width, height;
+        public final Pixmap.Format format;
+        public final byte[] pixels;
+
+        public Sheet(int width, int height, Pixmap.Format format, byte[] pixels) {
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.pixels = pixels;
+        }
+
+        /** Copy of pixmap's current pixels. */
+        public static Sheet of(Pixmap pixmap) {
+            ByteBuffer src = pixmap.getPixels().duplicate();
+            src.clear();
+            byte[] pixels = new byte[src.remaining()];
+            src.get(pixels);
+            return new Sheet(pixmap.getWidth(), pixmap.getHeight(), pixmap.getFormat(), pixels);
+        }
+    }
+
+    /** One VM's feed of changes made by the others; drained on the VM's thread. */
+    public final class Subscription {
+        private final ConcurrentLinkedQueue<String> changed = new ConcurrentLinkedQueue<>();
+
+        /** @return the next changed asset path, or null */
+        public String poll() { return changed.poll(); }
+
+        public ProjectStore store() { return ProjectStore.this; }
+
+        /** Stop the feed; the last one on a project drops the store (its puts are already in WriteBehind). */
+        public void close() {
+            synchronized (open) {
+                if (!subscriptions.remove(this) || !subscriptions.isEmpty()) return;
+                open.remove(dir.getAbsolutePath(), ProjectStore.this);
+            }
+        }
+    }
+
+    private static final class Asset {
+        byte[] bytes;   // null while only the sheet is known (PNG still being encoded)
+        String text;    // decoded on first text() use
+        Sheet sheet;    // sprites.png only
+        long modified;  // disk mtime when loaded; -1 after a put (ours, not yet seen on disk)
+        long version;
+    }
+
+    private static final Map<String, ProjectStore> open = new HashMap<>();
+
+    /**
+     * The store for dir (created on first use; one per folder while any VM is subscribed).
+     * A store nobody subscribes to stays open; VMs use subscribe(dir).
+     */
+    public static ProjectStore open(FileHandle dir) {
+        String key = dir.file().getAbsolutePath();
+        synchronized (open) {
+            ProjectStore s = open.get(key);
+            if (s == null) open.put(key, s = new ProjectStore(dir.file().getAbsoluteFile()));
+            return s;
+        }
+    }
+
+    /** The store for dir and a new feed on it, in one step so a closing VM cannot drop it in between. */
+    public static Subscription subscribe(FileHandle dir) {
+        synchronized (open) {
+            return open(dir).subscribe();
+        }
+    }
+
+    private final File dir;
+    private final Map<String, Asset> assets = new HashMap<>(); // guarded by this
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final WriteBehind writeBehind = WriteBehind.shared();
+
+    // --- STATS ---
+    public volatile long loads, hits, puts, notifications;
+
+    private ProjectStore(File dir) {
+        this.dir = dir;
+    }
+
+    public File getDir() { return dir; }
+
+    public Subscription subscribe() {
+        Subscription s = new Subscription();
+        synchronized (open) {
+            subscriptions.add(s);
+        }
+        return s;
+    }
+
+    // --- READ ---
+
+    /** @return the asset as UTF-8 text, or null if it does not exist (or is too large) */
+    public synchronized String text(String path) {
+        Asset a = asset(path, true);
+        if (a == null || a.bytes == null) return null;
+        if (a.text == null) a.text = new String(a.bytes, StandardCharsets.UTF_8);
+        return a.text;
+    }
+
+    /** @return the stored bytes (shared: do not modify), or null if absent or too large */
+    public synchronized byte[] bytes(String path) {
+        Asset a = asset(path, true);
+        return (a != null) ? a.bytes : null;
+    }
+
+    /** Decoded sprites.png, or null if the project has none. */
+    public synchronized Sheet sprites() {
+        Asset a = asset(SPRITES, false);
+        if (a == null) return null;
+        if (a.sheet == null && a.bytes != null) {
+            try {
+                Pixmap p = new Pixmap(a.bytes, 0, a.bytes.length);
+                try { a.sheet = Sheet.of(p); }
+                finally { p.dispose(); }
+            } catch (Exception e) {
+                System.err.println("Bad " + SPRITES + " in " + dir + ": " + e.getMessage());
+            }
+        }
+        return a.sheet;
+    }
+
+    /** Version of path, bumped by every put and reload (0 = never changed). */
+    public synchronized long version(String path) {
+        Asset a = assets.get(path);
+        return (a != null) ? a.version : 0;
+    }
+
+    /** @return true if path is held in memory (or loads and fits) */
+    public synchronized boolean holds(String path) {
+        return asset(path, false) != null;
+    }
+
+    // Resident asset, loading it on first use; null if there is no such file or it is too large
+    private Asset asset(String path, boolean needBytes) {
+        Asset a = assets.get(path);
+        if (a != null) {
+            if (needBytes && a.bytes == null && a.sheet != null) a.bytes = load(path); // waits for the PNG
+            hits++;
+            return a;
+        }
+        File f = file(path);
+        long modified = writeBehind.isPending(f) ? -1 : f.lastModified();
+        byte[] bytes = load(path);
+        if (bytes == null) return null;
+        a = new Asset();
+        a.bytes = bytes;
+        a.modified = modified;
+        assets.put(path, a);
+        return a;
+    }
+
+    private byte[] load(String path) {
+        File f = file(path);
+        byte[] pending = writeBehind.pending(f); // lazy payloads are awaited, then read below
+        if (pending != null) return pending;
+        if (!f.isFile() || f.length() > MAX_ASSET_BYTES) return null;
+        try {
+            loads++;
+            return FileIo.readAll(f);
+        } catch (Exception e) {
+            System.err.println("ProjectStore: could not load " + f + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private File file(String path) {
+        return new File(dir, path);
+    }
+
+    // --- WRITE ---
+
+    /** Replace path's text; persisted in the background. @param origin the writer (not notified), or null */
+    public void putText(String path, String text, Subscription origin) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            Asset a = replace(path);
+            a.bytes = bytes;
+            a.text = text;
+        }
+        writeBehind.submit(file(path), bytes);
+        changed(path, origin);
+    }
+
+    /** Replace path's bytes (owned by the store from now on: do not modify). */
+    public void putBytes(String path, byte[] bytes, Subscription origin) {
+        synchronized (this) {
+            replace(path).bytes = bytes;
+        }
+        writeBehind.submit(file(path), bytes);
+        changed(path, origin);
+    }
+
+    /** Replace the sprite sheet; the PNG is encoded on the WriteBehind thread. */
+    public void putSprites(Sheet sheet, Subscription origin) {
+        synchronized (this) {
+            replace(SPRITES).sheet = sheet;
+        }
+        writeBehind.submit(file(SPRITES), png(sheet));
+        changed(SPRITES, origin);
+    }
+
+    private Asset replace(String path) {
+        Asset a = assets.get(path);
+        if (a == null) assets.put(path, a = new Asset());
+        a.bytes = null;
+        a.text = null;
+        a.sheet = null;
+        a.modified = -1;
+        a.version++;
+        puts++;
+        return a;
+    }
+
+    /**
+     * Re-read assets changed on disk by something else (external editor, file copy) and
+     * notify every subscriber. @return how many were reloaded
+     */
+    public int revalidate() {
+        List<String> reloaded = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, Asset> e : assets.entrySet()) {
+                File f = file(e.getKey());
+                Asset a = e.getValue();
+                if (writeBehind.isPending(f)) continue;
+                long m = f.lastModified();
+                if (a.modified == -1) { a.modified = m; continue; } // our own write has landed
+                if (m == a.modified) continue;
+                a.bytes = load(e.getKey());
+                a.text = null;
+                a.sheet = null;
+                a.modified = m;
+                a.version++;
+                reloaded.add(e.getKey());
+            }
+            for (String path : reloaded) if (assets.get(path).bytes == null) assets.remove(path); // deleted
+        }
+        for (String path : reloaded) changed(path, null);
+        return reloaded.size();
+    }
+
+    private void changed(String path, Subscription origin) {
+        for (Subscription s : subscriptions) {
+            if (s == origin) continue;
+            s.changed.add(path);
+            notifications++;
+        }
+    }
+
+    /** Encodes sheet as PNG (Y=0 at top) when WriteBehind writes it. */
+    public static WriteBehind.Payload png(Sheet sheet) {
+        return out -> {
+            Pixmap copy = new Pixmap(sheet.width, sheet.height, sheet.format);
+            PixmapIO.PNG png = new PixmapIO.PNG();
+            try {
+                ByteBuffer dst = copy.getPixels();
+                dst.clear();
+                dst.put(sheet.pixels, 0, Math.min(sheet.pixels.length, dst.remaining()));
+                dst.clear();
+                png.setFlipY(false);
+                png.write(out, copy);
+            } finally {
+                png.dispose();
+                copy.dispose();
+            }
+        };
+    }
+}
@@ -1,7 +1,30 @@
 package com.nerddaygames.engine;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
+/**
+ * Ram - 64KB address space with optional banked windows.
+ *
+ * The address space is split into 256-byte pages. Each page has an offset into
+ * the physical byte array; a bank switch only rewrites the offsets of the
+ * window's pages (no copying). Bank 0 of a window is the base memory at that
+ * address, banks 1..N-1 live after the 64KB base in the physical array.
+ *
+ * With no windows every offset is 0, so memcpy/memset are still a single
+ * arraycopy/fill. On heap storage peek/poke and peek2/poke2 index the backing
+ * byte[]; while every offset is 0 (no windows, or bank 0 in all of them) they skip
+ * the page table too, as before banking.
+ *
+ * The physical bytes live in a RamStorage (heap, direct or memory-mapped file).
+ * In the mapped case the first 64KB of the file is the base address space.
+ *
+ * Every write marks its physical page dirty (one flag per 256 bytes; a plain byte
+ * store, so back-to-back pokes do not wait on each other's read-modify-write),
+ * so snapshot code (RewindBuffer) only has to look at pages that changed.
+ */
 public class Ram {
 
     // --- MEMORY MAP CONSTANTS ---
@@ -32,53 +55,258 @@ public class Ram {
     public static final int SCREEN_BUFFER_BASE = 0x6000;
     public static final int SCREEN_BUFFER_SIZE = 0x2000; // 8KB
 
+    // --- PAGING ---
+    public static final int PAGE_SHIFT = 8;
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;          // 256 bytes
+    public static final int PAGE_COUNT = MEMORY_SIZE >>> PAGE_SHIFT;
+
     // --- MEMORY STORAGE ---
-    public final byte[] memory = new byte[MEMORY_SIZE];
-    private int activeBank = 0;
+    private RamStorage storage;                                // base 64KB + bank storage
+    private ByteBuffer memory;                                 // storage.buffer(), cached for the hot path
+    private byte[] heap;                                       // storage.array(): null unless heap backed
+    private byte[] flat;                                       // heap while every page offset is 0 (bank 0 everywhere), else null
+    private final int[] pageOffset = new int[PAGE_COUNT];     // physical = addr + pageOffset[page]
+    private final int[] runBegin = new int[PAGE_COUNT];       // first page of this page's window/run
+    private final int[] runEnd = new int[PAGE_COUNT];         // first page after this page's window/run
+    private final List<Window> windows = new ArrayList<>();
+    private boolean[] dirty;                                   // one flag per physical page
+
+    /**
+     * A banked address window: [base, base + size) shows one of `banks` banks.
+     */
+    public static class Window {
+        public final int base;
+        public final int size;
+        public final int banks;
+        final int storage;     // physical start of bank 1
+        int activeBank = 0;
+
+        Window(int base, int size, int banks, int storage) {
+            this.base = base; this.size = size; this.banks = banks; this.storage = storage;
+        }
+
+        public int getActiveBank() { return activeBank; }
+
+        int bankStart(int bank) { return (bank == 0) ? base : storage + (bank - 1) * size; }
+    }
+
+    public Ram() {
+        this(1, new RamStorage.Heap(MEMORY_SIZE));
+    }
+
+    /**
+     * Ram with a default banked window over USER_DATA (Profile.memoryBanks).
+     */
+    public Ram(int banks) {
+        this(banks, new RamStorage.Heap(MEMORY_SIZE));
+    }
+
+    /**
+     * Ram over the given storage (at least MEMORY_SIZE bytes).
+     */
+    public Ram(int banks, RamStorage storage) {
+        if (storage.capacity() < MEMORY_SIZE) throw new IllegalArgumentException("Ram storage must hold " + MEMORY_SIZE + " bytes");
+        this.storage = storage;
+        this.memory = storage.buffer();
+        this.heap = storage.array();
+        this.flat = heap;
+        this.dirty = new boolean[storage.capacity() >>> PAGE_SHIFT];
+        rebuildRuns();
+        if (banks > 1) mapWindow(USER_DATA_BASE, USER_DATA_SIZE, banks);
+    }
+
+    /**
+     * Define a banked window. base and size must be page aligned and the window must
+     * not overlap an existing one. Bank storage is allocated once, here.
+     * @return window index for setBank(window, bank)
+     */
+    public int mapWindow(int base, int size, int banks) {
+        if (base < 0 || size <= 0 || base + size > MEMORY_SIZE) throw new IllegalArgumentException("Window out of range");
+        if ((base & (PAGE_SIZE - 1)) != 0 || (size & (PAGE_SIZE - 1)) != 0) throw new IllegalArgumentException("Window must be page aligned (" + PAGE_SIZE + " bytes)");
+        if (banks < 1) throw new IllegalArgumentException("Window needs at least one bank");
+        for (Window w : windows) {
+            if (base < w.base + w.size && w.base < base + size) throw new IllegalArgumentException("Window overlaps 0x" + Integer.toHexString(w.base));
+        }
+
+        int bankStorage = nextFreeStorage();
+        if (bankStorage + (banks - 1) * size > storage.capacity()) {
+            storage = storage.resize(bankStorage + (banks - 1) * size);
+            memory = storage.buffer();
+            heap = storage.array();
+            updateFlat();
+            dirty = Arrays.copyOf(dirty, storage.capacity() >>> PAGE_SHIFT);
+        }
+        windows.add(new Window(base, size, banks, bankStorage));
+        rebuildRuns();
+        return windows.size() - 1;
+    }
+
+    public List<Window> getWindows() { return windows; }
 
     /**
      * Read a single byte (0-255) from an address.
      */
     public int peek(int addr) {
-        if (addr < 0 || addr >= memory.length) return 0;
-        return memory[addr] & 0xFF; // Convert signed byte to unsigned int
+        if (addr < 0 || addr >= MEMORY_SIZE) return 0;
+        byte[] m = flat;
+        if (m != null) return m[addr] & 0xFF;
+        int p = addr + pageOffset[addr >>> PAGE_SHIFT];
+        m = heap;
+        if (m != null) return m[p] & 0xFF;
+        return memory.get(p) & 0xFF; // Convert signed byte to unsigned int
     }
 
     /**
      * Write a single byte (0-255) to an address.
      */
     public void poke(int addr, int val) {
-        if (addr < 0 || addr >= memory.length) return;
-        memory[addr] = (byte) (val & 0xFF);
+        if (addr < 0 || addr >= MEMORY_SIZE) return;
+        byte[] m = flat;
+        if (m != null) {
+            m[addr] = (byte) val;
+            dirty[addr >>> PAGE_SHIFT] = true;
+            return;
+        }
+        int p = addr + pageOffset[addr >>> PAGE_SHIFT];
+        m = heap;
+        if (m != null) m[p] = (byte) val;
+        else memory.put(p, (byte) (val & 0xFF));
+        dirty[p >>> PAGE_SHIFT] = true;
     }
 
     /**
-     * Read a 16-bit integer (Little Endian).
+     * Read a 16-bit integer (Little Endian). The two bytes may sit in different banks.
      */
     public int peek2(int addr) {
-        if (addr < 0 || addr >= memory.length - 1) return 0;
-        int low = memory[addr] & 0xFF;
-        int high = memory[addr + 1] & 0xFF;
-        return low | (high << 8);
+        if (addr < 0 || addr >= MEMORY_SIZE - 1) return 0;
+        byte[] m = flat;
+        if (m != null) return (m[addr] & 0xFF) | ((m[addr + 1] & 0xFF) << 8);
+        // Both bytes share a page unless addr is the last byte of one
+        if ((addr & (PAGE_SIZE - 1)) != PAGE_SIZE - 1) {
+            int p = addr + pageOffset[addr >>> PAGE_SHIFT];
+            m = heap;
+            if (m != null) return (m[p] & 0xFF) | ((m[p + 1] & 0xFF) << 8);
+            return memory.getShort(p) & 0xFFFF;
+        }
+        return peek(addr) | (peek(addr + 1) << 8);
     }
 
     /**
      * Write a 16-bit integer (Little Endian).
      */
     public void poke2(int addr, int val) {
-        if (addr < 0 || addr >= memory.length - 1) return;
-        memory[addr] = (byte) (val & 0xFF);
-        memory[addr + 1] = (byte) ((val >> 8) & 0xFF);
+        if (addr < 0 || addr >= MEMORY_SIZE - 1) return;
+        byte[] m = flat;
+        if (m != null) {
+            m[addr] = (byte) val;
+            m[addr + 1] = (byte) (val >> 8);
+            dirty[addr >>> PAGE_SHIFT] = true;
+            dirty[(addr + 1) >>> PAGE_SHIFT] = true;
+            return;
+        }
+        if ((addr & (PAGE_SIZE - 1)) != PAGE_SIZE - 1) {
+            int p = addr + pageOffset[addr >>> PAGE_SHIFT];
+            m = heap;
+            if (m != null) {
+                m[p] = (byte) val;
+                m[p + 1] = (byte) (val >> 8);
+            } else {
+                memory.putShort(p, (short) val);
+            }
+            dirty[p >>> PAGE_SHIFT] = true;
+            return;
+        }
+        poke(addr, val);
+        poke(addr + 1, val >> 8);
+    }
+
+    /**
+     * Read a 32-bit integer (Little Endian).
+     */
+    public int peek4(int addr) {
+        if (addr < 0 || addr >= MEMORY_SIZE - 3) return 0;
+        int p = addr + pageOffset[addr >>> PAGE_SHIFT];
+        if ((addr & (PAGE_SIZE - 1)) <= PAGE_SIZE - 4) return memory.getInt(p);
+        return peek2(addr) | (peek2(addr + 2) << 16);
     }
 
     /**
-     * Copy memory block.
+     * Write a 32-bit integer (Little Endian).
+     */
+    public void poke4(int addr, int val) {
+        if (addr < 0 || addr >= MEMORY_SIZE - 3) return;
+        int p = addr + pageOffset[addr >>> PAGE_SHIFT];
+        if ((addr & (PAGE_SIZE - 1)) <= PAGE_SIZE - 4) {
+            memory.putInt(p, val);
+            dirty[p >>> PAGE_SHIFT] = true;
+            return;
+        }
+        poke2(addr, val);
+        poke2(addr + 2, val >>> 16);
+    }
+
+    /**
+     * Copy len bytes from memory into dst (one bulk copy per window run).
+     * @return false if the range is out of bounds
+     */
+    public boolean read(int addr, byte[] dst, int off, int len) {
+        if (len < 0 || addr < 0 || addr + len > MEMORY_SIZE) return false;
+        int done = 0;
+        while (done < len) {
+            int a = addr + done;
+            int chunk = Math.min(len - done, runLimit(a) - a);
+            storage.read(phys(a), dst, off + done, chunk);
+            done += chunk;
+        }
+        return true;
+    }
+
+    /**
+     * Copy len bytes from src into memory (one bulk copy per window run).
+     * @return false if the range is out of bounds
+     */
+    public boolean write(int addr, byte[] src, int off, int len) {
+        if (len < 0 || addr < 0 || addr + len > MEMORY_SIZE) return false;
+        int done = 0;
+        while (done < len) {
+            int a = addr + done;
+            int chunk = Math.min(len - done, runLimit(a) - a);
+            storage.write(phys(a), src, off + done, chunk);
+            markDirty(phys(a), chunk);
+            done += chunk;
+        }
+        return true;
+    }
+
+    /**
+     * Copy memory block (overlap safe). Works across windows and banks: the copy is
+     * split only where a window boundary is crossed.
      */
     public void memcpy(int dest, int src, int len) {
         if (len <= 0) return;
-        if (src < 0 || src + len > memory.length) return;
-        if (dest < 0 || dest + len > memory.length) return;
-        System.arraycopy(memory, src, memory, dest, len);
+        if (src < 0 || src + len > MEMORY_SIZE) return;
+        if (dest < 0 || dest + len > MEMORY_SIZE) return;
+
+        if (dest > src && dest < src + len) {
+            // Overlapping, copy runs back to front
+            int end = len;
+            while (end > 0) {
+                int s = src + end - 1, d = dest + end - 1;
+                int chunk = Math.min(end, Math.min(s - runStart(s), d - runStart(d)) + 1);
+                end -= chunk;
+                storage.copy(phys(src + end), phys(dest + end), chunk);
+                markDirty(phys(dest + end), chunk);
+            }
+        } else {
+            int done = 0;
+            while (done < len) {
+                int s = src + done, d = dest + done;
+                int chunk = Math.min(len - done, Math.min(runLimit(s) - s, runLimit(d) - d));
+                storage.copy(phys(s), phys(d), chunk);
+                markDirty(phys(d), chunk);
+                done += chunk;
+            }
+        }
     }
 
     /**
@@ -86,11 +314,151 @@ public class Ram {
      */
     public void memset(int dest, int val, int len) {
         if (len <= 0) return;
-        if (dest < 0 || dest + len > memory.length) return;
-        Arrays.fill(memory, dest, dest + len, (byte) val);
+        if (dest < 0 || dest + len > MEMORY_SIZE) return;
+        int done = 0;
+        while (done < len) {
+            int d = dest + done;
+            int chunk = Math.min(len - done, runLimit(d) - d);
+            storage.fill(phys(d), chunk, (byte) val);
+            markDirty(phys(d), chunk);
+            done += chunk;
+        }
+    }
+
+    /**
+     * Copy between banks of one window without mapping them (e.g. level -> work bank).
+     */
+    public void bankcpy(int window, int destBank, int destOffset, int srcBank, int srcOffset, int len) {
+        if (window < 0 || window >= windows.size() || len <= 0) return;
+        Window w = windows.get(window);
+        if (destBank < 0 || destBank >= w.banks || srcBank < 0 || srcBank >= w.banks) return;
+        if (destOffset < 0 || srcOffset < 0 || destOffset + len > w.size || srcOffset + len > w.size) return;
+        storage.copy(w.bankStart(srcBank) + srcOffset, w.bankStart(destBank) + destOffset, len);
+        markDirty(w.bankStart(destBank) + destOffset, len);
+    }
+
+    /**
+     * Map a bank into a window: only the window's page offsets change.
+     */
+    public void setBank(int window, int bank) {
+        if (window < 0 || window >= windows.size()) return;
+        Window w = windows.get(window);
+        if (bank < 0 || bank >= w.banks || bank == w.activeBank) return;
+        w.activeBank = bank;
+        int offset = w.bankStart(bank) - w.base;
+        int first = w.base >>> PAGE_SHIFT, last = (w.base + w.size) >>> PAGE_SHIFT;
+        for (int p = first; p < last; p++) pageOffset[p] = offset;
+        updateFlat();
+    }
+
+    /** Switch the first (default) window. */
+    public void setBank(int bank) { setBank(0, bank); }
+
+    public int getBank(int window) {
+        return (window >= 0 && window < windows.size()) ? windows.get(window).activeBank : 0;
+    }
+
+    /**
+     * Raw physical bytes (base 64KB followed by bank storage); null unless heap backed.
+     */
+    public byte[] getRawMemory() { return storage.array(); }
+
+    public RamStorage getStorage() { return storage; }
+
+    /** Physical storage address currently mapped at addr. */
+    public int physical(int addr) { return phys(addr); }
+
+    /**
+     * Writable view of [addr, addr + len) for bulk loaders (cart sections decompress
+     * straight into it). The range is marked dirty up front.
+     * @return null if out of bounds or the range crosses a window edge
+     */
+    public ByteBuffer region(int addr, int len) {
+        if (len <= 0 || addr < 0 || addr + len > MEMORY_SIZE || addr + len > runLimit(addr)) return null;
+        markDirty(phys(addr), len);
+        return Buffers.slice(memory, phys(addr), len);
+    }
+
+    /**
+     * Zero all storage (every bank) and map bank 0 into every window, as after construction;
+     * windows and storage stay allocated.
+     */
+    public void clear() {
+        for (int i = 0; i < windows.size(); i++) setBank(i, 0);
+        storage.fill(0, storage.capacity(), (byte) 0);
+        markDirty(0, storage.capacity());
+    }
+
+    public void close() { storage.close(); }
+
+    // --- DIRTY PAGES (physical) ---
+
+    public int getPhysicalPageCount() { return storage.capacity() >>> PAGE_SHIFT; }
+
+    /**
+     * Next dirty physical page at or after `from`, or -1.
+     */
+    public int nextDirtyPage(int from) {
+        for (int p = Math.max(from, 0); p < dirty.length; p++) {
+            if (dirty[p]) return p;
+        }
+        return -1;
+    }
+
+    public void clearDirty() { Arrays.fill(dirty, false); }
+
+    public void markDirty(int physAddr, int len) {
+        if (len <= 0) return;
+        int first = physAddr >>> PAGE_SHIFT, last = (physAddr + len - 1) >>> PAGE_SHIFT;
+        Arrays.fill(dirty, first, last + 1, true);
     }
 
-    public void setBank(int bank) { this.activeBank = bank; }
+    /** Bulk read by physical address (snapshots); does not touch dirty flags. */
+    public void readPhysical(int physAddr, byte[] dst, int off, int len) { storage.read(physAddr, dst, off, len); }
 
-    public byte[] getRawMemory() { return memory; }
+    /** Bulk write by physical address (snapshot restore); does not touch dirty flags. */
+    public void writePhysical(int physAddr, byte[] src, int off, int len) { storage.write(physAddr, src, off, len); }
+
+    // --- PAGE TABLE HELPERS ---
+
+    private int nextFreeStorage() {
+        int end = MEMORY_SIZE;
+        for (Window w : windows) end = Math.max(end, w.storage + (w.banks - 1) * w.size);
+        return end;
+    }
+
+    // Bank 0 is the base memory, so with it in every window no page is remapped
+    private void updateFlat() {
+        byte[] m = heap;
+        for (Window w : windows) if (w.activeBank != 0) m = null;
+        flat = m;
+    }
+
+    private int phys(int addr) { return addr + pageOffset[addr >>> PAGE_SHIFT]; }
+
+    // Exclusive logical end of the contiguous run containing addr
+    private int runLimit(int addr) { return runEnd[addr >>> PAGE_SHIFT] << PAGE_SHIFT; }
+
+    // Logical start of the contiguous run containing addr
+    private int runStart(int addr) { return runBegin[addr >>> PAGE_SHIFT] << PAGE_SHIFT; }
+
+    // Runs break at window edges; within a run all pages share one offset
+    private void rebuildRuns() {
+        boolean[] edge = new boolean[PAGE_COUNT + 1];
+        edge[PAGE_COUNT] = true;
+        for (Window w : windows) {
+            edge[w.base >>> PAGE_SHIFT] = true;
+            edge[(w.base + w.size) >>> PAGE_SHIFT] = true;
+        }
+        int end = PAGE_COUNT;
+        for (int p = PAGE_COUNT - 1; p >= 0; p--) {
+            if (edge[p + 1]) end = p + 1;
+            runEnd[p] = end;
+        }
+        int begin = 0;
+        for (int p = 0; p < PAGE_COUNT; p++) {
+            if (edge[p]) begin = p;
+            runBegin[p] = begin;
+        }
+    }
 }
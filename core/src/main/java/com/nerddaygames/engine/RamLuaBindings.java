@@ -0,0 +1,149 @@
+package com.nerddaygames.engine;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+
+/**
+ * RamLuaBindings - exposes Ram to Lua with bulk variants so one call moves many bytes:
+ *  - peek(addr [, n]) -> n bytes          poke(addr, v1, v2, ...)
+ *  - peek2(addr [, n]) / poke2(addr, ...)  16-bit little endian
+ *  - peek4(addr [, n]) / poke4(addr, ...)  32-bit little endian (signed)
+ *    (the peeks return nothing for n <= 0)
+ *  - peekstr(addr, len) -> Lua string      pokestr(addr, str [, i [, j]])
+ *  - memcpy(dest, src, len)               memset(dest, val, len)
+ *
+ * Strings move with a single array copy in each direction (LuaString bytes are used as-is).
+ */
+public class RamLuaBindings {
+    // Upper bound for multi-value peeks (values are returned on the Lua stack)
+    public static final int MAX_PEEK_VALUES = 8192;
+
+    private final Globals globals;
+    private final Ram ram;
+
+    public RamLuaBindings(Globals globals, Ram ram) {
+        this.globals = globals;
+        this.ram = ram;
+    }
+
+    public void register() {
+        globals.set("peek", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                int addr = args.checkint(1);
+                int n = clampCount(args.optint(2, 1), 1);
+                if (n == 0) return LuaValue.NONE;
+                if (n == 1) return LuaValue.valueOf(ram.peek(addr));
+                byte[] tmp = new byte[n];
+                LuaValue[] vals = new LuaValue[n];
+                if (ram.read(addr, tmp, 0, n)) {
+                    for (int i = 0; i < n; i++) vals[i] = LuaValue.valueOf(tmp[i] & 0xFF);
+                } else {
+                    // Partly out of range: out-of-range bytes read as 0
+                    for (int i = 0; i < n; i++) vals[i] = LuaValue.valueOf(ram.peek(addr + i));
+                }
+                return LuaValue.varargsOf(vals);
+            }
+        });
+
+        globals.set("poke", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                int addr = args.checkint(1);
+                int n = args.narg() - 1;
+                if (n == 1) { ram.poke(addr, args.checkint(2)); return LuaValue.NONE; }
+                if (n <= 0) return LuaValue.NONE;
+                byte[] tmp = new byte[n];
+                for (int i = 0; i < n; i++) tmp[i] = (byte) args.checkint(i + 2);
+                if (!ram.write(addr, tmp, 0, n)) {
+                    for (int i = 0; i < n; i++) ram.poke(addr + i, tmp[i]);
+                }
+                return LuaValue.NONE;
+            }
+        });
+
+        globals.set("peek2", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                int addr = args.checkint(1);
+                int n = clampCount(args.optint(2, 1), 2);
+                if (n == 0) return LuaValue.NONE;
+                if (n == 1) return LuaValue.valueOf(ram.peek2(addr));
+                LuaValue[] vals = new LuaValue[n];
+                for (int i = 0; i < n; i++) vals[i] = LuaValue.valueOf(ram.peek2(addr + i * 2));
+                return LuaValue.varargsOf(vals);
+            }
+        });
+
+        globals.set("poke2", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                int addr = args.checkint(1);
+                for (int i = 2; i <= args.narg(); i++) ram.poke2(addr + (i - 2) * 2, args.checkint(i));
+                return LuaValue.NONE;
+            }
+        });
+
+        globals.set("peek4", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                int addr = args.checkint(1);
+                int n = clampCount(args.optint(2, 1), 4);
+                if (n == 0) return LuaValue.NONE;
+                if (n == 1) return LuaValue.valueOf(ram.peek4(addr));
+                LuaValue[] vals = new LuaValue[n];
+                for (int i = 0; i < n; i++) vals[i] = LuaValue.valueOf(ram.peek4(addr + i * 4));
+                return LuaValue.varargsOf(vals);
+            }
+        });
+
+        globals.set("poke4", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                int addr = args.checkint(1);
+                for (int i = 2; i <= args.narg(); i++) ram.poke4(addr + (i - 2) * 4, (int) args.checklong(i));
+                return LuaValue.NONE;
+            }
+        });
+
+        globals.set("peekstr", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                int addr = args.checkint(1);
+                int len = args.checkint(2);
+                if (len <= 0) return LuaValue.EMPTYSTRING;
+                byte[] bytes = new byte[Math.min(len, Ram.MEMORY_SIZE)];
+                if (!ram.read(addr, bytes, 0, bytes.length)) return LuaValue.NIL;
+                return LuaString.valueUsing(bytes); // no second copy
+            }
+        });
+
+        globals.set("pokestr", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                int addr = args.checkint(1);
+                LuaString s = args.checkstring(2);
+                // Optional 1-based substring range, like string.sub
+                int i = Math.max(1, args.optint(3, 1));
+                int j = Math.min(s.m_length, args.optint(4, s.m_length));
+                int len = j - i + 1;
+                if (len <= 0) return LuaValue.valueOf(0);
+                boolean ok = ram.write(addr, s.m_bytes, s.m_offset + i - 1, len);
+                return LuaValue.valueOf(ok ? len : 0);
+            }
+        });
+
+        globals.set("memcpy", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                ram.memcpy(args.checkint(1), args.checkint(2), args.checkint(3));
+                return LuaValue.NONE;
+            }
+        });
+
+        globals.set("memset", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                ram.memset(args.checkint(1), args.checkint(2), args.checkint(3));
+                return LuaValue.NONE;
+            }
+        });
+    }
+
+    private static int clampCount(int n, int width) {
+        return Math.max(0, Math.min(n, Math.min(MAX_PEEK_VALUES, Ram.MEMORY_SIZE / width)));
+    }
+}
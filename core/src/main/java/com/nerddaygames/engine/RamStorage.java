@@ -0,0 +1,149 @@
+package com.nerddaygames.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * RamStorage - backing store for Ram's physical bytes.
+ *  - HEAP:   ByteBuffer over a byte[] (default, same as the old Ram.memory)
+ *  - DIRECT: off-heap ByteBuffer
+ *  - MAPPED: MappedByteBuffer over a file, so another process (MemoryViewer, a test
+ *            harness) can watch RAM live without copying
+ *
+ * Ram only uses absolute get/put on buffer(), which the JIT compiles to plain
+ * loads/stores for all three kinds. Buffers are little endian.
+ */
+public abstract class RamStorage {
+    public enum Kind { HEAP, DIRECT, MAPPED }
+
+    protected ByteBuffer buffer;
+
+    public ByteBuffer buffer() { return buffer; }
+    public int capacity() { return buffer.capacity(); }
+
+    /** Backing array for HEAP storage, null otherwise. */
+    public byte[] array() { return null; }
+
+    /**
+     * Storage of the new capacity holding the same contents (this one must not be used after).
+     */
+    public abstract RamStorage resize(int capacity);
+
+    /**
+     * memmove within the storage.
+     */
+    public void copy(int src, int dest, int len) {
+        Buffers.copy(buffer, src, buffer, dest, len, Math.abs(src - dest) < len);
+    }
+
+    /** Bulk read into a Java array. */
+    public void read(int index, byte[] dst, int off, int len) {
+        Buffers.get(buffer, index, dst, off, len);
+    }
+
+    /** Bulk write from a Java array. */
+    public void write(int index, byte[] src, int off, int len) {
+        Buffers.put(buffer, index, src, off, len);
+    }
+
+    public void fill(int from, int len, byte val) {
+        if (len <= 0) return;
+        buffer.put(from, val);
+        // Double the filled span with bulk copies: log2(len) calls instead of len puts
+        int filled = 1;
+        while (filled < len) {
+            int n = Math.min(filled, len - filled);
+            Buffers.copy(buffer, from, buffer, from + filled, n, false); // n <= filled: disjoint
+            filled += n;
+        }
+    }
+
+    public void close() {}
+
+    public static RamStorage create(Kind kind, int capacity, File file) throws IOException {
+        switch (kind) {
+            case DIRECT: return new Direct(capacity);
+            case MAPPED: return new Mapped(file, capacity);
+            default: return new Heap(capacity);
+        }
+    }
+
+    // --- HEAP ---
+    public static class Heap extends RamStorage {
+        private final byte[] bytes;
+
+        public Heap(int capacity) { this(new byte[capacity]); }
+
+        private Heap(byte[] bytes) {
+            this.bytes = bytes;
+            this.buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        @Override public byte[] array() { return bytes; }
+        @Override public RamStorage resize(int capacity) { return new Heap(Arrays.copyOf(bytes, capacity)); }
+        @Override public void copy(int src, int dest, int len) { System.arraycopy(bytes, src, bytes, dest, len); }
+        @Override public void read(int index, byte[] dst, int off, int len) { System.arraycopy(bytes, index, dst, off, len); }
+        @Override public void write(int index, byte[] src, int off, int len) { System.arraycopy(src, off, bytes, index, len); }
+        @Override public void fill(int from, int len, byte val) { Arrays.fill(bytes, from, from + len, val); }
+    }
+
+    // --- DIRECT ---
+    public static class Direct extends RamStorage {
+        public Direct(int capacity) {
+            this.buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        @Override public RamStorage resize(int capacity) {
+            Direct d = new Direct(capacity);
+            Buffers.copy(buffer, 0, d.buffer, 0, Math.min(capacity, buffer.capacity()), false);
+            return d;
+        }
+    }
+
+    // --- MAPPED ---
+    public static class Mapped extends RamStorage {
+        private final File file;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+
+        public Mapped(File file, int capacity) throws IOException {
+            this.file = file;
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) parent.mkdirs();
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+            // Start from a clean image; the file is a live view, not a save
+            raf.setLength(0);
+            raf.setLength(capacity);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private Mapped(Mapped old, int capacity) throws IOException {
+            this.file = old.file;
+            this.raf = old.raf;
+            this.channel = old.channel;
+            // Same file: existing bytes stay in place, only the mapping grows
+            if (raf.length() < capacity) raf.setLength(capacity);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public File getFile() { return file; }
+
+        @Override public RamStorage resize(int capacity) {
+            try {
+                return new Mapped(this, capacity);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not remap " + file + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override public void close() {
+            try { channel.close(); raf.close(); } catch (IOException ignored) {}
+        }
+    }
+}
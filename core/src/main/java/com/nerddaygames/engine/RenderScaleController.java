@@ -0,0 +1,58 @@
+package com.nerddaygames.engine;
+
+/**
+ * RenderScaleController - picks the osBuffer resolution scale from measured draw time.
+ *  - sample(ms): feed the VM's draw time (render(), not _update) for one active frame
+ *  - getScale(): current scale, always within [minScale, maxScale]
+ *
+ * Uses a smoothed average with hysteresis and a cooldown so the scale does not
+ * oscillate; scales are quantized to STEP so the FrameBufferPool gets hits.
+ */
+public class RenderScaleController {
+    public static final float STEP = 0.125f;
+    private static final float SMOOTHING = 0.1f;      // EMA weight of the newest sample
+    private static final float DOWN_THRESHOLD = 1.0f; // over budget -> lower resolution
+    private static final float UP_THRESHOLD = 0.6f;   // well under budget -> raise resolution
+    private static final int COOLDOWN_FRAMES = 30;
+
+    private final float minScale;
+    private final float maxScale;
+    private final float budgetMs;
+    private float scale;
+    private float averageMs = -1;
+    private int cooldown = COOLDOWN_FRAMES;
+
+    public RenderScaleController(float minScale, float maxScale, float budgetMs) {
+        this.minScale = Math.min(minScale, maxScale);
+        this.maxScale = Math.max(minScale, maxScale);
+        this.budgetMs = budgetMs;
+        this.scale = this.maxScale;
+    }
+
+    public boolean isAdaptive() { return minScale < maxScale; }
+
+    public float getScale() { return scale; }
+    public float getAverageMs() { return Math.max(0, averageMs); }
+    public float getMinScale() { return minScale; }
+    public float getMaxScale() { return maxScale; }
+
+    /**
+     * Record one frame's draw time.
+     * @return true if the scale changed and the buffer should be reallocated
+     */
+    public boolean sample(float drawMs) {
+        if (!isAdaptive()) return false;
+        averageMs = (averageMs < 0) ? drawMs : averageMs + (drawMs - averageMs) * SMOOTHING;
+        if (cooldown > 0) { cooldown--; return false; }
+
+        float next = scale;
+        if (averageMs > budgetMs * DOWN_THRESHOLD) next = scale - STEP;
+        else if (averageMs < budgetMs * UP_THRESHOLD) next = scale + STEP;
+        next = Math.max(minScale, Math.min(maxScale, next));
+        if (next == scale) return false;
+
+        scale = next;
+        cooldown = COOLDOWN_FRAMES;
+        return true;
+    }
+}
@@ -0,0 +1,262 @@
+package com.nerddaygames.engine;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * RewindBuffer - emulator-style rewind for a cart's Ram.
+ *
+ * capture() runs once per frame. Only pages Ram marked dirty are compared
+ * against a shadow copy of the last captured state; the XOR of each changed
+ * page is zero-run-length encoded into a fixed-size byte ring. stepBack() pops
+ * the newest frame and XORs it back out of both the shadow and live memory.
+ *
+ * Each frame also stores the active bank per window (u32: a window can have
+ * more than 255 banks) and an optional Lua checkpoint (see CheckpointHook).
+ * When the ring is full the oldest frames are dropped and become the new
+ * floor state.
+ *
+ * Cost: capture is O(dirty pages). CAPTURE_BUDGET_MICROS is the per-frame target
+ * for a typical cart (a few dozen dirty pages); lastMicros/avgMicros/maxMicros
+ * report the measured cost and overBudget counts frames that exceeded it.
+ */
+public class RewindBuffer {
+    public static final long CAPTURE_BUDGET_MICROS = 250;
+
+    /** Per-frame Lua state beside Ram (e.g. _checkpoint()/_restore(s)). */
+    public interface CheckpointHook {
+        byte[] save();
+        void restore(byte[] data);
+    }
+
+    private final Ram ram;
+    private final byte[] ring;
+    private final ArrayDeque<long[]> frames = new ArrayDeque<>(); // {start, length}
+    private int head = 0; // next write position
+    private int used = 0;
+    private CheckpointHook hook;
+
+    private byte[] shadow;          // physical memory as of the last capture
+    private int[] floorBanks;       // state of the oldest reachable frame
+    private byte[] floorCheckpoint;
+
+    private final byte[] page = new byte[Ram.PAGE_SIZE];
+    private final byte[] xor = new byte[Ram.PAGE_SIZE];
+    private byte[] scratch = new byte[4096];
+    private int scratchLen;
+
+    // --- STATS ---
+    public long lastMicros, maxMicros, overBudget, captures;
+    public double avgMicros;
+
+    public RewindBuffer(Ram ram, int capacityBytes) {
+        this.ram = ram;
+        this.ring = new byte[capacityBytes];
+    }
+
+    public void setCheckpointHook(CheckpointHook hook) { this.hook = hook; }
+
+    public int getFrameCount() { return frames.size(); }
+    public int getUsedBytes() { return used; }
+    public int getCapacity() { return ring.length; }
+
+    /**
+     * Record the current frame. Call once at the end of each frame.
+     */
+    public void capture() {
+        long start = System.nanoTime();
+        int physSize = ram.getPhysicalPageCount() << Ram.PAGE_SHIFT;
+
+        if (shadow == null || shadow.length != physSize) {
+            // First frame (or bank storage grew): start a fresh history
+            reset(physSize);
+        } else {
+            encodeFrame();
+            store();
+        }
+        ram.clearDirty();
+
+        lastMicros = (System.nanoTime() - start) / 1000;
+        maxMicros = Math.max(maxMicros, lastMicros);
+        avgMicros = (captures == 0) ? lastMicros : avgMicros + (lastMicros - avgMicros) * 0.05;
+        if (lastMicros > CAPTURE_BUDGET_MICROS) overBudget++;
+        captures++;
+    }
+
+    /**
+     * Restore the previous frame.
+     * @return false if there is no older frame
+     */
+    public boolean stepBack() {
+        if (shadow == null || frames.isEmpty()) return false;
+
+        // Drop changes made since the last capture
+        for (int p = ram.nextDirtyPage(0); p >= 0; p = ram.nextDirtyPage(p + 1)) {
+            ram.writePhysical(p << Ram.PAGE_SHIFT, shadow, p << Ram.PAGE_SHIFT, Ram.PAGE_SIZE);
+        }
+
+        long[] f = frames.pollLast();
+        int pos = (int) f[0];
+        int windows = getShort(pos); pos += 2;
+        pos += windows * 4;
+        int cpLen = getInt(pos); pos += 4 + cpLen;
+        int pages = getInt(pos); pos += 4;
+        for (int i = 0; i < pages; i++) {
+            int p = getInt(pos); pos += 4;
+            pos = decode(pos, xor);
+            int base = p << Ram.PAGE_SHIFT;
+            for (int b = 0; b < Ram.PAGE_SIZE; b++) shadow[base + b] ^= xor[b];
+            ram.writePhysical(base, shadow, base, Ram.PAGE_SIZE);
+        }
+        head = (int) f[0];
+        used -= (int) f[1];
+        ram.clearDirty();
+
+        // Banks and Lua state of the frame we are back at
+        long[] prev = frames.peekLast();
+        int[] banks = (prev != null) ? readBanks((int) prev[0]) : floorBanks;
+        byte[] checkpoint = (prev != null) ? readCheckpoint((int) prev[0]) : floorCheckpoint;
+        List<Ram.Window> ws = ram.getWindows();
+        for (int w = 0; w < ws.size() && w < banks.length; w++) ram.setBank(w, banks[w]);
+        if (hook != null && checkpoint != null) hook.restore(checkpoint);
+        return true;
+    }
+
+    public void reset() { shadow = null; }
+
+    private void reset(int physSize) {
+        shadow = new byte[physSize];
+        ram.readPhysical(0, shadow, 0, physSize);
+        frames.clear();
+        head = 0;
+        used = 0;
+        floorBanks = currentBanks();
+        floorCheckpoint = (hook != null) ? hook.save() : null;
+    }
+
+    // --- ENCODING ---
+
+    private void encodeFrame() {
+        scratchLen = 0;
+        int[] banks = currentBanks();
+        putScratchShort(banks.length);
+        for (int b : banks) putScratchInt(b);
+        byte[] cp = (hook != null) ? hook.save() : null;
+        int cpLen = (cp != null) ? cp.length : 0;
+        putScratchInt(cpLen);
+        if (cpLen > 0) putScratchBytes(cp, 0, cpLen);
+
+        int countPos = scratchLen;
+        putScratchInt(0);
+        int count = 0;
+        for (int p = ram.nextDirtyPage(0); p >= 0; p = ram.nextDirtyPage(p + 1)) {
+            int base = p << Ram.PAGE_SHIFT;
+            ram.readPhysical(base, page, 0, Ram.PAGE_SIZE);
+            boolean changed = false;
+            for (int b = 0; b < Ram.PAGE_SIZE; b++) {
+                xor[b] = (byte) (page[b] ^ shadow[base + b]);
+                changed |= xor[b] != 0;
+            }
+            if (!changed) continue;
+            System.arraycopy(page, 0, shadow, base, Ram.PAGE_SIZE);
+            putScratchInt(p);
+            encode(xor);
+            count++;
+        }
+        scratch[countPos] = (byte) count;
+        scratch[countPos + 1] = (byte) (count >>> 8);
+        scratch[countPos + 2] = (byte) (count >>> 16);
+        scratch[countPos + 3] = (byte) (count >>> 24);
+    }
+
+    // Zero-run-length: [zeros u8][literals u8][literal bytes] until the page is covered
+    private void encode(byte[] data) {
+        int i = 0;
+        while (i < data.length) {
+            int zeros = 0;
+            while (i < data.length && data[i] == 0 && zeros < 255) { i++; zeros++; }
+            int litStart = i;
+            while (i < data.length && data[i] != 0 && i - litStart < 255) i++;
+            putScratchByte(zeros);
+            putScratchByte(i - litStart);
+            putScratchBytes(data, litStart, i - litStart);
+        }
+    }
+
+    private int decode(int pos, byte[] out) {
+        int i = 0;
+        while (i < out.length) {
+            int zeros = getByte(pos++);
+            int lits = getByte(pos++);
+            for (int z = 0; z < zeros; z++) out[i++] = 0;
+            for (int l = 0; l < lits; l++) out[i++] = ring[(pos++) % ring.length];
+        }
+        return pos % ring.length;
+    }
+
+    private void store() {
+        if (scratchLen > ring.length) {
+            // Frame larger than the whole ring: history cannot continue
+            int physSize = shadow.length;
+            reset(physSize);
+            return;
+        }
+        while (ring.length - used < scratchLen) evictOldest();
+        int start = head;
+        int first = Math.min(scratchLen, ring.length - head);
+        System.arraycopy(scratch, 0, ring, head, first);
+        System.arraycopy(scratch, first, ring, 0, scratchLen - first);
+        head = (head + scratchLen) % ring.length;
+        used += scratchLen;
+        frames.addLast(new long[] { start, scratchLen });
+    }
+
+    private void evictOldest() {
+        long[] f = frames.pollFirst();
+        if (f == null) return;
+        floorBanks = readBanks((int) f[0]);
+        floorCheckpoint = readCheckpoint((int) f[0]);
+        used -= (int) f[1];
+    }
+
+    private int[] currentBanks() {
+        List<Ram.Window> ws = ram.getWindows();
+        int[] banks = new int[ws.size()];
+        for (int i = 0; i < banks.length; i++) banks[i] = ws.get(i).getActiveBank();
+        return banks;
+    }
+
+    private int[] readBanks(int pos) {
+        int n = getShort(pos); pos += 2;
+        int[] banks = new int[n];
+        for (int i = 0; i < n; i++) banks[i] = getInt(pos + i * 4);
+        return banks;
+    }
+
+    private byte[] readCheckpoint(int pos) {
+        pos += 2 + getShort(pos) * 4;
+        int len = getInt(pos); pos += 4;
+        if (len == 0) return null;
+        byte[] cp = new byte[len];
+        for (int i = 0; i < len; i++) cp[i] = ring[(pos + i) % ring.length];
+        return cp;
+    }
+
+    // --- RING / SCRATCH IO (little endian) ---
+
+    private int getByte(int pos) { return ring[pos % ring.length] & 0xFF; }
+    private int getShort(int pos) { return getByte(pos) | (getByte(pos + 1) << 8); }
+    private int getInt(int pos) { return getShort(pos) | (getShort(pos + 2) << 16); }
+
+    private void ensureScratch(int extra) {
+        if (scratchLen + extra > scratch.length) scratch = java.util.Arrays.copyOf(scratch, Math.max(scratch.length * 2, scratchLen + extra));
+    }
+    private void putScratchByte(int v) { ensureScratch(1); scratch[scratchLen++] = (byte) v; }
+    private void putScratchShort(int v) { putScratchByte(v); putScratchByte(v >>> 8); }
+    private void putScratchInt(int v) { putScratchShort(v); putScratchShort(v >>> 16); }
+    private void putScratchBytes(byte[] src, int off, int len) {
+        ensureScratch(len);
+        System.arraycopy(src, off, scratch, scratchLen, len);
+        scratchLen += len;
+    }
+}
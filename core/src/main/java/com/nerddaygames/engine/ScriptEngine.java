@@ -8,8 +8,11 @@ import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaClosure;
 import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
 import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
 import org.luaj.vm2.Varargs;
 import org.luaj.vm2.lib.OneArgFunction;
 import org.luaj.vm2.lib.ResourceFinder;
@@ -19,9 +22,18 @@ import org.luaj.vm2.lib.jse.JsePlatform;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Map;
 
 public class ScriptEngine {
     public Globals globals;
+    // Paths of everything the engine put in _G, taken before any script runs (VmSnapshot binds these by name)
+    public Map<LuaValue, String> engineNames;
+    // Last chunk run by runScript/runChunk; VmSnapshot rebuilds closures from its prototypes
+    public Prototype mainChunk;
+    public String mainChunkName;
+    // Chunks loaded from files (main, require, dofile) and their dependencies; runs changed ones again
+    public HotReload hotReload;
     private FantasyVM vm;
     private static final int INSTRUCTION_CHECK_INTERVAL = 1000;
     private static final long MAX_EXECUTION_TIME_MS = 200;
@@ -55,30 +67,65 @@ public class ScriptEngine {
             @Override public InputStream findResource(String f) {
                 String filename = f.endsWith(".lua") ? f : (f + ".lua");
                 try {
-                    if (vm.fs != null && vm.fs.exists(filename)) {
-                        String content = vm.fs.read(filename);
-                        if (content != null) {
-                            String processed = LuaSyntaxCandy.process(content);
-                            return new ByteArrayInputStream(processed.getBytes("UTF-8"));
-                        }
+                    // read() is null for missing files; no separate exists() resolve
+                    String content = (vm.fs != null) ? vm.fs.read(filename) : null;
+                    if (content != null) {
+                        // loadfile() loads text or binary chunks alike
+                        byte[] baked = BakedAssets.shared().chunk(filename, content);
+                        if (baked != null) return new ByteArrayInputStream(baked);
+                        String processed = LuaSyntaxCandy.process(content);
+                        return new ByteArrayInputStream(processed.getBytes("UTF-8"));
                     }
                 } catch(Exception e){ e.printStackTrace(); }
                 return null;
             }
         };
 
+        hotReload = new HotReload(globals, path -> (vm.fs != null) ? vm.fs.read(path) : null, (source, path, kind) -> {
+            startTime = System.currentTimeMillis();
+            LuaValue chunk = loadChunk(source, path);
+            if (kind == HotReload.Kind.MAIN && chunk instanceof LuaClosure) {
+                mainChunk = ((LuaClosure) chunk).p;
+                mainChunkName = path;
+            }
+            return chunk;
+        });
+        hotReload.install();
+
+        // require() of Lua files: read through the VM's file system, compiled through the chunk cache
+        globals.get("package").get("searchers").set(2, new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                String name = args.checkjstring(1);
+                String templates = globals.get("package").get("path").optjstring("?.lua");
+                StringBuilder tried = new StringBuilder();
+                for (String template : templates.split(";")) {
+                    String filename = template.replace("?", name.replace('.', '/'));
+                    if (!filename.endsWith(".lua")) filename += ".lua";
+                    String content = (vm.fs != null) ? vm.fs.read(filename) : null;
+                    if (content == null) {
+                        tried.append("\n\tno file '").append(filename).append("'");
+                        continue;
+                    }
+                    hotReload.found(filename, content);
+                    return LuaValue.varargsOf(loadChunk(content, filename), LuaValue.valueOf(filename));
+                }
+                return LuaValue.valueOf(tried.toString());
+            }
+        });
+
         // require() override
         globals.set("dofile", new OneArgFunction() {
             @Override public LuaValue call(LuaValue filename) {
                 String path = filename.checkjstring();
                 if (!path.endsWith(".lua")) path += ".lua";
+                hotReload.enter(HotReload.Kind.DOFILE, null);
                 try {
-                    if (vm.fs.exists(path)) {
-                        String content = vm.fs.read(path);
-                        if (content != null) return globals.load(LuaSyntaxCandy.process(content), path).call();
-                    }
-                    throw new LuaError("File not found: " + path);
+                    String content = vm.fs.read(path);
+                    if (content == null) throw new LuaError("File not found: " + path);
+                    hotReload.found(path, content);
+                    return loadChunk(content, path).call();
                 } catch (Exception e) { throw new LuaError("Error in dofile: " + e.getMessage()); }
+                finally { hotReload.exit(); }
             }
         });
 
@@ -163,12 +210,103 @@ public class ScriptEngine {
             }
         });
 
+        // Sprite sheet pixels (palette indices), map cells and the drawing surface size (editor tools)
+        globals.set("sget", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                return LuaValue.valueOf(vm.sget(args.checkint(1), args.checkint(2)));
+            }
+        });
+
+        globals.set("sset", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                vm.sset(args.checkint(1), args.checkint(2), args.checkint(3));
+                return LuaValue.NONE;
+            }
+        });
+
+        globals.set("mget", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                return LuaValue.valueOf(vm.mget(args.checkint(1), args.checkint(2)));
+            }
+        });
+
+        globals.set("mset", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                vm.mset(args.checkint(1), args.checkint(2), args.checkint(3));
+                return LuaValue.NONE;
+            }
+        });
+
+        globals.set("map", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                vm.map(args.checkint(1), args.checkint(2), args.checkint(3), args.checkint(4), args.checkint(5), args.checkint(6));
+                return LuaValue.NONE;
+            }
+        });
+
+        globals.set("display_width", new ZeroArgFunction() {
+            @Override public LuaValue call() { return LuaValue.valueOf(vm.displayWidth()); }
+        });
+        globals.set("display_height", new ZeroArgFunction() {
+            @Override public LuaValue call() { return LuaValue.valueOf(vm.displayHeight()); }
+        });
+
+        // --- MEMORY (peek/poke, bulk and string variants) ---
+        new RamLuaBindings(globals, vm.ram).register();
+        new TypedArrayLuaBindings(globals, vm.ram).register();
+
         // --- SYSTEM / FS / INPUT ---
 
         LuaValue sys = LuaValue.tableOf();
         sys.set("exit", new ZeroArgFunction() { @Override public LuaValue call() { Gdx.app.exit(); return LuaValue.NONE; } });
         globals.set("sys", sys);
 
+        // bank(n [, window]) maps a memory bank; bank(nil [, window]) returns the active one
+        globals.set("bank", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                int window = args.optint(2, 0);
+                if (args.isnil(1)) return LuaValue.valueOf(vm.ram.getBank(window));
+                vm.ram.setBank(window, args.checkint(1));
+                return LuaValue.NONE;
+            }
+        });
+
+        // time() -> seconds since boot; invalidate()/wake(secs) drive idle rendering
+        globals.set("time", new ZeroArgFunction() { @Override public LuaValue call() { return LuaValue.valueOf(vm.time()); } });
+        globals.set("invalidate", new ZeroArgFunction() { @Override public LuaValue call() { vm.invalidate(); return LuaValue.NONE; } });
+        globals.set("render_scale", new ZeroArgFunction() { @Override public LuaValue call() { return LuaValue.valueOf(vm.getRenderScale()); } });
+        globals.set("wake", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue secs) { vm.scheduler.wakeAfter((float) secs.optdouble(0)); return LuaValue.NONE; }
+        });
+        // cartdata(id) -> true if saved data was restored; dget(i)/dset(i, v) on 128 int32 slots
+        globals.set("cartdata", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue id) {
+                try { return LuaValue.valueOf(vm.cartData.open(id.checkjstring())); }
+                catch (java.io.IOException e) { throw new LuaError("cartdata: " + e.getMessage()); }
+            }
+        });
+        globals.set("dget", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue i) { return LuaValue.valueOf(vm.cartData.dget(i.checkint())); }
+        });
+        globals.set("dset", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                vm.cartData.dset(args.checkint(1), (int) args.checklong(2));
+                return LuaValue.NONE;
+            }
+        });
+
+        // rewind_stats() -> frames, bytes used, avg capture us, max capture us (nil when rewind is off)
+        globals.set("rewind_stats", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                RewindBuffer r = vm.rewind;
+                if (r == null) return LuaValue.NIL;
+                return LuaValue.varargsOf(new LuaValue[] {
+                    LuaValue.valueOf(r.getFrameCount()), LuaValue.valueOf(r.getUsedBytes()),
+                    LuaValue.valueOf(r.avgMicros), LuaValue.valueOf((double) r.maxMicros)
+                });
+            }
+        });
+
         globals.set("btn", new OneArgFunction() { @Override public LuaValue call(LuaValue id) { return LuaValue.valueOf(vm.input.btn(id.checkint())); } });
         globals.set("btnp", new OneArgFunction() { @Override public LuaValue call(LuaValue id) { return LuaValue.valueOf(vm.input.btnp(id.checkint())); } });
         globals.set("key", new OneArgFunction() { @Override public LuaValue call(LuaValue n) { return LuaValue.valueOf(vm.input.isKeyHeld(n.checkjstring())); } });
@@ -228,7 +366,62 @@ public class ScriptEngine {
         fs.set("exists", new OneArgFunction() {
             @Override public LuaValue call(LuaValue path) { return LuaValue.valueOf(vm.fs.exists(path.checkjstring())); }
         });
+        // fs.mkdir(path) / fs.delete(path) -> ok (storage root only; delete removes whole trees)
+        fs.set("mkdir", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue path) { return LuaValue.valueOf(vm.fs.mkdir(path.checkjstring())); }
+        });
+        fs.set("delete", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue path) { return LuaValue.valueOf(vm.fs.delete(path.checkjstring())); }
+        });
+        // Binary IO: Lua strings are byte strings, so nothing is transcoded
+        // fs.read_bytes(path [, offset [, length]]) -> string or nil
+        fs.set("read_bytes", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                byte[] b = vm.fs.readBytes(args.checkjstring(1), args.optlong(2, 0), args.optint(3, -1));
+                return (b != null) ? LuaString.valueUsing(b) : LuaValue.NIL;
+            }
+        });
+        // fs.write_bytes(path, string | typed array) -> ok
+        fs.set("write_bytes", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                String path = args.checkjstring(1);
+                LuaValue data = args.arg(2);
+                if (data instanceof TypedArray) return LuaValue.valueOf(vm.fs.writeBytes(path, ((TypedArray) data).elementBytes()));
+                LuaString s = data.checkstring();
+                return LuaValue.valueOf(vm.fs.writeBytes(path, s.m_bytes, s.m_offset, s.m_length));
+            }
+        });
+        // fs.map(path [, type]) -> read-only typed array over the file (u8 by default), or nil
+        fs.set("map", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                TypedArray.Kind kind = TypedArray.Kind.parse(args.optjstring(2, "u8"));
+                java.nio.ByteBuffer b = vm.fs.map(args.checkjstring(1));
+                return (b != null) ? TypedArray.wrap(kind, b) : LuaValue.NIL;
+            }
+        });
+        // fs.size(path) -> bytes or nil
+        fs.set("size", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue path) {
+                long n = vm.fs.length(path.checkjstring());
+                return (n >= 0) ? LuaValue.valueOf(n) : LuaValue.NIL;
+            }
+        });
+        // fs.cache_stats() -> hits, misses, evictions, cached bytes
+        fs.set("cache_stats", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                ContentCache c = vm.fs.cache;
+                return LuaValue.varargsOf(new LuaValue[] {
+                    LuaValue.valueOf(c.getHits()), LuaValue.valueOf(c.getMisses()),
+                    LuaValue.valueOf(c.getEvictions()), LuaValue.valueOf(c.getBytes())
+                });
+            }
+        });
         globals.set("fs", fs);
+
+        // serialize/deserialize, fs.save/fs.load and json.*
+        new SerializeLuaBindings(globals, vm).register();
+
+        engineNames = VmSnapshot.names(globals);
     }
 
     public void executeFunction(String functionName) {
@@ -242,11 +435,59 @@ public class ScriptEngine {
 
     public void runScript(String script, String scriptName) {
         if (globals == null) return;
+        hotReload.enter(HotReload.Kind.MAIN, null);
         try {
-            String sugared = LuaSyntaxCandy.process(script);
-            globals.load(sugared, scriptName).call();
+            hotReload.found(scriptName, script);
+            runMain(loadChunk(script, scriptName), scriptName);
         } catch (LuaError e) { throw e; }
         catch (Exception e) { throw new LuaError(e); }
+        finally { hotReload.exit(); }
+    }
+
+    // Source -> chunk: compiled before from this exact source (ChunkCache), else bytecode
+    // baked from it (BakedAssets), else sugar and compile
+    private LuaValue loadChunk(String script, String scriptName) {
+        ChunkCache cache = ChunkCache.shared();
+        Prototype p = cache.get(scriptName, script);
+        try {
+            if (p == null) {
+                byte[] baked = BakedAssets.shared().chunk(scriptName, script);
+                p = (baked != null)
+                    ? globals.loadPrototype(new ByteArrayInputStream(baked), scriptName, "b")
+                    : globals.compilePrototype(new StringReader(LuaSyntaxCandy.process(script)), scriptName);
+                cache.put(scriptName, script, p);
+            }
+            return globals.loader.load(p, scriptName, globals);
+        } catch (java.io.IOException e) {
+            throw new LuaError("load " + scriptName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Run a precompiled luaj chunk (CartFile LUAC section); no sugaring or compiling.
+     */
+    public void runChunk(byte[] bytecode, String scriptName) {
+        if (globals == null) return;
+        try {
+            runMain(globals.load(new ByteArrayInputStream(bytecode), scriptName, "b", globals), scriptName);
+        } catch (LuaError e) { throw e; }
+        catch (Exception e) { throw new LuaError(e); }
+    }
+
+    /**
+     * Run an already loaded main chunk (VmSnapshot resume).
+     */
+    public void runPrototype(Prototype p, String scriptName) {
+        if (globals == null) return;
+        runMain(new LuaClosure(p, globals), scriptName);
+    }
+
+    private void runMain(LuaValue chunk, String scriptName) {
+        if (chunk instanceof LuaClosure) {
+            mainChunk = ((LuaClosure) chunk).p;
+            mainChunkName = scriptName;
+        }
+        chunk.call();
     }
 
     public void dispose() {
@@ -0,0 +1,103 @@
+package com.nerddaygames.engine;
+
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.OneArgFunction;
+import org.luaj.vm2.lib.VarArgFunction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * SerializeLuaBindings - save data without building strings in Lua:
+ *  - serialize(v) -> binary string        deserialize(s) -> v          (LuaSerializer)
+ *  - fs.save(path, v) -> ok               fs.load(path) -> v or nil, message
+ *  - json.encode(v [, pretty]) -> string  json.decode(s) -> v          (LuaJson)
+ *  - json.save(path, v [, pretty]) -> ok  json.load(path) -> v or nil, message
+ *
+ * save/load go through FileSystem (vm.fs, so they follow setProjectDir); saves are
+ * encoded in memory and written behind (WriteBehind), loads stream.
+ */
+public class SerializeLuaBindings {
+    private final org.luaj.vm2.Globals globals;
+    private final FantasyVM vm;
+
+    public SerializeLuaBindings(org.luaj.vm2.Globals globals, FantasyVM vm) {
+        this.globals = globals;
+        this.vm = vm;
+    }
+
+    private interface Writer { void write(OutputStream out) throws IOException; }
+    private interface Reader { LuaValue read(InputStream in) throws IOException; }
+
+    public void register() {
+        globals.set("serialize", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue v) { return LuaSerializer.encode(v); }
+        });
+        globals.set("deserialize", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue s) { return LuaSerializer.decode(s.checkstring()); }
+        });
+
+        LuaValue fs = globals.get("fs");
+        if (fs.isnil()) {
+            fs = new LuaTable();
+            globals.set("fs", fs);
+        }
+        fs.set("save", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                LuaValue v = args.arg(2);
+                return saveFile(args.checkjstring(1), out -> LuaSerializer.encode(v, out));
+            }
+        });
+        fs.set("load", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) { return loadFile(args.checkjstring(1), LuaSerializer::decode); }
+        });
+
+        LuaTable json = new LuaTable();
+        json.set("encode", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) { return LuaJson.encode(args.arg1(), args.optboolean(2, false)); }
+        });
+        json.set("decode", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue s) { return LuaJson.decode(s.checkstring()); }
+        });
+        json.set("save", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                LuaValue v = args.arg(2);
+                boolean pretty = args.optboolean(3, false);
+                return saveFile(args.checkjstring(1), out -> LuaJson.encode(v, pretty, out));
+            }
+        });
+        json.set("load", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) { return loadFile(args.checkjstring(1), LuaJson::decode); }
+        });
+        globals.set("json", json);
+    }
+
+    // Encoding errors (e.g. a function value) propagate as Lua errors and nothing is written.
+    // Encoded in memory here (Lua state is single threaded), written by WriteBehind.
+    private LuaValue saveFile(String path, Writer writer) {
+        if (vm.fs == null) return LuaValue.FALSE;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        try {
+            writer.write(out);
+        } catch (IOException e) {
+            System.err.println("save " + path + " failed: " + e.getMessage());
+            return LuaValue.FALSE;
+        }
+        return LuaValue.valueOf(vm.fs.writeBytes(path, out.toByteArray(), 0, out.size()));
+    }
+
+    private Varargs loadFile(String path, Reader reader) {
+        InputStream in = (vm.fs != null) ? vm.fs.openRead(path) : null;
+        if (in == null) return LuaValue.varargsOf(LuaValue.NIL, LuaValue.valueOf("file not found: " + path));
+        try (InputStream s = in) {
+            return reader.read(s);
+        } catch (IOException | LuaError e) {
+            return LuaValue.varargsOf(LuaValue.NIL, LuaValue.valueOf(path + ": " + e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.Gdx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * SourceWatcher - file changes under source trees, for hot reload (one per process, shared()).
+ *
+ * watch(root, prefix) returns a Feed: every file created, modified or deleted anywhere
+ * below root is queued on it as prefix + its path relative to root ('/' separators).
+ * Directories are registered with one WatchService as the tree is walked, and new ones as
+ * they appear; a tree watched by several feeds (every VM on a project) is registered once
+ * and unregistered when its last feed closes. One daemon thread serves every feed and
+ * wakes on-demand rendering, so the VM that owns a feed sees the change on its next frame.
+ * Hidden entries (WriteBehind temps, edit journals, .git) are skipped.
+ *
+ * Where the JDK has no native WatchService (it polls, e.g. on macOS) changes arrive
+ * seconds late; without any WatchService watch() returns null.
+ */
+public class SourceWatcher {
+    /** One consumer's changed paths; drained on the consumer's thread. */
+    public final class Feed {
+        private final Path root;
+        private final String prefix;
+        private final ConcurrentLinkedQueue<String> changed = new ConcurrentLinkedQueue<>();
+
+        Feed(Path root, String prefix) {
+            this.root = root;
+            this.prefix = prefix;
+        }
+
+        /** @return the next changed path, or null */
+        public String poll() { return changed.poll(); }
+
+        public void close() { release(this); }
+    }
+
+    private static SourceWatcher shared;
+
+    public static synchronized SourceWatcher shared() {
+        if (shared == null) shared = new SourceWatcher();
+        return shared;
+    }
+
+    private final WatchService watcher;
+    private final CopyOnWriteArrayList<Feed> feeds = new CopyOnWriteArrayList<>();
+    private final Map<WatchKey, Path> dirs = new HashMap<>();     // guarded by dirs
+    private final Map<Path, Integer> roots = new HashMap<>();     // feeds per root, guarded by dirs
+
+    // --- STATS ---
+    public volatile long events, delivered;
+
+    private SourceWatcher() {
+        WatchService ws = null;
+        try {
+            ws = java.nio.file.FileSystems.getDefault().newWatchService();
+        } catch (Exception e) {
+            System.err.println("No WatchService, hot reload is off: " + e.getMessage());
+        }
+        this.watcher = ws;
+        if (ws != null) {
+            Thread t = new Thread(this::watchLoop, "source-watch");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Follow every file below root.
+     * @param prefix put in front of the relative paths (e.g. "system/"), or ""
+     * @return null if root is not a directory or nothing can be watched
+     */
+    public Feed watch(File root, String prefix) {
+        if (watcher == null || root == null || !root.isDirectory()) return null;
+        Path p = root.toPath().toAbsolutePath().normalize();
+        synchronized (dirs) {
+            Integer n = roots.get(p);
+            if (n == null && !register(p)) return null;
+            roots.put(p, (n == null) ? 1 : n + 1);
+        }
+        Feed f = new Feed(p, prefix);
+        feeds.add(f);
+        return f;
+    }
+
+    private void release(Feed f) {
+        if (!feeds.remove(f)) return;
+        synchronized (dirs) {
+            int n = roots.get(f.root) - 1;
+            if (n > 0) {
+                roots.put(f.root, n);
+                return;
+            }
+            roots.remove(f.root);
+            // Cancel the tree's keys unless another watched root still covers them
+            for (Iterator<Map.Entry<WatchKey, Path>> it = dirs.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<WatchKey, Path> e = it.next();
+                if (!e.getValue().startsWith(f.root) || covered(e.getValue())) continue;
+                e.getKey().cancel();
+                it.remove();
+            }
+        }
+    }
+
+    private boolean covered(Path dir) {
+        for (Path r : roots.keySet()) if (dir.startsWith(r)) return true;
+        return false;
+    }
+
+    // Register dir and every directory below it (caller holds dirs)
+    private boolean register(Path dir) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                    if (!d.equals(dir) && d.getFileName().toString().startsWith(".")) return FileVisitResult.SKIP_SUBTREE;
+                    WatchKey key = d.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    dirs.put(key, d);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override public FileVisitResult visitFileFailed(Path f, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return true;
+        } catch (Exception e) {
+            System.err.println("Could not watch " + dir + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // --- WATCHING ---
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try { key = watcher.take(); }
+            catch (InterruptedException | ClosedWatchServiceException e) { return; }
+            Path dir;
+            synchronized (dirs) { dir = dirs.get(key); }
+            boolean any = false;
+            if (dir != null) {
+                for (WatchEvent<?> ev : key.pollEvents()) {
+                    events++;
+                    if (ev.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                    String name = ((Path) ev.context()).toString();
+                    if (name.startsWith(".")) continue;
+                    Path p = dir.resolve(name);
+                    if (ev.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(p)) {
+                        synchronized (dirs) { if (covered(p)) register(p); }
+                        continue;
+                    }
+                    for (Feed f : feeds) {
+                        if (!p.startsWith(f.root)) continue;
+                        f.changed.add(f.prefix + f.root.relativize(p).toString().replace(File.separatorChar, '/'));
+                        delivered++;
+                        any = true;
+                    }
+                }
+            }
+            if (!key.reset()) {
+                synchronized (dirs) { dirs.remove(key); } // directory deleted
+            }
+            if (any && Gdx.graphics != null) Gdx.graphics.requestRendering();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.nerddaygames.engine;
+
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaUserdata;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * TypedArray - fixed-length primitive array as Lua userdata (i8, u8, i16, i32, f32, f64).
+ *
+ * Elements live unboxed in a little-endian ByteBuffer: a heap buffer for owned
+ * arrays, or a slice of Ram storage for views (typed.view). Indexing is 1-based
+ * like tables and is handled by overriding get/set, so a[i] never goes through
+ * a metatable lookup. Bulk methods run the whole loop in Java:
+ *  - a:fill(v [, i [, j]])
+ *  - a:copy(src [, dst_i [, src_i [, n]]])   src is a TypedArray or a table
+ *  - a:map_add(b [, scale])                   a[i] += b[i] * scale, or a[i] += b for a number
+ *
+ * Views see the bank mapped when they were created; their writes mark Ram pages dirty.
+ */
+public class TypedArray extends LuaUserdata {
+    public enum Kind {
+        I8(1), U8(1), I16(2), I32(4), F32(4), F64(8);
+
+        public final int width;
+        Kind(int width) { this.width = width; }
+
+        public static Kind parse(String name) {
+            try { return valueOf(name.toUpperCase()); }
+            catch (IllegalArgumentException e) { throw new LuaError("unknown array type '" + name + "'"); }
+        }
+    }
+
+    private static final LuaTable METHODS = new LuaTable();
+
+    public final Kind kind;
+    public final int length;
+    private final ByteBuffer buf;
+    private final Ram ram;       // non-null for views
+    private final int physBase;  // physical Ram address of element 0 (views)
+
+    public TypedArray(Kind kind, int length) {
+        this(kind, length, ByteBuffer.allocate(length * kind.width).order(ByteOrder.LITTLE_ENDIAN), null, 0);
+    }
+
+    private TypedArray(Kind kind, int length, ByteBuffer buf, Ram ram, int physBase) {
+        super(buf);
+        this.kind = kind;
+        this.length = length;
+        this.buf = buf;
+        this.ram = ram;
+        this.physBase = physBase;
+    }
+
+    /**
+     * Zero-copy view of `length` elements at Ram address addr.
+     * @return null if the range is out of bounds or crosses a bank window edge
+     */
+    public static TypedArray view(Ram ram, Kind kind, int addr, int length) {
+        ByteBuffer region = ram.region(addr, length * kind.width);
+        if (region == null) return null;
+        return new TypedArray(kind, length, region, ram, ram.physical(addr));
+    }
+
+    /**
+     * Array over existing bytes (no copy), e.g. a memory-mapped file from FileSystem.map.
+     * Trailing bytes that do not fill an element are ignored; a read-only buffer gives
+     * an array whose writes raise an error.
+     */
+    public static TypedArray wrap(Kind kind, ByteBuffer bytes) {
+        ByteBuffer b = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+        return new TypedArray(kind, b.remaining() / kind.width, b, null, 0);
+    }
+
+    /** Independent position/limit over the element bytes (little endian), for bulk IO. */
+    ByteBuffer elementBytes() {
+        return buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // --- ELEMENT ACCESS (0-based) ---
+
+    public double getDouble(int i) {
+        switch (kind) {
+            case I8:  return buf.get(i);
+            case U8:  return buf.get(i) & 0xFF;
+            case I16: return buf.getShort(i << 1);
+            case I32: return buf.getInt(i << 2);
+            case F32: return buf.getFloat(i << 2);
+            default:  return buf.getDouble(i << 3);
+        }
+    }
+
+    public void setDouble(int i, double v) {
+        switch (kind) {
+            case I8: case U8: buf.put(i, (byte) (long) v); break;
+            case I16: buf.putShort(i << 1, (short) (long) v); break;
+            case I32: buf.putInt(i << 2, (int) (long) v); break;
+            case F32: buf.putFloat(i << 2, (float) v); break;
+            default:  buf.putDouble(i << 3, v); break;
+        }
+    }
+
+    private LuaValue element(int i) {
+        switch (kind) {
+            case I8:  return LuaValue.valueOf(buf.get(i));
+            case U8:  return LuaValue.valueOf(buf.get(i) & 0xFF);
+            case I16: return LuaValue.valueOf(buf.getShort(i << 1));
+            case I32: return LuaValue.valueOf(buf.getInt(i << 2));
+            case F32: return LuaValue.valueOf(buf.getFloat(i << 2));
+            default:  return LuaValue.valueOf(buf.getDouble(i << 3));
+        }
+    }
+
+    private void dirty(int from, int count) {
+        if (ram != null) ram.markDirty(physBase + from * kind.width, count * kind.width);
+    }
+
+    // --- LUA PROTOCOL ---
+
+    @Override public LuaValue get(LuaValue key) {
+        if (key.isnumber()) {
+            int i = key.toint() - 1;
+            return (i >= 0 && i < length) ? element(i) : NIL;
+        }
+        return METHODS.get(key);
+    }
+
+    @Override public LuaValue get(int key) {
+        int i = key - 1;
+        return (i >= 0 && i < length) ? element(i) : NIL;
+    }
+
+    @Override public void set(LuaValue key, LuaValue value) {
+        if (!key.isnumber()) throw new LuaError("typed array index must be a number");
+        set(key.toint(), value);
+    }
+
+    @Override public void set(int key, LuaValue value) {
+        int i = key - 1;
+        if (i < 0 || i >= length) throw new LuaError("index " + key + " out of range (1.." + length + ")");
+        setDouble(i, value.checkdouble());
+        dirty(i, 1);
+    }
+
+    @Override public LuaValue len() { return LuaValue.valueOf(length); }
+    @Override public int length() { return length; }
+    @Override public String tojstring() { return kind.name().toLowerCase() + "[" + length + "]"; }
+
+    // --- BULK OPS ---
+
+    public void fill(double v, int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(length, to);
+        for (int i = from; i < to; i++) setDouble(i, v);
+        dirty(from, to - from);
+    }
+
+    public void copyFrom(TypedArray src, int dstStart, int srcStart, int count) {
+        count = Math.min(count, Math.min(length - dstStart, src.length - srcStart));
+        if (count <= 0 || dstStart < 0 || srcStart < 0) return;
+        if (src.kind == kind) {
+            // Same layout: one bulk byte copy (overlap safe for views of the same memory)
+            int w = kind.width;
+            boolean shared = src == this || (ram != null && src.ram == ram);
+            Buffers.copy(src.buf, srcStart * w, buf, dstStart * w, count * w, shared);
+        } else if (src == this && dstStart > srcStart) {
+            for (int i = count - 1; i >= 0; i--) setDouble(dstStart + i, src.getDouble(srcStart + i));
+        } else {
+            for (int i = 0; i < count; i++) setDouble(dstStart + i, src.getDouble(srcStart + i));
+        }
+        dirty(dstStart, count);
+    }
+
+    public void mapAdd(TypedArray b, double scale) {
+        int n = Math.min(length, b.length);
+        if (kind == Kind.F32 && b.kind == Kind.F32) {
+            float s = (float) scale;
+            for (int i = 0; i < n; i++) {
+                int o = i << 2;
+                buf.putFloat(o, buf.getFloat(o) + b.buf.getFloat(o) * s);
+            }
+        } else if (kind == Kind.F64 && b.kind == Kind.F64) {
+            for (int i = 0; i < n; i++) {
+                int o = i << 3;
+                buf.putDouble(o, buf.getDouble(o) + b.buf.getDouble(o) * scale);
+            }
+        } else {
+            for (int i = 0; i < n; i++) setDouble(i, getDouble(i) + b.getDouble(i) * scale);
+        }
+        dirty(0, n);
+    }
+
+    public void mapAdd(double v) {
+        for (int i = 0; i < length; i++) setDouble(i, getDouble(i) + v);
+        dirty(0, length);
+    }
+
+    private static TypedArray self(Varargs args) {
+        LuaValue v = args.arg1();
+        if (v instanceof TypedArray) return (TypedArray) v;
+        throw new LuaError("typed array expected, got " + v.typename());
+    }
+
+    static {
+        METHODS.set("fill", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                TypedArray a = self(args);
+                a.fill(args.checkdouble(2), args.optint(3, 1) - 1, args.optint(4, a.length));
+                return a;
+            }
+        });
+        METHODS.set("copy", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                TypedArray a = self(args);
+                LuaValue src = args.arg(2);
+                int dst = args.optint(3, 1) - 1, from = args.optint(4, 1) - 1;
+                if (src instanceof TypedArray) {
+                    TypedArray s = (TypedArray) src;
+                    a.copyFrom(s, dst, from, args.optint(5, s.length - from));
+                } else {
+                    LuaTable t = src.checktable();
+                    int n = Math.min(args.optint(5, t.length() - from), a.length - dst);
+                    for (int i = 0; i < n; i++) a.setDouble(dst + i, t.get(from + i + 1).checkdouble());
+                    a.dirty(dst, Math.max(0, n));
+                }
+                return a;
+            }
+        });
+        METHODS.set("map_add", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                TypedArray a = self(args);
+                LuaValue b = args.arg(2);
+                if (b instanceof TypedArray) a.mapAdd((TypedArray) b, args.optdouble(3, 1.0));
+                else a.mapAdd(b.checkdouble());
+                return a;
+            }
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package com.nerddaygames.engine;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+
+/**
+ * TypedArrayLuaBindings - the `typed` table:
+ *  - typed.i8(n | table) ... typed.f64(n | table)   new zeroed (or filled) array
+ *  - typed.view(type, addr, n)                       array over Ram (no copy)
+ */
+public class TypedArrayLuaBindings {
+    // Upper bound for one owned array (elements), keeps a typo from allocating gigabytes
+    public static final int MAX_LENGTH = 16 * 1024 * 1024;
+
+    private final Globals globals;
+    private final Ram ram;
+
+    public TypedArrayLuaBindings(Globals globals, Ram ram) {
+        this.globals = globals;
+        this.ram = ram;
+    }
+
+    public void register() {
+        LuaTable typed = new LuaTable();
+        for (TypedArray.Kind kind : TypedArray.Kind.values()) {
+            typed.set(kind.name().toLowerCase(), new VarArgFunction() {
+                @Override public Varargs invoke(Varargs args) {
+                    LuaValue a = args.arg1();
+                    if (a.istable()) {
+                        LuaTable t = (LuaTable) a;
+                        TypedArray arr = new TypedArray(kind, checkLength(t.length()));
+                        for (int i = 0; i < arr.length; i++) arr.setDouble(i, t.get(i + 1).checkdouble());
+                        return arr;
+                    }
+                    return new TypedArray(kind, checkLength(a.checkint()));
+                }
+            });
+        }
+        typed.set("view", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                TypedArray.Kind kind = TypedArray.Kind.parse(args.checkjstring(1));
+                TypedArray v = TypedArray.view(ram, kind, args.checkint(2), args.checkint(3));
+                if (v == null) throw new LuaError("view out of range or across a bank window");
+                return v;
+            }
+        });
+        globals.set("typed", typed);
+    }
+
+    private static int checkLength(int n) {
+        if (n < 0 || n > MAX_LENGTH) throw new LuaError("bad typed array length " + n);
+        return n;
+    }
+}
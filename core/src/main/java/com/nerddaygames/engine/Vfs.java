@@ -0,0 +1,368 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Vfs - ordered table of read-only mounts behind FileSystem's writable storage root.
+ *
+ * A path resolves to the first mount (highest priority first) whose mount point is a
+ * prefix of it and that has the file, so a mount shadows everything below it. The
+ * standard table (shared()) is, top to bottom:
+ *  - the system pack (fantasyos.systempack, default system.zip) at "system/", if present
+ *  - internal assets at ""
+ * FileSystem puts the user disk or the project folder above all of these; a FileSystem
+ * can add its own mounts (a running cart at "cart/") on a copy of the table.
+ *
+ * Mounts:
+ *  - DirMount: a directory tree (internal assets); lookups, hits and misses, are
+ *    cached for good since packaged assets do not change while running
+ *  - ArchiveMount: a .zip or .cart opened once; its directory is indexed into a hash
+ *    map, and entries are streamed out of the archive (no extraction to disk). Files
+ *    come back as FileHandles, so Pixmap, FreeType and Lua loading work unchanged.
+ */
+public class Vfs {
+    public interface Mount extends Closeable {
+        /** @return handle for path (relative to the mount point, no leading '/'), or null */
+        FileHandle find(String path);
+
+        /** Adds the entries of dir (names, "/" suffix for directories); nothing if absent. */
+        void list(String dir, Collection<String> out);
+
+        /** Forget cached lookups (the underlying files changed). */
+        default void invalidate() {}
+
+        @Override default void close() throws IOException {}
+    }
+
+    private static final class Entry {
+        final String prefix;
+        final Mount mount;
+
+        Entry(String prefix, Mount mount) {
+            this.prefix = prefix;
+            this.mount = mount;
+        }
+    }
+
+    private static Vfs shared;
+
+    public static synchronized Vfs shared() {
+        if (shared == null) shared = standard();
+        return shared;
+    }
+
+    private static Vfs standard() {
+        Vfs vfs = new Vfs();
+        vfs.mount("", DirMount.internal(), false);
+        File pack = new File(System.getProperty("fantasyos.systempack", "system.zip"));
+        if (pack.isFile()) {
+            try {
+                vfs.mount("system/", ArchiveMount.open(pack), true);
+                System.out.println("Mounted system pack " + pack);
+            } catch (IOException e) {
+                System.err.println("System pack " + pack + " not mounted: " + e.getMessage());
+            }
+        }
+        return vfs;
+    }
+
+    private final CopyOnWriteArrayList<Entry> mounts = new CopyOnWriteArrayList<>();
+
+    public Vfs() {}
+
+    /** A table starting with base's mounts; mounting on it leaves base alone (per-VM mounts). */
+    public Vfs(Vfs base) {
+        mounts.addAll(base.mounts);
+    }
+
+    /**
+     * @param prefix mount point ("" for the root, otherwise ending in '/')
+     * @param top    above all existing mounts (else below them)
+     */
+    public void mount(String prefix, Mount mount, boolean top) {
+        if (!prefix.isEmpty() && !prefix.endsWith("/")) prefix += "/";
+        Entry e = new Entry(prefix, mount);
+        if (top) mounts.add(0, e);
+        else mounts.add(e);
+    }
+
+    public boolean unmount(Mount mount) {
+        for (Entry e : mounts) {
+            if (e.mount == mount) {
+                mounts.remove(e);
+                try { mount.close(); } catch (IOException ignored) {}
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return the first mount's handle for path, or null if no mount has it */
+    public FileHandle resolve(String path) {
+        path = strip(path);
+        for (Entry e : mounts) {
+            FileHandle h;
+            if (path.startsWith(e.prefix)) h = e.mount.find(path.substring(e.prefix.length()));
+            else if (e.prefix.length() == path.length() + 1 && e.prefix.startsWith(path)) h = e.mount.find(""); // the mount point
+            else continue;
+            if (h != null) return h;
+        }
+        return null;
+    }
+
+    /** Union of dir over all mounts (a name shadowed by a higher mount appears once). */
+    public List<String> list(String dir) {
+        dir = strip(dir);
+        if (!dir.isEmpty() && !dir.endsWith("/")) dir += "/";
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        for (Entry e : mounts) {
+            if (dir.startsWith(e.prefix)) {
+                e.mount.list(dir.substring(e.prefix.length()), names);
+            } else if (e.prefix.startsWith(dir)) {
+                // The mount point itself is a directory entry here
+                String rest = e.prefix.substring(dir.length());
+                names.add(rest.substring(0, rest.indexOf('/') + 1));
+            }
+        }
+        // "x" and "x/" from different mounts: the directory wins
+        List<String> out = new ArrayList<>();
+        for (String n : names) if (n.endsWith("/") || !names.contains(n + "/")) out.add(n);
+        return out;
+    }
+
+    public void invalidate() {
+        for (Entry e : mounts) e.mount.invalidate();
+    }
+
+    private static String strip(String path) {
+        if (path == null) return "";
+        int start = 0;
+        while (start < path.length() && path.charAt(start) == '/') start++;
+        return (start == 0) ? path : path.substring(start);
+    }
+
+    // --- DIRECTORY MOUNT ---
+
+    public static class DirMount implements Mount {
+        private static final FileHandle MISS = new FileHandle("");
+
+        private final FileHandle root; // null = Gdx.files.internal (resolved lazily, Gdx may not be up yet)
+        private final ConcurrentHashMap<String, FileHandle> lookups = new ConcurrentHashMap<>();
+
+        public DirMount(FileHandle root) {
+            this.root = root;
+        }
+
+        public static DirMount internal() {
+            return new DirMount(null);
+        }
+
+        private FileHandle child(String path) {
+            return (root != null) ? root.child(path) : Gdx.files.internal(path);
+        }
+
+        @Override public FileHandle find(String path) {
+            FileHandle h = lookups.get(path);
+            if (h == null) {
+                FileHandle c = child(path);
+                h = c.exists() ? c : MISS;
+                lookups.put(path, h);
+            }
+            return (h != MISS) ? h : null;
+        }
+
+        @Override public void list(String dir, Collection<String> out) {
+            FileHandle d = dir.isEmpty() ? ((root != null) ? root : Gdx.files.internal("")) : find(dir.substring(0, dir.length() - 1));
+            if (d == null || !d.isDirectory()) return;
+            for (FileHandle c : d.list()) out.add(c.name() + (c.isDirectory() ? "/" : ""));
+        }
+
+        @Override public void invalidate() {
+            lookups.clear();
+        }
+    }
+
+    // --- ARCHIVE MOUNT ---
+
+    /**
+     * A .zip (entries by name) or .cart (sections as files: main.lua, main.luac,
+     * project.json, sprites.idx, map.bin, flags.bin, sfx.bin, music.bin, and the
+     * packed modules at their project paths).
+     */
+    public static class ArchiveMount implements Mount {
+        private static final class Node {
+            final String path;      // "" for the root, no trailing '/'
+            final boolean dir;
+            final long length;
+            final ZipEntry zipEntry; // zip files
+            final int section;       // cart files
+            final List<String> children = new ArrayList<>();
+
+            Node(String path, boolean dir, long length, ZipEntry zipEntry, int section) {
+                this.path = path;
+                this.dir = dir;
+                this.length = length;
+                this.zipEntry = zipEntry;
+                this.section = section;
+            }
+        }
+
+        private static final String[][] CART_NAMES = {
+            { "CODE", "main.lua" }, { "LUAC", "main.luac" }, { "META", "project.json" }, { "SPRT", "sprites.idx" },
+            { "MAP ", "map.bin" }, { "FLAG", "flags.bin" }, { "SFX ", "sfx.bin" }, { "MUSC", "music.bin" }
+        };
+
+        private final File file;
+        private final ZipFile zip;
+        private final CartFile cart;
+        private final Map<String, Node> index = new HashMap<>();
+
+        private ArchiveMount(File file, ZipFile zip, CartFile cart) {
+            this.file = file;
+            this.zip = zip;
+            this.cart = cart;
+            index.put("", new Node("", true, 0, null, 0));
+        }
+
+        public static ArchiveMount open(File file) throws IOException {
+            if (file.getName().endsWith("." + CartFile.EXTENSION)) return cart(file, CartFile.open(file));
+            ZipFile zip = new ZipFile(file);
+            ArchiveMount m = new ArchiveMount(file, zip, null);
+            // One pass over the central directory
+            for (Enumeration<? extends ZipEntry> en = zip.entries(); en.hasMoreElements(); ) {
+                ZipEntry e = en.nextElement();
+                String name = e.getName().replace('\\', '/');
+                if (name.startsWith("/") || name.contains("..")) continue;
+                if (e.isDirectory()) m.dir(name.substring(0, name.length() - 1));
+                else m.add(name, false, e.getSize(), e, 0);
+            }
+            return m;
+        }
+
+        /** The sections of an already opened cart as files (no second open). */
+        public static ArchiveMount cart(File file, CartFile cart) {
+            ArchiveMount m = new ArchiveMount(file, null, cart);
+            for (String[] n : CART_NAMES) {
+                int id = CartFile.tag(n[0]);
+                if (cart.has(id)) m.add(n[1], false, cart.rawLength(id), null, id);
+            }
+            for (Map.Entry<String, Integer> e : cart.modules().entrySet()) {
+                String path = e.getKey();
+                if (path.startsWith("/") || path.contains("..") || !cart.has(e.getValue())) continue;
+                m.add(path, false, cart.rawLength(e.getValue()), null, e.getValue());
+            }
+            return m;
+        }
+
+        private Node dir(String path) {
+            if (path.isEmpty()) return index.get("");
+            Node n = index.get(path);
+            if (n != null) return n;
+            n = new Node(path, true, 0, null, 0);
+            link(path, true);
+            index.put(path, n);
+            return n;
+        }
+
+        private void add(String path, boolean isDir, long length, ZipEntry e, int section) {
+            if (index.containsKey(path)) return;
+            index.put(path, new Node(path, isDir, length, e, section));
+            link(path, isDir);
+        }
+
+        // Register path with its parent directory (creating missing parents)
+        private void link(String path, boolean isDir) {
+            int slash = path.lastIndexOf('/');
+            Node parent = dir(slash < 0 ? "" : path.substring(0, slash));
+            parent.children.add(path.substring(slash + 1) + (isDir ? "/" : ""));
+        }
+
+        public File getFile() { return file; }
+        public int size() { return index.size() - 1; }
+
+        @Override public FileHandle find(String path) {
+            if (path.endsWith("/")) path = path.substring(0, path.length() - 1);
+            Node n = index.get(path);
+            return (n != null) ? new ArchiveHandle(this, n) : null;
+        }
+
+        @Override public void list(String dir, Collection<String> out) {
+            Node n = index.get(dir.endsWith("/") ? dir.substring(0, dir.length() - 1) : dir);
+            if (n != null && n.dir) out.addAll(n.children);
+        }
+
+        InputStream open(Node n) throws IOException {
+            if (n.dir) throw new IOException("Is a directory: " + n.path);
+            if (zip != null) return zip.getInputStream(n.zipEntry);
+            return new ByteArrayInputStream(cart.readBytes(n.section));
+        }
+
+        @Override public void close() throws IOException {
+            if (zip != null) zip.close();
+        }
+    }
+
+    /**
+     * FileHandle over an archive entry; type Internal (read-only), path "archive!/entry".
+     */
+    public static class ArchiveHandle extends FileHandle {
+        private final ArchiveMount mount;
+        private final ArchiveMount.Node node;
+
+        ArchiveHandle(ArchiveMount mount, ArchiveMount.Node node) {
+            super(new File(mount.file.getPath() + "!/" + node.path), Files.FileType.Internal);
+            this.mount = mount;
+            this.node = node;
+        }
+
+        @Override public InputStream read() {
+            try { return mount.open(node); }
+            catch (IOException e) { throw new GdxRuntimeException("Error reading " + file, e); }
+        }
+
+        @Override public boolean exists() { return true; }
+        @Override public boolean isDirectory() { return node.dir; }
+        @Override public long length() { return node.dir ? 0 : node.length; }
+        @Override public long lastModified() { return mount.file.lastModified(); }
+
+        @Override public FileHandle[] list() {
+            if (!node.dir) return new FileHandle[0];
+            FileHandle[] out = new FileHandle[node.children.size()];
+            for (int i = 0; i < out.length; i++) out[i] = child(node.children.get(i));
+            return out;
+        }
+
+        @Override public FileHandle child(String name) {
+            if (name.endsWith("/")) name = name.substring(0, name.length() - 1);
+            String path = node.path.isEmpty() ? name : node.path + "/" + name;
+            FileHandle h = mount.find(path);
+            return (h != null) ? h : new FileHandle(new File(file, name)); // missing: exists() is false
+        }
+
+        @Override public FileHandle parent() {
+            int slash = node.path.lastIndexOf('/');
+            FileHandle h = mount.find(slash < 0 ? "" : node.path.substring(0, slash));
+            return (h != null) ? h : super.parent();
+        }
+    }
+}
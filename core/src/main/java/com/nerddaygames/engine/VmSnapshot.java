@@ -0,0 +1,384 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import org.luaj.vm2.LoadState;
+import org.luaj.vm2.LuaClosure;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.compiler.DumpState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * VmSnapshot - the cart's state right after _init, for instant restart and suspend/resume.
+ *
+ * Holds all Ram storage (every bank) with the mapped banks, the sprite sheet pixels and
+ * the cart's Lua globals encoded with LuaSerializer. Values the serializer cannot copy
+ * are bound instead:
+ *  - engine tables and Java functions (math, print, spr, ...) by their path from _G,
+ *    recorded when the ScriptEngine was built (ScriptEngine.engineNames)
+ *  - closures of the main chunk are rebuilt from their prototype with their upvalues
+ *  - other functions/userdata by their path in the globals at capture time; on restore
+ *    the path is looked up again and the value is nil if it is gone (counted in unbound)
+ *
+ * restore() leaves CART_DATA alone so a restart never rolls back cartdata(). write/read
+ * keep the main chunk as bytecode, so resuming a suspended cart skips the compiler too.
+ */
+public class VmSnapshot {
+    private static final byte[] MAGIC = { 'F', 'S', 'N', 'P' };
+    private static final int VERSION = 1;
+
+    public final long sourceHash;   // FantasyVM.sourceHash at capture; disk snapshots only resume the same code
+    public final String chunkName;
+    public final int unbound;       // values dropped at capture (no name, not copyable)
+    final Prototype main;
+    private final byte[] memory;
+    private final int[] banks;
+    private final int sheetWidth, sheetHeight, sheetFormat;
+    private final byte[] sheetPixels; // null if the VM had no sprite sheet
+    private final LuaString globals;
+
+    private VmSnapshot(long sourceHash, String chunkName, int unbound, Prototype main, byte[] memory, int[] banks,
+                       int sheetWidth, int sheetHeight, int sheetFormat, byte[] sheetPixels, LuaString globals) {
+        this.sourceHash = sourceHash;
+        this.chunkName = chunkName;
+        this.unbound = unbound;
+        this.main = main;
+        this.memory = memory;
+        this.banks = banks;
+        this.sheetWidth = sheetWidth;
+        this.sheetHeight = sheetHeight;
+        this.sheetFormat = sheetFormat;
+        this.sheetPixels = sheetPixels;
+        this.globals = globals;
+    }
+
+    public static long hash(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Hash of a project's code: every .lua file in the project folder (path and text as
+     * fs reads them, in path order), so a suspended session is dropped when a required
+     * module changed too.
+     */
+    public static long hashSources(FileSystem fs) {
+        List<String> paths = new ArrayList<>();
+        collectSources(fs.rootDir(), "", paths);
+        Collections.sort(paths);
+        CRC32 crc = new CRC32();
+        for (String path : paths) {
+            String text = fs.read(path);
+            if (text == null) continue;
+            byte[] b = path.getBytes(StandardCharsets.UTF_8);
+            crc.update(b, 0, b.length);
+            crc.update(0);
+            b = text.getBytes(StandardCharsets.UTF_8);
+            crc.update(b, 0, b.length);
+            crc.update(0);
+        }
+        return crc.getValue();
+    }
+
+    private static void collectSources(File dir, String prefix, List<String> out) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            if (f.getName().startsWith(".")) continue;
+            if (f.isDirectory()) collectSources(f, prefix + f.getName() + "/", out);
+            else if (f.getName().endsWith(".lua")) out.add(prefix + f.getName());
+        }
+    }
+
+    // --- CAPTURE ---
+
+    public static VmSnapshot capture(FantasyVM vm) {
+        ScriptEngine engine = vm.scriptEngine;
+        return capture(vm.sourceHash, engine.mainChunkName, engine.mainChunk, engine.globals, engine.engineNames,
+            vm.ram, vm.getSpriteSheetPixmap());
+    }
+
+    // The VM's parts passed one by one (sheet may be null), so the Lua state and Ram can be captured without GL
+    static VmSnapshot capture(long sourceHash, String chunkName, Prototype mainChunk, LuaTable g,
+                              Map<LuaValue, String> engineNames, Ram ram, Pixmap sheet) {
+        byte[] memory = new byte[ram.getPhysicalPageCount() << Ram.PAGE_SHIFT];
+        ram.readPhysical(0, memory, 0, memory.length);
+        List<Ram.Window> ws = ram.getWindows();
+        int[] banks = new int[ws.size()];
+        for (int i = 0; i < banks.length; i++) banks[i] = ws.get(i).getActiveBank();
+
+        byte[] pixels = null;
+        if (sheet != null) {
+            ByteBuffer src = sheet.getPixels().duplicate();
+            src.clear();
+            pixels = new byte[src.remaining()];
+            src.get(pixels);
+        }
+
+        Bindings bindings = new Bindings(g, engineNames, mainChunk);
+        LuaString state = saveGlobals(bindings);
+
+        return new VmSnapshot(sourceHash, chunkName, bindings.unbound, mainChunk, memory, banks,
+            sheet != null ? sheet.getWidth() : 0, sheet != null ? sheet.getHeight() : 0,
+            sheet != null ? sheet.getFormat().ordinal() : 0, pixels, state);
+    }
+
+    // --- RESTORE ---
+
+    /**
+     * Put the VM back into this state: Ram (minus CART_DATA), banks, sprite sheet and globals.
+     * Globals the cart created after the capture are removed; engine globals are kept.
+     */
+    public void restore(FantasyVM vm) {
+        restoreRam(vm.ram);
+        if (sheetPixels != null) vm.restoreSpriteSheet(sheetWidth, sheetHeight, Pixmap.Format.values()[sheetFormat], sheetPixels);
+        ScriptEngine engine = vm.scriptEngine;
+        restoreGlobals(engine.globals, engine.engineNames);
+        engine.mainChunk = main;
+        engine.mainChunkName = chunkName;
+    }
+
+    void restoreRam(Ram ram) {
+        if (memory.length == ram.getPhysicalPageCount() << Ram.PAGE_SHIFT) {
+            byte[] cartData = new byte[Ram.CART_DATA_SIZE];
+            ram.read(Ram.CART_DATA_BASE, cartData, 0, cartData.length);
+            List<Ram.Window> ws = ram.getWindows();
+            for (int w = 0; w < ws.size() && w < banks.length; w++) ram.setBank(w, banks[w]);
+            ram.writePhysical(0, memory, 0, memory.length);
+            ram.markDirty(0, memory.length);
+            ram.write(Ram.CART_DATA_BASE, cartData, 0, cartData.length);
+        } else {
+            System.err.println("Snapshot: Ram layout changed, memory not restored");
+        }
+    }
+
+    void restoreGlobals(LuaTable g, Map<LuaValue, String> engineNames) {
+        Bindings bindings = new Bindings(g, engineNames, main);
+        loadGlobals(bindings, globals);
+        if (bindings.unbound > 0) System.err.println("Snapshot: " + bindings.unbound + " bound values no longer exist (now nil)");
+    }
+
+    // --- LUA STATE ---
+
+    /**
+     * Cart globals (everything except engine globals the cart left untouched), encoded.
+     */
+    public static LuaString saveGlobals(Bindings b) {
+        LuaTable cart = new LuaTable();
+        LuaValue k = LuaValue.NIL;
+        while (true) {
+            Varargs kv = b.globals.next(k);
+            if ((k = kv.arg1()).isnil()) break;
+            LuaValue v = kv.arg(2);
+            if (k.isstring() && k.tojstring().equals(b.engineNames.get(v))) continue;
+            cart.rawset(k, v);
+        }
+        return LuaSerializer.encode(cart, b);
+    }
+
+    /**
+     * Replace the cart globals with a saved set; globals created since are removed.
+     */
+    public static void loadGlobals(Bindings b, LuaString state) {
+        LuaTable g = b.globals;
+        LuaTable cart = (LuaTable) LuaSerializer.decode(state, b);
+        List<LuaValue> stale = new ArrayList<>();
+        LuaValue k = LuaValue.NIL;
+        while (true) {
+            Varargs kv = g.next(k);
+            if ((k = kv.arg1()).isnil()) break;
+            if (cart.rawget(k).isnil() && !b.engineNames.containsKey(kv.arg(2))) stale.add(k);
+        }
+        for (LuaValue key : stale) g.rawset(key, LuaValue.NIL);
+        k = LuaValue.NIL;
+        while (true) {
+            Varargs kv = cart.next(k);
+            if ((k = kv.arg1()).isnil()) break;
+            g.rawset(k, kv.arg(2));
+        }
+    }
+
+    // --- DISK ---
+
+    /**
+     * Write to file via a temp file and an atomic rename (a crash leaves the old snapshot).
+     */
+    public void write(File file) throws IOException {
+        if (main == null) throw new IOException("no main chunk to save");
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(memory.length + (sheetPixels != null ? sheetPixels.length : 0) + globals.m_length + 4096);
+        DataOutputStream d = new DataOutputStream(raw);
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        DumpState.dump(main, chunk, false);
+        d.writeInt(chunk.size());
+        chunk.writeTo(d);
+        d.writeInt(banks.length);
+        for (int b : banks) d.writeInt(b);
+        d.writeInt(memory.length);
+        d.write(memory);
+        d.writeInt(sheetWidth);
+        d.writeInt(sheetHeight);
+        d.writeInt(sheetFormat);
+        d.writeInt(sheetPixels != null ? sheetPixels.length : -1);
+        if (sheetPixels != null) d.write(sheetPixels);
+        d.writeInt(globals.m_length);
+        d.write(globals.m_bytes, globals.m_offset, globals.m_length);
+        d.flush();
+
+        byte[] body = raw.toByteArray();
+        byte[] packed = new byte[Lz4.maxCompressedLength(body.length)];
+        int packedLen = Lz4.compress(body, 0, body.length, packed, 0);
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new java.io.BufferedOutputStream(new java.io.FileOutputStream(tmp)))) {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceHash);
+            out.writeUTF(chunkName);
+            out.writeInt(unbound);
+            out.writeInt(body.length);
+            out.writeInt(packedLen);
+            out.write(packed, 0, packedLen);
+        }
+        FileIo.replace(tmp, file);
+    }
+
+    public static VmSnapshot read(File file) throws IOException {
+        byte[] bytes = FileIo.readAll(file);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        for (byte m : MAGIC) if (in.readByte() != m) throw new IOException("not a snapshot");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("unsupported snapshot version " + version);
+        long sourceHash = in.readLong();
+        String chunkName = in.readUTF();
+        int unbound = in.readInt();
+        int bodyLen = in.readInt();
+        int packedLen = in.readInt();
+        int off = bytes.length - in.available();
+        if (packedLen != in.available()) throw new IOException("truncated snapshot");
+        ByteBuffer body = ByteBuffer.allocate(bodyLen);
+        Lz4.decompress(ByteBuffer.wrap(bytes), off, packedLen, body, 0, bodyLen);
+
+        DataInputStream d = new DataInputStream(new ByteArrayInputStream(body.array()));
+        byte[] chunk = new byte[d.readInt()];
+        d.readFully(chunk);
+        Prototype main = LoadState.undump(new ByteArrayInputStream(chunk), chunkName);
+        int[] banks = new int[d.readInt()];
+        for (int i = 0; i < banks.length; i++) banks[i] = d.readInt();
+        byte[] memory = new byte[d.readInt()];
+        d.readFully(memory);
+        int w = d.readInt(), h = d.readInt(), format = d.readInt(), pixelLen = d.readInt();
+        byte[] pixels = null;
+        if (pixelLen >= 0) {
+            pixels = new byte[pixelLen];
+            d.readFully(pixels);
+        }
+        byte[] state = new byte[d.readInt()];
+        d.readFully(state);
+        return new VmSnapshot(sourceHash, chunkName, unbound, main, memory, banks, w, h, format, pixels, LuaString.valueUsing(state));
+    }
+
+    // --- NAMES ---
+
+    /**
+     * Path from _G ("_G", "math", "math.floor", "package.loaded") for every table,
+     * function and userdata reachable through string keys; the first path found wins.
+     */
+    public static Map<LuaValue, String> names(LuaTable root) {
+        IdentityHashMap<LuaValue, String> names = new IdentityHashMap<>();
+        names.put(root, "_G");
+        ArrayDeque<LuaTable> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            LuaTable t = queue.poll();
+            String prefix = (t == root) ? "" : names.get(t) + ".";
+            LuaValue k = LuaValue.NIL;
+            while (true) {
+                Varargs kv = t.next(k);
+                if ((k = kv.arg1()).isnil()) break;
+                LuaValue v = kv.arg(2);
+                if (k.type() != LuaValue.TSTRING || v.type() < LuaValue.TTABLE || names.containsKey(v)) continue;
+                String key = k.tojstring();
+                if (key.indexOf('.') >= 0) continue;
+                names.put(v, prefix + key);
+                if (v.istable()) queue.add((LuaTable) v);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * How one globals table binds: engine names, the main chunk's prototypes, and a count
+     * of values that could not be saved or found again.
+     */
+    public static class Bindings implements LuaSerializer.Binder {
+        final LuaTable globals;
+        final Map<LuaValue, String> engineNames;
+        final IdentityHashMap<Prototype, Integer> protoIndex = new IdentityHashMap<>();
+        final List<Prototype> protos = new ArrayList<>();
+        Map<LuaValue, String> current; // built on first use, capture only
+        public int unbound;
+
+        public Bindings(LuaTable globals, Map<LuaValue, String> engineNames, Prototype main) {
+            this.globals = globals;
+            this.engineNames = engineNames;
+            if (main != null) addProtos(main);
+        }
+
+        private void addProtos(Prototype p) {
+            protoIndex.put(p, protos.size());
+            protos.add(p);
+            for (Prototype child : p.p) addProtos(child);
+        }
+
+        @Override public String nameOf(LuaValue v) {
+            String name = engineNames.get(v);
+            if (name != null || v.istable() || v instanceof TypedArray) return name;
+            if (v instanceof LuaClosure && protoIndex.containsKey(((LuaClosure) v).p)) return null;
+            if (current == null) current = names(globals);
+            return current.get(v);
+        }
+
+        @Override public LuaValue lookup(String name) {
+            LuaValue v = globals;
+            if (name.equals("_G")) return v;
+            for (String part : name.split("\\.")) {
+                if (!v.istable()) return LuaValue.NIL;
+                v = v.rawget(part);
+            }
+            if (v.isnil()) unbound++;
+            return v;
+        }
+
+        @Override public int protoIndex(Prototype p) {
+            Integer i = protoIndex.get(p);
+            return (i != null) ? i : -1;
+        }
+
+        @Override public Prototype proto(int index) {
+            return (index >= 0 && index < protos.size()) ? protos.get(index) : null;
+        }
+
+        @Override public LuaValue env() { return globals; }
+
+        @Override public void unbound(LuaValue v) { unbound++; }
+    }
+}
@@ -0,0 +1,271 @@
+package com.nerddaygames.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WriteBehind - file saves that return immediately (one per process, shared()).
+ *
+ * submit() records the new contents and wakes a daemon writer; it never touches the disk.
+ * The writer waits coalesceMs so a burst of saves to the same file (autosave, repeated
+ * Ctrl+S) becomes one write, then writes each file to a temp file next to it, fsyncs and
+ * atomically renames it over the target: a crash leaves the old or the new file, never
+ * half of one.
+ *
+ * Until its write lands, a file's pending bytes are visible through pending(), which
+ * FileSystem checks first, so reads in this process always see the last submit.
+ * Lazy payloads (e.g. PNG encoding) have no bytes yet; readers await() them instead.
+ * flush() is the barrier for Run and exit: everything submitted before it is on disk.
+ *
+ * A caller that must know whether its write landed passes a Listener; it is told on the
+ * writer thread. A submit coalesced into a newer one of the same file never reaches the
+ * disk itself, so the newer submit's listener reports for both.
+ */
+public class WriteBehind {
+    /** Produces the file contents on the writer thread (e.g. image encoding). */
+    public interface Payload {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /** Told, on the writer thread, how a write ended. */
+    public interface Listener {
+        /** @param error null if target now holds the new contents */
+        void written(File target, Exception error);
+    }
+
+    private static final class Pending {
+        final File target;
+        final byte[] bytes;      // null for a lazy payload
+        final Payload payload;
+        final Listener listener; // may be null
+
+        Pending(File target, byte[] bytes, Payload payload, Listener listener) {
+            this.target = target;
+            this.bytes = bytes;
+            this.payload = payload;
+            this.listener = listener;
+        }
+    }
+
+    private static WriteBehind shared;
+
+    public static synchronized WriteBehind shared() {
+        if (shared == null) shared = new WriteBehind();
+        return shared;
+    }
+
+    // Tunable (the benchmark sets it to 0 to time raw throughput)
+    public long coalesceMs = 30;
+
+    // Guarded by lock: submitted and not yet taken, then taken and being written
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, Pending> queued = new LinkedHashMap<>();
+    private final Map<String, Pending> writing = new LinkedHashMap<>();
+    private volatile int outstanding; // queued + writing, read without the lock as a fast path
+    private Thread writer;
+    private boolean running = true;
+    private long tempSeq;
+
+    // --- STATS ---
+    public volatile long submits, writes, coalesced, failures, bytesWritten;
+
+    private static String key(File f) {
+        return f.getAbsolutePath();
+    }
+
+    /** Replace target with these bytes (the array is owned by the queue from now on). */
+    public void submit(File target, byte[] bytes) {
+        enqueue(new Pending(target, bytes, null, null));
+    }
+
+    /** Replace target with whatever payload writes, produced on the writer thread. */
+    public void submit(File target, Payload payload) {
+        submit(target, payload, null);
+    }
+
+    /** As submit(target, payload), telling listener (if not null) how the write ended. */
+    public void submit(File target, Payload payload, Listener listener) {
+        enqueue(new Pending(target, null, payload, listener));
+    }
+
+    private void enqueue(Pending p) {
+        synchronized (lock) {
+            if (!running) throw new IllegalStateException("WriteBehind is closed");
+            // Re-inserting moves the file to the back; the older contents are never written
+            if (queued.remove(key(p.target)) != null) coalesced++;
+            queued.put(key(p.target), p);
+            submits++;
+            updateOutstanding();
+            if (writer == null) {
+                writer = new Thread(this::writeLoop, "write-behind");
+                writer.setDaemon(true);
+                writer.start();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /** @return true while a write of f is queued or in progress */
+    public boolean isPending(File f) {
+        if (outstanding == 0) return false;
+        String k = key(f);
+        synchronized (lock) {
+            return queued.containsKey(k) || writing.containsKey(k);
+        }
+    }
+
+    /**
+     * Latest submitted bytes of f not yet on disk. Lazy payloads are awaited first.
+     * @return null if nothing is pending for f (read the disk)
+     */
+    public byte[] pending(File f) {
+        if (outstanding == 0) return null;
+        String k = key(f);
+        Pending p;
+        synchronized (lock) {
+            p = queued.get(k);
+            if (p == null) p = writing.get(k);
+        }
+        if (p == null) return null;
+        if (p.bytes != null) return p.bytes;
+        await(f);
+        return null;
+    }
+
+    /** Names of files directly in dir that are pending and may not exist on disk yet. */
+    public List<String> pendingNames(File dir) {
+        List<String> names = new ArrayList<>();
+        if (outstanding == 0) return names;
+        String d = key(dir);
+        synchronized (lock) {
+            for (Pending p : queued.values()) if (key(p.target.getParentFile()).equals(d)) names.add(p.target.getName());
+            for (Pending p : writing.values()) {
+                if (key(p.target.getParentFile()).equals(d) && !names.contains(p.target.getName())) names.add(p.target.getName());
+            }
+        }
+        return names;
+    }
+
+    /** Block until no write of f is queued or in progress (before opening it directly). */
+    public void await(File f) {
+        if (outstanding == 0) return;
+        String k = key(f);
+        synchronized (lock) {
+            while (queued.containsKey(k) || writing.containsKey(k)) {
+                lock.notifyAll();
+                try { lock.wait(10); } catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+            }
+        }
+    }
+
+    /**
+     * Barrier: block until everything submitted so far is on disk (Run, exit).
+     */
+    public void flush() {
+        if (outstanding == 0) return;
+        synchronized (lock) {
+            while (outstanding > 0 && writer != null) {
+                lock.notifyAll();
+                try { lock.wait(10); } catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+            }
+        }
+    }
+
+    /**
+     * Flush and stop the writer; later submits fail.
+     */
+    public void close() {
+        Thread t;
+        synchronized (lock) {
+            running = false;
+            t = writer;
+            lock.notifyAll();
+        }
+        if (t != null) {
+            try { t.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+    }
+
+    private void updateOutstanding() {
+        outstanding = queued.size() + writing.size();
+    }
+
+    // --- WRITER ---
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            boolean closing;
+            synchronized (lock) {
+                while (queued.isEmpty() && running) {
+                    try { lock.wait(); } catch (InterruptedException e) { return; }
+                }
+                if (queued.isEmpty()) {
+                    writer = null;
+                    lock.notifyAll();
+                    return;
+                }
+                closing = !running;
+            }
+            // Let repeated saves of the same file collapse before paying for the IO
+            if (!closing && coalesceMs > 0) {
+                try { Thread.sleep(coalesceMs); } catch (InterruptedException ignored) {}
+            }
+            synchronized (lock) {
+                batch.clear();
+                batch.addAll(queued.values());
+                for (Pending p : batch) writing.put(key(p.target), p);
+                queued.clear();
+                updateOutstanding();
+            }
+            for (Pending p : batch) {
+                Exception error = null;
+                try {
+                    write(p);
+                    writes++;
+                } catch (Exception e) {
+                    error = e;
+                    failures++;
+                    System.err.println("write-behind " + p.target + " failed: " + e.getMessage());
+                }
+                if (p.listener != null) {
+                    try {
+                        p.listener.written(p.target, error);
+                    } catch (RuntimeException e) {
+                        System.err.println("write-behind listener failed: " + e);
+                    }
+                }
+                synchronized (lock) {
+                    // A newer submit of the same file stays queued for the next pass
+                    writing.remove(key(p.target));
+                    updateOutstanding();
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void write(Pending p) throws IOException {
+        File target = p.target;
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+        File tmp = new File(dir, "." + target.getName() + ".tmp" + (tempSeq++));
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                if (p.bytes != null) out.write(p.bytes);
+                else p.payload.writeTo(out);
+                out.getChannel().force(false);
+                bytesWritten += out.getChannel().size();
+            }
+            FileIo.replace(tmp, target);
+        } finally {
+            if (tmp.exists()) tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.nerddaygames.engine.graphics;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FrameBufferPool - keeps a few released FrameBuffers around so that resizing
+ * (window drags, render scale steps, tab switches) reuses GL objects instead of
+ * creating and disposing one per size change.
+ *  - obtain(w, h): exact-size match from the pool, or a new buffer
+ *  - free(fb): return a buffer; the oldest spare is disposed past capacity
+ */
+public class FrameBufferPool {
+    private final Pixmap.Format format;
+    private final int capacity;
+    private final List<FrameBuffer> free = new ArrayList<>();
+
+    // Stats
+    public int created = 0;
+    public int reused = 0;
+
+    public FrameBufferPool(Pixmap.Format format, int capacity) {
+        this.format = format;
+        this.capacity = Math.max(0, capacity);
+    }
+
+    public FrameBuffer obtain(int width, int height) {
+        for (int i = free.size() - 1; i >= 0; i--) {
+            FrameBuffer fb = free.get(i);
+            if (fb.getWidth() == width && fb.getHeight() == height) {
+                free.remove(i);
+                reused++;
+                return fb;
+            }
+        }
+        created++;
+        return new FrameBuffer(format, width, height, false);
+    }
+
+    public void free(FrameBuffer fb) {
+        if (fb == null) return;
+        free.add(fb);
+        while (free.size() > capacity) free.remove(0).dispose();
+    }
+
+    public void dispose() {
+        for (FrameBuffer fb : free) fb.dispose();
+        free.clear();
+    }
+}
@@ -18,6 +18,8 @@ import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.utils.ScissorStack; // Ensure this is imported
 import com.nerddaygames.Main;
+import com.nerddaygames.engine.CartFile;
+import com.nerddaygames.engine.FileSystem;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -37,6 +39,17 @@ public class DesktopScreen extends ScreenAdapter {
     private FileHandle diskRoot;
     private FileHandle systemRoot;
 
+    // DIRECTORY LISTINGS (background scans, see DirectoryIndex; one per app, on Main)
+    private final DirectoryIndex index;
+    private DirectoryIndex.View desktopView; // open while shown
+    private final List<DirectoryIndex.Entry> desktopEntries = new ArrayList<>();
+    private final List<DirectoryIndex.Change> changes = new ArrayList<>();
+
+    // FILE OPERATIONS (copy/move/delete on worker threads, see FileOperations; one per app, on Main)
+    private final FileOperations fileOps;
+    private static final int OP_ROWS = 5;
+    private static final float OP_X = 10, OP_Y = 10, OP_W = 320, OP_H = 22;
+
     // STATE
     private List<DesktopIcon> desktopIcons = new ArrayList<>();
     private List<DesktopWindow> windows = new ArrayList<>();
@@ -54,6 +67,8 @@ public class DesktopScreen extends ScreenAdapter {
 
     public DesktopScreen(Main game) {
         this.game = game;
+        this.index = game.directories;
+        this.fileOps = game.fileOps;
         this.batch = new SpriteBatch();
         this.shapes = new ShapeRenderer();
         this.font = new BitmapFont();
@@ -115,24 +130,48 @@ public class DesktopScreen extends ScreenAdapter {
         return r;
     }
 
+    // Lay out icons from the indexed disk root (no IO; the index keeps desktopEntries current)
     private void refreshDesktop() {
         desktopIcons.clear();
         desktopIcons.add(new DesktopIcon("My Computer", systemRoot, iconComputer, 20, Gdx.graphics.getHeight() - 80, true));
         desktopIcons.add(new DesktopIcon("Trash", diskRoot.child(".trash"), iconTrash, Gdx.graphics.getWidth() - 80, 20, true));
 
-        FileHandle[] files = diskRoot.list();
         int x = 20; int y = Gdx.graphics.getHeight() - 180;
 
-        for (FileHandle f : files) {
-            if (f.name().startsWith(".")) continue;
-            if (f.isDirectory()) {
-                desktopIcons.add(new DesktopIcon(f.name(), f, iconProject, x, y, true));
+        for (DirectoryIndex.Entry e : desktopEntries) {
+            // Project folders and exported carts (Project.exportCart writes them next to the folder)
+            boolean cart = !e.dir && CartFile.EXTENSION.equals(e.file.extension());
+            if (e.dir || cart) {
+                desktopIcons.add(new DesktopIcon(e.name, e.file, e.dir ? iconProject : iconFile, x, y, e.dir));
                 y -= 100;
                 if (y < 100) { y = Gdx.graphics.getHeight() - 180; x += 90; }
             }
         }
     }
 
+    // Apply listing changes from the background scanner/watcher (render thread, once per frame)
+    private void pollIndex() {
+        changes.clear();
+        if (desktopView.drain(changes) > 0) {
+            applyChanges(desktopEntries, changes);
+            refreshDesktop();
+        }
+        // Finished copies/moves/deletes: rescan only the folders they touched
+        for (FileOperations.Operation op; (op = fileOps.pollFinished()) != null; ) {
+            if (op.kind != FileOperations.Kind.COPY) index.rescan(op.source.parent());
+            if (op.targetDir != null) index.rescan(op.targetDir);
+            FileSystem.invalidateAllPaths(); // VMs' memoized resolves may point into moved/deleted folders
+        }
+        for (DesktopWindow win : windows) win.poll();
+    }
+
+    private static void applyChanges(List<DirectoryIndex.Entry> entries, List<DirectoryIndex.Change> changes) {
+        for (DirectoryIndex.Change c : changes) {
+            if (c.added != null) entries.add(c.added);
+            else entries.removeIf(e -> e.name.equals(c.removed));
+        }
+    }
+
     private void createProject() {
         String base = "Project";
         int i = 1;
@@ -140,7 +179,25 @@ public class DesktopScreen extends ScreenAdapter {
         FileHandle p = diskRoot.child(base+"_"+String.format("%04d",i));
         p.mkdirs();
         p.child("main.lua").writeString("function _init()\n log('New')\nend\nfunction _draw()\n cls(1)\n print('Hi',50,50,7)\nend", false);
-        refreshDesktop();
+        index.rescan(diskRoot);
+    }
+
+    @Override
+    public void show() {
+        // Cached entries arrive with the first drain; a rescan sends what changed meanwhile
+        desktopEntries.clear();
+        desktopView = index.open(diskRoot);
+        // Desktop is static between input events; libGDX renders on input automatically
+        Gdx.graphics.setContinuousRendering(false);
+        Gdx.graphics.requestRendering();
+    }
+
+    @Override
+    public void hide() {
+        // Stop following folders nobody sees (the index stops watching them)
+        desktopView.close();
+        for (DesktopWindow win : new ArrayList<>(windows)) win.close();
+        activeWindow = null;
     }
 
     @Override
@@ -148,6 +205,8 @@ public class DesktopScreen extends ScreenAdapter {
         Gdx.gl.glClearColor(0.2f, 0.3f, 0.4f, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
+        pollIndex();
+
         batch.begin();
         for (DesktopIcon icon : desktopIcons) icon.render(batch, font);
         batch.end();
@@ -162,9 +221,48 @@ public class DesktopScreen extends ScreenAdapter {
             batch.end();
         }
 
+        drawOperations();
         if (showMenu) drawMenu();
     }
 
+    // Progress rows (bottom left), one per running operation: bar, label, cancel box
+    private void drawOperations() {
+        List<FileOperations.Operation> ops = fileOps.active();
+        int n = Math.min(OP_ROWS, ops.size());
+        if (n == 0) return;
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        shapes.begin(ShapeRenderer.ShapeType.Filled);
+        for (int i = 0; i < n; i++) {
+            FileOperations.Operation op = ops.get(i);
+            float y = OP_Y + i * (OP_H + 2);
+            shapes.setColor(0, 0, 0, 0.8f); shapes.rect(OP_X, y, OP_W, OP_H);
+            shapes.setColor(0.2f, 0.5f, 0.2f, 1); shapes.rect(OP_X, y, (OP_W - OP_H) * op.progress(), OP_H);
+            shapes.setColor(0.8f, 0.2f, 0.2f, 1); shapes.rect(OP_X + OP_W - OP_H + 3, y + 3, OP_H - 6, OP_H - 6);
+        }
+        shapes.end();
+
+        batch.begin();
+        font.setColor(Color.WHITE);
+        for (int i = 0; i < n; i++) {
+            FileOperations.Operation op = ops.get(i);
+            String count = op.sized ? op.doneFiles.get() + "/" + op.totalFiles.get() : "...";
+            if (op.kind != FileOperations.Kind.DELETE && op.sized) count += "  " + (op.doneBytes.get() >> 10) + "/" + (op.totalBytes.get() >> 10) + "K";
+            font.draw(batch, op.describe() + "  " + count, OP_X + 4, OP_Y + i * (OP_H + 2) + OP_H - 5);
+        }
+        batch.end();
+    }
+
+    // @return true if (x, y) hit a progress row (its cancel box cancels that operation)
+    private boolean touchOperations(float x, float y) {
+        List<FileOperations.Operation> ops = fileOps.active();
+        int n = Math.min(OP_ROWS, ops.size());
+        if (x < OP_X || x > OP_X + OP_W || y < OP_Y) return false;
+        int i = (int) ((y - OP_Y) / (OP_H + 2));
+        if (i >= n) return false;
+        if (x > OP_X + OP_W - OP_H) ops.get(i).cancel();
+        return true;
+    }
+
     private void drawMenu() {
         Gdx.gl.glEnable(GL20.GL_BLEND);
         shapes.begin(ShapeRenderer.ShapeType.Filled);
@@ -192,12 +290,14 @@ public class DesktopScreen extends ScreenAdapter {
             float x = screenX;
 
             if (showMenu) { handleMenuClick(x, y); return true; }
+            if (touchOperations(x, y)) return true;
 
             for (int i = windows.size() - 1; i >= 0; i--) {
                 DesktopWindow win = windows.get(i);
                 if (win.touchDown(x, y)) {
-                    windows.remove(i); windows.add(win);
-                    activeWindow = win;
+                    // Bring to front, unless the click closed it
+                    if (windows.remove(win)) { windows.add(win); activeWindow = win; }
+                    else if (activeWindow == win) activeWindow = null;
                     return true;
                 }
             }
@@ -208,6 +308,7 @@ public class DesktopScreen extends ScreenAdapter {
                     else {
                         if (icon.isDir && icon.file.child("main.lua").exists()) game.setScreen(new EditorScreen(game, icon.file));
                         else if (icon.isDir) openWindow(icon.file);
+                        else if (CartFile.EXTENSION.equals(icon.file.extension())) game.setScreen(new RunScreen(game, icon.file));
                     }
                     return true;
                 }
@@ -226,6 +327,21 @@ public class DesktopScreen extends ScreenAdapter {
             return false;
         }
 
+        @Override
+        public boolean scrolled(float amountX, float amountY) {
+            // Scroll the window under the pointer by whole rows
+            float x = Gdx.input.getX(), y = Gdx.graphics.getHeight() - Gdx.input.getY();
+            for (int i = windows.size() - 1; i >= 0; i--) {
+                DesktopWindow win = windows.get(i);
+                if (win.bounds.contains(x, y)) {
+                    win.scrollBy(amountY * win.grid.cellH);
+                    Gdx.graphics.requestRendering();
+                    return true;
+                }
+            }
+            return false;
+        }
+
         @Override
         public boolean touchUp(int screenX, int screenY, int pointer, int button) {
             if (draggingItem != null) handleDrop();
@@ -243,13 +359,14 @@ public class DesktopScreen extends ScreenAdapter {
         float ly = menuY - y;
         if (menuTarget == null) {
             if (ly > 0 && ly < 25) createProject();
-            if (ly > 25 && ly < 50) refreshDesktop();
+            if (ly > 25 && ly < 50) index.rescan(diskRoot);
         } else {
             if (ly > 0 && ly < 25) {
-                if (menuTarget.child("main.lua").exists()) game.setScreen(new EditorScreen(game, menuTarget));
+                if (CartFile.EXTENSION.equals(menuTarget.extension()) && !menuTarget.isDirectory()) game.setScreen(new RunScreen(game, menuTarget));
+                else if (menuTarget.child("main.lua").exists()) game.setScreen(new EditorScreen(game, menuTarget));
                 else openWindow(menuTarget);
             }
-            if (ly > 25 && ly < 50) { menuTarget.deleteDirectory(); refreshDesktop(); }
+            if (ly > 25 && ly < 50) fileOps.delete(menuTarget); // folders rescan when it finishes
         }
     }
 
@@ -257,13 +374,13 @@ public class DesktopScreen extends ScreenAdapter {
         for (int i = windows.size() - 1; i >= 0; i--) {
             DesktopWindow win = windows.get(i);
             if (win.bounds.contains(dragPos)) {
-                try { draggingItem.file.copyTo(win.currentFolder); win.refresh(); } catch (Exception e) {}
+                fileOps.copy(draggingItem.file, win.currentFolder);
                 return;
             }
         }
         for (DesktopIcon icon : desktopIcons) {
             if (icon.isDir && icon.bounds.contains(dragPos)) {
-                try { draggingItem.file.copyTo(icon.file); } catch (Exception e) {}
+                fileOps.copy(draggingItem.file, icon.file);
                 return;
             }
         }
@@ -285,35 +402,60 @@ public class DesktopScreen extends ScreenAdapter {
         }
     }
 
+    // Position comes from the item's index in its window (IconGrid); label is truncated once
     private class DesktopItem {
-        FileHandle file; Rectangle bounds; TextureRegion icon;
-        DesktopItem(FileHandle f, float x, float y) {
-            this.file = f; this.bounds = new Rectangle(x, y, 48, 48);
-            if (f.isDirectory()) this.icon = iconFolder; else this.icon = iconFile;
+        FileHandle file; TextureRegion icon; String label;
+        DesktopItem(FileHandle f, String name, boolean isDir) {
+            this.file = f; this.label = name.length() > 8 ? name.substring(0, 8) : name;
+            if (isDir) this.icon = iconFolder; else this.icon = iconFile;
         }
     }
 
     private class DesktopWindow {
         FileHandle currentFolder; Rectangle bounds; List<DesktopItem> items = new ArrayList<>();
         boolean isDragging = false; float dragOffX, dragOffY; float scrollY = 0;
+        // Virtualized: only rows inside the scroll range are drawn; hits are computed, not searched
+        final IconGrid grid = new IconGrid(10, 10, 60, 70, 48);
+        final DirectoryIndex.View view;
+        final List<DirectoryIndex.Entry> entries = new ArrayList<>();
 
         DesktopWindow(FileHandle folder, float w, float h) {
             this.currentFolder = folder;
             this.bounds = new Rectangle(Gdx.graphics.getWidth()/2f - w/2, Gdx.graphics.getHeight()/2f - h/2, w, h);
-            refresh();
+            this.grid.setWidth(w);
+            this.view = index.open(folder); // entries stream in through poll()
         }
 
-        void refresh() {
-            items.clear();
-            if (currentFolder.list() == null) return;
-            FileHandle[] files = currentFolder.list();
-            float x = 10, y = -10;
-            for (FileHandle f : files) {
-                if (f.name().startsWith(".")) continue;
-                items.add(new DesktopItem(f, x, y));
-                x += 60;
-                if (x > bounds.width - 60) { x = 10; y -= 70; }
+        void poll() {
+            changes.clear();
+            if (view.drain(changes) == 0) return;
+            boolean removed = false;
+            for (DirectoryIndex.Change c : changes) removed |= c.removed != null;
+            if (removed) {
+                applyChanges(entries, changes);
+                items.clear();
+                for (DirectoryIndex.Entry e : entries) items.add(new DesktopItem(e.file, e.name, e.dir));
+            } else {
+                for (DirectoryIndex.Change c : changes) {
+                    entries.add(c.added);
+                    items.add(new DesktopItem(c.added.file, c.added.name, c.added.dir));
+                }
             }
+            scrollBy(0); // clamp if the folder shrank
+        }
+
+        void scrollBy(float amount) {
+            scrollY = Math.max(0, Math.min(scrollY + amount, grid.maxScroll(items.size(), bounds.height - 30)));
+        }
+
+        // Top reference line of the grid (row 0 hangs below it)
+        float gridTop() {
+            return bounds.y + bounds.height - 80 + scrollY;
+        }
+
+        void close() {
+            view.close();
+            windows.remove(this);
         }
 
         void setPosition(float x, float y) { bounds.setPosition(x, y); }
@@ -326,7 +468,8 @@ public class DesktopScreen extends ScreenAdapter {
             sr.end();
 
             sb.begin();
-            fnt.setColor(Color.WHITE); fnt.draw(sb, currentFolder.name(), bounds.x + 10, bounds.y + bounds.height - 8);
+            String title = view.isScanning() ? currentFolder.name() + " (" + items.size() + "...)" : currentFolder.name();
+            fnt.setColor(Color.WHITE); fnt.draw(sb, title, bounds.x + 10, bounds.y + bounds.height - 8);
 
             Rectangle scissors = new Rectangle();
             Rectangle clipBounds = new Rectangle(bounds.x, bounds.y, bounds.width, bounds.height - 30);
@@ -335,14 +478,16 @@ public class DesktopScreen extends ScreenAdapter {
             if (game.camera != null) {
                 ScissorStack.calculateScissors(game.camera, sb.getTransformMatrix(), clipBounds, scissors);
                 if (ScissorStack.pushScissors(scissors)) {
-                    float startY = bounds.y + bounds.height - 80 + scrollY;
-                    for (DesktopItem item : items) {
-                        float wx = bounds.x + item.bounds.x; float wy = startY + item.bounds.y;
-                        if (wy < bounds.y - 50 || wy > bounds.y + bounds.height) continue;
+                    float top = gridTop();
+                    int cols = grid.getCols();
+                    int from = grid.firstRow(top, bounds.y + bounds.height) * cols;
+                    int to = Math.min(items.size(), (grid.lastRow(top, bounds.y - 50) + 1) * cols);
+                    fnt.setColor(Color.BLACK);
+                    for (int i = from; i < to; i++) {
+                        DesktopItem item = items.get(i);
+                        float wx = bounds.x + grid.cellX(i); float wy = top + grid.cellY(i);
                         if (item.icon != null) sb.draw(item.icon, wx, wy, 48, 48);
-                        fnt.setColor(Color.BLACK);
-                        String n = item.file.name(); if(n.length()>8) n=n.substring(0,8);
-                        fnt.draw(sb, n, wx, wy - 5);
+                        fnt.draw(sb, item.label, wx, wy - 5);
                     }
                     sb.flush();
                     ScissorStack.popScissors();
@@ -354,15 +499,12 @@ public class DesktopScreen extends ScreenAdapter {
         boolean touchDown(float x, float y) {
             if (!bounds.contains(x, y)) return false;
             if (y > bounds.y + bounds.height - 30) {
-                if (x > bounds.x + bounds.width - 30) { windows.remove(this); return true; }
+                if (x > bounds.x + bounds.width - 30) { close(); return true; }
                 isDragging = true; dragOffX = x - bounds.x; dragOffY = y - bounds.y; return true;
             }
-            float startY = bounds.y + bounds.height - 80 + scrollY;
-            for (DesktopItem item : items) {
-                float wx = bounds.x + item.bounds.x; float wy = startY + item.bounds.y;
-                if (x >= wx && x <= wx + 48 && y >= wy && y <= wy + 48) {
-                    draggingItem = item; dragPos.set(x - 24, y - 24); dragOffset.set(24, 24); return true;
-                }
+            int i = grid.indexAt(x - bounds.x, gridTop() - y, items.size());
+            if (i >= 0) {
+                draggingItem = items.get(i); dragPos.set(x - 24, y - 24); dragOffset.set(24, 24);
             }
             return true;
         }
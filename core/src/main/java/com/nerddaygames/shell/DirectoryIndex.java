@@ -0,0 +1,333 @@
+package com.nerddaygames.shell;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+
+import com.nerddaygames.engine.FileIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * DirectoryIndex - folder listings for the desktop, built off the render thread.
+ *
+ * open(folder) returns a View right away. Scanner threads list the folder, stat each
+ * entry and push ADDED changes in small batches, so the first items show while a large
+ * folder (user.home) is still being read.
+ * The render thread drains its View's changes each frame and applies only those.
+ *
+ * Listings are cached per folder. While a folder has an open View a WatchService key
+ * keeps it current (create/delete events become single changes); after the last View
+ * closes the entries stay cached, so reopening shows them at once and a rescan sends
+ * only the difference. rescan() does the same on demand (after in-app copies, or where
+ * the platform has no WatchService). Hidden entries (leading '.') are never listed.
+ *
+ * Watching is java.nio.file, which Android (API 21) lacks: it lives in Watcher, which is
+ * only created when FileIo.NIO_FILES. Scanning is java.io and works everywhere.
+ */
+public class DirectoryIndex {
+    public static final class Entry {
+        public final FileHandle file;
+        public final String name;
+        public final boolean dir;
+
+        Entry(FileHandle file, boolean dir) {
+            this.file = file;
+            this.name = file.name();
+            this.dir = dir;
+        }
+    }
+
+    /** Either added (a new entry) or removed (the name that went away). */
+    public static final class Change {
+        public final Entry added;
+        public final String removed;
+
+        Change(Entry added, String removed) {
+            this.added = added;
+            this.removed = removed;
+        }
+    }
+
+    /** One consumer's feed of a folder; drained by the render thread. */
+    public final class View {
+        public final FileHandle folder;
+        private final Folder state;
+        private final ConcurrentLinkedQueue<Change> changes = new ConcurrentLinkedQueue<>();
+        private boolean closed;
+
+        View(Folder state) {
+            this.folder = state.dir;
+            this.state = state;
+        }
+
+        /** Move pending changes into out (in arrival order). @return how many */
+        public int drain(List<Change> out) {
+            int n = 0;
+            for (Change c; (c = changes.poll()) != null; n++) out.add(c);
+            return n;
+        }
+
+        /** true while a scan of this folder is running (first listing or a rescan) */
+        public boolean isScanning() { return state.scanning; }
+
+        public void close() {
+            if (closed) return;
+            closed = true;
+            release(state, this);
+        }
+    }
+
+    private static final int BATCH = 64;
+
+    private final class Folder {
+        final FileHandle dir;
+        final File path;
+        // Guarded by the Folder
+        final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+        final List<View> views = new ArrayList<>();
+        Object key; // the Watcher's WatchKey while watched
+        boolean stale = true;
+        int generation;
+        volatile boolean scanning;
+
+        Folder(FileHandle dir) {
+            this.dir = dir;
+            this.path = dir.file().getAbsoluteFile();
+        }
+    }
+
+    private final ExecutorService scanners = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "dir-scan");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<File, Folder> folders = new HashMap<>();
+    private final Watcher watcher;
+
+    // --- STATS ---
+    public volatile long scans, scannedEntries, watchEvents;
+
+    public DirectoryIndex() {
+        Watcher w = null;
+        if (FileIo.NIO_FILES) {
+            try {
+                w = new Watcher();
+            } catch (Exception e) {
+                System.err.println("No WatchService, folders refresh on rescan only: " + e.getMessage());
+            }
+        }
+        this.watcher = w;
+    }
+
+    /**
+     * Start following folder: cached entries are queued on the View at once, then a
+     * scan (if the cache may be out of date) sends the rest as it finds them.
+     */
+    public View open(FileHandle folder) {
+        Folder f;
+        synchronized (folders) {
+            File p = folder.file().getAbsoluteFile();
+            f = folders.get(p);
+            if (f == null) folders.put(p, f = new Folder(folder));
+        }
+        View v = new View(f);
+        boolean scan;
+        synchronized (f) {
+            for (Entry e : f.entries.values()) v.changes.add(new Change(e, null));
+            f.views.add(v);
+            if (f.key == null && watcher != null) watcher.register(f);
+            scan = f.stale;
+        }
+        if (scan) scan(f);
+        return v;
+    }
+
+    /** Re-read folder in the background and send only the differences to its Views. */
+    public void rescan(FileHandle folder) {
+        Folder f;
+        synchronized (folders) { f = folders.get(folder.file().getAbsoluteFile()); }
+        if (f != null) scan(f);
+    }
+
+    public void dispose() {
+        scanners.shutdownNow();
+        if (watcher != null) watcher.close();
+    }
+
+    private void release(Folder f, View v) {
+        synchronized (f) {
+            f.views.remove(v);
+            if (!f.views.isEmpty() || f.key == null) return;
+            // Nobody is looking: stop watching, rescan on the next open
+            watcher.cancel(f);
+            f.stale = true;
+        }
+    }
+
+    // --- SCANNING ---
+
+    private void scan(Folder f) {
+        final int gen;
+        synchronized (f) {
+            gen = ++f.generation;
+            f.scanning = true;
+        }
+        scanners.execute(() -> runScan(f, gen));
+    }
+
+    private void runScan(Folder f, int gen) {
+        scans++;
+        Set<String> seen = new HashSet<>();
+        List<Entry> batch = new ArrayList<>(BATCH);
+        try {
+            String[] names = f.path.list();
+            if (names == null) throw new IOException("not a readable directory");
+            for (String name : names) {
+                if (name.startsWith(".")) continue;
+                seen.add(name);
+                scannedEntries++;
+                boolean known;
+                synchronized (f) {
+                    if (f.generation != gen) return; // superseded by a newer scan
+                    known = f.entries.containsKey(name);
+                }
+                if (known) continue;
+                batch.add(new Entry(f.dir.child(name), new File(f.path, name).isDirectory()));
+                if (batch.size() == BATCH) {
+                    publish(f, batch, null);
+                    batch.clear();
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Could not list " + f.path + ": " + e.getMessage());
+        }
+        List<String> gone = new ArrayList<>();
+        synchronized (f) {
+            if (f.generation != gen) return;
+            for (String name : f.entries.keySet()) if (!seen.contains(name)) gone.add(name);
+        }
+        publish(f, batch, gone);
+        synchronized (f) {
+            if (f.generation == gen) {
+                f.scanning = false;
+                if (!f.views.isEmpty()) f.stale = f.key == null;
+            }
+        }
+        requestRendering();
+    }
+
+    private void publish(Folder f, List<Entry> added, List<String> removed) {
+        boolean any = false;
+        synchronized (f) {
+            for (Entry e : added) {
+                if (f.entries.putIfAbsent(e.name, e) != null) continue;
+                for (View v : f.views) v.changes.add(new Change(e, null));
+                any = true;
+            }
+            if (removed != null) {
+                for (String name : removed) {
+                    if (f.entries.remove(name) == null) continue;
+                    for (View v : f.views) v.changes.add(new Change(null, name));
+                    any = true;
+                }
+            }
+        }
+        if (any) requestRendering();
+    }
+
+    // The desktop renders on demand; wake it for new entries
+    private static void requestRendering() {
+        if (Gdx.graphics != null) Gdx.graphics.requestRendering();
+    }
+
+    // --- WATCHING ---
+
+    // One WatchService for every open folder (desktop only, see the class doc)
+    private final class Watcher {
+        private final WatchService service;
+        private final Map<WatchKey, Folder> watched = new HashMap<>();
+
+        Watcher() throws IOException {
+            service = java.nio.file.FileSystems.getDefault().newWatchService();
+            Thread t = new Thread(this::loop, "dir-watch");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        // Called with f locked
+        void register(Folder f) {
+            try {
+                WatchKey key = f.path.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+                f.key = key;
+                synchronized (watched) { watched.put(key, f); }
+            } catch (Exception e) {
+                f.key = null; // unwatchable (e.g. not a directory): rescans only
+            }
+        }
+
+        // Called with f locked
+        void cancel(Folder f) {
+            WatchKey key = (WatchKey) f.key;
+            key.cancel();
+            synchronized (watched) { watched.remove(key); }
+            f.key = null;
+        }
+
+        void close() {
+            try { service.close(); } catch (IOException ignored) {}
+        }
+
+        private void loop() {
+            while (true) {
+                WatchKey key;
+                try { key = service.take(); }
+                catch (InterruptedException | ClosedWatchServiceException e) { return; }
+                Folder f;
+                synchronized (watched) { f = watched.get(key); }
+                if (f != null) {
+                    for (WatchEvent<?> ev : key.pollEvents()) {
+                        watchEvents++;
+                        if (ev.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            scan(f);
+                            continue;
+                        }
+                        String name = ((Path) ev.context()).toString();
+                        if (name.startsWith(".")) continue;
+                        if (ev.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            File file = new File(f.path, name);
+                            if (file.exists()) publish(f, Collections.singletonList(new Entry(f.dir.child(name), file.isDirectory())), null);
+                        } else {
+                            publish(f, Collections.emptyList(), Collections.singletonList(name));
+                        }
+                    }
+                }
+                if (!key.reset() && f != null) {
+                    // Folder deleted or unmounted
+                    synchronized (f) {
+                        synchronized (watched) { watched.remove(key); }
+                        if (f.key == key) f.key = null;
+                        f.stale = true;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -34,6 +34,7 @@ public class EditorScreen extends ScreenAdapter {
     private EditorInput editorInput;
     private final int TAB_SIZE = 48;
     private final int TOOLBAR_HEIGHT = 56;
+    private float maxRenderScale = 1f;
 
     public EditorScreen(Main game, FileHandle projectDir) {
         this.game = game;
@@ -44,7 +45,10 @@ public class EditorScreen extends ScreenAdapter {
         uiViewport = new ScreenViewport();
         editorInput = new EditorInput();
 
-        createModule("Code",   new Color(0.2f, 0.2f, 0.4f, 1), "system/tools/code.lua");
+        // Code text stays crisp; pixel tools may drop resolution under load.
+        // Max scale follows the back buffer so HiDPI displays get native pixels.
+        maxRenderScale = Math.max(1f, Gdx.graphics.getBackBufferScale());
+        createModule("Code",   new Color(0.2f, 0.2f, 0.4f, 1), "system/tools/code.lua", 0.75f, maxRenderScale);
         createModule("Sprite", new Color(0.2f, 0.4f, 0.2f, 1), "system/tools/sprite.lua");
         createModule("SFX",    new Color(0.4f, 0.4f, 0.2f, 1), "system/tools/sfx.lua");
         createModule("Music",  new Color(0.4f, 0.2f, 0.2f, 1), "system/tools/music.lua");
@@ -56,7 +60,11 @@ public class EditorScreen extends ScreenAdapter {
     }
 
     private void createModule(String name, Color color, String scriptPath) {
-        LuaTool tool = new LuaTool(name, scriptPath);
+        createModule(name, color, scriptPath, 0.5f, maxRenderScale);
+    }
+
+    private void createModule(String name, Color color, String scriptPath, float minScale, float maxScale) {
+        LuaTool tool = new LuaTool(name, scriptPath, minScale, maxScale);
         tool.loadProject(project);
 
         // Pass the "Run" capability to the tool
@@ -85,6 +93,13 @@ public class EditorScreen extends ScreenAdapter {
         }
     }
 
+    @Override
+    public void show() {
+        // Redraw only on input, tool timers or invalidate()
+        Gdx.graphics.setContinuousRendering(false);
+        Gdx.graphics.requestRendering();
+    }
+
     @Override
     public void render(float delta) {
         if (currentModule != null) {
@@ -111,6 +126,8 @@ public class EditorScreen extends ScreenAdapter {
         uiBatch.end();
 
         drawToolbar();
+
+        if (currentModule != null && currentModule.needsFrame()) Gdx.graphics.requestRendering();
     }
 
     private void drawToolbar() {
@@ -164,6 +181,7 @@ public class EditorScreen extends ScreenAdapter {
         }
         @Override public boolean keyDown(int keycode) {
             if (keycode == com.badlogic.gdx.Input.Keys.ESCAPE) {
+                RunScreen.releaseSpare(); // only a Run of this project could reuse it
                 game.setScreen(new DesktopScreen(game));
                 return true;
             }
@@ -0,0 +1,290 @@
+package com.nerddaygames.shell;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.nerddaygames.engine.FileIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FileOperations - desktop copy/move/delete off the render thread.
+ *
+ * Each request becomes an Operation run by a worker thread; the render thread only
+ * reads its counters (bytes and files, done and total) to draw progress, and can
+ * cancel() it. Directory trees are walked in parallel on a ForkJoinPool, one task per
+ * directory: copies first size the tree (so progress has a total), then create the
+ * directories and copy files with FileChannel.transferTo in chunks, checking for
+ * cancellation between chunks. Moves within one disk are a single rename; across
+ * disks they are a copy then a delete. A cancelled copy removes what it created.
+ * Symbolic links are copied and deleted as entries, never followed. Everything is
+ * java.io (plus FileIo), so it also runs where java.nio.file is missing (Android).
+ *
+ * Finished operations (done, failed or cancelled) are queued for pollFinished(), so
+ * the desktop refreshes the affected folders once, when an operation completes.
+ */
+public class FileOperations {
+    public enum Kind { COPY, MOVE, DELETE }
+
+    public final class Operation {
+        public final Kind kind;
+        public final FileHandle source;
+        public final FileHandle targetDir; // null for DELETE
+        public final AtomicLong totalBytes = new AtomicLong(), totalFiles = new AtomicLong();
+        public final AtomicLong doneBytes = new AtomicLong(), doneFiles = new AtomicLong();
+        public volatile boolean sized, cancelled, finished;
+        public volatile String error;
+
+        Operation(Kind kind, FileHandle source, FileHandle targetDir) {
+            this.kind = kind;
+            this.source = source;
+            this.targetDir = targetDir;
+        }
+
+        public void cancel() { cancelled = true; }
+
+        /** 0..1 by bytes (by files for deletes); 0 while the tree is still being sized */
+        public float progress() {
+            if (finished) return 1f;
+            if (!sized) return 0f;
+            if (kind == Kind.DELETE || totalBytes.get() == 0) {
+                long t = totalFiles.get();
+                return (t == 0) ? 0f : Math.min(1f, doneFiles.get() / (float) t);
+            }
+            return Math.min(1f, doneBytes.get() / (float) totalBytes.get());
+        }
+
+        public String describe() {
+            String verb = (kind == Kind.COPY) ? "Copying" : (kind == Kind.MOVE) ? "Moving" : "Deleting";
+            return verb + " " + source.name();
+        }
+
+        /** @return where the source ends up (COPY/MOVE), or null */
+        public FileHandle target() {
+            return (targetDir != null) ? targetDir.child(source.name()) : null;
+        }
+    }
+
+    // Chunked so a large file can be cancelled mid-copy and reports progress as it goes
+    private static final long CHUNK = 8L * 1024 * 1024;
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "file-op");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ForkJoinPool walkers = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    private final CopyOnWriteArrayList<Operation> active = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<Operation> finished = new ConcurrentLinkedQueue<>();
+    private volatile long lastWake;
+
+    /** Copy source (file or folder) into targetDir, replacing same-named files. */
+    public Operation copy(FileHandle source, FileHandle targetDir) {
+        return submit(new Operation(Kind.COPY, source, targetDir));
+    }
+
+    public Operation move(FileHandle source, FileHandle targetDir) {
+        return submit(new Operation(Kind.MOVE, source, targetDir));
+    }
+
+    public Operation delete(FileHandle target) {
+        return submit(new Operation(Kind.DELETE, target, null));
+    }
+
+    /** Operations queued or running (render thread draws these). */
+    public List<Operation> active() { return active; }
+
+    /** @return the next finished operation, or null */
+    public Operation pollFinished() { return finished.poll(); }
+
+    public void dispose() {
+        for (Operation op : active) op.cancel();
+        workers.shutdownNow();
+        walkers.shutdownNow();
+    }
+
+    private Operation submit(Operation op) {
+        active.add(op);
+        workers.execute(() -> run(op));
+        return op;
+    }
+
+    private void run(Operation op) {
+        File src = op.source.file().getAbsoluteFile();
+        try {
+            if (!src.exists() && !FileIo.isSymlink(src)) throw new IOException("not found: " + op.source.name());
+            if (op.kind == Kind.DELETE) {
+                size(op, src);
+                walkers.invoke(new DeleteTask(op, src));
+            } else {
+                File dst = new File(op.targetDir.file().getAbsoluteFile(), src.getName());
+                if (dst.equals(src)) throw new IOException("already there");
+                if (dst.getPath().startsWith(src.getPath() + File.separator)) throw new IOException("cannot " + op.kind.name().toLowerCase() + " a folder into itself");
+                if (op.kind == Kind.MOVE && tryRename(op, src, dst)) return;
+                boolean existed = dst.exists();
+                size(op, src);
+                walkers.invoke(new CopyTask(op, src, dst));
+                if (op.cancelled) {
+                    if (!existed) walkers.invoke(new DeleteTask(null, dst)); // drop the partial copy
+                } else if (op.kind == Kind.MOVE) {
+                    op.doneFiles.set(0);
+                    walkers.invoke(new DeleteTask(null, src));
+                }
+            }
+            // A failing task cancels the rest too: keep its error
+            if (op.error != null) System.err.println(op.describe() + " failed: " + op.error);
+            else if (op.cancelled) op.error = "cancelled";
+        } catch (Exception e) {
+            op.error = (e.getMessage() != null) ? e.getMessage() : e.toString();
+            System.err.println(op.describe() + " failed: " + op.error);
+        } finally {
+            op.finished = true;
+            active.remove(op);
+            finished.add(op);
+            wake(true);
+        }
+    }
+
+    // Same disk: one rename, no bytes copied. An existing target (merged by copy + delete,
+    // which replaces files) or another disk (renameTo fails) falls back to the copy
+    private boolean tryRename(Operation op, File src, File dst) {
+        if (dst.exists() || !src.renameTo(dst)) return false;
+        op.totalFiles.set(1);
+        op.doneFiles.set(1);
+        op.sized = true;
+        return true;
+    }
+
+    private void size(Operation op, File src) {
+        walkers.invoke(new SizeTask(op, src));
+        op.sized = true;
+        wake(true);
+    }
+
+    // Progress changes many times a second; redraw the on-demand desktop at most ~10 times
+    private void wake(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastWake < 100) return;
+        lastWake = now;
+        if (Gdx.graphics != null) Gdx.graphics.requestRendering();
+    }
+
+    private static File[] children(File dir) throws IOException {
+        File[] out = dir.listFiles();
+        if (out == null) throw new IOException("could not list " + dir);
+        return out;
+    }
+
+    // A directory to descend into (links to directories are entries, not followed)
+    private static boolean isTree(File f) {
+        return f.isDirectory() && !FileIo.isSymlink(f);
+    }
+
+    // --- TREE TASKS (one per directory, subdirectories forked) ---
+
+    @SuppressWarnings("serial") // never serialized
+    private final class SizeTask extends RecursiveAction {
+        final Operation op;
+        final File path;
+
+        SizeTask(Operation op, File path) { this.op = op; this.path = path; }
+
+        @Override protected void compute() {
+            if (op.cancelled) return;
+            try {
+                if (!isTree(path)) {
+                    op.totalFiles.incrementAndGet();
+                    op.totalBytes.addAndGet(path.length());
+                    return;
+                }
+                op.totalFiles.incrementAndGet(); // the directory itself (deletes count it)
+                List<SizeTask> subs = new ArrayList<>();
+                for (File c : children(path)) subs.add(new SizeTask(op, c));
+                invokeAll(subs);
+            } catch (IOException e) {
+                op.error = e.getMessage();
+            }
+        }
+    }
+
+    @SuppressWarnings("serial") // never serialized
+    private final class CopyTask extends RecursiveAction {
+        final Operation op;
+        final File src, dst;
+
+        CopyTask(Operation op, File src, File dst) { this.op = op; this.src = src; this.dst = dst; }
+
+        @Override protected void compute() {
+            if (op.cancelled) return;
+            try {
+                if (!isTree(src)) {
+                    copyFile(src, dst);
+                    return;
+                }
+                if (!dst.isDirectory() && !dst.mkdirs()) throw new IOException("could not create " + dst);
+                op.doneFiles.incrementAndGet();
+                List<CopyTask> subs = new ArrayList<>();
+                for (File c : children(src)) subs.add(new CopyTask(op, c, new File(dst, c.getName())));
+                invokeAll(subs);
+            } catch (IOException e) {
+                op.error = e.getMessage();
+                op.cancel(); // stop the other tasks; the partial copy is removed
+            }
+        }
+
+        private void copyFile(File from, File to) throws IOException {
+            try (FileChannel in = FileIo.openRead(from);
+                 FileChannel out = FileIo.openWrite(to)) {
+                long size = in.size(), pos = 0;
+                while (pos < size && !op.cancelled) {
+                    long n = in.transferTo(pos, Math.min(CHUNK, size - pos), out);
+                    if (n <= 0) break;
+                    pos += n;
+                    op.doneBytes.addAndGet(n);
+                    wake(false);
+                }
+            }
+            to.setLastModified(from.lastModified());
+            op.doneFiles.incrementAndGet();
+        }
+    }
+
+    // op is null when cleaning up after a copy (progress already reported)
+    @SuppressWarnings("serial") // never serialized
+    private final class DeleteTask extends RecursiveAction {
+        final Operation op;
+        final File path;
+
+        DeleteTask(Operation op, File path) { this.op = op; this.path = path; }
+
+        @Override protected void compute() {
+            if (op != null && op.cancelled) return;
+            try {
+                if (isTree(path)) {
+                    List<DeleteTask> subs = new ArrayList<>();
+                    for (File c : children(path)) subs.add(new DeleteTask(op, c));
+                    invokeAll(subs);
+                    if (op != null && op.cancelled) return;
+                }
+                // exists() follows links; a dangling link is still an entry to remove
+                if ((path.exists() || FileIo.isSymlink(path)) && !path.delete()) throw new IOException("could not delete " + path);
+                if (op != null) {
+                    op.doneFiles.incrementAndGet();
+                    wake(false);
+                }
+            } catch (IOException e) {
+                if (op != null) op.error = e.getMessage();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.nerddaygames.shell;
+
+/**
+ * IconGrid - fixed-cell layout for folder windows, so they can be virtualized.
+ *
+ * Item i sits in column i % cols, row i / cols; row 0 is at the top. Positions are
+ * relative to a top reference line (y grows up, rows go down from it), so the window
+ * only adds its origin and scroll offset. Everything is arithmetic: finding the visible
+ * rows and the item under the pointer costs the same for 10 items or 100000.
+ */
+public class IconGrid {
+    public final float padX, padTop, cellW, cellH, iconSize;
+    private int cols = 1;
+
+    public IconGrid(float padX, float padTop, float cellW, float cellH, float iconSize) {
+        this.padX = padX;
+        this.padTop = padTop;
+        this.cellW = cellW;
+        this.cellH = cellH;
+        this.iconSize = iconSize;
+    }
+
+    /** Columns that fit in width (at least one). */
+    public void setWidth(float width) {
+        cols = Math.max(1, (int) ((width - padX) / cellW));
+    }
+
+    public int getCols() { return cols; }
+
+    public int rows(int count) {
+        return (count + cols - 1) / cols;
+    }
+
+    /** Left edge of item i, from the content's left edge. */
+    public float cellX(int i) {
+        return padX + (i % cols) * cellW;
+    }
+
+    /** Bottom edge of item i's icon, from the top reference line (negative = below it). */
+    public float cellY(int i) {
+        return -padTop - (i / cols) * cellH;
+    }
+
+    /** First row whose icon bottom is at or below clipTop, given the top line's y. */
+    public int firstRow(float top, float clipTop) {
+        return Math.max(0, (int) Math.ceil((top - clipTop - padTop) / cellH));
+    }
+
+    /** Last row whose icon bottom is at or above clipBottom (may exceed the row count). */
+    public int lastRow(float top, float clipBottom) {
+        return (int) Math.floor((top - clipBottom - padTop) / cellH);
+    }
+
+    /**
+     * Item whose icon contains the point.
+     * @param dx distance right of the content's left edge
+     * @param dy distance below the top reference line
+     * @return the index, or -1 for a gap between icons or past the last item
+     */
+    public int indexAt(float dx, float dy, int count) {
+        int col = (int) Math.floor((dx - padX) / cellW);
+        if (col < 0 || col >= cols || dx - padX - col * cellW > iconSize) return -1;
+        int row = (int) Math.ceil((dy - padTop) / cellH);
+        if (row < 0 || dy < padTop + row * cellH - iconSize) return -1;
+        int i = row * cols + col;
+        return (i < count) ? i : -1;
+    }
+
+    /** Largest useful scroll offset for count items in a view of viewHeight. */
+    public float maxScroll(int count, float viewHeight) {
+        return Math.max(0, padTop + rows(count) * cellH - viewHeight);
+    }
+}
@@ -2,6 +2,15 @@ package com.nerddaygames.shell;
 
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.Json;
+import com.nerddaygames.engine.CartFile;
+import com.nerddaygames.engine.LuaJson;
+import com.nerddaygames.engine.ProjectStore;
+import com.nerddaygames.engine.WriteBehind;
+import com.nerddaygames.engine.graphics.Palette;
+import org.luaj.vm2.LuaValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 
 public class Project {
     private FileHandle projectDir;
@@ -12,15 +21,21 @@ public class Project {
         loadConfig();
     }
 
+    // From the shared ProjectStore: the config tool's last write, even before it is on disk
     private void loadConfig() {
-        FileHandle configFile = projectDir.child("project.json");
-        if (configFile.exists()) {
+        byte[] json = ProjectStore.open(projectDir).bytes("project.json");
+        if (json != null) {
             try {
-                config = new Json().fromJson(ProjectConfig.class, configFile);
-            } catch (Exception e) {
-                // Fallback if json is corrupt
-                config = new ProjectConfig();
-                config.name = "Unknown Project";
+                config = parseConfig(json);
+            } catch (Exception strict) {
+                // Hand-edited files may use libGDX's relaxed JSON (unquoted keys etc.)
+                try {
+                    config = new Json().fromJson(ProjectConfig.class, new String(json, "UTF-8"));
+                } catch (Exception e) {
+                    // Fallback if json is corrupt
+                    config = new ProjectConfig();
+                    config.name = "Unknown Project";
+                }
             }
         } else {
             // Default config if missing
@@ -29,6 +44,18 @@ public class Project {
         }
     }
 
+    // Straight from bytes to a table to fields (no reflection)
+    private static ProjectConfig parseConfig(byte[] json) throws IOException {
+        LuaValue t = LuaJson.decode(new ByteArrayInputStream(json));
+        ProjectConfig c = new ProjectConfig();
+        c.name = t.get("name").optjstring(c.name);
+        c.author = t.get("author").optjstring(c.author);
+        c.version = t.get("version").optjstring(c.version);
+        c.width = t.get("width").optint(c.width);
+        c.height = t.get("height").optint(c.height);
+        return c;
+    }
+
     /**
      * Helper to get a file inside the project folder.
      */
@@ -44,6 +71,17 @@ public class Project {
         return projectDir;
     }
 
+    /**
+     * Pack the project folder into <dir name>.cart beside it (see CartFile).
+     */
+    public FileHandle exportCart() throws IOException {
+        // Next to the project folder, so the desktop lists it and launches it like a program
+        FileHandle out = projectDir.parent().child(projectDir.name() + "." + CartFile.EXTENSION);
+        WriteBehind.shared().flush(); // pack reads the files from disk
+        CartFile.pack(projectDir, out.file(), new Palette());
+        return out;
+    }
+
     // --- CONFIG MODEL ---
     public static class ProjectConfig {
         public String name = "New Project";
@@ -9,50 +9,174 @@ import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.utils.viewport.FitViewport;
 import com.nerddaygames.Main;
+import com.nerddaygames.engine.CartFile;
+import com.nerddaygames.engine.ChunkCache;
 import com.nerddaygames.engine.FantasyVM;
+import com.nerddaygames.engine.InputManager;
 import com.nerddaygames.engine.Profile;
+import com.nerddaygames.engine.VmSnapshot;
+import com.nerddaygames.engine.WriteBehind;
+
+import java.io.File;
 
 public class RunScreen extends ScreenAdapter {
+    // The last run's VM, recycled (FantasyVM.recycle) for the next Run of the same folder
+    private static FantasyVM spare;
+    private static String spareSource;
+
     private Main game;
     private FantasyVM vm;
     private SpriteBatch batch;
     private FitViewport viewport;
-    private FileHandle projectDir;
+    private FileHandle projectDir;       // null for a cart: it has no editable project
+    private final FileHandle source;     // what was launched (folder or .cart), for reloads
+    private final File suspendFile;      // Profile.suspendFile, null = off
+    private boolean suspended = false;
+    private boolean finished = false;    // suspended and released (ESC, restart or app exit)
+    private final boolean parkable;      // a project folder: its VM is kept warm on exit
+
+    // --- TIME TO FIRST FRAME ---
+    private final long startNanos = System.nanoTime();
+    private final long startMisses = ChunkCache.shared().misses;
+    private boolean warm = false;
+    private boolean firstFrame = true;
 
+    /**
+     * Run a project folder (main.lua) or a packed .cart file (CartFile).
+     */
     public RunScreen(Main game, FileHandle projectDir) {
+        this(game, projectDir, true);
+    }
+
+    /**
+     * @param allowResume resume from Profile.suspendFile when it holds a session of the same code
+     */
+    public RunScreen(Main game, FileHandle projectDir, boolean allowResume) {
         this.game = game;
-        this.projectDir = projectDir;
+        this.source = projectDir;
+        boolean isCart = projectDir != null && !projectDir.isDirectory() && CartFile.EXTENSION.equals(projectDir.extension());
+        // A project folder is read from the editor's ProjectStore (no disk round trip);
+        // a cart is read straight from disk, so saves written behind must land first
+        if (isCart) WriteBehind.shared().flush();
+        FileHandle cart = isCart ? projectDir : null;
+        this.projectDir = isCart ? null : projectDir;
+        this.parkable = !isCart && projectDir != null;
         this.batch = new SpriteBatch();
 
-        Profile p = Profile.createNerdOS();
-
-        // Game has CPU timeout enabled (flag = 1)
-        this.vm = new FantasyVM(p, 1);
+        // Same folder as the last run: its VM (GL buffers, fonts, Ram) with a new Lua state
+        String key = parkable ? projectDir.file().getAbsolutePath() : null;
+        if (spare != null && key != null && key.equals(spareSource)) {
+            this.vm = spare;
+            vm.input = new InputManager();
+            warm = true;
+        } else {
+            if (spare != null) spare.dispose();
+            // Game has CPU timeout enabled (flag = 1)
+            this.vm = new FantasyVM(Profile.createNerdOS(), 1);
+        }
+        spare = null;
+        spareSource = null;
+        Profile p = vm.profile;
+        this.suspendFile = (p.suspendFile != null) ? new File(p.suspendFile) : null;
 
         // Set project directory on VM so editor run/save use the project folder
-        if (projectDir != null) {
-            vm.setProjectDir(projectDir);
+        if (this.projectDir != null) {
+            vm.setProjectDir(this.projectDir);
         }
 
         // FitViewport maintains aspect ratio (retro feel)
         this.viewport = new FitViewport(p.gameWidth, p.gameHeight);
         vm.setViewport(viewport);
 
-        FileHandle mainLua = projectDir.child("main.lua");
-        if (mainLua.exists()) {
-            try {
-                vm.scriptEngine.runScript(mainLua.readString(), mainLua.path());
-                if (vm.scriptEngine.globals.get("_init").isfunction()) {
-                    vm.scriptEngine.globals.get("_init").call();
-                }
-            } catch (Exception e) { System.err.println("Runtime Error: " + e.getMessage()); }
+        // Deterministic input log; must start before the cart's code runs
+        boolean logging = p.inputReplayFile != null || p.inputRecordFile != null;
+        if (p.inputReplayFile != null) vm.startReplay(new java.io.File(p.inputReplayFile));
+        else if (p.inputRecordFile != null) vm.startRecording(new java.io.File(p.inputRecordFile), System.nanoTime());
+
+        try {
+            boolean loaded = false;
+            String code = null;
+            if (cart != null) {
+                vm.sourceHash = CartFile.open(cart.file()).codeHash();
+            } else if ((code = vm.store.text("main.lua")) != null) {
+                vm.sourceHash = VmSnapshot.hashSources(vm.fs);
+            }
+
+            // A suspended session of the same code replaces loading and _init (not while logging input)
+            if (allowResume && !logging && tryResume()) return;
+
+            if (cart != null) {
+                long t0 = System.nanoTime();
+                loaded = vm.loadCart(cart.file());
+                if (loaded && vm.profile.logTimings) System.out.printf("Cart %s loaded in %.2f ms%n", cart.name(), (System.nanoTime() - t0) / 1e6);
+            } else if (code != null) {
+                // Named by its project path, so hot reload re-reads it through vm.fs
+                vm.scriptEngine.runScript(code, "main.lua");
+                loaded = true;
+            }
+            if (loaded && vm.scriptEngine.globals.get("_init").isfunction()) {
+                vm.scriptEngine.globals.get("_init").call();
+            }
+            if (loaded && !vm.hasCrashed) vm.captureInitSnapshot();
+        } catch (Exception e) { System.err.println("Runtime Error: " + e.getMessage()); }
+    }
+
+    /**
+     * Dispose the warm VM kept for the next Run (leaving the editor, app exit).
+     */
+    public static void releaseSpare() {
+        if (spare != null) spare.dispose();
+        spare = null;
+        spareSource = null;
+    }
+
+    private boolean tryResume() {
+        if (suspendFile == null || !suspendFile.exists()) return false;
+        try {
+            VmSnapshot snapshot = VmSnapshot.read(suspendFile);
+            if (snapshot.sourceHash != vm.sourceHash) {
+                System.out.println("Suspended session is for other code, starting fresh");
+                return false;
+            }
+            return vm.resume(snapshot);
+        } catch (Exception e) {
+            System.err.println("Could not resume " + suspendFile + ": " + e.getMessage());
+            return false;
         }
     }
 
+    // Save the running state so the next run of the same code continues from here
+    private void suspend() {
+        if (suspendFile == null || suspended || vm.hasCrashed) return;
+        suspended = true;
+        try {
+            long t0 = System.nanoTime();
+            VmSnapshot.capture(vm).write(suspendFile);
+            if (vm.profile.logTimings) System.out.printf("Suspended to %s in %.2f ms%n", suspendFile, (System.nanoTime() - t0) / 1e6);
+        } catch (Exception e) {
+            System.err.println("Suspend failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void show() {
+        // Carts animate every frame
+        Gdx.graphics.setContinuousRendering(true);
+    }
+
     @Override
     public void render(float delta) {
         if (Gdx.input.isKeyJustPressed(Input.Keys.ESCAPE)) {
-            game.setScreen(new EditorScreen(game, projectDir));
+            dispose();
+            // A cart was launched from the desktop; a project folder goes back to its editor
+            game.setScreen(projectDir != null ? new EditorScreen(game, projectDir) : new DesktopScreen(game));
+            return;
+        }
+        if (Gdx.input.isKeyJustPressed(vm.profile.restartKey) && !vm.restart()) {
+            // Resumed sessions have no post-_init snapshot: load the cart again
+            suspended = true; // a fresh run replaces this session
+            dispose();
+            game.setScreen(new RunScreen(game, source, false));
             return;
         }
         vm.update(delta);
@@ -66,8 +190,46 @@ public class RunScreen extends ScreenAdapter {
         Texture t = vm.getScreenTexture();
         batch.draw(t, 0, 0, viewport.getWorldWidth(), viewport.getWorldHeight(), 0, 0, t.getWidth(), t.getHeight(), false, true);
         batch.end();
+
+        if (firstFrame) {
+            firstFrame = false;
+            if (vm.profile.logTimings) System.out.printf("First frame in %.2f ms (%s VM, %d chunks compiled)%n", (System.nanoTime() - startNanos) / 1e6,
+                warm ? "warm" : "new", ChunkCache.shared().misses - startMisses);
+        }
     }
 
     @Override public void resize(int w, int h) { viewport.update(w, h, true); }
-    @Override public void dispose() { vm.dispose(); batch.dispose(); }
+
+    // Game.dispose() (window closed) only hides the screen: the session is still suspended,
+    // the input log and cartdata closed, and the VM disposed rather than kept warm
+    @Override
+    public void hide() {
+        if (!finished) finish(false);
+    }
+
+    @Override
+    public void dispose() {
+        if (!finished) finish(parkable);
+    }
+
+    private void finish(boolean park) {
+        finished = true;
+        suspend();
+        batch.dispose();
+        if (!park) {
+            vm.dispose();
+            return;
+        }
+        // Rebuilt now, off the next Run's path to its first frame
+        try {
+            vm.recycle();
+        } catch (Exception e) {
+            System.err.println("Could not keep the VM warm: " + e.getMessage());
+            vm.dispose();
+            return;
+        }
+        if (spare != null) spare.dispose();
+        spare = vm;
+        spareSource = projectDir.file().getAbsolutePath();
+    }
 }
@@ -4,15 +4,23 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.InputProcessor;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
+import com.nerddaygames.engine.EditJournal;
 import com.nerddaygames.engine.FantasyVM;
 import com.nerddaygames.engine.Profile;
 import com.nerddaygames.engine.ScriptEngine;
 import com.nerddaygames.shell.Project;
+import org.luaj.vm2.LuaString;
 import org.luaj.vm2.LuaValue;
 import org.luaj.vm2.Varargs;
 import org.luaj.vm2.lib.OneArgFunction;
 import org.luaj.vm2.lib.VarArgFunction;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * LuaTool - runs small Lua-based tools using a dedicated FantasyVM instance.
  *
@@ -34,6 +42,7 @@ public class LuaTool implements ToolModule {
     private final ScreenViewport viewport;
     private Project currentProject;
     private ScriptEngine.SystemCallback systemCallback;
+    private final Map<String, EditJournal> journals = new HashMap<>(); // autosave, by project path
 
     // Demo content to write into new projects (created once)
     private static final String DEMO_MAIN = ""
@@ -67,11 +76,23 @@ public class LuaTool implements ToolModule {
     private static final String PROJECT_MARKER = ".project_initialized";
 
     public LuaTool(String name, String toolScriptPath) {
+        this(name, toolScriptPath, 0.5f, 1f);
+    }
+
+    /**
+     * @param minScale lowest render scale the tool accepts under load (text-heavy tools want ~1)
+     * @param maxScale highest render scale (1 = native window pixels)
+     */
+    public LuaTool(String name, String toolScriptPath, float minScale, float maxScale) {
         this.name = name;
         Profile p = new Profile();
-        // High-res defaults for editor tools
+        // High-res defaults for editor tools; resize() sets the real window size
         p.width = 1280;
         p.height = 720;
+        p.minRenderScale = minScale;
+        p.maxRenderScale = maxScale;
+        // Tools only redraw on input, timers (wake) or invalidate()
+        p.idleRendering = true;
 
         // 0 = disable timeout for editor tools
         toolVM = new FantasyVM(p, 0);
@@ -172,46 +193,68 @@ public class LuaTool implements ToolModule {
         if (toolVM == null || toolVM.scriptEngine == null) return;
 
         LuaValue projectLib = LuaValue.tableOf();
+        // Both go through the tool VM's FileSystem (rooted at the project by loadProject), which
+        // keeps project files in the shared ProjectStore: every tool reads the same copy, and a
+        // write reaches the other tools (_on_asset_changed(path)) without touching the disk
         projectLib.set("read", new OneArgFunction() {
             @Override public LuaValue call(LuaValue path) {
-                if (currentProject == null) return LuaValue.NIL;
-                try {
-                    // Try project.getAsset first (read), fallback to project.getDir()
-                    FileHandle f = currentProject.getAsset(path.checkjstring());
-                    if (f != null && f.exists()) {
-                        byte[] bytes = f.readBytes();
-                        return LuaValue.valueOf(new String(bytes, "UTF-8"));
-                    }
-                    FileHandle root = currentProject.getDir();
-                    if (root != null) {
-                        FileHandle fh = root.child(path.checkjstring());
-                        if (fh.exists()) return LuaValue.valueOf(fh.readString("UTF-8"));
-                    }
-                } catch(Exception e){ /* ignore */ }
-                return LuaValue.NIL;
+                if (currentProject == null || toolVM.fs == null) return LuaValue.NIL;
+                String content = toolVM.fs.read(path.checkjstring());
+                return (content != null) ? LuaValue.valueOf(content) : LuaValue.NIL;
             }
         });
         projectLib.set("write", new VarArgFunction() {
             @Override public Varargs invoke(Varargs args) {
-                if (currentProject == null) return LuaValue.FALSE;
-                try {
-                    String path = args.checkjstring(1);
-                    String content = args.checkjstring(2);
-                    FileHandle root = currentProject.getDir();
-                    FileHandle f = null;
-                    if (root != null) {
-                        f = root.child(path);
-                    }
-                    if (f == null) {
-                        // fallback to getAsset (may be read-only) — but prefer root
-                        f = currentProject.getAsset(path);
-                    }
-                    if (f == null) return LuaValue.FALSE;
-                    FileHandle parent = f.parent();
-                    if (parent != null && !parent.exists()) parent.mkdirs();
-                    f.writeString(content, false, "UTF-8");
-                    return LuaValue.TRUE;
-                } catch (Exception e) { return LuaValue.FALSE; }
+                if (currentProject == null || toolVM.fs == null) return LuaValue.FALSE;
+                return LuaValue.valueOf(toolVM.fs.write(args.checkjstring(1), args.checkjstring(2)));
+            }
+        });
+        // project.commit("sprites" | "map.bin" | "flags.bin" | "music.bin") -> ok
+        // Publishes this tool's sprite sheet or Ram image to the other tools and the run screen
+        projectLib.set("commit", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue what) {
+                String w = what.checkjstring();
+                return LuaValue.valueOf("sprites".equals(w) ? toolVM.commitSprites() : toolVM.commitMemory(w));
+            }
+        });
+        // project.version(path) -> changes seen so far (cheap polling without reading)
+        projectLib.set("version", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue path) {
+                return LuaValue.valueOf(toolVM.store != null ? toolVM.store.version(path.checkjstring()) : 0);
+            }
+        });
+        // Autosave journal (EditJournal): edits go to a crash-safe log next to the file on a
+        // background thread and reach the file itself on save, when idle and on dispose.
+        // project.journal_open(path) -> text, recovered  (text includes replayed edits; nil: no journal)
+        projectLib.set("journal_open", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                return journalOpen(args.checkjstring(1));
+            }
+        });
+        // project.journal_edit(path, offset, delete, insert): byte offsets into the text
+        projectLib.set("journal_edit", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                EditJournal j = journals.get(args.checkjstring(1));
+                if (j == null) return LuaValue.FALSE;
+                LuaString ins = args.optstring(4, LuaValue.valueOf(""));
+                byte[] insert = new byte[ins.m_length];
+                System.arraycopy(ins.m_bytes, ins.m_offset, insert, 0, ins.m_length);
+                j.edit(args.checkint(2), args.checkint(3), insert);
+                return LuaValue.TRUE;
+            }
+        });
+        // project.journal_save(path, text) -> ok  (explicit save: write, then restart the journal)
+        projectLib.set("journal_save", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                if (currentProject == null || toolVM.fs == null) return LuaValue.FALSE;
+                String path = args.checkjstring(1);
+                LuaString text = args.checkstring(2);
+                byte[] bytes = new byte[text.m_length];
+                System.arraycopy(text.m_bytes, text.m_offset, bytes, 0, text.m_length);
+                if (!toolVM.fs.writeBytes(path, bytes, 0, bytes.length)) return LuaValue.FALSE;
+                EditJournal j = journals.get(path);
+                if (j != null) j.saved(bytes);
+                return LuaValue.TRUE;
             }
         });
         toolVM.scriptEngine.globals.set("project", projectLib);
@@ -230,9 +273,55 @@ public class LuaTool implements ToolModule {
                 return LuaValue.NONE;
             }
         });
+
+        // sys.export() -> path of the packed .cart, or nil, message
+        sys.set("export", new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                if (currentProject == null) return LuaValue.varargsOf(LuaValue.NIL, LuaValue.valueOf("no project"));
+                try {
+                    return LuaValue.valueOf(currentProject.exportCart().path());
+                } catch (Exception e) {
+                    return LuaValue.varargsOf(LuaValue.NIL, LuaValue.valueOf(String.valueOf(e.getMessage())));
+                }
+            }
+        });
+    }
+
+    private Varargs journalOpen(String path) {
+        if (currentProject == null || toolVM.fs == null) return LuaValue.NIL;
+        EditJournal old = journals.remove(path);
+        if (old != null) old.close();
+        File target = toolVM.fs.userFile(path);
+        if (target == null) return LuaValue.NIL;
+        try {
+            EditJournal j = EditJournal.open(target, bytes -> {
+                if (!toolVM.fs.writeBytes(path, bytes, 0, bytes.length)) throw new IOException("cannot write " + path);
+            });
+            journals.put(path, j);
+            byte[] text = j.text();
+            if (text.length == 0 && !target.isFile()) {
+                // Not in the project folder (yet): start from the mounted/bundled copy if there is one
+                String fallback = toolVM.fs.read(path);
+                if (fallback != null) {
+                    text = fallback.getBytes(StandardCharsets.UTF_8);
+                    j.edit(0, 0, text);
+                }
+            }
+            return LuaValue.varargsOf(LuaValue.valueOf(text), LuaValue.valueOf(j.wasRecovered()));
+        } catch (Exception e) {
+            Gdx.app.error("LuaTool", "journal_open " + path + " failed: " + e.getMessage(), e);
+            String content = toolVM.fs.read(path);
+            return (content != null) ? LuaValue.valueOf(content) : LuaValue.NIL;
+        }
+    }
+
+    private void closeJournals() {
+        for (EditJournal j : journals.values()) j.close();
+        journals.clear();
     }
 
     @Override public void loadProject(Project project) {
+        closeJournals(); // the previous project's edits reach its files
         this.currentProject = project;
 
         // Ensure the VM works with project files (set project dir early)
@@ -272,6 +361,7 @@ public class LuaTool implements ToolModule {
 
     @Override public void update(float delta) { if (toolVM != null) toolVM.update(delta); }
     @Override public void render() { if (toolVM != null) toolVM.render(); }
+    @Override public boolean needsFrame() { return toolVM != null && toolVM.needsFrame(); }
 
     @Override public void resize(int w, int h) {
         if (toolVM != null) {
@@ -280,13 +370,18 @@ public class LuaTool implements ToolModule {
         }
     }
 
+    public float getRenderScale() { return (toolVM != null) ? toolVM.getRenderScale() : 1f; }
+
     public com.badlogic.gdx.graphics.Texture getTexture() {
         return (toolVM != null) ? toolVM.getScreenTexture() : null;
     }
 
     @Override public String getName() { return name; }
-    @Override public void dispose() { if (toolVM != null) toolVM.dispose(); }
-    @Override public void onFocus() { }
+    @Override public void dispose() {
+        closeJournals();
+        if (toolVM != null) toolVM.dispose();
+    }
+    @Override public void onFocus() { if (toolVM != null) toolVM.invalidate(); }
     @Override public void onBlur() { }
     @Override public InputProcessor getInputProcessor() { return (toolVM != null) ? toolVM.input : null; }
 }
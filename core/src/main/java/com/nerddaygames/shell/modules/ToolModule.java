@@ -13,6 +13,9 @@ public interface ToolModule {
     void resize(int width, int height);
     void dispose();
 
+    // Idle rendering: true if the tool wants another frame without new input
+    boolean needsFrame();
+
     // Input focus handling
     void onFocus();
     void onBlur();
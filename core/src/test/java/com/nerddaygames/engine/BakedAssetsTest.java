@@ -0,0 +1,163 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+import com.badlogic.gdx.utils.Json;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * A bake is only used for exactly what it was made from; anything stale returns null so the
+ * caller compiles the script or runs FreeType itself. Font hits need GL and are not covered.
+ */
+public class BakedAssetsTest {
+    private static final String SCRIPT = "system/tools/code.lua";
+    private static final String SOURCE = "x = 6 * 7";
+
+    private File dir;
+    private FileHandle baked;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("baked").toFile();
+        baked = new FileHandle(new File(dir, "baked"));
+        baked.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        new FileHandle(dir).deleteDirectory();
+    }
+
+    private BakedAssets.ScriptEntry script(String path, String source) {
+        byte[] utf8 = source.getBytes(StandardCharsets.UTF_8);
+        BakedAssets.ScriptEntry e = new BakedAssets.ScriptEntry();
+        e.path = path;
+        e.luac = "lua/" + path.replace('/', '_') + "c";
+        e.length = utf8.length;
+        e.sha256 = BakedAssets.sha256(utf8);
+        baked.child(e.luac).writeBytes(CartFile.compile(source, path), false);
+        return e;
+    }
+
+    private BakedAssets.FontEntry font(String name, FileHandle source, FreeTypeFontParameter p) {
+        byte[] b = source.readBytes();
+        BakedAssets.FontEntry e = new BakedAssets.FontEntry();
+        e.name = name;
+        e.source = source.name();
+        e.spec = BakedAssets.spec(p);
+        e.fnt = name + ".fnt";
+        e.page = name + ".png";
+        e.sourceCrc = BakedAssets.crc(b, b.length);
+        e.sourceLength = b.length;
+        return e;
+    }
+
+    private BakedAssets bake(BakedAssets.Manifest m) {
+        baked.child(BakedAssets.MANIFEST).writeString(new Json().toJson(m), false, "UTF-8");
+        return new BakedAssets(baked);
+    }
+
+    private static FreeTypeFontParameter parameter(int size) {
+        FreeTypeFontParameter p = new FreeTypeFontParameter();
+        p.size = size;
+        p.mono = true;
+        return p;
+    }
+
+    @Test
+    public void chunkOnlyForTheSourceItWasBakedFrom() {
+        BakedAssets.Manifest m = new BakedAssets.Manifest();
+        m.scripts = new BakedAssets.ScriptEntry[] { script(SCRIPT, SOURCE) };
+        BakedAssets assets = bake(m);
+
+        byte[] luac = assets.chunk(SCRIPT, SOURCE);
+        assertNotNull(luac);
+        assertArrayEquals(baked.child(m.scripts[0].luac).readBytes(), luac);
+        assertNotNull("a leading '/' is the same path", assets.chunk("/" + SCRIPT, SOURCE));
+        assertEquals(2, assets.chunkHits);
+
+        Globals lua = JsePlatform.standardGlobals();
+        lua.load(new ByteArrayInputStream(luac), SCRIPT, "b", lua).call();
+        assertEquals(42, lua.get("x").toint());
+
+        assertNull("edited, same length", assets.chunk(SCRIPT, "x = 6 * 8"));
+        assertNull("edited, longer", assets.chunk(SCRIPT, SOURCE + " + 1"));
+        assertNull("same source under another name", assets.chunk("system/tools/map.lua", SOURCE));
+        assertEquals(3, assets.chunkMisses);
+    }
+
+    @Test
+    public void staleChunkFallsBackToCompilingTheSource() {
+        BakedAssets.Manifest m = new BakedAssets.Manifest();
+        m.scripts = new BakedAssets.ScriptEntry[] { script(SCRIPT, SOURCE) };
+        BakedAssets assets = bake(m);
+
+        // What ScriptEngine does: baked bytecode if the bake still matches, else sugar and compile
+        String edited = "x = 6 * 8";
+        Globals lua = JsePlatform.standardGlobals();
+        byte[] luac = assets.chunk(SCRIPT, edited);
+        assertNull(luac);
+        lua.load(LuaSyntaxCandy.process(edited), SCRIPT).call();
+        assertEquals("the edit runs, not the bake", 48, lua.get("x").toint());
+
+        // Bytecode file gone from the bake: a miss too
+        baked.child(m.scripts[0].luac).delete();
+        assertNull(new BakedAssets(baked).chunk(SCRIPT, SOURCE));
+    }
+
+    @Test
+    public void staleFontEntriesReturnNullWithoutTouchingGl() throws Exception {
+        FileHandle ttf = new FileHandle(new File(dir, "os.ttf"));
+        ttf.writeBytes(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, false);
+        BakedAssets.Manifest m = new BakedAssets.Manifest();
+        m.fonts = new BakedAssets.FontEntry[] {
+            font("os", ttf, parameter(8)),
+            font("game", ttf, parameter(16)),
+            font("big", ttf, parameter(32)),
+        };
+        BakedAssets assets = bake(m);
+
+        assertNull("no such bake", assets.font("title", ttf, parameter(8)));
+        assertNull("other generator settings", assets.font("big", ttf, parameter(24)));
+        assertNull("missing source", assets.font("game", new FileHandle(new File(dir, "gone.ttf")), parameter(16)));
+
+        ttf.writeBytes(new byte[] { 1, 2, 3, 4, 5, 6, 7, 9 }, false);
+        assertNull("source edited, same length", assets.font("os", ttf, parameter(8)));
+        assertEquals(0, assets.fontHits);
+
+        // Checked once: the entry stays stale even if the source is put back
+        ttf.writeBytes(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, false);
+        assertNull(assets.font("os", ttf, parameter(8)));
+        assertEquals(0, assets.fontHits);
+    }
+
+    @Test
+    public void unusableManifestMeansNoBake() {
+        assertEquals(0, new BakedAssets(null).manifest().scripts.length);
+        assertNull(new BakedAssets(baked).chunk(SCRIPT, SOURCE));
+
+        BakedAssets.Manifest old = new BakedAssets.Manifest();
+        old.format = BakedAssets.FORMAT - 1;
+        old.scripts = new BakedAssets.ScriptEntry[] { script(SCRIPT, SOURCE) };
+        assertNull("older format", bake(old).chunk(SCRIPT, SOURCE));
+
+        baked.child(BakedAssets.MANIFEST).writeString("{ scripts: [ oops", false, "UTF-8");
+        BakedAssets broken = new BakedAssets(baked);
+        assertEquals(0, broken.manifest().scripts.length);
+        assertNull(broken.chunk(SCRIPT, SOURCE));
+    }
+}
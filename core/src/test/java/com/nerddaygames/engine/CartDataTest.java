@@ -0,0 +1,131 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// In-process part of CartDataCrashCheck: damaged journal tails (the kill rounds need a child process)
+public class CartDataTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("cartdata").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        new FileHandle(dir).deleteDirectory();
+    }
+
+    private File journal() {
+        return new File(dir, "game.cdata");
+    }
+
+    // Every slot set to gen, flushed
+    private static void writeGeneration(CartData data, int gen) {
+        for (int i = 0; i < CartData.SLOTS; i++) data.dset(i, gen);
+        data.flush();
+    }
+
+    // Reopened state: every slot equal, a generation no older than oldest
+    private int reopen(int oldest) throws Exception {
+        CartData data = new CartData(new Ram(), dir);
+        assertTrue(data.open("game"));
+        int gen = data.dget(0);
+        for (int i = 1; i < CartData.SLOTS; i++) assertEquals("slot " + i, gen, data.dget(i));
+        assertTrue("went back to " + gen, gen >= oldest);
+        data.close();
+        assertTrue(CartData.awaitDrained(5000));
+        return gen;
+    }
+
+    @Test
+    public void savedDataIsRestored() throws Exception {
+        CartData data = new CartData(new Ram(), dir);
+        assertFalse(data.open("game"));
+        writeGeneration(data, 1);
+        writeGeneration(data, 2);
+        data.close();
+        assertEquals(2, reopen(2));
+    }
+
+    @Test
+    public void tornTailDropsOnlyTheLastFlush() throws Exception {
+        CartData data = new CartData(new Ram(), dir);
+        data.open("game");
+        writeGeneration(data, 1);
+        writeGeneration(data, 2);
+        data.close();
+        assertTrue(CartData.awaitDrained(5000));
+        try (RandomAccessFile raf = new RandomAccessFile(journal(), "rw")) { raf.setLength(raf.length() - 3); }
+        assertEquals(1, reopen(1));
+        assertEquals(1, reopen(1)); // the torn bytes were cut off for good
+    }
+
+    @Test
+    public void corruptLastRecordIsDropped() throws Exception {
+        CartData data = new CartData(new Ram(), dir);
+        data.open("game");
+        writeGeneration(data, 1);
+        writeGeneration(data, 2);
+        data.close();
+        assertTrue(CartData.awaitDrained(5000));
+        try (RandomAccessFile raf = new RandomAccessFile(journal(), "rw")) {
+            raf.seek(raf.length() - 5);
+            int b = raf.read();
+            raf.seek(raf.length() - 5);
+            raf.write(b ^ 0x5A); // a payload byte of the last record
+        }
+        assertEquals(1, reopen(1));
+    }
+
+    @Test
+    public void compactionKeepsTheJournalSmall() throws Exception {
+        CartData data = new CartData(new Ram(), dir);
+        data.coalesceMs = 1;
+        data.compactBytes = 4 * 1024;
+        data.open("game");
+        for (int gen = 1; gen <= 100; gen++) writeGeneration(data, gen);
+        data.close();
+        assertTrue(CartData.awaitDrained(5000));
+        assertTrue(data.compactions > 0);
+        assertTrue(journal().length() < 4 * 1024 + CartData.SIZE * 2);
+        assertEquals(100, reopen(100));
+    }
+
+    // close() hands the last changes over without waiting out the coalesce delay or the
+    // fsync; reopening meanwhile takes the draining journal over
+    @Test
+    public void closeDoesNotWaitAndReopenTakesOver() throws Exception {
+        CartData data = new CartData(new Ram(), dir);
+        data.coalesceMs = 60_000;
+        data.open("game");
+        for (int i = 0; i < CartData.SLOTS; i++) data.dset(i, 5);
+        data.sync();
+        data.close();
+
+        CartData again = new CartData(new Ram(), dir);
+        assertTrue(again.open("game"));
+        assertEquals(5, again.dget(CartData.SLOTS - 1));
+        again.dset(0, 6);
+        again.close();
+        assertTrue("close() did not cut the coalesce delay short", CartData.awaitDrained(5000));
+
+        CartData fromDisk = new CartData(new Ram(), dir);
+        assertTrue(fromDisk.open("game"));
+        assertEquals(6, fromDisk.dget(0));
+        assertEquals(5, fromDisk.dget(1));
+        fromDisk.close();
+        assertTrue(CartData.awaitDrained(5000));
+    }
+}
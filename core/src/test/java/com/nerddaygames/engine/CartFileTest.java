@@ -0,0 +1,121 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.nerddaygames.engine.graphics.Palette;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CartFileTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("cartfile").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        new FileHandle(dir).deleteDirectory();
+    }
+
+    private File write(String path, String text) throws IOException {
+        File f = new File(dir, path);
+        f.getParentFile().mkdirs();
+        Files.write(f.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+
+    @Test
+    public void sectionsRoundTrip() throws Exception {
+        byte[] map = new byte[8192];
+        for (int i = 0; i < map.length; i++) map[i] = (byte) (i % 16 == 0 ? i / 16 : 0);
+        byte[] noise = new byte[300];
+        new Random(3).nextBytes(noise);
+        File file = new File(dir, "a.cart");
+        new CartFile.Writer().add(CartFile.CODE, "print('hi')").add(CartFile.MAP, map).add(CartFile.SFX, noise).write(file);
+
+        CartFile cart = CartFile.open(file);
+        assertEquals("print('hi')", cart.readString(CartFile.CODE));
+        assertArrayEquals(map, cart.readBytes(CartFile.MAP));
+        assertArrayEquals(noise, cart.readBytes(CartFile.SFX));
+        assertEquals(CartFile.FLAG_LZ4, cart.get(CartFile.MAP).flags);
+        assertEquals("incompressible data is stored as is", 0, cart.get(CartFile.SFX).flags);
+        assertEquals(map.length, cart.rawLength(CartFile.MAP));
+        assertFalse(cart.has(CartFile.LUAC));
+        assertNull(cart.readBytes(CartFile.LUAC));
+
+        ByteBuffer region = ByteBuffer.allocate(map.length + 16);
+        assertEquals(map.length, cart.readInto(CartFile.MAP, region, 16, region.capacity()));
+        assertArrayEquals(map, Arrays.copyOfRange(region.array(), 16, region.capacity()));
+        ByteBuffer small = ByteBuffer.allocate(100);
+        assertEquals("clamped to the region", 100, cart.readInto(CartFile.MAP, small, 0, 100));
+        assertArrayEquals(Arrays.copyOf(map, 100), small.array());
+    }
+
+    @Test
+    public void openRejectsOtherFiles() throws Exception {
+        File text = write("notes.cart", "not a cart at all");
+        try {
+            CartFile.open(text);
+            fail("opened a text file");
+        } catch (IOException expected) {
+        }
+        File file = new File(dir, "b.cart");
+        new CartFile.Writer().add(CartFile.CODE, "x = 1").write(file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, 20)); // section table cut short
+        try {
+            CartFile.open(file);
+            fail("opened a truncated cart");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void packTakesEveryModule() throws Exception {
+        File project = new File(dir, "game");
+        write("game/main.lua", "local util = require('lib.util')\nfunction _init() x = util.f() end");
+        write("game/lib/util.lua", "return { f = function() return 1 end }");
+        write("game/ai/enemy.lua", "enemy = {}");
+        write("game/.scratch.lua", "-- hidden");
+        write("game/notes.txt", "not code");
+        byte[] map = new byte[256];
+        map[3] = 9;
+        Files.write(new File(project, "map.bin").toPath(), map);
+
+        File out = new File(dir, "game.cart");
+        CartFile.pack(new FileHandle(project), out, new Palette());
+        CartFile cart = CartFile.open(out);
+        assertTrue(cart.has(CartFile.CODE) && cart.has(CartFile.LUAC));
+        assertArrayEquals(map, cart.readBytes(CartFile.MAP));
+        assertEquals(Arrays.asList("ai/enemy.lua", "lib/util.lua"), Arrays.asList(cart.modules().keySet().toArray()));
+        assertEquals("return { f = function() return 1 end }", cart.readString(cart.modules().get("lib/util.lua")));
+
+        // Mounted at "cart/", where a running cart's require() looks first
+        Vfs.ArchiveMount mount = Vfs.ArchiveMount.cart(out, cart);
+        assertEquals("enemy = {}", mount.find("ai/enemy.lua").readString());
+        assertNull(mount.find(".scratch.lua"));
+
+        long hash = cart.codeHash();
+        write("game/lib/util.lua", "return { f = function() return 2 end }");
+        CartFile.pack(new FileHandle(project), out, new Palette());
+        assertNotEquals("a module is part of the code", hash, CartFile.open(out).codeHash());
+    }
+}
@@ -0,0 +1,81 @@
+package com.nerddaygames.engine;
+
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+// Runs of a project in a new Lua state each time, require compiling through the cache
+public class ChunkCacheTest {
+    private static final int MODULES = 5;
+
+    private static Map<String, String> project() {
+        Map<String, String> project = new HashMap<>();
+        StringBuilder main = new StringBuilder("local mods = {}\n");
+        for (int i = 0; i < MODULES; i++) {
+            project.put("mod" + i + ".lua", module(i, 1));
+            main.append("mods[").append(i + 1).append("] = require('mod").append(i).append("')\n");
+        }
+        main.append("function _init()\n  total = 0\n  for _, m in ipairs(mods) do total = total + m.run() end\nend\n");
+        project.put("main.lua", main.toString());
+        return project;
+    }
+
+    private static String module(int id, int version) {
+        return "local M = {}\nfunction M.run() return " + (id * 100 + version) + " end\nreturn M\n";
+    }
+
+    private static long run(Map<String, String> project, ChunkCache cache) {
+        Globals g = JsePlatform.standardGlobals();
+        g.get("package").get("searchers").set(2, new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                String filename = args.checkjstring(1) + ".lua";
+                return LuaValue.varargsOf(compile(g, cache, project.get(filename), filename), LuaValue.valueOf(filename));
+            }
+        });
+        compile(g, cache, project.get("main.lua"), "main.lua").call();
+        g.get("_init").call();
+        return g.get("total").tolong();
+    }
+
+    // ScriptEngine.loadChunk without baked bytecode
+    private static LuaValue compile(Globals g, ChunkCache cache, String source, String name) {
+        Prototype p = cache.get(name, source);
+        try {
+            if (p == null) {
+                p = g.compilePrototype(new StringReader(LuaSyntaxCandy.process(source)), name);
+                cache.put(name, source, p);
+            }
+            return g.loader.load(p, name, g);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void onlyEditedModulesAreCompiledAgain() {
+        Map<String, String> project = project();
+        ChunkCache cache = new ChunkCache(ChunkCache.DEFAULT_MAX_CHARS);
+        long first = run(project, cache);
+        assertEquals(MODULES + 1, cache.misses);
+
+        project.put("mod3.lua", module(3, 2));
+        long misses = cache.misses;
+        assertEquals(first + 1, run(project, cache)); // the cached chunks still run the old modules' code
+        assertEquals(1, cache.misses - misses);
+
+        misses = cache.misses;
+        run(project, cache);
+        assertEquals("unchanged project compiled", misses, cache.misses);
+    }
+}
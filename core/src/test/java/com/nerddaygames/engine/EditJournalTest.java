@@ -0,0 +1,140 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EditJournalTest {
+    private static final String BASE = "function update() return 1 end\n";
+    // Header, then per record 16 bytes and the inserted text
+    private static final int HEADER = 24, RECORD = 16;
+
+    private File root, target, crashed;
+    private long idleMs;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("journal").toFile();
+        target = new File(root, "main.lua");
+        crashed = new File(Files.createTempDirectory("journal-crash").toFile(), "main.lua");
+        Files.write(target.toPath(), utf8(BASE));
+        idleMs = EditJournal.idleMs;
+        EditJournal.idleMs = 60_000; // no compaction unless a test asks for it
+    }
+
+    @After
+    public void tearDown() {
+        EditJournal.idleMs = idleMs;
+        WriteBehind.shared().flush();
+        new FileHandle(root).deleteDirectory();
+        new FileHandle(crashed.getParentFile()).deleteDirectory();
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] b) {
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static EditJournal open(File f) throws Exception {
+        return EditJournal.open(f, bytes -> WriteBehind.shared().submit(f, bytes));
+    }
+
+    private static void waitFor(BooleanSupplier c) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (!c.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < end);
+            Thread.sleep(1);
+        }
+    }
+
+    // Three edits synced to the journal, then the file and journal copied as a crash leaves them
+    private String editAndCrash() throws Exception {
+        EditJournal j = open(target);
+        j.edit(0, 8, utf8("local function"));
+        j.edit(5, 0, utf8("x"));
+        j.edit(20, 4, new byte[0]);
+        String expected = new StringBuilder(BASE).replace(0, 8, "local function").insert(5, "x").delete(20, 24).toString();
+        long length = HEADER + (RECORD + 14) + (RECORD + 1) + RECORD;
+        waitFor(() -> EditJournal.journalFile(target).length() == length);
+        assertEquals("journal touched the file", BASE, text(Files.readAllBytes(target.toPath())));
+        Files.copy(target.toPath(), crashed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(EditJournal.journalFile(target).toPath(), EditJournal.journalFile(crashed).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        j.close();
+        return expected;
+    }
+
+    @Test
+    public void recoversEditsAfterACrash() throws Exception {
+        String expected = editAndCrash();
+        EditJournal r = open(crashed);
+        assertTrue(r.wasRecovered());
+        assertEquals(expected, text(r.text()));
+        r.close();
+        WriteBehind.shared().flush();
+        assertEquals(expected, text(Files.readAllBytes(crashed.toPath())));
+        assertFalse(EditJournal.journalFile(crashed).exists());
+    }
+
+    @Test
+    public void tornLastRecordIsDropped() throws Exception {
+        String expected = editAndCrash();
+        Files.write(EditJournal.journalFile(crashed).toPath(), new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 0, 0}, StandardOpenOption.APPEND);
+        EditJournal r = open(crashed);
+        assertTrue(r.wasRecovered());
+        assertEquals(expected, text(r.text()));
+        r.close();
+    }
+
+    @Test
+    public void journalOfAFileChangedElsewhereIsDiscarded() throws Exception {
+        editAndCrash();
+        Files.write(crashed.toPath(), utf8("-- edited elsewhere\n"));
+        EditJournal r = open(crashed);
+        assertFalse(r.wasRecovered());
+        assertEquals("-- edited elsewhere\n", text(r.text()));
+        r.close();
+    }
+
+    @Test
+    public void idleJournalIsCompactedIntoTheFile() throws Exception {
+        EditJournal.idleMs = 50;
+        long compactions = EditJournal.compactions;
+        EditJournal j = open(target);
+        j.edit(0, 0, utf8("--\n"));
+        waitFor(() -> EditJournal.compactions > compactions);
+        WriteBehind.shared().flush();
+        assertEquals("--\n" + BASE, text(Files.readAllBytes(target.toPath())));
+        assertEquals(HEADER, EditJournal.journalFile(target).length());
+        j.close();
+    }
+
+    @Test
+    public void saveRestartsTheJournal() throws Exception {
+        EditJournal j = open(target);
+        j.edit(0, 0, utf8("--\n"));
+        byte[] saved = utf8("-- saved\n");
+        WriteBehind.shared().submit(target, saved);
+        j.saved(saved);
+        waitFor(() -> EditJournal.journalFile(target).length() == HEADER);
+        j.edit(saved.length, 0, utf8("-- end\n"));
+        j.close();
+        WriteBehind.shared().flush();
+        assertEquals("-- saved\n-- end\n", text(Files.readAllBytes(target.toPath())));
+        assertFalse(EditJournal.journalFile(target).exists());
+    }
+}
@@ -0,0 +1,156 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileSystemTest {
+    private File root;
+    private FileSystem fs;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("filesystem").toFile();
+        fs = new FileSystem(new FileHandle(root));
+    }
+
+    @After
+    public void tearDown() {
+        WriteBehind.shared().flush();
+        new FileHandle(root).deleteDirectory();
+    }
+
+    @Test
+    public void mkdirAndDeleteATree() throws Exception {
+        assertTrue(fs.mkdir("levels/world1"));
+        assertTrue(new File(root, "levels/world1").isDirectory());
+        Files.write(new File(root, "levels/world1/a.txt").toPath(), "a".getBytes(StandardCharsets.UTF_8));
+        assertTrue(fs.exists("levels/world1/a.txt"));
+
+        assertTrue(fs.delete("levels"));
+        assertFalse(new File(root, "levels").exists());
+    }
+
+    @Test
+    public void deleteWaitsForAPendingWrite() {
+        assertTrue(fs.write("save.txt", "queued"));
+        assertTrue(fs.delete("save.txt"));
+        WriteBehind.shared().flush();
+        assertFalse(new File(root, "save.txt").exists());
+    }
+
+    @Test
+    public void rootAndEscapesAreNotDeleted() {
+        assertFalse(fs.delete(""));
+        assertFalse(fs.delete("/"));
+        assertFalse(fs.delete("../x"));
+        assertTrue(root.isDirectory());
+    }
+
+    // A directory change seen by one VM (or the desktop) drops every FileSystem's resolves
+    @Test
+    public void invalidateAllPathsReachesOtherFileSystems() throws Exception {
+        Files.write(new File(root, "main.lua").toPath(), "x = 1".getBytes(StandardCharsets.UTF_8));
+        FileSystem other = new FileSystem(new FileHandle(root));
+        FileHandle first = other.resolve("main.lua");
+        assertSame(first, other.resolve("main.lua"));
+        fs.mkdir("new");
+        assertNotSame(first, other.resolve("main.lua"));
+    }
+
+    // A mount on one FileSystem (a running cart) is not added to the shared table
+    @Test
+    public void mountIsPerFileSystem() throws Exception {
+        File zip = new File(root, "game.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("project.json"));
+            out.write("{\"name\":\"game\"}".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        Vfs.ArchiveMount m = Vfs.ArchiveMount.open(zip);
+        fs.mount("cart/", m);
+        assertEquals("{\"name\":\"game\"}", fs.read("cart/project.json"));
+        fs.unmount(m);
+
+        // The copy fs mounts on leaves the table it was made from alone
+        Vfs base = new Vfs();
+        base.mount("", new Vfs.DirMount(new FileHandle(root)), false);
+        Vfs layered = new Vfs(base);
+        try (Vfs.ArchiveMount cart = Vfs.ArchiveMount.open(zip)) {
+            layered.mount("cart/", cart, true);
+            assertNull(base.resolve("cart/project.json"));
+            assertEquals(15, layered.resolve("cart/project.json").length());
+            assertEquals(zip.length(), layered.resolve("game.zip").length()); // base mounts still there
+        }
+    }
+
+    // The content cache notices a file edited outside the process, and its own writes
+    @Test
+    public void readSeesExternalEditsAndItsOwnWrites() throws Exception {
+        Files.write(new File(root, "mod0.lua").toPath(), "return 1\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("return 1\n", fs.read("mod0.lua"));
+        Files.write(new File(root, "mod0.lua").toPath(), "return 42\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("return 42\n", fs.read("mod0.lua"));
+        fs.write("mod0.lua", "return 7\n");
+        assertEquals("return 7\n", fs.read("mod0.lua"));
+    }
+
+    @Test
+    public void writesLandInOrderWithoutTempFiles() throws Exception {
+        for (int i = 0; i < 20; i++) fs.write("burst.txt", "v" + i);
+        assertEquals("v19", fs.read("burst.txt")); // before it lands
+        // A streamed write after a queued one wins
+        fs.write("order.bin", "queued");
+        try (OutputStream out = fs.openWrite("order.bin")) { out.write("streamed".getBytes(StandardCharsets.UTF_8)); }
+        WriteBehind.shared().flush();
+        assertEquals("v19", new String(Files.readAllBytes(new File(root, "burst.txt").toPath()), StandardCharsets.UTF_8));
+        assertEquals("streamed", fs.read("order.bin"));
+        for (String name : root.list()) assertFalse("temp file left: " + name, name.contains(".tmp"));
+    }
+
+    @Test
+    public void rangedReadsAndMappedArrays() throws Exception {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        assertTrue(fs.writeBytes("asset.bin", data, 0, data.length));
+        byte[] range = fs.readBytes("asset.bin", data.length - 10, 100);
+        assertEquals(10, range.length);
+        assertEquals(data[data.length - 10], range[0]);
+
+        ByteBuffer floats = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 4; i++) floats.putFloat(i * 0.5f);
+        floats.flip();
+        fs.writeBytes("floats.bin", floats);
+        WriteBehind.shared().flush();
+        Globals g = JsePlatform.standardGlobals();
+        g.set("back", TypedArray.wrap(TypedArray.Kind.F32, fs.map("floats.bin")));
+        g.set("ro", TypedArray.wrap(TypedArray.Kind.U8, fs.map("asset.bin")));
+        g.load("assert(#back == 4 and back[4] == 1.5, 'typed round trip')", "check").call();
+        try {
+            g.load("ro[1] = 0", "check").call();
+            fail("mapped array was writable");
+        } catch (LuaError expected) {}
+    }
+}
@@ -0,0 +1,130 @@
+package com.nerddaygames.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.OneArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Drives the tool frame loop (FantasyVM.update: beginFrame, then _update only when it says
+ * so) with a real Lua _update and checks how many frames ran, were skipped and updated.
+ * No Gdx application: render requests and the wake timer are no-ops, wake deadlines still count;
+ * a timer firing is fireWake(), what the timer's task calls.
+ */
+public class FrameSchedulerTest {
+    private FrameScheduler scheduler;
+    private Globals lua;
+
+    @Before
+    public void setUp() {
+        scheduler = new FrameScheduler();
+        lua = JsePlatform.standardGlobals();
+        // wake(secs) as ScriptEngine binds it
+        lua.set("wake", new OneArgFunction() {
+            @Override public LuaValue call(LuaValue secs) { scheduler.wakeAfter((float) secs.optdouble(0)); return LuaValue.NONE; }
+        });
+        lua.load("updates = 0 function _update() updates = updates + 1 end").call();
+    }
+
+    // One pass of the loop; returns whether the VM did any work
+    private boolean frame(boolean input) {
+        if (!scheduler.beginFrame(input)) return false;
+        lua.get("_update").call();
+        return true;
+    }
+
+    private void frames(int n, boolean input) {
+        for (int i = 0; i < n; i++) frame(input);
+    }
+
+    private int updates() {
+        return lua.get("updates").toint();
+    }
+
+    @Test
+    public void disabledRunsEveryFrame() {
+        frames(60, false);
+        assertEquals(60, scheduler.framesRun);
+        assertEquals(0, scheduler.framesSkipped);
+        assertEquals(60, updates());
+    }
+
+    @Test
+    public void idleToolRunsOnceThenSkips() {
+        scheduler.setEnabled(true);
+        frames(60, false);
+        assertEquals(1, scheduler.framesRun); // the frame setEnabled invalidated
+        assertEquals(59, scheduler.framesSkipped);
+        assertEquals(1, updates());
+    }
+
+    @Test
+    public void invalidateRunsOneFrame() {
+        scheduler.setEnabled(true);
+        frames(10, false);
+        scheduler.invalidate();
+        frames(10, false);
+        assertEquals(2, scheduler.framesRun);
+        assertEquals(18, scheduler.framesSkipped);
+        assertEquals(2, updates());
+    }
+
+    @Test
+    public void inputRunsItsFramesPlusOneTrailing() {
+        scheduler.setEnabled(true);
+        frame(false);
+        frames(5, true);
+        frames(10, false);
+        assertEquals(1 + 5 + 1, scheduler.framesRun);
+        assertEquals(9, scheduler.framesSkipped);
+        assertEquals(7, updates());
+    }
+
+    @Test
+    public void wakeRunsOnceWhenDue() throws InterruptedException {
+        scheduler.setEnabled(true);
+        frame(false);
+        scheduler.wakeAfter(0.05f);
+        frames(5, false);
+        assertEquals(1, updates()); // not due yet
+        Thread.sleep(80);
+        frames(5, false);
+        assertEquals(2, scheduler.framesRun);
+        assertEquals(9, scheduler.framesSkipped);
+        assertEquals(2, updates());
+    }
+
+    @Test
+    public void earlierWakeWins() throws InterruptedException {
+        scheduler.setEnabled(true);
+        frame(false);
+        scheduler.wakeAfter(10f);
+        scheduler.wakeAfter(0.02f);
+        Thread.sleep(40);
+        frames(3, false);
+        assertEquals(2, updates());
+        assertEquals(false, scheduler.hasPendingWork());
+    }
+
+    @Test
+    public void timerFiringBeforeTheDeadlineStillWakes() {
+        // A blinking cursor: every frame it runs asks for the next one
+        lua.load("function _update() updates = updates + 1 wake(10) end").call();
+        scheduler.setEnabled(true);
+        frame(false);
+        assertEquals(false, scheduler.hasPendingWork());
+        for (int blink = 1; blink <= 3; blink++) {
+            scheduler.fireWake(); // well before the 10 s deadline
+            assertEquals(true, scheduler.hasPendingWork());
+            assertEquals(true, frame(false));
+            assertEquals(false, scheduler.hasPendingWork()); // re-armed for the next blink, not busy
+            frames(5, false);
+        }
+        assertEquals(4, updates());
+        assertEquals(15, scheduler.framesSkipped);
+    }
+}
@@ -0,0 +1,124 @@
+package com.nerddaygames.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+// A three-module cart (main requires enemy and util, enemy requires util), wired the way
+// ScriptEngine does it, with the sources in a map instead of on disk
+public class HotReloadTest {
+    private static final String UTIL = String.join("\n",
+        "local util = {}",
+        "function util.clamp(v, lo, hi) return math.max(lo, math.min(hi, v)) end",
+        "return util");
+
+    private static final String ENEMY = String.join("\n",
+        "local util = require('util')",
+        "local Enemy = { spawned = 0 }",
+        "Enemy.__index = Enemy",
+        "function Enemy.new(x) Enemy.spawned = Enemy.spawned + 1; return setmetatable({ x = x, hp = 10 }, Enemy) end",
+        "function Enemy:hit() self.hp = util.clamp(self.hp - 1, 0, 10) end",
+        "return Enemy");
+
+    private static final String MAIN = String.join("\n",
+        "local Enemy = require('enemy')",
+        "local util = require('util')",
+        "function _init()",
+        "  enemies = {}",
+        "  for i = 1, 20 do enemies[i] = Enemy.new(i) end",
+        "  score = 0",
+        "end",
+        "function _update() score = score + 1; enemies[1]:hit() end");
+
+    private final Map<String, String> files = new HashMap<>();
+    private final Globals g = JsePlatform.standardGlobals();
+    private HotReload hot;
+    private LuaValue first;
+
+    @Before
+    public void setUp() {
+        files.put("util.lua", UTIL);
+        files.put("enemy.lua", ENEMY);
+        files.put("main.lua", MAIN);
+        hot = new HotReload(g, files::get, (source, path, kind) -> g.load(LuaSyntaxCandy.process(source), path));
+        g.finder = f -> {
+            String name = f.endsWith(".lua") ? f : f + ".lua";
+            String text = files.get(name);
+            if (text == null) return null;
+            hot.found(name, text);
+            return new ByteArrayInputStream(LuaSyntaxCandy.process(text).getBytes(StandardCharsets.UTF_8));
+        };
+        hot.install();
+
+        hot.enter(HotReload.Kind.MAIN, null);
+        try {
+            hot.found("main.lua", MAIN);
+            g.load(LuaSyntaxCandy.process(MAIN), "main.lua").call();
+        } finally {
+            hot.exit();
+        }
+        g.get("_init").call();
+        for (int i = 0; i < 5; i++) g.get("_update").call();
+        first = g.get("enemies").get(1);
+        assertEquals(5, first.get("hp").toint());
+    }
+
+    private LuaValue enemyModule() {
+        return g.get("package").get("loaded").get("enemy");
+    }
+
+    @Test
+    public void changedModuleAndDependentsRunInOrder() {
+        files.put("enemy.lua", ENEMY.replace("self.hp - 1", "self.hp - 2"));
+        assertEquals(Arrays.asList("enemy.lua", "main.lua"), hot.reload(Collections.singletonList("enemy.lua")));
+
+        files.put("util.lua", UTIL.replace("math.min(hi, v))", "math.floor(math.min(hi, v)))"));
+        assertEquals(Arrays.asList("util.lua", "enemy.lua", "main.lua"), hot.reload(Collections.singletonList("util.lua")));
+    }
+
+    @Test
+    public void instancesGetNewMethodsAndKeepTheirData() {
+        files.put("enemy.lua", ENEMY.replace("self.hp - 1", "self.hp - 2").replace("spawned = 0", "spawned = 0, armor = 3"));
+        hot.reload(Collections.singletonList("enemy.lua"));
+        g.get("_update").call();
+
+        assertEquals(3, first.get("hp").toint());
+        assertEquals(6, g.get("score").toint());
+        assertSame(first, g.get("enemies").get(1));
+        LuaValue enemy = enemyModule();
+        assertSame("module table patched in place", enemy, first.getmetatable());
+        assertEquals(3, enemy.get("armor").toint());
+        assertEquals(20, enemy.get("spawned").toint());
+        // The new chunk's upvalue was rebound to the live module table
+        enemy.get("new").call(LuaValue.valueOf(1));
+        assertEquals(21, enemy.get("spawned").toint());
+    }
+
+    @Test
+    public void unchangedSaveRunsNothing() {
+        assertTrue(hot.reload(Collections.singletonList("enemy.lua")).isEmpty());
+    }
+
+    @Test
+    public void syntaxErrorKeepsTheRunningCode() {
+        long failures = hot.failures;
+        files.put("util.lua", UTIL.replace("return util", "return util end"));
+        assertTrue(hot.reload(Collections.singletonList("util.lua")).isEmpty());
+        assertEquals(failures + 1, hot.failures);
+        g.get("_update").call();
+        assertEquals(4, first.get("hp").toint());
+    }
+}
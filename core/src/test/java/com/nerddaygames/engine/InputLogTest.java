@@ -0,0 +1,129 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InputLogTest {
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("inputlog", ".fosi").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        Gdx.input = null;
+        file.delete();
+    }
+
+    // Gdx.input stand-in: keys in `held` are down, keys in `pressed` went down this frame
+    private static Input fakeInput(Set<Integer> held, Set<Integer> pressed) {
+        return (Input) Proxy.newProxyInstance(Input.class.getClassLoader(), new Class<?>[] { Input.class },
+            (proxy, m, args) -> {
+                switch (m.getName()) {
+                    case "isKeyPressed": return keyIn(held, (Integer) args[0]);
+                    case "isKeyJustPressed": return keyIn(pressed, (Integer) args[0]);
+                    default:
+                        Class<?> t = m.getReturnType();
+                        if (t == boolean.class) return false;
+                        if (t == int.class) return 0;
+                        if (t == long.class) return 0L;
+                        if (t == float.class) return 0f;
+                        return null;
+                }
+            });
+    }
+
+    private static boolean keyIn(Set<Integer> keys, int key) {
+        return key == Input.Keys.ANY_KEY ? !keys.isEmpty() : keys.contains(key);
+    }
+
+    private static InputLog.Frame frame(int buttons, int[] keys, int[] keysPressed) {
+        InputLog.Frame f = new InputLog.Frame();
+        f.buttons = buttons;
+        f.keys = keys;
+        f.keysPressed = keysPressed;
+        return f;
+    }
+
+    @Test
+    public void rawKeysReplayWithTheButtons() throws Exception {
+        InputLog.Recorder rec = new InputLog.Recorder(file, 7L, 1 / 60f);
+        rec.record(frame(1, new int[0], new int[0]));
+        rec.record(frame(1, new int[] { 29, 129 }, new int[] { 29 })); // A, CONTROL_LEFT
+        rec.record(frame(1, new int[] { 29, 129 }, new int[0]));
+        rec.record(frame(1, new int[] { 29, 129 }, new int[0]));
+        rec.close();
+
+        InputLog.Player player = new InputLog.Player(file);
+        assertEquals(7L, player.seed);
+        InputLog.Frame f = player.next();
+        assertFalse(f.keyHeld(29));
+        f = player.next();
+        assertTrue(f.keyHeld(29) && f.keyHeld(129) && f.keyPressed(29));
+        assertFalse(f.keyPressed(129));
+        for (int i = 0; i < 2; i++) {
+            f = player.next();
+            assertArrayEquals(new int[] { 29, 129 }, f.keys);
+            assertFalse(f.keyPressed(29));
+        }
+        assertNull(player.next());
+        player.close();
+    }
+
+    @Test
+    public void heldKeysShareARecord() throws Exception {
+        InputLog.Recorder rec = new InputLog.Recorder(file, 1L, 1 / 60f);
+        for (int i = 0; i < 100; i++) rec.record(frame(0, new int[] { 62 }, new int[0]));
+        rec.close();
+        assertTrue("one record for the run, got " + file.length() + " bytes", file.length() < 40);
+    }
+
+    @Test
+    public void recordingClosedAtExitReplaysEveryFrame() throws Exception {
+        Set<Integer> held = new HashSet<>(), pressed = new HashSet<>();
+        Gdx.input = fakeInput(held, pressed);
+        InputManager live = new InputManager();
+        InputLog.Recorder rec = new InputLog.Recorder(file, 3L, 1 / 60f);
+        // 10 idle frames, then A held for the rest of the run: the last run is still
+        // buffered in the recorder when the window closes
+        for (int i = 0; i < 40; i++) {
+            pressed.clear();
+            if (i == 10) { held.add(Input.Keys.A); pressed.add(Input.Keys.A); }
+            rec.record(live.captureFrame());
+        }
+        // no ESC: closing the window hides RunScreen, which stops the log
+        rec.close();
+
+        Gdx.input = fakeInput(new HashSet<>(), new HashSet<>());
+        InputManager replay = new InputManager();
+        InputLog.Player player = new InputLog.Player(file);
+        assertEquals(3L, player.seed);
+        for (int i = 0; i < 40; i++) {
+            InputLog.Frame f = player.next();
+            assertTrue("frame " + i + " missing", f != null);
+            replay.applyFrame(f);
+            assertEquals("frame " + i, i >= 10, replay.isKeyHeld("A"));
+            assertEquals("frame " + i, i == 10, replay.isKeyJustPressed("A"));
+        }
+        assertNull(player.next());
+        player.close();
+        replay.endLog();
+    }
+}
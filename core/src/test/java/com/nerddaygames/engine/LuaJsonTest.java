@@ -0,0 +1,162 @@
+package com.nerddaygames.engine;
+
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LuaJsonTest {
+    private final Globals lua = JsePlatform.standardGlobals();
+
+    private LuaValue eval(String expr) {
+        return lua.load("return " + expr).call();
+    }
+
+    private static String json(LuaValue v) {
+        return LuaJson.encode(v, false).tojstring();
+    }
+
+    // Compared as bytes: LuaString.tojstring does not rebuild surrogate pairs
+    private static LuaString utf8(String s) {
+        return LuaString.valueOf(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LuaValue parse(String text) {
+        return LuaJson.decode(utf8(text));
+    }
+
+    private static void assertRaises(String text) {
+        try {
+            parse(text);
+            fail("parsed " + text);
+        } catch (LuaError expected) {
+        }
+    }
+
+    @Test
+    public void arraysObjectsAndEmptyTables() {
+        assertEquals("[1,2,3]", json(eval("{ 1, 2, 3 }")));
+        assertEquals("{\"a\":true}", json(eval("{ a = true }")));
+        assertEquals("an empty table is an object", "{}", json(new LuaTable()));
+        assertEquals("{\"3\":\"c\"}", json(eval("{ [3] = 'c' }")));
+
+        LuaValue t = parse(" { \"list\" : [ ], \"obj\" : { }, \"n\" : null } ");
+        assertEquals(0, t.get("list").length());
+        assertTrue(t.get("obj").istable());
+        assertTrue("null is nil", t.get("n").isnil());
+    }
+
+    @Test
+    public void numbersKeepIntegersAndDropNonFinite() {
+        assertEquals("[1,-7,2.5,1099511627776,null,null]", json(eval("{ 1, -7, 2.5, 2^40, 1/0, 0/0 }")));
+
+        LuaValue t = parse("[0, -2147483648, 2147483647, 3000000000, 1.5, 1e2, -0.25E-1]");
+        assertTrue(t.get(1).isinttype());
+        assertTrue(t.get(2).isinttype());
+        assertEquals(Integer.MIN_VALUE, t.get(2).toint());
+        assertEquals(Integer.MAX_VALUE, t.get(3).toint());
+        assertFalse("too big for an int", t.get(4).isinttype());
+        assertEquals(3e9, t.get(4).todouble(), 0);
+        assertEquals(1.5, t.get(5).todouble(), 0);
+        assertEquals(100, t.get(6).todouble(), 0);
+        assertEquals(-0.025, t.get(7).todouble(), 0);
+    }
+
+    @Test
+    public void holesAndNumberKeysComeBack() {
+        // null leaves a hole at its index
+        LuaValue t = parse("[\"a\", null, \"c\"]");
+        assertEquals("a", t.get(1).tojstring());
+        assertTrue(t.get(2).isnil());
+        assertEquals("c", t.get(3).tojstring());
+
+        // a table with a hole is not a sequence: it goes out as an object and comes back keyed by string
+        LuaValue h = parse(json(t));
+        assertEquals("a", h.get("1").tojstring());
+        assertEquals("c", h.get("3").tojstring());
+
+        // number keys of an object come back as strings
+        LuaValue o = parse(json(eval("{ [10] = 'x', y = 1 }")));
+        assertEquals("x", o.get("10").tojstring());
+        assertTrue(o.get(10).isnil());
+    }
+
+    @Test
+    public void stringsEscapeAndKeepUtf8() {
+        LuaString raw = utf8("q\"b\\n\nt\tr\r\u0001é€😀");
+        LuaString text = LuaJson.encode(raw, false);
+        assertEquals(utf8("\"q\\\"b\\\\n\\nt\\tr\\r\\u0001é€😀\""), text);
+        assertEquals(raw, LuaJson.decode(text));
+
+        // \\u escapes, including a surrogate pair, decode to UTF-8
+        assertEquals(utf8("é€😀/"), parse("\"\\u00e9\\u20AC\\ud83d\\ude00\\/\""));
+        assertRaises("\"\\u12\"");
+        assertRaises("\"unterminated");
+    }
+
+    @Test
+    public void typedArraysEncodeAsArrays() {
+        TypedArray a = new TypedArray(TypedArray.Kind.F32, 3);
+        a.setDouble(0, 2);
+        a.setDouble(1, 0.5);
+        a.setDouble(2, Float.NaN);
+        assertEquals("[2,0.5,null]", json(a));
+        assertEquals("[]", json(new TypedArray(TypedArray.Kind.U8, 0)));
+    }
+
+    @Test
+    public void prettyOutputParsesToTheSameValue() {
+        LuaValue v = eval("{ name = 'p1', pos = { 3, 4 }, tags = {}, alive = false }");
+        String pretty = LuaJson.encode(v, true).tojstring();
+        assertTrue(pretty.contains("\n  \"pos\": [\n    3,\n    4\n  ]"));
+        LuaValue back = parse(pretty);
+        assertEquals("p1", back.get("name").tojstring());
+        assertEquals(4, back.get("pos").get(2).toint());
+        assertTrue(back.get("tags").istable());
+        assertFalse(back.get("alive").toboolean());
+        assertEquals(json(v).length(), json(back).length());
+    }
+
+    @Test
+    public void streamsRoundTripPastTheBuffer() throws Exception {
+        LuaValue v = eval("(function() local t = {} for i = 1, 5000 do t[i] = { id = i, s = 'é' .. i } end return t end)()");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LuaJson.encode(v, false, out);
+        assertEquals(LuaJson.encode(v, false), LuaString.valueOf(out.toByteArray()));
+
+        LuaValue back = LuaJson.decode(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(5000, back.length());
+        assertEquals(4321, back.get(4321).get("id").toint());
+        assertEquals("é4321", back.get(4321).get("s").tojstring());
+    }
+
+    @Test
+    public void cyclesDepthAndBadInputRaise() {
+        try {
+            json(eval("(function() local t = {} t.me = t return t end)()"));
+            fail("encoded a cycle");
+        } catch (LuaError expected) {
+        }
+        // A shared table that is not a cycle is fine: it is written twice
+        assertEquals("[[1],[1]]", json(eval("(function() local s = { 1 } return { s, s } end)()")));
+
+        StringBuilder deep = new StringBuilder();
+        for (int i = 0; i <= LuaJson.MAX_DEPTH; i++) deep.append('[');
+        assertRaises(deep.toString());
+        for (String bad : new String[] { "", "[1,]", "{\"a\" 1}", "{1:2}", "tru", "[1] x", "-", "01x" }) {
+            assertRaises(bad);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.nerddaygames.engine;
+
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LuaSerializerTest {
+    private final Globals lua = JsePlatform.standardGlobals();
+
+    private LuaValue eval(String expr) {
+        return lua.load("return " + expr).call();
+    }
+
+    private static LuaValue roundTrip(LuaValue v) {
+        LuaString s = LuaSerializer.encode(v);
+        return LuaSerializer.decode(s);
+    }
+
+    @Test
+    public void plainValuesRoundTrip() {
+        LuaValue t = roundTrip(eval("{ 1, 2.5, 'three', nested = { ok = true }, [-4] = false }"));
+        assertEquals(1, t.get(1).toint());
+        assertEquals(2.5, t.get(2).todouble(), 0);
+        assertEquals("three", t.get(3).tojstring());
+        assertEquals(true, t.get("nested").get("ok").toboolean());
+        assertEquals(false, t.get(-4).toboolean());
+    }
+
+    @Test
+    public void sharedTablesAndCyclesSurvive() {
+        LuaValue t = roundTrip(eval("(function() local s = {} local t = { a = s, b = s } t.self = t return t end)()"));
+        assertSame(t.get("a"), t.get("b"));
+        assertSame(t, t.get("self"));
+    }
+
+    @Test
+    public void objectWithoutBinderSavesItsFields() {
+        lua.load("Point = {} Point.__index = Point "
+            + "function Point.new(x, y) return setmetatable({ x = x, y = y }, Point) end "
+            + "function Point:len() return self.x + self.y end").call();
+        LuaValue p = roundTrip(eval("Point.new(3, 4)"));
+        assertEquals(3, p.get("x").toint());
+        assertEquals(4, p.get("y").toint());
+        assertNull(p.getmetatable()); // the class (functions) is not written
+    }
+
+    @Test(expected = LuaError.class)
+    public void functionValueWithoutBinderFails() {
+        LuaSerializer.encode(eval("{ f = print }"));
+    }
+
+    @Test
+    public void numbersKeepTheirType() {
+        LuaValue t = roundTrip(eval("{ 0, -1, 2147483647, -2147483648, 2^31, 0.1, -1e300, 1/0, 0/0 }"));
+        int[] ints = { 0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE };
+        for (int i = 0; i < ints.length; i++) {
+            assertTrue("integer " + ints[i], t.get(i + 1).isinttype());
+            assertEquals(ints[i], t.get(i + 1).toint());
+        }
+        assertFalse("2^31 does not fit an int", t.get(5).isinttype());
+        assertEquals(2147483648.0, t.get(5).todouble(), 0);
+        assertEquals(0.1, t.get(6).todouble(), 0);
+        assertEquals(-1e300, t.get(7).todouble(), 0);
+        assertEquals(Double.POSITIVE_INFINITY, t.get(8).todouble(), 0);
+        assertTrue(Double.isNaN(t.get(9).todouble()));
+    }
+
+    @Test
+    public void stringsAreBinarySafe() {
+        LuaString bin = LuaString.valueOf(new byte[] { 0, 1, (byte) 0xFF, '"', (byte) 0xC3, (byte) 0xA9 });
+        assertEquals(bin, roundTrip(bin));
+        assertEquals(LuaValue.valueOf(""), roundTrip(LuaValue.valueOf("")));
+    }
+
+    @Test
+    public void typedArraysKeepKindAndElements() {
+        TypedArray f = new TypedArray(TypedArray.Kind.F32, 3);
+        f.setDouble(0, 1.5);
+        f.setDouble(2, -0.25);
+        TypedArray s = new TypedArray(TypedArray.Kind.I16, 2);
+        s.setDouble(0, -300);
+        s.setDouble(1, 32767);
+        LuaTable t = new LuaTable();
+        t.set("f", f);
+        t.set("s", s);
+        t.set("again", f);
+
+        LuaValue back = roundTrip(t);
+        TypedArray f2 = (TypedArray) back.get("f");
+        TypedArray s2 = (TypedArray) back.get("s");
+        assertEquals(TypedArray.Kind.F32, f2.kind);
+        assertEquals(3, f2.length);
+        assertArrayEquals(new double[] { 1.5, 0, -0.25 }, new double[] { f2.getDouble(0), f2.getDouble(1), f2.getDouble(2) }, 0);
+        assertEquals(TypedArray.Kind.I16, s2.kind);
+        assertEquals(-300, s2.getDouble(0), 0);
+        assertEquals(32767, s2.getDouble(1), 0);
+        f2.setDouble(1, 9);
+        assertEquals("a copy, not a view of the original", 0, f.getDouble(1), 0);
+    }
+
+    @Test
+    public void cycleThroughTheArrayPartSurvives() {
+        LuaValue t = roundTrip(eval("(function() local a = { 'x' } local b = { a } a[2] = b a.up = b return a end)()"));
+        LuaValue b = t.get(2);
+        assertEquals("x", t.get(1).tojstring());
+        assertSame(t, b.get(1));
+        assertSame(b, t.get("up"));
+    }
+
+    @Test
+    public void streamFormMatchesTheStringForm() throws Exception {
+        LuaValue v = eval("(function() local t = { big = string.rep('ab', 10000) } for i = 1, 3000 do t[i] = i * 0.5 end t.self = t return t end)()");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LuaSerializer.encode(v, out);
+        LuaString s = LuaSerializer.encode(v);
+        assertEquals(s, LuaString.valueOf(out.toByteArray()));
+
+        LuaValue back = LuaSerializer.decode(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(20000, back.get("big").length());
+        assertEquals(1500.0, back.get(3000).todouble(), 0);
+        assertSame(back, back.get("self"));
+    }
+
+    @Test
+    public void nestingPastTheLimitOrBrokenInputRaises() {
+        LuaTable deep = new LuaTable();
+        LuaTable t = deep;
+        for (int i = 0; i < LuaSerializer.MAX_DEPTH + 1; i++) {
+            LuaTable inner = new LuaTable();
+            t.set(1, inner);
+            t = inner;
+        }
+        try {
+            LuaSerializer.encode(deep);
+            fail("encoded " + (LuaSerializer.MAX_DEPTH + 1) + " levels");
+        } catch (LuaError expected) {
+        }
+
+        LuaString s = LuaSerializer.encode(eval("{ 1, 2, 3, name = 'abc' }"));
+        try {
+            LuaSerializer.decode(s.substring(0, s.length() - 3));
+            fail("decoded a truncated buffer");
+        } catch (LuaError expected) {
+        }
+    }
+}
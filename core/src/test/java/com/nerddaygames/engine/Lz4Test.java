@@ -0,0 +1,92 @@
+package com.nerddaygames.engine;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Lz4Test {
+    private static byte[] compress(byte[] raw) {
+        byte[] packed = new byte[Lz4.maxCompressedLength(raw.length)];
+        int n = Lz4.compress(raw, 0, raw.length, packed, 0);
+        return Arrays.copyOf(packed, n);
+    }
+
+    private static byte[] roundTrip(byte[] raw) {
+        byte[] packed = compress(raw);
+        ByteBuffer out = ByteBuffer.allocate(raw.length);
+        Lz4.decompress(ByteBuffer.wrap(packed), 0, packed.length, out, 0, raw.length);
+        assertArrayEquals(raw, out.array());
+        return packed;
+    }
+
+    @Test
+    public void shortInputsAreLiteralsOnly() {
+        roundTrip(new byte[0]);
+        roundTrip(new byte[] { 42 });
+        roundTrip("hello, cart".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void repetitiveDataShrinks() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 400; i++) sb.append("function f").append(i % 7).append("() return spr(1, x, y) end\n");
+        byte[] raw = sb.toString().getBytes(StandardCharsets.UTF_8);
+        assertTrue(roundTrip(raw).length < raw.length / 4);
+    }
+
+    @Test
+    public void runsOfOneByteUseOverlappingMatches() {
+        byte[] zeros = new byte[100_000]; // offset 1, match lengths far past 15 + 255
+        assertTrue(roundTrip(zeros).length < 1000);
+        byte[] pattern = new byte[5000];
+        for (int i = 0; i < pattern.length; i++) pattern[i] = (byte) "abc".charAt(i % 3); // offset 3 < length
+        roundTrip(pattern);
+    }
+
+    @Test
+    public void randomDataStaysWithinTheBound() {
+        byte[] raw = new byte[200_000]; // past the 64 KB match window too
+        new Random(7).nextBytes(raw);
+        byte[] packed = roundTrip(raw);
+        assertTrue(packed.length <= Lz4.maxCompressedLength(raw.length));
+    }
+
+    @Test
+    public void decompressesAtOffsetsIntoDirectBuffers() {
+        byte[] raw = new byte[3000];
+        for (int i = 0; i < raw.length; i++) raw[i] = (byte) (i / 10);
+        byte[] packed = compress(raw);
+        ByteBuffer src = ByteBuffer.allocateDirect(packed.length + 8);
+        for (int i = 0; i < packed.length; i++) src.put(8 + i, packed[i]);
+        ByteBuffer dst = ByteBuffer.allocateDirect(raw.length + 100);
+        Lz4.decompress(src, 8, packed.length, dst, 100, raw.length);
+        for (int i = 0; i < 100; i++) assertEquals(0, dst.get(i));
+        for (int i = 0; i < raw.length; i++) assertEquals(raw[i], dst.get(100 + i));
+    }
+
+    @Test
+    public void corruptBlocksAreRejected() {
+        byte[] raw = new byte[4096];
+        byte[] packed = compress(raw);
+        try {
+            Lz4.decompress(ByteBuffer.wrap(packed), 0, packed.length, ByteBuffer.allocate(100), 0, 100);
+            fail("decoded past the end of the output");
+        } catch (IllegalArgumentException expected) {
+        }
+        // A match pointing before the start of the output
+        byte[] bad = { 0x10, 'a', (byte) 0xFF, 0x00, 0x00 };
+        try {
+            Lz4.decompress(ByteBuffer.wrap(bad), 0, bad.length, ByteBuffer.allocate(64), 0, 64);
+            fail("match before the output start");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
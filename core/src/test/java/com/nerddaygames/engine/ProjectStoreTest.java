@@ -0,0 +1,90 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ProjectStoreTest {
+    private File root;
+    private FileHandle dir;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("projectstore").toFile();
+        dir = new FileHandle(root);
+    }
+
+    @After
+    public void tearDown() {
+        WriteBehind.shared().flush();
+        dir.deleteDirectory();
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void storeIsSharedWhileAFeedIsOpen() {
+        ProjectStore.Subscription a = ProjectStore.subscribe(dir);
+        ProjectStore.Subscription b = ProjectStore.subscribe(dir);
+        assertSame(a.store(), b.store());
+        a.close();
+        assertSame(b.store(), ProjectStore.open(dir));
+        b.close();
+    }
+
+    @Test
+    public void lastFeedClosedReleasesTheStore() {
+        ProjectStore.Subscription a = ProjectStore.subscribe(dir);
+        ProjectStore first = a.store();
+        a.close();
+        a.close(); // twice is harmless
+        ProjectStore.Subscription b = ProjectStore.subscribe(dir);
+        assertNotSame(first, b.store());
+        b.close();
+    }
+
+    @Test
+    public void putReachesOtherFeedsNotTheWriter() {
+        ProjectStore.Subscription a = ProjectStore.subscribe(dir);
+        ProjectStore.Subscription b = ProjectStore.subscribe(dir);
+        a.store().putBytes("map.bin", utf8("cells"), a);
+        assertEquals(null, a.poll());
+        assertEquals("map.bin", b.poll());
+        a.close();
+        b.close();
+    }
+
+    // Every read path sees the store's copy, not the disk changed behind its back
+    @Test
+    public void fileSystemReadsComeFromTheStore() throws Exception {
+        Files.write(new File(root, "data.bin").toPath(), utf8("stored"));
+        ProjectStore.Subscription feed = ProjectStore.subscribe(dir);
+        FileSystem fs = new FileSystem(dir, feed);
+        assertArrayEquals(utf8("stored"), fs.readBytes("data.bin")); // loads it into the store
+
+        Files.write(new File(root, "data.bin").toPath(), utf8("changed on disk"));
+        assertEquals(6, fs.length("data.bin"));
+        ByteBuffer mapped = fs.map("data.bin");
+        byte[] bytes = new byte[mapped.remaining()];
+        mapped.get(bytes);
+        assertArrayEquals(utf8("stored"), bytes);
+        try (InputStream in = fs.openRead("data.bin")) {
+            assertEquals("stored", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        feed.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.nerddaygames.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The Lua side of Ram: each case is a chunk of asserts run against a fresh 64 KB Ram.
+ */
+public class RamLuaBindingsTest {
+    private Globals lua;
+    private Ram ram;
+
+    @Before
+    public void setUp() {
+        lua = JsePlatform.standardGlobals();
+        ram = new Ram();
+        new RamLuaBindings(lua, ram).register();
+    }
+
+    private void run(String... lines) {
+        lua.load(String.join("\n", lines), "test").call();
+    }
+
+    @Test
+    public void countsOfZeroOrLessReturnNothing() {
+        ram.poke(0x100, 9);
+        run("assert(select('#', peek(0x100)) == 1 and peek(0x100) == 9)",
+            "assert(select('#', peek(0x100, 3)) == 3)",
+            "for _, f in ipairs({ peek, peek2, peek4 }) do",
+            "  assert(select('#', f(0x100, 0)) == 0, 'n = 0')",
+            "  assert(select('#', f(0x100, -4)) == 0, 'n < 0')",
+            "end",
+            "local t = { peek(0x100, 0) } assert(#t == 0)");
+    }
+
+    @Test
+    public void outOfRangeReadsZeroAndWritesAreDropped() {
+        run("assert(peek(-1) == 0 and peek(0x10000) == 0)",
+            "assert(peek2(0xFFFF) == 0 and peek4(0xFFFD) == 0, 'word past the end')",
+            "poke(-1, 5) poke(0x10000, 5) poke2(0xFFFF, 5) poke4(-2, 5)",
+            // a run crossing the end keeps its in-range bytes
+            "poke(0xFFFE, 1, 2, 3, 4)",
+            "local a, b, c, d = peek(0xFFFE, 4)",
+            "assert(a == 1 and b == 2 and c == 0 and d == 0)",
+            "assert(peekstr(0xFFF0, 32) == nil, 'string past the end')",
+            "assert(pokestr(0xFFFF, 'ab') == 0)");
+        assertEquals(1, ram.peek(0xFFFE));
+        assertEquals(2, ram.peek(0xFFFF));
+        assertEquals(0, ram.peek(0));
+    }
+
+    @Test
+    public void stringsBlitBothWays() {
+        run("assert(pokestr(0x4000, 'hello') == 5)",
+            "assert(peekstr(0x4000, 5) == 'hello')",
+            "assert(pokestr(0x4010, 'abcdef', 2, 4) == 3, 'substring')",
+            "assert(peekstr(0x4010, 3) == 'bcd')",
+            "assert(pokestr(0x4020, 'abc', 3, 1) == 0, 'empty range')",
+            "assert(peekstr(0x4000, 0) == '')",
+            "local bin = '\\0\\1\\255\\128'",
+            "pokestr(0x4030, bin)",
+            "assert(peekstr(0x4030, 4) == bin, 'binary bytes')",
+            "local a, b, c, d = peek(0x4030, 4)",
+            "assert(a == 0 and b == 1 and c == 255 and d == 128)");
+        assertEquals('h', ram.peek(0x4000));
+    }
+
+    @Test
+    public void wordsAreLittleEndian() {
+        run("poke2(0x3000, 0x1234, 0xFFFF)",
+            "local a, b, c, d = peek(0x3000, 4)",
+            "assert(a == 0x34 and b == 0x12 and c == 0xFF and d == 0xFF)",
+            "local x, y = peek2(0x3000, 2)",
+            "assert(x == 0x1234 and y == 0xFFFF)",
+            "assert(peek2(0x3001) == 0xFF12, 'unaligned')",
+            "poke4(0x3100, -2, 0x7FFFFFFF, 0xFFFFFFFF)",
+            "local p, q, r = peek4(0x3100, 3)",
+            "assert(p == -2 and q == 0x7FFFFFFF and r == -1, 'signed')",
+            "assert(peek(0x3100) == 0xFE and peek(0x3103) == 0xFF)");
+        assertEquals(0x1234, ram.peek2(0x3000));
+        assertEquals(-2, ram.peek4(0x3100));
+    }
+
+    @Test
+    public void memcpyAndMemset() {
+        run("poke(0x5000, 1, 2, 3, 4, 5)",
+            "memcpy(0x5002, 0x5000, 5)", // overlapping, like memmove
+            "local t = { peek(0x5000, 7) }",
+            "assert(table.concat(t, ',') == '1,2,1,2,3,4,5')",
+            "memset(0x5000, 7, 3)",
+            "assert(table.concat({ peek(0x5000, 4) }, ',') == '7,7,7,2')");
+    }
+}
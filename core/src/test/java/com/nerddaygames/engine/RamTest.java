@@ -0,0 +1,151 @@
+package com.nerddaygames.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+// peek2/poke2 take the flat byte[] path on bank 0 and split at page and bank edges otherwise
+public class RamTest {
+    private static final int BASE = Ram.USER_DATA_BASE, SIZE = Ram.USER_DATA_SIZE;
+
+    private static List<Integer> dirtyPages(Ram ram) {
+        List<Integer> pages = new ArrayList<>();
+        for (int p = ram.nextDirtyPage(0); p >= 0; p = ram.nextDirtyPage(p + 1)) pages.add(p);
+        return pages;
+    }
+
+    private static int page(int physAddr) {
+        return physAddr >>> Ram.PAGE_SHIFT;
+    }
+
+    @Test
+    public void wordsInsideAndAcrossPages() {
+        Ram ram = new Ram();
+        ram.poke2(0x1000, 0xBEEF);
+        assertEquals(0xEF, ram.peek(0x1000));
+        assertEquals(0xBE, ram.peek(0x1001));
+        ram.poke2(0x10FF, 0x1234);
+        assertEquals(0x34, ram.peek(0x10FF));
+        assertEquals(0x12, ram.peek(0x1100));
+        assertEquals(0x1234, ram.peek2(0x10FF));
+        assertEquals(0, ram.peek2(Ram.MEMORY_SIZE - 1));
+    }
+
+    @Test
+    public void wordAcrossABankEdgeFollowsTheBank() {
+        Ram ram = new Ram(2);
+        ram.poke2(BASE - 1, 0xBEEF);
+        ram.setBank(1);
+        assertEquals(0x00EF, ram.peek2(BASE - 1));
+        ram.poke2(BASE - 1, 0x12EF);
+        ram.setBank(0);
+        assertEquals(0xBEEF, ram.peek2(BASE - 1));
+    }
+
+    // Direct storage has no byte[]: the same words through the ByteBuffer
+    @Test
+    public void directStorageMatchesHeap() {
+        Ram heap = new Ram(2), direct = new Ram(2, new RamStorage.Direct(Ram.MEMORY_SIZE));
+        for (int bank = 0; bank < 2; bank++) {
+            heap.setBank(bank);
+            direct.setBank(bank);
+            for (int addr : new int[] { 0x10, 0xFF, BASE - 1, BASE + 0x7F, BASE + 0xFF }) {
+                heap.poke2(addr, addr * 31 + bank);
+                direct.poke2(addr, addr * 31 + bank);
+                assertEquals(heap.peek2(addr), direct.peek2(addr));
+                assertEquals(heap.peek(addr + 1), direct.peek(addr + 1));
+            }
+        }
+    }
+
+    @Test
+    public void banksKeepTheirOwnContents() {
+        Ram ram = new Ram(3);
+        for (int bank = 0; bank < 3; bank++) {
+            ram.setBank(bank);
+            assertEquals(bank, ram.getBank(0));
+            ram.poke(BASE, 10 + bank);
+            ram.poke2(BASE + 0x100, 0x1000 + bank);
+            ram.poke4(BASE + SIZE - 4, 0x7000_0000 + bank);
+        }
+        for (int bank = 2; bank >= 0; bank--) {
+            ram.setBank(bank);
+            assertEquals(10 + bank, ram.peek(BASE));
+            assertEquals(0x1000 + bank, ram.peek2(BASE + 0x100));
+            assertEquals(0x7000_0000 + bank, ram.peek4(BASE + SIZE - 4));
+        }
+        // Outside the window every bank sees the same memory
+        ram.poke(0x100, 99);
+        ram.setBank(1);
+        assertEquals(99, ram.peek(0x100));
+        ram.setBank(7); // no such bank: ignored
+        assertEquals(1, ram.getBank(0));
+    }
+
+    @Test
+    public void memcpyAcrossWindowEdges() {
+        Ram ram = new Ram(2);
+        ram.setBank(1);
+        byte[] pattern = new byte[0x300];
+        for (int i = 0; i < pattern.length; i++) pattern[i] = (byte) (i * 7);
+        ram.write(BASE - 0x180, pattern, 0, pattern.length); // straddles the start of the window
+
+        ram.memcpy(0x100, BASE - 0x180, pattern.length); // out of the window
+        byte[] back = new byte[pattern.length];
+        ram.read(0x100, back, 0, back.length);
+        assertEquals(Arrays.toString(pattern), Arrays.toString(back));
+
+        // Overlapping copy that crosses the edge, front to back and back to front
+        ram.memcpy(BASE - 0x100, BASE - 0x180, pattern.length);
+        for (int i = 0; i < pattern.length; i++) assertEquals(pattern[i] & 0xFF, ram.peek(BASE - 0x100 + i));
+        ram.memcpy(BASE - 0x180, BASE - 0x100, pattern.length);
+        for (int i = 0; i < pattern.length; i++) assertEquals(pattern[i] & 0xFF, ram.peek(BASE - 0x180 + i));
+
+        // Bank 0 never saw any of it
+        ram.setBank(0);
+        for (int i = 0; i < 0x180; i++) assertEquals(0, ram.peek(BASE + i));
+    }
+
+    @Test
+    public void bankcpyCopiesBetweenUnmappedBanks() {
+        Ram ram = new Ram(3);
+        ram.setBank(1);
+        for (int i = 0; i < 16; i++) ram.poke(BASE + 0x20 + i, i + 1);
+        ram.setBank(0);
+        ram.bankcpy(0, 2, 0x40, 1, 0x20, 16);
+        ram.bankcpy(0, 2, SIZE - 8, 1, 0x20, 16); // past the end of the bank: ignored
+        assertEquals(0, ram.peek(BASE + 0x40)); // the mapped bank is untouched
+        ram.setBank(2);
+        for (int i = 0; i < 16; i++) assertEquals(i + 1, ram.peek(BASE + 0x40 + i));
+        assertEquals(0, ram.peek(BASE + SIZE - 8));
+    }
+
+    @Test
+    public void writesMarkTheirPhysicalPagesDirty() {
+        Ram ram = new Ram(2);
+        ram.clearDirty();
+        ram.poke(0x0010, 1);
+        ram.poke2(0x01FF, 0x0102); // two pages
+        ram.memset(0x1000, 5, 0x200);
+        ram.memcpy(0x2080, 0x1000, 0x100);
+        assertEquals(Arrays.asList(0x00, 0x01, 0x02, 0x10, 0x11, 0x20, 0x21), dirtyPages(ram));
+
+        // In bank 1 the physical page is in the bank storage, not the base memory
+        ram.setBank(1);
+        ram.clearDirty();
+        ram.poke2(BASE + 0x10, 7);
+        ram.poke(BASE + 0x200, 7);
+        int bank1 = ram.physical(BASE);
+        assertEquals(Arrays.asList(page(bank1), page(bank1) + 2), dirtyPages(ram));
+
+        ram.clearDirty();
+        assertEquals(-1, ram.nextDirtyPage(0));
+        ram.peek2(0x0010);
+        ram.peek(BASE);
+        assertEquals(-1, ram.nextDirtyPage(0)); // reads do not mark
+    }
+}
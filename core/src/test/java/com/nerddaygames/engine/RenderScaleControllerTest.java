@@ -0,0 +1,72 @@
+package com.nerddaygames.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RenderScaleControllerTest {
+    private static final float BUDGET = 16f;
+
+    // Feeds n frames of the same draw time; returns how many changed the scale
+    private static int feed(RenderScaleController c, int n, float drawMs) {
+        int changes = 0;
+        for (int i = 0; i < n; i++) if (c.sample(drawMs)) changes++;
+        return changes;
+    }
+
+    @Test
+    public void overBudgetStepsDownToTheFloor() {
+        RenderScaleController c = new RenderScaleController(0.5f, 1f, BUDGET);
+        assertEquals(1f, c.getScale(), 0);
+        assertEquals("nothing before the first cooldown", 0, feed(c, 30, 30f));
+        assertEquals(1, feed(c, 1, 30f));
+        assertEquals(1f - RenderScaleController.STEP, c.getScale(), 0);
+        assertEquals("one step per cooldown", 0, feed(c, 30, 30f));
+        feed(c, 1000, 30f);
+        assertEquals(0.5f, c.getScale(), 0);
+        assertEquals(0, feed(c, 100, 30f));
+    }
+
+    @Test
+    public void wellUnderBudgetStepsBackUpToTheCeiling() {
+        RenderScaleController c = new RenderScaleController(0.5f, 1f, BUDGET);
+        feed(c, 1000, 30f);
+        assertEquals(0.5f, c.getScale(), 0);
+        // The average has to come down first: a few cheap frames are not enough
+        assertEquals(0, feed(c, 5, 2f));
+        feed(c, 1000, 2f);
+        assertEquals(1f, c.getScale(), 0);
+        assertEquals(0, feed(c, 100, 2f));
+    }
+
+    @Test
+    public void betweenTheThresholdsTheScaleHolds() {
+        RenderScaleController c = new RenderScaleController(0.5f, 1f, BUDGET);
+        feed(c, 31, 30f);
+        float scale = c.getScale();
+        assertTrue(scale < 1f);
+        // 0.6 .. 1.0 of the budget: neither cheap enough to go up nor slow enough to go down
+        feed(c, 200, BUDGET * 0.8f);
+        assertEquals(0, feed(c, 500, BUDGET * 0.8f));
+        assertEquals(scale, c.getScale(), 0);
+    }
+
+    @Test
+    public void oneSlowFrameDoesNotStepDown() {
+        RenderScaleController c = new RenderScaleController(0.5f, 1f, BUDGET);
+        feed(c, 100, 10f);
+        assertEquals(0, feed(c, 1, 60f));
+        assertEquals(0, feed(c, 20, 10f));
+        assertEquals(1f, c.getScale(), 0);
+    }
+
+    @Test
+    public void fixedScaleNeverChanges() {
+        RenderScaleController c = new RenderScaleController(1f, 1f, BUDGET);
+        assertFalse(c.isAdaptive());
+        assertEquals(0, feed(c, 500, 100f));
+        assertEquals(1f, c.getScale(), 0);
+    }
+}
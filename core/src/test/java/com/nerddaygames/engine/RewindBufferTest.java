@@ -0,0 +1,133 @@
+package com.nerddaygames.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RewindBufferTest {
+    private static byte[] physical(Ram ram) {
+        byte[] out = new byte[ram.getPhysicalPageCount() << Ram.PAGE_SHIFT];
+        ram.readPhysical(0, out, 0, out.length);
+        return out;
+    }
+
+    @Test
+    public void stepBackWalksTheFramesInReverse() {
+        Ram ram = new Ram();
+        RewindBuffer rewind = new RewindBuffer(ram, 64 * 1024);
+        rewind.capture(); // floor: all zero
+        ram.poke(0x100, 1);
+        rewind.capture();
+        ram.poke(0x100, 2);
+        ram.poke(0x4000, 9);
+        rewind.capture();
+        assertEquals(2, rewind.getFrameCount());
+
+        ram.poke(0x100, 3); // not captured yet: dropped by the step back too
+        assertTrue(rewind.stepBack());
+        assertEquals(1, ram.peek(0x100));
+        assertEquals(0, ram.peek(0x4000));
+        assertTrue(rewind.stepBack());
+        assertEquals(0, ram.peek(0x100));
+        assertFalse(rewind.stepBack());
+        assertEquals(0, rewind.getUsedBytes());
+    }
+
+    @Test
+    public void roundTripMatchesEveryCapturedFrame() {
+        Ram ram = new Ram(4);
+        RewindBuffer rewind = new RewindBuffer(ram, 1024 * 1024);
+        Random random = new Random(11);
+        List<byte[]> states = new ArrayList<>();
+        rewind.capture();
+        states.add(physical(ram));
+        for (int f = 0; f < 60; f++) {
+            for (int i = 0; i < 50; i++) ram.poke(random.nextInt(Ram.MEMORY_SIZE), random.nextInt(256));
+            if (f % 10 == 0) ram.setBank(random.nextInt(4));
+            rewind.capture();
+            states.add(physical(ram));
+        }
+        for (int f = states.size() - 2; f >= 0; f--) {
+            assertTrue(rewind.stepBack());
+            assertArrayEquals("frame " + f, states.get(f), physical(ram));
+        }
+        assertFalse(rewind.stepBack());
+    }
+
+    @Test
+    public void fullRingDropsOldFramesIntoTheFloor() {
+        Ram ram = new Ram(3);
+        RewindBuffer rewind = new RewindBuffer(ram, 4096);
+        rewind.capture();
+        List<byte[]> states = new ArrayList<>();
+        List<Integer> banks = new ArrayList<>();
+        for (int f = 0; f < 200; f++) {
+            for (int i = 0; i < 16; i++) ram.poke(Ram.MAP_BASE + f * 16 + i, f + 1);
+            ram.setBank(f % 3);
+            rewind.capture();
+            states.add(physical(ram));
+            banks.add(ram.getBank(0));
+        }
+        int kept = rewind.getFrameCount();
+        assertTrue("some frames evicted, " + kept + " kept", kept > 0 && kept < 200);
+        assertTrue(rewind.getUsedBytes() <= rewind.getCapacity());
+
+        int steps = 0;
+        while (rewind.stepBack()) steps++;
+        assertEquals(kept, steps);
+        // The floor is the newest evicted frame: its memory and its bank
+        int floor = 199 - kept;
+        assertArrayEquals(states.get(floor), physical(ram));
+        assertEquals((int) banks.get(floor), ram.getBank(0));
+    }
+
+    @Test
+    public void banksAbove255ComeBack() {
+        Ram ram = new Ram();
+        int window = ram.mapWindow(0x8000, Ram.PAGE_SIZE, 600);
+        RewindBuffer rewind = new RewindBuffer(ram, 64 * 1024);
+        ram.setBank(window, 300);
+        rewind.capture();
+        ram.setBank(window, 513);
+        ram.poke(0x8000, 7);
+        rewind.capture();
+        ram.setBank(window, 2);
+        rewind.capture();
+
+        assertTrue(rewind.stepBack());
+        assertEquals(513, ram.getBank(window));
+        assertEquals(7, ram.peek(0x8000));
+        assertTrue(rewind.stepBack());
+        assertEquals(300, ram.getBank(window));
+    }
+
+    @Test
+    public void checkpointHookFollowsTheFrames() {
+        Ram ram = new Ram();
+        RewindBuffer rewind = new RewindBuffer(ram, 64 * 1024);
+        int[] score = { 0 };
+        rewind.setCheckpointHook(new RewindBuffer.CheckpointHook() {
+            @Override public byte[] save() { return new byte[] { (byte) score[0] }; }
+            @Override public void restore(byte[] data) { score[0] = data[0]; }
+        });
+        rewind.capture();
+        for (int f = 1; f <= 3; f++) {
+            score[0] = f * 10;
+            ram.poke(0x200, f);
+            rewind.capture();
+        }
+        score[0] = 99;
+        rewind.stepBack();
+        assertEquals(20, score[0]);
+        rewind.stepBack();
+        rewind.stepBack();
+        assertEquals("floor checkpoint", 0, score[0]);
+    }
+}
@@ -0,0 +1,121 @@
+package com.nerddaygames.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TypedArrayTest {
+    private static final int ADDR = 0x2000; // map region, page aligned
+
+    private Globals lua;
+    private Ram ram;
+
+    @Before
+    public void setUp() {
+        lua = JsePlatform.standardGlobals();
+        ram = new Ram(3);
+        new TypedArrayLuaBindings(lua, ram).register();
+        new RamLuaBindings(lua, ram).register();
+    }
+
+    private void run(String... lines) {
+        lua.load(String.join("\n", lines), "test").call();
+    }
+
+    private List<Integer> dirtyPages() {
+        List<Integer> pages = new ArrayList<>();
+        for (int p = ram.nextDirtyPage(0); p >= 0; p = ram.nextDirtyPage(p + 1)) pages.add(p);
+        return pages;
+    }
+
+    @Test
+    public void viewWritesLandInRam() {
+        run("local a = typed.view('u8', 0x2000, 4)",
+            "a[1] = 5 a[4] = 300", // wraps like a byte
+            "local w = typed.view('i16', 0x2010, 2)",
+            "w[1] = -2 w[2] = 0x1234",
+            "local f = typed.view('f32', 0x2020, 1)",
+            "f[1] = 1.5");
+        assertEquals(5, ram.peek(ADDR));
+        assertEquals(300 & 0xFF, ram.peek(ADDR + 3));
+        assertEquals(0xFFFE, ram.peek2(ADDR + 0x10));
+        assertEquals(0x1234, ram.peek2(ADDR + 0x12));
+        assertEquals(Float.floatToIntBits(1.5f), ram.peek4(ADDR + 0x20));
+    }
+
+    @Test
+    public void viewsSeePokes() {
+        ram.poke2(ADDR, 0xBEEF);
+        run("local v = typed.view('u8', 0x2000, 2)",
+            "assert(v[1] == 0xEF and v[2] == 0xBE)",
+            "poke(0x2000, 1)",
+            "assert(v[1] == 1, 'no copy')");
+    }
+
+    @Test
+    public void everyWriteMarksItsPagesDirty() {
+        run("v = typed.view('u8', 0x2000, 1024)"); // pages 0x20 .. 0x23
+        ram.clearDirty();
+        run("v[300] = 1");
+        assertEquals(List.of(0x21), dirtyPages());
+
+        ram.clearDirty();
+        run("v:fill(7, 1, 512)");
+        assertEquals(List.of(0x20, 0x21), dirtyPages());
+        assertEquals(7, ram.peek(ADDR + 511));
+
+        ram.clearDirty();
+        run("v:copy({ 1, 2, 3 }, 769)");
+        assertEquals(List.of(0x23), dirtyPages());
+
+        ram.clearDirty();
+        run("v:map_add(1)");
+        assertEquals(List.of(0x20, 0x21, 0x22, 0x23), dirtyPages());
+        assertEquals(8, ram.peek(ADDR));
+
+        ram.clearDirty();
+        run("local src = typed.u8(256) src:fill(9) v:copy(src, 257)");
+        assertEquals(List.of(0x21), dirtyPages());
+        assertEquals(9, ram.peek(ADDR + 256));
+    }
+
+    @Test
+    public void viewsKeepTheBankTheyWereMadeIn() {
+        ram.setBank(1);
+        run("b1 = typed.view('u8', " + Ram.USER_DATA_BASE + ", 16)");
+        ram.setBank(0);
+        run("b1[1] = 42");
+        assertEquals("bank 0 untouched", 0, ram.peek(Ram.USER_DATA_BASE));
+        ram.setBank(1);
+        assertEquals(42, ram.peek(Ram.USER_DATA_BASE));
+        ram.setBank(2);
+        assertEquals(0, ram.peek(Ram.USER_DATA_BASE));
+    }
+
+    @Test
+    public void badViewsAndIndicesRaise() {
+        for (String bad : new String[] {
+            "typed.view('u8', 0xFFF0, 32)",                                   // past the end
+            "typed.view('u8', " + (Ram.USER_DATA_BASE - 8) + ", 16)",        // across the bank window edge
+            "typed.view('u9', 0, 1)",                                         // unknown type
+            "local v = typed.view('u8', 0x2000, 4) v[5] = 1",                // past the view
+            "local v = typed.view('u8', 0x2000, 4) v[0] = 1",
+        }) {
+            try {
+                run(bad);
+                fail("no error from " + bad);
+            } catch (LuaError expected) {
+            }
+        }
+        run("local v = typed.view('u8', 0x2000, 4) assert(v[5] == nil and v[0] == nil and #v == 4)");
+        assertEquals("rejected writes change nothing", 0, ram.peek(ADDR));
+    }
+}
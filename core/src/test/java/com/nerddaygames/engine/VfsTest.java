@@ -0,0 +1,202 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VfsTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("vfs").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        new FileHandle(dir).deleteDirectory();
+    }
+
+    private File write(String path, String text) throws IOException {
+        File f = new File(dir, path);
+        f.getParentFile().mkdirs();
+        Files.write(f.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+
+    private Vfs.DirMount folder(String name) {
+        return new Vfs.DirMount(new FileHandle(new File(dir, name)));
+    }
+
+    // name, text, name, text, ...; a name ending in '/' is a directory entry
+    private File zip(String name, String... entries) throws IOException {
+        File f = new File(dir, name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f))) {
+            for (int i = 0; i < entries.length; i += 2) {
+                out.putNextEntry(new ZipEntry(entries[i]));
+                if (entries[i + 1] != null) out.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return f;
+    }
+
+    @Test
+    public void firstMountWithTheFileWins() throws Exception {
+        write("low/a.txt", "low a");
+        write("low/b.txt", "low b");
+        write("high/a.txt", "high a");
+        Vfs vfs = new Vfs();
+        Vfs.DirMount low = folder("low"), high = folder("high");
+        vfs.mount("", low, false);
+        vfs.mount("", high, true);
+
+        assertEquals("high a", vfs.resolve("a.txt").readString());
+        assertEquals("falls through to the lower mount", "low b", vfs.resolve("/b.txt").readString());
+        assertNull(vfs.resolve("c.txt"));
+        assertEquals(Arrays.asList("a.txt", "b.txt"), sorted(vfs.list("")));
+
+        // Mounted below: the existing mount keeps priority
+        write("bottom/a.txt", "bottom a");
+        vfs.mount("", folder("bottom"), false);
+        assertEquals("high a", vfs.resolve("a.txt").readString());
+
+        assertTrue(vfs.unmount(high));
+        assertFalse(vfs.unmount(high));
+        assertEquals("low a", vfs.resolve("a.txt").readString());
+    }
+
+    @Test
+    public void prefixMountsOnlyAnswerUnderTheirMountPoint() throws Exception {
+        write("base/system/font.txt", "base font");
+        write("base/system/keep.txt", "base keep");
+        write("base/main.lua", "x = 1");
+        write("pack/font.txt", "pack font");
+        Vfs vfs = new Vfs();
+        vfs.mount("", folder("base"), false);
+        vfs.mount("system", folder("pack"), true); // the trailing '/' is added
+
+        assertEquals("pack font", vfs.resolve("system/font.txt").readString());
+        assertEquals("base keep", vfs.resolve("system/keep.txt").readString());
+        assertNull("not at the root", vfs.resolve("font.txt"));
+        assertTrue("the mount point is a directory", vfs.resolve("system").isDirectory());
+        assertEquals(Arrays.asList("main.lua", "system/"), sorted(vfs.list("")));
+        assertEquals(Arrays.asList("font.txt", "keep.txt"), sorted(vfs.list("system")));
+    }
+
+    @Test
+    public void aDirectoryShadowsAFileOfTheSameName() throws Exception {
+        write("low/maps", "a file");
+        write("high/maps/1.bin", "level");
+        Vfs vfs = new Vfs();
+        vfs.mount("", folder("low"), false);
+        vfs.mount("", folder("high"), true);
+        assertEquals(Arrays.asList("maps/"), vfs.list(""));
+    }
+
+    @Test
+    public void dirMountCachesLookupsUntilInvalidated() throws Exception {
+        new File(dir, "assets").mkdirs();
+        Vfs vfs = new Vfs();
+        vfs.mount("", folder("assets"), false);
+        assertNull(vfs.resolve("late.txt"));
+        write("assets/late.txt", "here now");
+        assertNull("the miss is cached", vfs.resolve("late.txt"));
+        vfs.invalidate();
+        assertEquals("here now", vfs.resolve("late.txt").readString());
+    }
+
+    @Test
+    public void zipEntriesAreReadInPlace() throws Exception {
+        File zip = zip("pack.zip",
+            "readme.txt", "hello",
+            "gfx/", null,
+            "gfx/tiles/grass.png", "png bytes",
+            "sfx/jump.wav", "wav",          // no directory entry for sfx/
+            "../escape.txt", "nope");
+        List<String> before = sorted(Arrays.asList(dir.list()));
+
+        try (Vfs.ArchiveMount m = Vfs.ArchiveMount.open(zip)) {
+            Vfs vfs = new Vfs();
+            vfs.mount("system/", m, true);
+            assertEquals(4 + 2, m.size()); // 4 files + gfx/tiles and sfx
+
+            FileHandle grass = vfs.resolve("system/gfx/tiles/grass.png");
+            assertEquals("png bytes", grass.readString());
+            assertEquals(9, grass.length());
+            assertFalse(grass.isDirectory());
+            assertFalse("not extracted to disk", grass.file().exists());
+            assertEquals(zip.lastModified(), grass.lastModified());
+
+            assertTrue(vfs.resolve("system/sfx").isDirectory());
+            assertEquals("wav", vfs.resolve("system/sfx/").child("jump.wav").readString());
+            assertEquals(Arrays.asList("gfx/", "readme.txt", "sfx/"), sorted(vfs.list("system")));
+            assertEquals(Arrays.asList("tiles/"), vfs.list("system/gfx/"));
+            assertEquals("gfx", grass.parent().parent().name());
+            assertEquals(1, vfs.resolve("system/gfx").list().length);
+
+            assertNull(vfs.resolve("system/escape.txt"));
+            assertNull(vfs.resolve("system/../escape.txt"));
+            assertNull(vfs.resolve("system/gfx/missing.png"));
+            assertFalse(vfs.resolve("system/gfx").child("missing.png").exists());
+        }
+        assertEquals("nothing written next to the archive", before, sorted(Arrays.asList(dir.list())));
+    }
+
+    @Test
+    public void cartSectionsAndModulesAreFiles() throws Exception {
+        byte[] map = new byte[1024];
+        map[7] = 3;
+        File cart = new File(dir, "game." + CartFile.EXTENSION);
+        new CartFile.Writer()
+            .add(CartFile.CODE, "require('lib.util')")
+            .add(CartFile.MAP, map)
+            .add(CartFile.MODULES, modulesIndex("lib/util.lua"))
+            .add(CartFile.moduleId(0), "return {}")
+            .write(cart);
+
+        try (Vfs.ArchiveMount m = Vfs.ArchiveMount.open(cart)) {
+            Vfs vfs = new Vfs();
+            vfs.mount("cart/", m, true);
+            assertEquals("require('lib.util')", vfs.resolve("cart/main.lua").readString());
+            assertArrayEquals(map, vfs.resolve("cart/map.bin").readBytes());
+            assertEquals(map.length, vfs.resolve("cart/map.bin").length());
+            assertEquals("return {}", vfs.resolve("cart/lib/util.lua").readString());
+            assertNull("absent sections are not files", vfs.resolve("cart/sfx.bin"));
+            assertEquals(Arrays.asList("lib/", "main.lua", "map.bin"), sorted(vfs.list("cart")));
+        }
+    }
+
+    // The MODULES index: section id u32, path length u16, path (little endian)
+    private static byte[] modulesIndex(String path) {
+        byte[] name = path.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(6 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        entry.putInt(CartFile.moduleId(0)).putShort((short) name.length).put(name);
+        return entry.array();
+    }
+
+    private static List<String> sorted(List<String> names) {
+        String[] a = names.toArray(new String[0]);
+        Arrays.sort(a);
+        return Arrays.asList(a);
+    }
+}
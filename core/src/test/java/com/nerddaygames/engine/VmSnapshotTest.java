@@ -0,0 +1,160 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaClosure;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VmSnapshotTest {
+    private static final String CART = String.join("\n",
+        "Enemy = {}",
+        "Enemy.__index = Enemy",
+        "function Enemy.new(x) return setmetatable({ x = x, hp = 3 }, Enemy) end",
+        "function Enemy:hit() self.hp = self.hp - 1 end",
+        "local counter = 0",
+        "function next_id() counter = counter + 1; return counter end",
+        "function _init()",
+        "  enemies = {}",
+        "  for i = 1, 10 do enemies[i] = Enemy.new(i) end",
+        "  say = print",
+        "  next_id() next_id()",
+        "end");
+
+    private static final String PLAY = "for i = 1, 10 do enemies[i]:hit() end next_id() junk = {}";
+
+    private static final String CHECK = String.join("\n",
+        "assert(junk == nil, 'stale global')",
+        "assert(#enemies == 10 and enemies[4].x == 4, 'enemies')",
+        "assert(enemies[4].hp == 3, 'hp')",
+        "enemies[4]:hit() assert(enemies[4].hp == 2, 'metatable')",
+        "assert(next_id() == 3, 'upvalue')",
+        "assert(say == print, 'engine function')");
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("vmsnapshot").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        WriteBehind.shared().flush();
+        new FileHandle(dir).deleteDirectory();
+    }
+
+    // A cart's main chunk and _init run in a fresh Lua state
+    private static LuaClosure boot(Globals g) {
+        LuaClosure chunk = (LuaClosure) g.load(CART, "main.lua");
+        chunk.call();
+        g.get("_init").call();
+        return chunk;
+    }
+
+    @Test
+    public void restartBringsBackThePostInitState() {
+        Globals g = JsePlatform.standardGlobals();
+        Map<LuaValue, String> engineNames = VmSnapshot.names(g);
+        Ram ram = new Ram(2);
+        LuaClosure chunk = boot(g);
+        ram.poke(Ram.MAP_BASE, 7);
+        VmSnapshot snapshot = VmSnapshot.capture(42L, "main.lua", chunk.p, g, engineNames, ram, null);
+
+        g.load(PLAY, "play").call();
+        ram.poke(Ram.MAP_BASE, 99);
+        ram.poke(Ram.CART_DATA_BASE, 5); // cartdata() written during play
+        ram.setBank(1);
+
+        snapshot.restoreRam(ram);
+        snapshot.restoreGlobals(g, engineNames);
+        g.load(CHECK, "check").call();
+        assertEquals(0, ram.getWindows().get(0).getActiveBank());
+        assertEquals(7, ram.peek(Ram.MAP_BASE));
+        assertEquals("restart keeps cartdata", 5, ram.peek(Ram.CART_DATA_BASE));
+    }
+
+    @Test
+    public void suspendedSessionResumesInAFreshState() throws Exception {
+        Globals g = JsePlatform.standardGlobals();
+        Map<LuaValue, String> engineNames = VmSnapshot.names(g);
+        Ram ram = new Ram(2);
+        LuaClosure chunk = boot(g);
+        ram.setBank(1);
+        ram.poke(Ram.MAP_BASE, 11);
+        File file = new File(dir, "suspend.fsnp");
+        VmSnapshot.capture(42L, "main.lua", chunk.p, g, engineNames, ram, null).write(file);
+
+        VmSnapshot read = VmSnapshot.read(file);
+        assertEquals(42L, read.sourceHash);
+        assertEquals("main.lua", read.chunkName);
+
+        // What FantasyVM.resume does: the saved main chunk instead of the compiler, then the state instead of _init
+        Globals fresh = JsePlatform.standardGlobals();
+        Ram freshRam = new Ram(2);
+        new LuaClosure(read.main, fresh).call();
+        read.restoreRam(freshRam);
+        read.restoreGlobals(fresh, VmSnapshot.names(fresh));
+        fresh.load(CHECK, "check").call();
+        assertEquals(1, freshRam.getWindows().get(0).getActiveBank());
+        assertEquals(11, freshRam.peek(Ram.MAP_BASE));
+    }
+
+    @Test
+    public void readRejectsOtherFiles() throws Exception {
+        File file = new File(dir, "suspend.fsnp");
+        Files.write(file.toPath(), "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        try {
+            VmSnapshot.read(file);
+            fail("read a text file as a snapshot");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void projectHashCoversEveryModule() throws Exception {
+        Files.write(new File(dir, "main.lua").toPath(), "require('lib/util')".getBytes(StandardCharsets.UTF_8));
+        new File(dir, "lib").mkdirs();
+        File util = new File(dir, "lib/util.lua");
+        Files.write(util.toPath(), "function f() return 1 end".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(dir, "notes.txt").toPath(), "a".getBytes(StandardCharsets.UTF_8));
+
+        long before = VmSnapshot.hashSources(new FileSystem(new FileHandle(dir)));
+        assertEquals(before, VmSnapshot.hashSources(new FileSystem(new FileHandle(dir))));
+
+        Files.write(new File(dir, "notes.txt").toPath(), "b".getBytes(StandardCharsets.UTF_8));
+        assertEquals("only .lua files count", before, VmSnapshot.hashSources(new FileSystem(new FileHandle(dir))));
+
+        Files.write(util.toPath(), "function f() return 2 end".getBytes(StandardCharsets.UTF_8));
+        assertTrue(util.setLastModified(util.lastModified() + 2000));
+        assertNotEquals("a module changed", before, VmSnapshot.hashSources(new FileSystem(new FileHandle(dir))));
+    }
+
+    @Test
+    public void cartHashCoversOnlyTheCode() throws Exception {
+        File a = new File(dir, "a.cart"), b = new File(dir, "b.cart"), c = new File(dir, "c.cart");
+        new CartFile.Writer().add(CartFile.CODE, CART).add(CartFile.MAP, new byte[4096]).write(a);
+        byte[] map = new byte[4096];
+        map[100] = 3;
+        new CartFile.Writer().add(CartFile.CODE, CART).add(CartFile.MAP, map).write(b);
+        new CartFile.Writer().add(CartFile.CODE, CART + "\nscore = 1").add(CartFile.MAP, map).write(c);
+
+        long hash = CartFile.open(a).codeHash();
+        assertEquals("map edits keep a suspended session", hash, CartFile.open(b).codeHash());
+        assertNotEquals(hash, CartFile.open(c).codeHash());
+    }
+}
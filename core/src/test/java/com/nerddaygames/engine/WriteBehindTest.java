@@ -0,0 +1,58 @@
+package com.nerddaygames.engine;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class WriteBehindTest {
+    private File root;
+    private WriteBehind writer;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("writebehind").toFile();
+        writer = new WriteBehind();
+        writer.coalesceMs = 0;
+    }
+
+    @After
+    public void tearDown() {
+        writer.close();
+        new FileHandle(root).deleteDirectory();
+    }
+
+    @Test
+    public void listenerHearsALandedWrite() throws Exception {
+        File target = new File(root, "sheet.png");
+        AtomicReference<Object> result = new AtomicReference<>();
+        writer.submit(target, out -> out.write(new byte[] { 1, 2, 3 }), (f, error) -> result.set(error != null ? error : f));
+        writer.flush();
+        assertSame(target, result.get());
+        assertEquals(3, target.length());
+    }
+
+    // The caller learns about a failure that happens after submit() returned
+    @Test
+    public void listenerHearsAFailedWrite() throws Exception {
+        File blocker = new File(root, "disk");
+        Files.write(blocker.toPath(), "not a folder".getBytes(StandardCharsets.UTF_8));
+        File target = new File(blocker, "sheet.png");
+        AtomicReference<Exception> error = new AtomicReference<>();
+        writer.submit(target, out -> out.write(1), (f, e) -> error.set(e));
+        writer.flush();
+        assertNotNull(error.get());
+        assertEquals(1, writer.failures);
+        assertNull(writer.pending(target));
+    }
+}
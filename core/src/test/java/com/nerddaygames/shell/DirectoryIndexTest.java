@@ -0,0 +1,99 @@
+package com.nerddaygames.shell;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirectoryIndexTest {
+    private static final int ENTRIES = 200;
+
+    private DirectoryIndex index;
+    private File dir;
+    private FileHandle folder;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new DirectoryIndex();
+        dir = Files.createTempDirectory("dirindex").toFile();
+        for (int i = 0; i < ENTRIES; i++) {
+            if (i % 10 == 0) new File(dir, "folder" + i).mkdir();
+            else new File(dir, "file" + i + ".txt").createNewFile();
+        }
+        new File(dir, ".hidden").createNewFile();
+        folder = new FileHandle(dir);
+    }
+
+    @After
+    public void tearDown() {
+        index.dispose();
+        folder.deleteDirectory();
+    }
+
+    // Waits (up to 10 s) for exactly these numbers of added/removed changes
+    private static List<DirectoryIndex.Change> drainUntil(DirectoryIndex.View view, int added, int removed) throws InterruptedException {
+        List<DirectoryIndex.Change> all = new ArrayList<>();
+        int a = 0, r = 0;
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((a < added || r < removed || view.isScanning()) && System.currentTimeMillis() < deadline) {
+            List<DirectoryIndex.Change> batch = new ArrayList<>();
+            view.drain(batch);
+            for (DirectoryIndex.Change c : batch) { if (c.added != null) a++; else r++; }
+            all.addAll(batch);
+            Thread.sleep(5);
+        }
+        assertEquals("added", added, a);
+        assertEquals("removed", removed, r);
+        return all;
+    }
+
+    @Test
+    public void listsEveryVisibleEntry() throws Exception {
+        DirectoryIndex.View view = index.open(folder);
+        int dirs = 0;
+        for (DirectoryIndex.Change c : drainUntil(view, ENTRIES, 0)) {
+            assertFalse(c.added.name.startsWith("."));
+            if (c.added.dir) dirs++;
+        }
+        assertEquals(ENTRIES / 10, dirs);
+        view.close();
+    }
+
+    @Test
+    public void openViewFollowsCreatesAndDeletes() throws Exception {
+        DirectoryIndex.View view = index.open(folder);
+        drainUntil(view, ENTRIES, 0);
+        new File(dir, "new.txt").createNewFile();
+        new File(dir, "file1.txt").delete();
+        // Watched where there is a WatchService, rescanned otherwise
+        if (index.watchEvents == 0) index.rescan(folder);
+        List<DirectoryIndex.Change> changes = drainUntil(view, 1, 1);
+        for (DirectoryIndex.Change c : changes) {
+            if (c.added != null) assertEquals("new.txt", c.added.name);
+            else assertEquals("file1.txt", c.removed);
+        }
+        view.close();
+    }
+
+    // Closed views stop the watch; reopening replays the cache and a rescan sends the difference
+    @Test
+    public void reopenSendsCacheThenDifference() throws Exception {
+        DirectoryIndex.View view = index.open(folder);
+        drainUntil(view, ENTRIES, 0);
+        view.close();
+        new File(dir, "file2.txt").delete();
+        view = index.open(folder);
+        drainUntil(view, ENTRIES, 1);
+        assertTrue(view.folder.file().isDirectory());
+        view.close();
+    }
+}
@@ -0,0 +1,114 @@
+package com.nerddaygames.shell;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileOperationsTest {
+    private FileOperations ops;
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        ops = new FileOperations();
+        root = Files.createTempDirectory("fileops").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        ops.dispose();
+        new FileHandle(root).deleteDirectory();
+    }
+
+    private FileOperations.Operation finish(FileOperations.Operation op) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (ops.pollFinished() != op) {
+            assertTrue("operation did not finish", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        return op;
+    }
+
+    private File folder(String name, int files) throws Exception {
+        File dir = new File(root, name);
+        dir.mkdirs();
+        for (int i = 0; i < files; i++) Files.write(new File(dir, "f" + i + ".txt").toPath(), ("file " + i).getBytes(StandardCharsets.UTF_8));
+        return dir;
+    }
+
+    @Test
+    public void copiesAFolder() throws Exception {
+        File src = folder("src", 20);
+        File target = folder("target", 0);
+        FileOperations.Operation op = finish(ops.copy(new FileHandle(src), new FileHandle(target)));
+        assertNull(op.error);
+        assertEquals(20, new File(target, "src").list().length);
+        assertEquals("file 7", new String(Files.readAllBytes(new File(target, "src/f7.txt").toPath()), StandardCharsets.UTF_8));
+        assertTrue(ops.active().isEmpty());
+    }
+
+    @Test
+    public void failedCopyReportsItsErrorNotCancelled() throws Exception {
+        File src = folder("src", 3);
+        File target = folder("target", 0);
+        // A file where the copied folder must go: creating the folder fails
+        Files.write(new File(target, "src").toPath(), new byte[] { 1 });
+        FileOperations.Operation op = finish(ops.copy(new FileHandle(src), new FileHandle(target)));
+        assertNotNull(op.error);
+        assertNotEquals("cancelled", op.error);
+    }
+
+    @Test
+    public void deletesAFolder() throws Exception {
+        File dir = folder("gone", 10);
+        FileOperations.Operation op = finish(ops.delete(new FileHandle(dir)));
+        assertNull(op.error);
+        assertEquals(11, op.doneFiles.get()); // ten files and the folder
+        assertTrue(!dir.exists());
+    }
+
+    @Test
+    public void movesAFolder() throws Exception {
+        File src = folder("src", 5);
+        File target = folder("target", 0);
+        FileOperations.Operation op = finish(ops.move(new FileHandle(src), new FileHandle(target)));
+        assertNull(op.error);
+        assertTrue(!src.exists());
+        assertEquals(5, new File(target, "src").list().length);
+    }
+
+    // An existing folder is merged (copy + delete), replacing same-named files
+    @Test
+    public void moveMergesIntoAnExistingFolder() throws Exception {
+        File src = folder("src", 3);
+        File target = folder("target", 0);
+        File existing = new File(target, "src");
+        existing.mkdir();
+        Files.write(new File(existing, "f1.txt").toPath(), "old".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(existing, "keep.txt").toPath(), "keep".getBytes(StandardCharsets.UTF_8));
+        FileOperations.Operation op = finish(ops.move(new FileHandle(src), new FileHandle(target)));
+        assertNull(op.error);
+        assertTrue(!src.exists());
+        assertEquals(4, existing.list().length);
+        assertEquals("file 1", new String(Files.readAllBytes(new File(existing, "f1.txt").toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void folderIsNotCopiedIntoItself() throws Exception {
+        File src = folder("src", 1);
+        FileOperations.Operation op = finish(ops.copy(new FileHandle(src), new FileHandle(src)));
+        assertNotNull(op.error);
+        assertEquals(1, src.list().length);
+    }
+}
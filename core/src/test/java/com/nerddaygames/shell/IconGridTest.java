@@ -0,0 +1,40 @@
+package com.nerddaygames.shell;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+// IconGrid against the per-item loops it replaced, in a 400x300 window at (200, 150)
+public class IconGridTest {
+    private static final float X = 200, Y = 150, W = 400, H = 300;
+
+    @Test
+    public void visibleRangeAndHitTestMatchAFullScan() {
+        IconGrid grid = new IconGrid(10, 10, 60, 70, 48);
+        grid.setWidth(W);
+        Random rnd = new Random(42);
+        int count = 5_000;
+        float maxScroll = grid.maxScroll(count, H - 30);
+        for (int t = 0; t < 200; t++) {
+            float top = Y + H - 80 + rnd.nextFloat() * maxScroll;
+            int cols = grid.getCols();
+            int from = grid.firstRow(top, Y + H) * cols;
+            int to = Math.min(count, (grid.lastRow(top, Y - 50) + 1) * cols);
+            for (int i = 0; i < count; i++) {
+                float wy = top + grid.cellY(i);
+                boolean visible = !(wy < Y - 50 || wy > Y + H);
+                assertEquals("visible at " + i, visible, i >= from && i < to);
+            }
+
+            float px = X + rnd.nextFloat() * W, py = Y + rnd.nextFloat() * (H - 30);
+            int expected = -1;
+            for (int i = 0; i < count; i++) {
+                float wx = X + grid.cellX(i), wy = top + grid.cellY(i);
+                if (px >= wx && px <= wx + 48 && py >= wy && py <= wy + 48) { expected = i; break; }
+            }
+            assertEquals(expected, grid.indexAt(px - X, top - py, count));
+        }
+    }
+}
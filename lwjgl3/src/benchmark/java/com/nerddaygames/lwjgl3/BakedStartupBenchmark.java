@@ -0,0 +1,120 @@
+package com.nerddaygames.lwjgl3;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Files;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.BitmapFontData;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.nerddaygames.engine.BakedAssets;
+import com.nerddaygames.engine.FantasyVM;
+import com.nerddaygames.engine.LuaSyntaxCandy;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Startup work of the VMs the shell creates (desktop, seven tools, run screen), without and
+ * with a bake (AssetBaker into a temp folder, read through BakedAssets):
+ *  - scripts: each VM's system script sugared and compiled vs loaded from baked bytecode
+ *  - fonts: each VM rasterizing both fonts with FreeType vs one .fnt parse and PNG decode per
+ *    process (the texture upload is the same either way and needs GL, so it is left out)
+ * The first VM is reported separately: it is the cold start. Fonts are skipped if the
+ * FreeType natives cannot be loaded.
+ * Run `gradlew lwjgl3:bench -Pbench=BakedStartupBenchmark [-PbenchArgs=<assetsDir>]`
+ */
+public class BakedStartupBenchmark {
+    private static final int VMS = 9;
+    private static final String[] SCRIPTS = {
+        "system/desktop.lua", "system/tools/code.lua", "system/tools/sprite.lua", "system/tools/map.lua",
+        "system/tools/sfx.lua", "system/tools/music.lua", "system/tools/input.lua", "system/tools/config.lua"
+    };
+
+    public static void main(String[] args) throws Exception {
+        Gdx.files = new Lwjgl3Files();
+        GdxNativesLoader.load();
+        File assets = new File(args.length > 0 ? args[0] : "assets").getAbsoluteFile();
+        if (!new File(assets, "system").isDirectory()) assets = new File("../assets").getAbsoluteFile();
+        File out = Files.createTempDirectory("baked").toFile();
+
+        BakedAssets.Manifest m = new BakedAssets.Manifest();
+        m.scripts = AssetBaker.bakeScripts(assets, out);
+        boolean fonts = true;
+        try {
+            m.fonts = AssetBaker.bakeFonts(assets, out);
+        } catch (Throwable t) {
+            fonts = false;
+            System.out.println("fonts skipped (FreeType unavailable: " + t + ")");
+        }
+        AssetBaker.writeManifest(out, m);
+        BakedAssets baked = new BakedAssets(new FileHandle(out));
+
+        String[] sources = new String[SCRIPTS.length];
+        for (int i = 0; i < SCRIPTS.length; i++) sources[i] = new String(Files.readAllBytes(new File(assets, SCRIPTS[i]).toPath()), "UTF-8");
+
+        // Scripts: one script per VM, cycling through the tools (as the shell starts them)
+        double[] compile = new double[VMS], load = new double[VMS];
+        for (int vm = 0; vm < VMS; vm++) {
+            String src = sources[vm % sources.length], name = SCRIPTS[vm % sources.length];
+            Globals g = JsePlatform.standardGlobals();
+            long t0 = System.nanoTime();
+            g.load(LuaSyntaxCandy.process(src), name);
+            compile[vm] = (System.nanoTime() - t0) / 1e6;
+        }
+        for (int vm = 0; vm < VMS; vm++) {
+            String src = sources[vm % sources.length], name = SCRIPTS[vm % sources.length];
+            Globals g = JsePlatform.standardGlobals();
+            long t0 = System.nanoTime();
+            byte[] luac = baked.chunk(name, src);
+            if (luac == null) throw new IllegalStateException(name + " not baked");
+            g.load(new ByteArrayInputStream(luac), name, "b", g);
+            load[vm] = (System.nanoTime() - t0) / 1e6;
+        }
+        System.out.printf("scripts, %d VMs: sugar + compile %.2f ms (first %.2f), baked bytecode %.2f ms (first %.2f); %d scripts baked%n",
+            VMS, sum(compile), compile[0], sum(load), load[0], m.scripts.length);
+
+        if (fonts) {
+            double[] raster = new double[VMS];
+            for (int vm = 0; vm < VMS; vm++) {
+                long t0 = System.nanoTime();
+                rasterize(new File(assets, FantasyVM.OS_FONT), FantasyVM.osFontParameter());
+                rasterize(new File(assets, FantasyVM.GAME_FONT), FantasyVM.gameFontParameter());
+                raster[vm] = (System.nanoTime() - t0) / 1e6;
+            }
+            long t0 = System.nanoTime();
+            for (String name : new String[] {"os", "game"}) {
+                BakedAssets.FontEntry e = baked.fontEntry(name);
+                new BitmapFontData(new FileHandle(new File(out, e.fnt)), false);
+                new Pixmap(new FileHandle(new File(out, e.page))).dispose();
+            }
+            double once = (System.nanoTime() - t0) / 1e6;
+            System.out.printf("fonts, %d VMs: FreeType per VM %.2f ms (first %.2f), baked once per process %.2f ms%n",
+                VMS, sum(raster), raster[0], once);
+        }
+
+        for (File f : out.listFiles()) if (f.isFile()) f.delete();
+        new FileHandle(out).deleteDirectory();
+    }
+
+    // What FantasyVM.loadFonts did per VM, minus the texture upload
+    private static void rasterize(File ttf, FreeTypeFontParameter p) {
+        FreeTypeFontGenerator gen = new FreeTypeFontGenerator(new FileHandle(ttf));
+        PixmapPacker packer = new PixmapPacker(512, 512, Pixmap.Format.RGBA8888, 1, false, new PixmapPacker.GuillotineStrategy());
+        p.packer = packer;
+        gen.generateData(p);
+        packer.dispose();
+        gen.dispose();
+    }
+
+    private static double sum(double[] v) {
+        double s = 0;
+        for (double d : v) s += d;
+        return s;
+    }
+}
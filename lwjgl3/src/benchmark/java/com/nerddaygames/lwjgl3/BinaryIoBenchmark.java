@@ -0,0 +1,105 @@
+package com.nerddaygames.lwjgl3;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Files;
+import com.badlogic.gdx.files.FileHandle;
+import com.nerddaygames.engine.FileSystem;
+import com.nerddaygames.engine.TypedArray;
+import com.nerddaygames.engine.WriteBehind;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Getting a 32 MB asset into Lua: the old text path (readString, then LuaValue.valueOf
+ * re-encodes the String) vs fs.read_bytes (one copy) vs fs.map (mapped, no copy), each
+ * followed by a pass over the bytes. Checks ranged reads, a float array written as bytes
+ * and read back as f32, and that a mapped array is read-only.
+ * Run `gradlew lwjgl3:bench -Pbench=BinaryIoBenchmark`.
+ */
+public class BinaryIoBenchmark {
+    private static final int SIZE = 32 * 1024 * 1024;
+    private static final int WARMUP = 3;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        Gdx.files = new Lwjgl3Files();
+        File dir = Files.createTempDirectory("binbench").toFile();
+        FileHandle root = new FileHandle(dir);
+        FileSystem fs = new FileSystem(root);
+
+        // ASCII so the text path decodes the same bytes
+        byte[] data = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) data[i] = (byte) ('a' + (i * 31 + (i >>> 10)) % 26);
+        if (!fs.writeBytes("asset.bin", data, 0, data.length)) throw new IllegalStateException("writeBytes failed (no size ceiling)");
+        WriteBehind.shared().flush(); // the text path below reads the disk directly
+        long expected = sum(ByteBuffer.wrap(data));
+
+        double[] text = new double[RUNS], bytes = new double[RUNS], mapped = new double[RUNS];
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            long t0 = System.nanoTime();
+            LuaString s1 = LuaValue.valueOf(root.child("asset.bin").readString("UTF-8")).checkstring();
+            long a = sum(ByteBuffer.wrap(s1.m_bytes, s1.m_offset, s1.m_length));
+            long t1 = System.nanoTime();
+            LuaString s2 = LuaString.valueUsing(fs.readBytes("asset.bin"));
+            long b = sum(ByteBuffer.wrap(s2.m_bytes, s2.m_offset, s2.m_length));
+            long t2 = System.nanoTime();
+            TypedArray m = TypedArray.wrap(TypedArray.Kind.U8, fs.map("asset.bin"));
+            long c = sumTyped(m);
+            long t3 = System.nanoTime();
+            if (a != expected || b != expected || c != expected) throw new IllegalStateException("content mismatch");
+            if (i >= WARMUP) {
+                text[i - WARMUP] = (t1 - t0) / 1e6;
+                bytes[i - WARMUP] = (t2 - t1) / 1e6;
+                mapped[i - WARMUP] = (t3 - t2) / 1e6;
+            }
+        }
+        report("readString + valueOf", text);
+        report("fs.read_bytes", bytes);
+        report("fs.map (u8 array)", mapped);
+
+        byte[] range = fs.readBytes("asset.bin", SIZE - 10, 100);
+        if (range.length != 10 || range[0] != data[SIZE - 10]) throw new IllegalStateException("ranged read");
+
+        ByteBuffer floats = ByteBuffer.allocate(16).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 4; i++) floats.putFloat(i * 0.5f);
+        floats.flip();
+        fs.writeBytes("floats.bin", floats);
+        Globals g = JsePlatform.standardGlobals();
+        g.set("back", TypedArray.wrap(TypedArray.Kind.F32, fs.map("floats.bin")));
+        g.set("ro", TypedArray.wrap(TypedArray.Kind.U8, fs.map("asset.bin")));
+        g.load("assert(#back == 4 and back[4] == 1.5, 'typed round trip')", "check").call();
+        try {
+            g.load("ro[1] = 0", "check").call();
+            throw new IllegalStateException("mapped array was writable");
+        } catch (LuaError expectedError) {}
+        System.out.println("range, typed array and read-only checks passed");
+
+        root.deleteDirectory();
+    }
+
+    private static long sum(ByteBuffer b) {
+        long s = 0;
+        for (int i = b.position(); i < b.limit(); i++) s += b.get(i) & 0xFF;
+        return s;
+    }
+
+    private static long sumTyped(TypedArray a) {
+        long s = 0;
+        for (int i = 0; i < a.length; i++) s += (long) a.getDouble(i);
+        return s;
+    }
+
+    private static void report(String name, double[] ms) {
+        double[] sorted = ms.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-24s median %8.2f ms  p90 %8.2f ms%n", name, sorted[sorted.length / 2], sorted[sorted.length * 9 / 10]);
+    }
+}
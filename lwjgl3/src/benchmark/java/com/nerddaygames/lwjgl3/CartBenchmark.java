@@ -0,0 +1,106 @@
+package com.nerddaygames.lwjgl3;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.nerddaygames.engine.CartFile;
+import com.nerddaygames.engine.FantasyVM;
+import com.nerddaygames.engine.LuaSyntaxCandy;
+import com.nerddaygames.engine.Ram;
+import com.nerddaygames.engine.graphics.Palette;
+import org.luaj.vm2.LoadState;
+import org.luaj.vm2.compiler.LuaC;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Cart load time: project folder (main.lua + sprites.png + map.bin) vs the packed .cart.
+ * CPU side only (no GL context): sprite sheet to Pixmap, map into Ram, Lua chunk to a Prototype.
+ * Run `gradlew lwjgl3:bench -Pbench=CartBenchmark [-PbenchArgs=<dir>]`; without a project a sample one is
+ * built from system/tools/code.lua and sprites.png.
+ */
+public class CartBenchmark {
+    private static final int WARMUP = 50;
+    private static final int RUNS = 200;
+
+    public static void main(String[] args) throws Exception {
+        GdxNativesLoader.load();
+        File dir = (args.length > 0) ? new File(args[0]) : sampleProject();
+        FileHandle project = new FileHandle(dir);
+        Palette palette = new Palette();
+
+        File cart = File.createTempFile("bench", "." + CartFile.EXTENSION);
+        cart.deleteOnExit();
+        CartFile.pack(project, cart, palette);
+
+        long folderBytes = 0;
+        for (String name : new String[] { "main.lua", "sprites.png", "map.bin", "project.json" }) {
+            if (project.child(name).exists()) folderBytes += project.child(name).length();
+        }
+        System.out.printf("Project %s: folder %d bytes, cart %d bytes%n", dir, folderBytes, cart.length());
+
+        Ram ram = new Ram();
+        double[] folder = new double[RUNS], packed = new double[RUNS];
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            long t0 = System.nanoTime();
+            loadFolder(project, ram);
+            long t1 = System.nanoTime();
+            loadCart(cart, ram, palette);
+            long t2 = System.nanoTime();
+            if (i >= WARMUP) {
+                folder[i - WARMUP] = (t1 - t0) / 1e6;
+                packed[i - WARMUP] = (t2 - t1) / 1e6;
+            }
+        }
+        report("folder", folder);
+        report("cart", packed);
+    }
+
+    // Same work as RunScreen + FantasyVM for a folder project
+    private static void loadFolder(FileHandle project, Ram ram) throws Exception {
+        Pixmap sheet = new Pixmap(project.child("sprites.png"));
+        sheet.dispose();
+        FileHandle map = project.child("map.bin");
+        if (map.exists()) {
+            byte[] bytes = map.readBytes();
+            ram.write(FantasyVM.MEM_MAP_BASE, bytes, 0, Math.min(bytes.length, FantasyVM.MEM_MAP_WIDTH * Ram.MAP_HEIGHT));
+        }
+        String source = LuaSyntaxCandy.process(project.child("main.lua").readString("UTF-8"));
+        LuaC.instance.compile(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), "main.lua");
+    }
+
+    // Same work as FantasyVM.loadCart
+    private static void loadCart(File file, Ram ram, Palette palette) throws Exception {
+        CartFile cart = CartFile.open(file);
+        cart.readInto(CartFile.MAP, ram, FantasyVM.MEM_MAP_BASE, FantasyVM.MEM_MAP_WIDTH * Ram.MAP_HEIGHT);
+        Pixmap sheet = cart.readSprites(palette);
+        if (sheet != null) sheet.dispose();
+        LoadState.undump(new ByteArrayInputStream(cart.readBytes(CartFile.LUAC)), "main.lua");
+    }
+
+    private static void report(String name, double[] ms) {
+        double[] sorted = ms.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(ms).average().orElse(0);
+        System.out.printf("%-6s median %.3f ms  p90 %.3f ms  mean %.3f ms%n", name, sorted[sorted.length / 2], sorted[sorted.length * 9 / 10], mean);
+    }
+
+    private static File sampleProject() throws Exception {
+        File dir = Files.createTempDirectory("cartbench").toFile();
+        Files.copy(new File("system/tools/code.lua").toPath(), new File(dir, "main.lua").toPath());
+        Files.copy(new File("sprites.png").toPath(), new File(dir, "sprites.png").toPath());
+        byte[] map = new byte[FantasyVM.MEM_MAP_WIDTH * Ram.MAP_HEIGHT];
+        Random r = new Random(1);
+        for (int i = 0; i < map.length; i++) map[i] = (byte) ((i % 7 == 0) ? r.nextInt(64) : 0);
+        Files.write(new File(dir, "map.bin").toPath(), map);
+        Files.write(new File(dir, "project.json").toPath(), "{\"name\":\"bench\"}".getBytes(StandardCharsets.UTF_8));
+        for (File f : dir.listFiles()) f.deleteOnExit();
+        dir.deleteOnExit();
+        return dir;
+    }
+}
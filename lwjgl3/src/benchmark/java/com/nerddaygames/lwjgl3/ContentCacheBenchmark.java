@@ -0,0 +1,72 @@
+package com.nerddaygames.lwjgl3;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.nerddaygames.engine.FileSystem;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Repeated reads of a cart's modules (what require/dofile and tool polling do):
+ * exists + readString per read (the old FileSystem.read) vs the cached FileSystem.read.
+ * Also checks that a rewrite from outside the FileSystem is seen on the next read.
+ * Run `gradlew lwjgl3:bench -Pbench=ContentCacheBenchmark`.
+ */
+public class ContentCacheBenchmark {
+    private static final int MODULES = 40;
+    private static final int READS = 50;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 20;
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("cachebench").toFile();
+        FileHandle root = new FileHandle(dir);
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 400; i++) body.append("local v").append(i).append(" = ").append(i).append(" -- filler line\n");
+        for (int m = 0; m < MODULES; m++) root.child("mod" + m + ".lua").writeString(body.toString(), false, "UTF-8");
+
+        FileSystem fs = new FileSystem(root);
+        double[] uncached = new double[RUNS], cached = new double[RUNS];
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            long t0 = System.nanoTime();
+            for (int r = 0; r < READS; r++) {
+                for (int m = 0; m < MODULES; m++) {
+                    FileHandle h = root.child("mod" + m + ".lua");
+                    if (h.exists() && !h.isDirectory()) h.readString("UTF-8");
+                }
+            }
+            long t1 = System.nanoTime();
+            for (int r = 0; r < READS; r++) {
+                for (int m = 0; m < MODULES; m++) fs.read("mod" + m + ".lua");
+            }
+            long t2 = System.nanoTime();
+            if (i >= WARMUP) {
+                uncached[i - WARMUP] = (t1 - t0) / 1e6;
+                cached[i - WARMUP] = (t2 - t1) / 1e6;
+            }
+        }
+        report("exists + readString", uncached);
+        report("FileSystem.read (cached)", cached);
+        System.out.printf("cache: %d hits, %d misses, %d evictions, %d bytes%n",
+            fs.cache.getHits(), fs.cache.getMisses(), fs.cache.getEvictions(), fs.cache.getBytes());
+
+        // Edited outside the process: size changes, so the entry is stale
+        File f = new File(dir, "mod0.lua");
+        Files.write(f.toPath(), "return 42\n".getBytes("UTF-8"));
+        if (!"return 42\n".equals(fs.read("mod0.lua"))) throw new IllegalStateException("stale read after external edit");
+        fs.write("mod1.lua", "return 7\n");
+        if (!"return 7\n".equals(fs.read("mod1.lua"))) throw new IllegalStateException("stale read after write");
+        System.out.println("invalidation checks passed");
+
+        for (File c : dir.listFiles()) c.delete();
+        dir.delete();
+    }
+
+    private static void report(String name, double[] ms) {
+        double[] sorted = ms.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-26s median %8.2f ms  p90 %8.2f ms  (%d reads)%n",
+            name, sorted[sorted.length / 2], sorted[sorted.length * 9 / 10], READS * MODULES);
+    }
+}
@@ -0,0 +1,93 @@
+package com.nerddaygames.lwjgl3;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.nerddaygames.shell.DirectoryIndex;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opening a 20000-entry folder: what DesktopWindow.refresh did on the render thread
+ * (list() twice, isDirectory() per item) vs DirectoryIndex: time until open() returns,
+ * until the first entries arrive, and until the listing is complete. Then checks that
+ * watched changes and a reopen (cached entries + rescan diff) arrive as single changes.
+ * Run `gradlew lwjgl3:bench -Pbench=DirectoryIndexBenchmark`.
+ */
+public class DirectoryIndexBenchmark {
+    private static final int ENTRIES = 20000;
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("dirindex").toFile();
+        for (int i = 0; i < ENTRIES; i++) {
+            if (i % 10 == 0) new File(dir, "folder" + i).mkdir();
+            else new File(dir, "file" + i + ".txt").createNewFile();
+        }
+        FileHandle folder = new FileHandle(dir);
+
+        for (int round = 0; round < 3; round++) {
+            long t0 = System.nanoTime();
+            int dirs = 0;
+            if (folder.list() != null) {
+                for (FileHandle f : folder.list()) if (f.isDirectory()) dirs++;
+            }
+            long t1 = System.nanoTime();
+
+            DirectoryIndex index = new DirectoryIndex();
+            List<DirectoryIndex.Change> changes = new ArrayList<>();
+            long t2 = System.nanoTime();
+            DirectoryIndex.View view = index.open(folder);
+            long t3 = System.nanoTime();
+            long first = 0;
+            int seen = 0;
+            while (view.isScanning() || seen < ENTRIES) {
+                changes.clear();
+                if (view.drain(changes) > 0 && first == 0) first = System.nanoTime();
+                seen += changes.size();
+                if (!view.isScanning() && changes.isEmpty()) break;
+                Thread.sleep(0, 200_000);
+            }
+            long t4 = System.nanoTime();
+            System.out.printf("round %d: render-thread list %7.2f ms (%d dirs) | index open %6.3f ms, first entries %6.2f ms, complete %7.2f ms (%d entries)%n",
+                round, (t1 - t0) / 1e6, dirs, (t3 - t2) / 1e6, (first - t2) / 1e6, (t4 - t2) / 1e6, seen);
+            if (seen != ENTRIES) throw new IllegalStateException("saw " + seen + " entries");
+            view.close();
+            index.dispose();
+        }
+
+        DirectoryIndex index = new DirectoryIndex();
+        DirectoryIndex.View view = index.open(folder);
+        drainUntil(view, ENTRIES, 0);
+        new File(dir, "new.txt").createNewFile();
+        new File(dir, "file1.txt").delete();
+        drainUntil(view, 1, 1);
+        view.close();
+
+        // Closed: not watched; reopening replays the cache, the rescan sends the diff
+        new File(dir, "file2.txt").delete();
+        view = index.open(folder);
+        drainUntil(view, ENTRIES, 1);
+        System.out.printf("watch and reopen checks passed (%d watch events)%n", index.watchEvents);
+        view.close();
+        index.dispose();
+
+        new FileHandle(dir).deleteDirectory();
+    }
+
+    // Wait (up to 10 s) for the given numbers of added/removed changes
+    private static List<DirectoryIndex.Change> drainUntil(DirectoryIndex.View view, int added, int removed) throws InterruptedException {
+        List<DirectoryIndex.Change> all = new ArrayList<>();
+        int a = 0, r = 0;
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((a < added || r < removed || view.isScanning()) && System.currentTimeMillis() < deadline) {
+            List<DirectoryIndex.Change> batch = new ArrayList<>();
+            view.drain(batch);
+            for (DirectoryIndex.Change c : batch) { if (c.added != null) a++; else r++; }
+            all.addAll(batch);
+            Thread.sleep(5);
+        }
+        if (a != added || r != removed) throw new IllegalStateException("expected +" + added + "/-" + removed + ", got +" + a + "/-" + r);
+        return all;
+    }
+}
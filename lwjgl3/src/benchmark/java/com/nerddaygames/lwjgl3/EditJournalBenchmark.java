@@ -0,0 +1,155 @@
+package com.nerddaygames.lwjgl3;
+
+import com.nerddaygames.engine.EditJournal;
+import com.nerddaygames.engine.WriteBehind;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Crash-safe autosave of a 200 KB main.lua, one keystroke at a time: rewriting and
+ * fsyncing the whole file per keystroke vs one EditJournal record (time until the
+ * record is synced). Checks crash recovery (journal replayed onto the file), that a torn
+ * last record is dropped, that a journal for a file changed elsewhere is discarded, idle
+ * compaction, save() restarting the journal and close() removing it.
+ * Run `gradlew lwjgl3:bench -Pbench=EditJournalBenchmark`.
+ */
+public class EditJournalBenchmark {
+    private static final int KEYS = 200;
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        File target = new File(dir, "main.lua");
+        WriteBehind wb = WriteBehind.shared();
+        EditJournal.Sink sink = bytes -> wb.submit(target, bytes);
+
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 200 * 1024) sb.append("function update_").append(sb.length()).append("() return 1 end\n");
+        byte[] base = sb.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(target.toPath(), base);
+
+        // Before: the whole text written and synced per keystroke
+        StringBuilder model = new StringBuilder(sb);
+        double[] full = new double[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            model.insert(1000 + i, 'x');
+            long t0 = System.nanoTime();
+            try (FileChannel ch = FileChannel.open(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer b = ByteBuffer.wrap(model.toString().getBytes(StandardCharsets.UTF_8));
+                while (b.hasRemaining()) ch.write(b);
+                ch.force(false);
+            }
+            full[i] = (System.nanoTime() - t0) / 1e6;
+        }
+        Files.write(target.toPath(), base);
+
+        // Journal: one record per keystroke; timed until it is synced
+        EditJournal.idleMs = 60_000;
+        EditJournal j = EditJournal.open(target, sink);
+        model = new StringBuilder(sb);
+        double[] journal = new double[KEYS];
+        long bytesBefore = EditJournal.appendedBytes, syncsBefore = EditJournal.syncs;
+        for (int i = 0; i < KEYS; i++) {
+            model.insert(1000 + i, 'x');
+            long t0 = System.nanoTime();
+            j.edit(1000 + i, 0, new byte[] {'x'});
+            while (EditJournal.syncs < syncsBefore + i + 1) Thread.onSpinWait();
+            journal[i] = (System.nanoTime() - t0) / 1e6;
+        }
+        System.out.printf("keystroke autosave, 200 KB file: full rewrite + fsync %.3f ms, journal record + fsync %.3f ms (median of %d; %d journal bytes)%n",
+            median(full), median(journal), KEYS, EditJournal.appendedBytes - bytesBefore);
+
+        // A deletion and a replacement as well, then "crash": copy the file and journal as they are now
+        j.edit(0, 8, "local function".getBytes(StandardCharsets.UTF_8));
+        model.replace(0, 8, "local function");
+        j.edit(50, 20, new byte[0]);
+        model.delete(50, 70);
+        String expected = model.toString();
+        long journalLength = 24 + KEYS * (16 + 1) + (16 + 14) + 16;
+        waitFor(() -> EditJournal.journalFile(target).length() == journalLength);
+        File crashed = Files.createTempDirectory("journal-crash").toFile();
+        File crashedTarget = new File(crashed, "main.lua");
+        Files.copy(target.toPath(), crashedTarget.toPath());
+        Files.copy(EditJournal.journalFile(target).toPath(), EditJournal.journalFile(crashedTarget).toPath());
+        if (!Arrays.equals(Files.readAllBytes(target.toPath()), base)) throw new IllegalStateException("journal touched the file before compaction");
+
+        EditJournal r = EditJournal.open(crashedTarget, bytes -> wb.submit(crashedTarget, bytes));
+        if (!r.wasRecovered() || !expected.equals(new String(r.text(), StandardCharsets.UTF_8))) throw new IllegalStateException("recovery lost edits");
+        r.close();
+        wb.flush();
+        if (!expected.equals(new String(Files.readAllBytes(crashedTarget.toPath()), StandardCharsets.UTF_8)) || EditJournal.journalFile(crashedTarget).exists()) {
+            throw new IllegalStateException("recovered edits not written on close");
+        }
+
+        // Torn last record: dropped, the ones before it kept
+        Files.copy(target.toPath(), crashedTarget.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        File cj = EditJournal.journalFile(crashedTarget);
+        Files.copy(EditJournal.journalFile(target).toPath(), cj.toPath());
+        Files.write(cj.toPath(), new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 0, 0}, StandardOpenOption.APPEND);
+        r = EditJournal.open(crashedTarget, bytes -> wb.submit(crashedTarget, bytes));
+        if (!r.wasRecovered() || !expected.equals(new String(r.text(), StandardCharsets.UTF_8))) throw new IllegalStateException("torn tail not dropped");
+        r.close();
+        wb.flush();
+
+        // Journal for a file that changed some other way: discarded
+        Files.copy(EditJournal.journalFile(target).toPath(), cj.toPath());
+        Files.write(crashedTarget.toPath(), "-- edited elsewhere\n".getBytes(StandardCharsets.UTF_8));
+        r = EditJournal.open(crashedTarget, bytes -> wb.submit(crashedTarget, bytes));
+        if (r.wasRecovered() || !"-- edited elsewhere\n".equals(new String(r.text(), StandardCharsets.UTF_8))) throw new IllegalStateException("stale journal replayed");
+        r.close();
+
+        // Idle compaction: the file catches up and the journal starts over
+        long compactions = EditJournal.compactions;
+        EditJournal.idleMs = 50;
+        j.edit(0, 0, new byte[] {'-', '-', '\n'});
+        String idle = "--\n" + expected;
+        waitFor(() -> EditJournal.compactions > compactions);
+        wb.flush();
+        if (!idle.equals(new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8)) || EditJournal.journalFile(target).length() != 24) {
+            throw new IllegalStateException("idle compaction");
+        }
+
+        // Explicit save: the caller writes the file, the journal restarts from it
+        EditJournal.idleMs = 60_000;
+        j.edit(0, 3, new byte[0]);
+        byte[] saved = expected.getBytes(StandardCharsets.UTF_8);
+        wb.submit(target, saved);
+        j.saved(saved);
+        waitFor(() -> EditJournal.journalFile(target).length() == 24);
+        j.edit(saved.length, 0, "-- end\n".getBytes(StandardCharsets.UTF_8));
+        j.close();
+        wb.flush();
+        if (!(expected + "-- end\n").equals(new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8)) || EditJournal.journalFile(target).exists()) {
+            throw new IllegalStateException("save/close");
+        }
+        System.out.printf("recovery, torn tail, stale journal, idle compaction and save checks passed (records %d, syncs %d, compactions %d, recoveries %d)%n",
+            EditJournal.records, EditJournal.syncs, EditJournal.compactions, EditJournal.recoveries);
+
+        for (File d : new File[] {dir, crashed}) {
+            for (File f : d.listFiles()) f.delete();
+            d.delete();
+        }
+    }
+
+    private interface Condition { boolean met(); }
+
+    private static void waitFor(Condition c) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (!c.met()) {
+            if (System.currentTimeMillis() > end) throw new IllegalStateException("timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    private static double median(double[] v) {
+        double[] s = v.clone();
+        Arrays.sort(s);
+        return s[s.length / 2];
+    }
+}
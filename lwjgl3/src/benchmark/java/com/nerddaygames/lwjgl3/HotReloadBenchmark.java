@@ -0,0 +1,186 @@
+package com.nerddaygames.lwjgl3;
+
+import com.nerddaygames.engine.HotReload;
+import com.nerddaygames.engine.LuaSyntaxCandy;
+import com.nerddaygames.engine.SourceWatcher;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hot reload of a three-module cart (main requires enemy and util, enemy requires util):
+ * how long a change on disk takes to reach a SourceWatcher feed, and running the changed
+ * module and its dependents again vs a restart (new Lua state, every module compiled, main
+ * chunk and _init run). Checks that instances pick up new methods, data (globals, module
+ * fields, upvalues pointing at the module table) survives, modules that do not depend on
+ * the change are not run, a syntax error keeps the running code and an unchanged save
+ * does nothing. Lua state only (no GL context), wired the way ScriptEngine does it.
+ * Run `gradlew lwjgl3:bench -Pbench=HotReloadBenchmark`.
+ */
+public class HotReloadBenchmark {
+    private static final int RUNS = 20;
+
+    private static final String UTIL = String.join("\n",
+        "local util = {}",
+        "function util.clamp(v, lo, hi) return math.max(lo, math.min(hi, v)) end",
+        "return util");
+
+    private static final String ENEMY = String.join("\n",
+        "local util = require('util')",
+        "local Enemy = { spawned = 0 }",
+        "Enemy.__index = Enemy",
+        "function Enemy.new(x) Enemy.spawned = Enemy.spawned + 1; return setmetatable({ x = x, hp = 10 }, Enemy) end",
+        "function Enemy:hit() self.hp = util.clamp(self.hp - 1, 0, 10) end",
+        "return Enemy");
+
+    private static final String MAIN = String.join("\n",
+        "local Enemy = require('enemy')",
+        "local util = require('util')",
+        "function _init()",
+        "  enemies = {}",
+        "  for i = 1, 2000 do enemies[i] = Enemy.new(i) end",
+        "  score = 0",
+        "  level = { name = 'one', speed = 1 }",
+        "end",
+        "function _update() score = score + 1; enemies[1]:hit() end");
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("hotreload").toFile();
+        write(dir, "util.lua", UTIL);
+        write(dir, "enemy.lua", ENEMY);
+        write(dir, "main.lua", MAIN);
+
+        // Restart: what a change meant before
+        double[] restart = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long t0 = System.nanoTime();
+            Vm vm = new Vm(dir);
+            vm.runMain();
+            vm.g.get("_init").call();
+            restart[i] = (System.nanoTime() - t0) / 1e6;
+        }
+
+        Vm vm = new Vm(dir);
+        vm.runMain();
+        vm.g.get("_init").call();
+        for (int i = 0; i < 5; i++) vm.g.get("_update").call();
+        LuaValue first = vm.g.get("enemies").get(1);
+        check(first.get("hp").toint() == 5 && vm.g.get("score").toint() == 5, "setup");
+
+        // Changed on disk -> feed
+        SourceWatcher.Feed feed = SourceWatcher.shared().watch(dir, "");
+        check(feed != null, "no WatchService");
+        Thread.sleep(100);
+        long t0 = System.nanoTime();
+        write(dir, "enemy.lua", ENEMY.replace("self.hp - 1", "self.hp - 2").replace("spawned = 0", "spawned = 0, armor = 3"));
+        String changed;
+        while ((changed = feed.poll()) == null) {
+            if (System.nanoTime() - t0 > 10_000_000_000L) throw new IllegalStateException("no event");
+            Thread.onSpinWait();
+        }
+        double latency = (System.nanoTime() - t0) / 1e6;
+        check("enemy.lua".equals(changed), "feed path " + changed);
+
+        // enemy and its dependent (main) run again; util does not
+        List<String> run = vm.hot.reload(Arrays.asList("enemy.lua"));
+        check(run.equals(Arrays.asList("enemy.lua", "main.lua")), "reload order " + run);
+        double reload = vm.hot.lastReloadNanos / 1e6;
+        vm.g.get("_update").call();
+        check(first.get("hp").toint() == 3, "instance did not get the new method");
+        check(vm.g.get("score").toint() == 6 && vm.g.get("enemies").get(1) == first, "globals lost");
+        LuaValue enemy = vm.g.get("package").get("loaded").get("enemy");
+        check(first.getmetatable() == enemy && enemy.get("armor").toint() == 3, "module table not patched in place");
+        check(enemy.get("spawned").toint() == 2000, "module data lost");
+        enemy.get("new").call(LuaValue.valueOf(1));
+        check(enemy.get("spawned").toint() == 2001, "upvalue still points at the new table");
+
+        // Reload timing, alternating edits
+        double[] reloads = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            write(dir, "enemy.lua", ENEMY.replace("self.hp - 1", "self.hp - " + (i % 3 + 1)));
+            List<String> r = vm.hot.reload(Arrays.asList("enemy.lua"));
+            check(r.size() == 2, "reload " + i);
+            reloads[i] = vm.hot.lastReloadNanos / 1e6;
+        }
+
+        // Unchanged save, then a syntax error, then the fix
+        check(vm.hot.reload(Arrays.asList("enemy.lua")).isEmpty(), "unchanged save ran code");
+        write(dir, "util.lua", UTIL.replace("return util", "return util end"));
+        long failures = vm.hot.failures;
+        check(vm.hot.reload(Arrays.asList("util.lua")).isEmpty() && vm.hot.failures == failures + 1, "syntax error not reported");
+        vm.g.get("_update").call();
+        write(dir, "util.lua", UTIL.replace("math.min(hi, v))", "math.floor(math.min(hi, v)))"));
+        run = vm.hot.reload(Arrays.asList("util.lua"));
+        check(run.equals(Arrays.asList("util.lua", "enemy.lua", "main.lua")), "fix not reloaded " + run);
+
+        feed.close();
+        System.out.printf("change on disk -> feed %.2f ms; enemy.lua + main.lua reload %.2f ms (first %.2f) vs restart %.2f ms (median of %d)%n",
+            latency, median(reloads), reload, median(restart), RUNS);
+        System.out.printf("instance methods, data, upvalue rebinding, dependency order, syntax error and unchanged save checks passed (reloads %d, chunks %d)%n",
+            vm.hot.reloads, vm.hot.chunksRun);
+
+        for (File f : dir.listFiles()) f.delete();
+        dir.delete();
+    }
+
+    // ScriptEngine's wiring: finder reports sources, require is tracked, chunks are sugared
+    private static final class Vm {
+        final Globals g = JsePlatform.standardGlobals();
+        final File dir;
+        final HotReload hot;
+
+        Vm(File dir) {
+            this.dir = dir;
+            hot = new HotReload(g, this::read, (source, path, kind) -> g.load(LuaSyntaxCandy.process(source), path));
+            g.finder = f -> {
+                String name = f.endsWith(".lua") ? f : f + ".lua";
+                String text = read(name);
+                if (text == null) return null;
+                hot.found(name, text);
+                return new ByteArrayInputStream(LuaSyntaxCandy.process(text).getBytes(StandardCharsets.UTF_8));
+            };
+            hot.install();
+        }
+
+        void runMain() {
+            String text = read("main.lua");
+            hot.enter(HotReload.Kind.MAIN, null);
+            try {
+                hot.found("main.lua", text);
+                g.load(LuaSyntaxCandy.process(text), "main.lua").call();
+            } finally {
+                hot.exit();
+            }
+        }
+
+        String read(String path) {
+            try {
+                File f = new File(dir, path);
+                return f.isFile() ? new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8) : null;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+
+    private static void write(File dir, String name, String text) throws Exception {
+        Files.write(new File(dir, name).toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) throw new IllegalStateException(what);
+    }
+
+    private static double median(double[] v) {
+        double[] s = v.clone();
+        Arrays.sort(s);
+        return s[s.length / 2];
+    }
+}
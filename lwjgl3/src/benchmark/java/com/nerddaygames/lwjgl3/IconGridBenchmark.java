@@ -0,0 +1,90 @@
+package com.nerddaygames.lwjgl3;
+
+import com.nerddaygames.shell.IconGrid;
+
+import java.util.Random;
+
+/**
+ * Per-frame work of a folder window at 1k/10k/100k items, without GL: the old loop
+ * (position every item, skip off-screen ones, name + substring for the rest, linear
+ * hit-test) vs IconGrid (visible rows only, cached labels, hit index by arithmetic).
+ * Checks that both agree on which items are drawn and which one is under the pointer.
+ * Run `gradlew lwjgl3:bench -Pbench=IconGridBenchmark`.
+ */
+public class IconGridBenchmark {
+    // A 400x300 window, as DesktopScreen opens them
+    private static final float X = 200, Y = 150, W = 400, H = 300;
+    private static final int FRAMES = 2000;
+
+    public static void main(String[] args) {
+        IconGrid grid = new IconGrid(10, 10, 60, 70, 48);
+        grid.setWidth(W);
+        Random rnd = new Random(42);
+        for (int count : new int[] { 1_000, 10_000, 100_000 }) {
+            String[] names = new String[count];
+            String[] labels = new String[count];
+            float[] ix = new float[count], iy = new float[count]; // old per-item offsets
+            for (int i = 0; i < count; i++) {
+                names[i] = "some_file_" + i + ".txt";
+                labels[i] = names[i].substring(0, 8);
+                ix[i] = grid.cellX(i);
+                iy[i] = grid.cellY(i);
+            }
+            float maxScroll = grid.maxScroll(count, H - 30);
+            long sink = 0;
+
+            long t0 = System.nanoTime();
+            for (int f = 0; f < FRAMES; f++) {
+                float top = Y + H - 80 + (f * 37) % maxScroll;
+                for (int i = 0; i < count; i++) {
+                    float wx = X + ix[i], wy = top + iy[i];
+                    if (wy < Y - 50 || wy > Y + H) continue;
+                    String n = names[i]; if (n.length() > 8) n = n.substring(0, 8);
+                    sink += n.length() + (int) wx;
+                }
+                float px = X + rnd.nextFloat() * W, py = Y + rnd.nextFloat() * (H - 30);
+                for (int i = 0; i < count; i++) {
+                    float wx = X + ix[i], wy = top + iy[i];
+                    if (px >= wx && px <= wx + 48 && py >= wy && py <= wy + 48) { sink += i; break; }
+                }
+            }
+            long t1 = System.nanoTime();
+            for (int f = 0; f < FRAMES; f++) {
+                float top = Y + H - 80 + (f * 37) % maxScroll;
+                int cols = grid.getCols();
+                int from = grid.firstRow(top, Y + H) * cols;
+                int to = Math.min(count, (grid.lastRow(top, Y - 50) + 1) * cols);
+                for (int i = from; i < to; i++) sink += labels[i].length() + (int) (X + grid.cellX(i));
+                float px = X + rnd.nextFloat() * W, py = Y + rnd.nextFloat() * (H - 30);
+                sink += grid.indexAt(px - X, top - py, count);
+            }
+            long t2 = System.nanoTime();
+            System.out.printf("%,7d items: old %8.1f us/frame   grid %6.2f us/frame   (%d)%n",
+                count, (t1 - t0) / 1e3 / FRAMES, (t2 - t1) / 1e3 / FRAMES, sink & 1);
+            check(grid, ix, iy, count, maxScroll, rnd);
+        }
+        System.out.println("visible range and hit-test checks passed");
+    }
+
+    private static void check(IconGrid grid, float[] ix, float[] iy, int count, float maxScroll, Random rnd) {
+        for (int t = 0; t < 500; t++) {
+            float top = Y + H - 80 + rnd.nextFloat() * maxScroll;
+            int cols = grid.getCols();
+            int from = grid.firstRow(top, Y + H) * cols;
+            int to = Math.min(count, (grid.lastRow(top, Y - 50) + 1) * cols);
+            for (int i = 0; i < count; i++) {
+                float wy = top + iy[i];
+                boolean visible = !(wy < Y - 50 || wy > Y + H);
+                if (visible != (i >= from && i < to)) throw new IllegalStateException("visible range differs at " + i);
+            }
+            float px = X + rnd.nextFloat() * W, py = Y + rnd.nextFloat() * (H - 30);
+            int expected = -1;
+            for (int i = 0; i < count; i++) {
+                float wx = X + ix[i], wy = top + iy[i];
+                if (px >= wx && px <= wx + 48 && py >= wy && py <= wy + 48) { expected = i; break; }
+            }
+            int got = grid.indexAt(px - X, top - py, count);
+            if (got != expected) throw new IllegalStateException("hit-test: expected " + expected + ", got " + got);
+        }
+    }
+}
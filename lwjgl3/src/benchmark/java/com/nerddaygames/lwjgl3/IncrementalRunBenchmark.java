@@ -0,0 +1,141 @@
+package com.nerddaygames.lwjgl3;
+
+import com.nerddaygames.engine.ChunkCache;
+import com.nerddaygames.engine.LuaSyntaxCandy;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Run of a project with many modules (main requires every one), from a new Lua state to the
+ * end of _init: every module compiled (first Run, or before ChunkCache) vs one module edited
+ * since the last Run (the rest come from the cache). Checks that only the edited module is
+ * compiled, an unchanged project compiles nothing and the cached chunks behave like fresh
+ * ones. Lua state only (no GL context; the warm VM shell RunScreen keeps is not measured),
+ * require wired the way ScriptEngine does it. Run `gradlew lwjgl3:bench -Pbench=IncrementalRunBenchmark`.
+ */
+public class IncrementalRunBenchmark {
+    private static final int MODULES = 40;
+    private static final int RUNS = 20;
+
+    public static void main(String[] args) {
+        Map<String, String> project = new HashMap<>();
+        StringBuilder main = new StringBuilder("local mods = {}\n");
+        for (int i = 0; i < MODULES; i++) {
+            project.put("mod" + i + ".lua", module(i, 1));
+            main.append("mods[").append(i + 1).append("] = require('mod").append(i).append("')\n");
+        }
+        main.append("function _init()\n  total = 0\n  for _, m in ipairs(mods) do total = total + m.run(10) end\nend\n");
+        project.put("main.lua", main.toString());
+
+        // Every module compiled: a cache that starts empty each run
+        double[] full = new double[RUNS];
+        long fullTotal = 0;
+        for (int i = 0; i < RUNS; i++) {
+            ChunkCache cold = new ChunkCache(ChunkCache.DEFAULT_MAX_CHARS);
+            long t0 = System.nanoTime();
+            fullTotal = run(project, cold);
+            full[i] = (System.nanoTime() - t0) / 1e6;
+            check(cold.misses == MODULES + 1, "full run compiled " + cold.misses);
+        }
+
+        // One module edited between runs: only it is compiled
+        ChunkCache cache = new ChunkCache(ChunkCache.DEFAULT_MAX_CHARS);
+        run(project, cache);
+        double[] incremental = new double[RUNS];
+        long total = 0;
+        for (int i = 0; i < RUNS; i++) {
+            project.put("mod7.lua", module(7, i + 2));
+            long misses = cache.misses;
+            long t0 = System.nanoTime();
+            total = run(project, cache);
+            incremental[i] = (System.nanoTime() - t0) / 1e6;
+            check(cache.misses - misses == 1, "edit compiled " + (cache.misses - misses) + " chunks");
+        }
+        check(total == fullTotal - module7Result(1) + module7Result(RUNS + 1), "cached chunks gave " + total);
+
+        long misses = cache.misses;
+        run(project, cache);
+        check(cache.misses == misses, "unchanged project compiled " + (cache.misses - misses) + " chunks");
+
+        System.out.printf("%d modules, new Lua state to end of _init: all compiled %.2f ms, one edited %.2f ms (median of %d)%n",
+            MODULES + 1, median(full), median(incremental), RUNS);
+        System.out.printf("only edited chunks compiled, unchanged run compiled none, results match (hits %d, misses %d)%n",
+            cache.hits, cache.misses);
+    }
+
+    // A new Lua state running the project: require reads project and compiles through cache
+    private static long run(Map<String, String> project, ChunkCache cache) {
+        Globals g = JsePlatform.standardGlobals();
+        g.get("package").get("searchers").set(2, new VarArgFunction() {
+            @Override public Varargs invoke(Varargs args) {
+                String filename = args.checkjstring(1).replace('.', '/') + ".lua";
+                String content = project.get(filename);
+                if (content == null) return LuaValue.valueOf("\n\tno file '" + filename + "'");
+                return LuaValue.varargsOf(compile(g, cache, content, filename), LuaValue.valueOf(filename));
+            }
+        });
+        compile(g, cache, project.get("main.lua"), "main.lua").call();
+        g.get("_init").call();
+        return g.get("total").tolong();
+    }
+
+    // ScriptEngine.loadChunk without baked bytecode
+    private static LuaValue compile(Globals g, ChunkCache cache, String source, String name) {
+        Prototype p = cache.get(name, source);
+        try {
+            if (p == null) {
+                p = g.compilePrototype(new StringReader(LuaSyntaxCandy.process(source)), name);
+                cache.put(name, source, p);
+            }
+            return g.loader.load(p, name, g);
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // About 250 lines: 40 local helpers, run(n) sums them
+    private static String module(int id, int version) {
+        StringBuilder sb = new StringBuilder("local M = { id = " + id + ", version = " + version + " }\n");
+        for (int f = 0; f < 40; f++) {
+            sb.append("local function f").append(f).append("(x)\n")
+              .append("  local a, b = x * ").append(f + 1).append(", ").append(version).append("\n")
+              .append("  if a > b then a = a - b else a = a + b end\n")
+              .append("  for i = 1, 2 do a = a + i end\n")
+              .append("  return a\n")
+              .append("end\n");
+        }
+        sb.append("function M.run(n)\n  local s = 0\n");
+        for (int f = 0; f < 40; f++) sb.append("  s = s + f").append(f).append("(n)\n");
+        sb.append("  return s\nend\nreturn M\n");
+        return sb.toString();
+    }
+
+    private static long module7Result(int version) {
+        long s = 0;
+        for (int f = 0; f < 40; f++) {
+            long a = 10L * (f + 1), b = version;
+            a = (a > b) ? a - b : a + b;
+            s += a + 3;
+        }
+        return s;
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) throw new IllegalStateException(what);
+    }
+
+    private static double median(double[] v) {
+        double[] s = v.clone();
+        Arrays.sort(s);
+        return s[s.length / 2];
+    }
+}
@@ -0,0 +1,127 @@
+package com.nerddaygames.lwjgl3;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Files;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.nerddaygames.engine.FileSystem;
+import com.nerddaygames.engine.ProjectStore;
+import com.nerddaygames.engine.WriteBehind;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Handing project data from one tool VM to another. The code tool saves a 200 KB
+ * main.lua and the run screen loads it: before, a flush (wait for the write to land)
+ * and a re-read from disk; with ProjectStore, the run screen reads the shared copy.
+ * The same for the sprite sheet: each of the seven tool VMs decoding sprites.png vs one
+ * shared decode. Checks change notifications (not to the writer), Ram images (map.bin),
+ * that the disk catches up, and revalidate() after an outside edit.
+ * Run `gradlew lwjgl3:bench -Pbench=ProjectStoreBenchmark`.
+ */
+public class ProjectStoreBenchmark {
+    private static final int RUNS = 50;
+
+    public static void main(String[] args) throws Exception {
+        Gdx.files = new Lwjgl3Files();
+        GdxNativesLoader.load();
+        File dir = Files.createTempDirectory("projstore").toFile();
+        FileHandle root = new FileHandle(dir);
+        WriteBehind wb = WriteBehind.shared();
+
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 200 * 1024) sb.append("function update_").append(sb.length()).append("() return 1 end\n");
+        String code = sb.toString();
+
+        // Before: code tool writes (write-behind), run screen flushes and reads the file
+        FileSystem codeTool = new FileSystem(root);
+        double[] disk = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            String edit = code + "-- " + i + "\n";
+            long t0 = System.nanoTime();
+            codeTool.write("main.lua", edit);
+            wb.flush();
+            String run = root.child("main.lua").readString("UTF-8");
+            disk[i] = (System.nanoTime() - t0) / 1e6;
+            if (!run.equals(edit)) throw new IllegalStateException("disk round trip lost the edit");
+        }
+
+        // Store: both sides share one copy
+        ProjectStore store = ProjectStore.open(root);
+        ProjectStore.Subscription codeFeed = store.subscribe(), runFeed = store.subscribe();
+        FileSystem codeVm = new FileSystem(root, codeFeed), runVm = new FileSystem(root, runFeed);
+        double[] shared = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            String edit = code + "-- store " + i + "\n";
+            long t0 = System.nanoTime();
+            codeVm.write("main.lua", edit);
+            String run = runVm.read("main.lua");
+            shared[i] = (System.nanoTime() - t0) / 1e6;
+            if (!run.equals(edit)) throw new IllegalStateException("store lost the edit");
+        }
+        System.out.printf("save -> run main.lua (200 KB): flush + disk read %.3f ms, shared store %.4f ms (median of %d)%n",
+            median(disk), median(shared), RUNS);
+
+        // Notifications go to the other VMs only
+        int seen = 0;
+        for (String p; (p = runFeed.poll()) != null; ) { if (!"main.lua".equals(p)) throw new IllegalStateException(p); seen++; }
+        if (seen != RUNS || codeFeed.poll() != null) throw new IllegalStateException("notifications: run saw " + seen);
+
+        // Ram image written by one VM, read by another; disk catches up
+        byte[] map = new byte[128 * 64];
+        for (int i = 0; i < map.length; i++) map[i] = (byte) (i * 7);
+        codeVm.writeBytes("map.bin", map, 0, map.length);
+        if (!Arrays.equals(runVm.readBytes("map.bin"), map) || !"map.bin".equals(runFeed.poll())) throw new IllegalStateException("map.bin not shared");
+        wb.flush();
+        if (!Arrays.equals(Files.readAllBytes(new File(dir, "map.bin").toPath()), map)) throw new IllegalStateException("map.bin not persisted");
+        if (!new String(Files.readAllBytes(new File(dir, "main.lua").toPath()), "UTF-8").equals(code + "-- store " + (RUNS - 1) + "\n")) throw new IllegalStateException("main.lua not persisted");
+
+        // Sprite sheet: seven tool VMs decoding the PNG vs one shared decode
+        Pixmap sheet = new Pixmap(128, 128, Pixmap.Format.RGBA8888);
+        for (int y = 0; y < 128; y++) for (int x = 0; x < 128; x++) sheet.drawPixel(x, y, (x * 0x01020300) | (y << 8) | 0xFF);
+        PixmapIO.writePNG(root.child(ProjectStore.SPRITES), sheet, 0, false);
+        long t0 = System.nanoTime();
+        for (int vm = 0; vm < 7; vm++) new Pixmap(root.child(ProjectStore.SPRITES)).dispose();
+        long t1 = System.nanoTime();
+        ProjectStore.Sheet decoded = null;
+        for (int vm = 0; vm < 7; vm++) decoded = store.sprites();
+        long t2 = System.nanoTime();
+        System.out.printf("sprites.png for 7 tool VMs: 7 decodes %.2f ms, shared sheet %.2f ms%n", (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+
+        // Edited pixels reach the other VM as raw pixels; the PNG is written behind
+        ProjectStore.Sheet edited = new ProjectStore.Sheet(decoded.width, decoded.height, decoded.format, decoded.pixels.clone());
+        edited.pixels[0] = 1;
+        store.putSprites(edited, codeFeed);
+        if (store.sprites() != edited || !ProjectStore.SPRITES.equals(runFeed.poll())) throw new IllegalStateException("sprites not shared");
+        wb.flush();
+        Pixmap back = new Pixmap(root.child(ProjectStore.SPRITES));
+        if (back.getPixels().get(0) != 1) throw new IllegalStateException("sprites not persisted");
+        back.dispose();
+        sheet.dispose();
+
+        // Outside edit: picked up by revalidate, everyone notified
+        store.revalidate(); // adopts the mtimes of our own writes
+        Thread.sleep(20);
+        Files.write(new File(dir, "main.lua").toPath(), "-- edited elsewhere\n".getBytes("UTF-8"));
+        new File(dir, "main.lua").setLastModified(System.currentTimeMillis() + 2000);
+        int reloaded = store.revalidate();
+        if (reloaded != 1 || !"-- edited elsewhere\n".equals(runVm.read("main.lua")) || !"main.lua".equals(codeFeed.poll())) {
+            throw new IllegalStateException("revalidate reloaded " + reloaded);
+        }
+        System.out.printf("notification, map.bin, sprites and revalidate checks passed (loads %d, hits %d, puts %d)%n", store.loads, store.hits, store.puts);
+
+        codeFeed.close();
+        runFeed.close();
+        root.deleteDirectory();
+    }
+
+    private static double median(double[] v) {
+        double[] s = v.clone();
+        Arrays.sort(s);
+        return s[s.length / 2];
+    }
+}
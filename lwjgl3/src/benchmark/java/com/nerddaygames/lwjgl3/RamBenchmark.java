@@ -0,0 +1,99 @@
+package com.nerddaygames.lwjgl3;
+
+import com.nerddaygames.engine.Ram;
+
+import java.util.Random;
+
+/**
+ * Random 16-bit peek2/poke2 over the whole 64KB vs a plain byte[]: Ram on bank 0
+ * (flat byte[] path) and with bank 1 mapped over USER_DATA (page table path),
+ * plus a 64KB memset. Bank 1 is measured last, so the bank 0 numbers are those of
+ * a cart that never switches banks.
+ * Run `gradlew lwjgl3:bench -Pbench=RamBenchmark`.
+ */
+public class RamBenchmark {
+    private static final int OPS = 1 << 22;
+    private static final int ROUNDS = 10;
+
+    private static int sink;
+
+    public static void main(String[] args) {
+        int[] addrs = new int[OPS];
+        Random rnd = new Random(42);
+        for (int i = 0; i < OPS; i++) addrs[i] = rnd.nextInt(Ram.MEMORY_SIZE - 1);
+
+        byte[] plain = new byte[Ram.MEMORY_SIZE];
+        double[] array = new double[2];
+        for (int round = 0; round < ROUNDS; round++) {
+            double poke = pokeArray(plain, addrs), peek = peekArray(plain, addrs);
+            if (round >= ROUNDS / 2) { array[0] += peek; array[1] += poke; } // first half is warm-up
+        }
+        Ram flat = new Ram(4);
+        double[] bank0 = run(flat, addrs);
+        double memset = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            double t = memset(flat);
+            if (round >= ROUNDS / 2) memset += t;
+        }
+        Ram banked = new Ram(4);
+        banked.setBank(1);
+        double[] bank1 = run(banked, addrs);
+
+        int n = ROUNDS - ROUNDS / 2;
+        System.out.printf("byte[]       peek2 %.2f ns/op  poke2 %.2f ns/op%n", array[0] / n, array[1] / n);
+        System.out.printf("Ram, bank 0  peek2 %.2f ns/op  poke2 %.2f ns/op%n", bank0[0] / n, bank0[1] / n);
+        System.out.printf("Ram, bank 1  peek2 %.2f ns/op  poke2 %.2f ns/op%n", bank1[0] / n, bank1[1] / n);
+        System.out.printf("memset 64KB  %.2f us%n", memset / n);
+        if (sink == 42) System.out.println();
+    }
+
+    // Summed peek2/poke2 ns/op over the measured (second) half of the rounds
+    private static double[] run(Ram ram, int[] addrs) {
+        double[] sum = new double[2];
+        for (int round = 0; round < ROUNDS; round++) {
+            double poke = poke(ram, addrs), peek = peek(ram, addrs);
+            if (round >= ROUNDS / 2) { sum[0] += peek; sum[1] += poke; }
+        }
+        return sum;
+    }
+
+    private static double peekArray(byte[] m, int[] addrs) {
+        int acc = 0;
+        long t0 = System.nanoTime();
+        for (int a : addrs) acc += (m[a] & 0xFF) | ((m[a + 1] & 0xFF) << 8);
+        long t = System.nanoTime() - t0;
+        sink += acc;
+        return (double) t / addrs.length;
+    }
+
+    private static double pokeArray(byte[] m, int[] addrs) {
+        long t0 = System.nanoTime();
+        for (int a : addrs) {
+            m[a] = (byte) a;
+            m[a + 1] = (byte) (a >> 8);
+        }
+        return (double) (System.nanoTime() - t0) / addrs.length;
+    }
+
+    private static double peek(Ram ram, int[] addrs) {
+        int acc = 0;
+        long t0 = System.nanoTime();
+        for (int a : addrs) acc += ram.peek2(a);
+        long t = System.nanoTime() - t0;
+        sink += acc;
+        return (double) t / addrs.length;
+    }
+
+    private static double poke(Ram ram, int[] addrs) {
+        long t0 = System.nanoTime();
+        for (int a : addrs) ram.poke2(a, a);
+        return (double) (System.nanoTime() - t0) / addrs.length;
+    }
+
+    // Average over 1000 fills, in microseconds
+    private static double memset(Ram ram) {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < 1000; i++) ram.memset(0, i, Ram.MEMORY_SIZE);
+        return (System.nanoTime() - t0) / 1e3 / 1000;
+    }
+}
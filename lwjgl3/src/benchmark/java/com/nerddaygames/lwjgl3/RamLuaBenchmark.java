@@ -0,0 +1,61 @@
+package com.nerddaygames.lwjgl3;
+
+import com.nerddaygames.engine.Ram;
+import com.nerddaygames.engine.RamLuaBindings;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+/**
+ * Moving 8KB blobs through Ram from Lua: pokestr + peekstr vs memcpy vs one
+ * poke()/peek() per byte.
+ * Run `gradlew lwjgl3:bench -Pbench=RamLuaBenchmark`.
+ */
+public class RamLuaBenchmark {
+    private static final int BLOB = 8 * 1024;
+    private static final int ITERATIONS = 200;
+
+    private static final String SCRIPT = String.join("\n",
+        "BLOB = " + BLOB,
+        "local parts = {}",
+        "for i = 1, BLOB do parts[i] = string.char(i % 256) end",
+        "blob = table.concat(parts)",
+        "function strings()",
+        "  pokestr(0x4300, blob)",
+        "  return #peekstr(0x4300, BLOB)",
+        "end",
+        "function copy()",
+        "  memcpy(0x6000, 0x4300, BLOB)",
+        "  return BLOB",
+        "end",
+        "function bytes()",
+        "  local sum = 0",
+        "  for i = 0, BLOB - 1 do poke(0x4300 + i, i) end",
+        "  for i = 0, BLOB - 1 do sum = sum + peek(0x4300 + i) end",
+        "  return sum",
+        "end");
+
+    public static void main(String[] args) {
+        Globals globals = JsePlatform.standardGlobals();
+        new RamLuaBindings(globals, new Ram()).register();
+        globals.load(SCRIPT, "bench").call();
+
+        double strings = run(globals, "strings");
+        double copy = run(globals, "copy");
+        double bytes = run(globals, "bytes");
+
+        // strings and bytes move the blob twice (in and out), memcpy once
+        System.out.printf("pokestr+peekstr  %.3f ms  %.0f MB/s%n", strings, 2 * BLOB / strings / 1e3);
+        System.out.printf("memcpy           %.3f ms  %.0f MB/s%n", copy, BLOB / copy / 1e3);
+        System.out.printf("poke/peek bytes  %.3f ms  %.1f MB/s%n", bytes, 2 * BLOB / bytes / 1e3);
+    }
+
+    // Warm up, then average ms per call
+    private static double run(Globals g, String name) {
+        LuaValue f = g.get(name);
+        for (int i = 0; i < ITERATIONS; i++) f.call();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) f.call();
+        return (System.nanoTime() - t0) / 1e6 / ITERATIONS;
+    }
+}
@@ -0,0 +1,72 @@
+package com.nerddaygames.lwjgl3;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Files;
+import com.badlogic.gdx.files.FileHandle;
+import com.nerddaygames.engine.FileSystem;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Resolves per second for the paths tools poll every frame (project files, a missing
+ * file): the old FileSystem.resolve (regex cleanPath, two canonical
+ * paths, internal probe every call) vs the memoized one. Then checks that files created
+ * or deleted behind the cache are picked up.
+ * Run `gradlew lwjgl3:bench -Pbench=ResolveBenchmark`.
+ */
+public class ResolveBenchmark {
+    private static final String[] PATHS = {
+        "main.lua", "/main.lua", "gfx\\sprites.png", "sfx/sounds.json", "lib/util.lua", "notes.txt", "missing.lua"
+    };
+    private static final int CALLS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        Gdx.files = new Lwjgl3Files();
+        File dir = Files.createTempDirectory("resolvebench").toFile();
+        FileHandle root = new FileHandle(dir);
+        for (String p : new String[] { "main.lua", "gfx/sprites.png", "sfx/sounds.json", "lib/util.lua" }) {
+            root.child(p).writeString("x", false);
+        }
+        FileSystem fs = new FileSystem(root);
+
+        for (int round = 0; round < 3; round++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) legacyResolve(root, PATHS[i % PATHS.length]);
+            long t1 = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) fs.resolve(PATHS[i % PATHS.length]);
+            long t2 = System.nanoTime();
+            System.out.printf("round %d: old %,12.0f resolves/s   cached %,12.0f resolves/s%n",
+                round, CALLS / ((t1 - t0) / 1e9), CALLS / ((t2 - t1) / 1e9));
+        }
+
+        // Behind the cache: created, deleted, written through the FileSystem
+        root.child("missing.lua").writeString("late", false);
+        if (!"late".equals(fs.read("missing.lua"))) throw new IllegalStateException("new file not seen");
+        root.child("notes.txt").writeString("n", false);
+        if (!fs.exists("notes.txt")) throw new IllegalStateException("new file not seen by exists");
+        root.child("lib/util.lua").delete();
+        if (fs.exists("lib/util.lua") || fs.read("lib/util.lua") != null) throw new IllegalStateException("deleted file still resolves");
+        fs.write("lib/util.lua", "back");
+        if (!"back".equals(fs.read("lib/util.lua"))) throw new IllegalStateException("written file not seen");
+        System.out.println("invalidation checks passed");
+
+        root.deleteDirectory();
+    }
+
+    // FileSystem.resolve before memoization, for comparison
+    private static FileHandle legacyResolve(FileHandle storageRoot, String path) {
+        path = path.replace("\\", "/").replaceAll("^/+", "");
+        try {
+            FileHandle userFile = storageRoot.child(path);
+            try {
+                if (userFile.file().getCanonicalPath().startsWith(storageRoot.file().getCanonicalPath())) {
+                    if (userFile.exists()) return userFile;
+                }
+            } catch (Exception ignored) {}
+        } catch (Exception ignored) {}
+        FileHandle internalFile = Gdx.files.internal(path);
+        if (internalFile.exists()) return internalFile;
+        return storageRoot.child(path);
+    }
+}
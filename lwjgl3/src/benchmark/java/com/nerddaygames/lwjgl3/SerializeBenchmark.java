@@ -0,0 +1,117 @@
+package com.nerddaygames.lwjgl3;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.nerddaygames.engine.FileSystem;
+import com.nerddaygames.engine.LuaJson;
+import com.nerddaygames.engine.LuaSerializer;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Round-trips a ~1 MB game state (entities with nested tables; a cycle for the binary format):
+ *  - Lua: the string-building serializer carts use today, read back with load()
+ *  - serialize/deserialize (LuaSerializer) in memory and through FileSystem streams
+ *  - json.encode/json.decode (LuaJson), same state minus the cycle
+ * Run `gradlew lwjgl3:bench -Pbench=SerializeBenchmark`.
+ */
+public class SerializeBenchmark {
+    private static final int WARMUP = 10;
+    private static final int RUNS = 30;
+
+    private static final String SCRIPT = String.join("\n",
+        "local kinds = { 'slime', 'bat', 'knight', 'chest', 'door' }",
+        "function make_state(n)",
+        "  local s = { level = 3, seed = 12345, player = { name = 'hero', hp = 87.5, inv = {} }, ents = {} }",
+        "  for i = 1, 20 do s.player.inv[i] = { id = i, count = i % 5, name = 'item' .. i } end",
+        "  for i = 1, n do",
+        "    s.ents[i] = { id = i, kind = kinds[i % 5 + 1], x = i * 1.25, y = i % 240, alive = i % 3 ~= 0,",
+        "                  tags = { 'a' .. (i % 7), 'b' .. (i % 11) } }",
+        "  end",
+        "  return s",
+        "end",
+        // Typical cart code: build a Lua literal with string concatenation
+        "local function ser(v, out)",
+        "  local t = type(v)",
+        "  if t == 'table' then",
+        "    out[#out + 1] = '{'",
+        "    for k, x in pairs(v) do",
+        "      out[#out + 1] = '['; ser(k, out); out[#out + 1] = ']='; ser(x, out); out[#out + 1] = ','",
+        "    end",
+        "    out[#out + 1] = '}'",
+        "  elseif t == 'string' then out[#out + 1] = string.format('%q', v)",
+        "  else out[#out + 1] = tostring(v) end",
+        "end",
+        "function lua_save(v) local out = {}; ser(v, out); return table.concat(out) end",
+        "function lua_load(s) return load('return ' .. s)() end");
+
+    public static void main(String[] args) throws Exception {
+        Globals g = JsePlatform.standardGlobals();
+        g.load(SCRIPT, "bench").call();
+        LuaValue acyclic = g.get("make_state").call(LuaValue.valueOf(9000));
+        // Cycles survive only in the binary format
+        LuaValue cyclic = g.get("make_state").call(LuaValue.valueOf(9000));
+        cyclic.get("player").set("world", cyclic);
+
+        File dir = Files.createTempDirectory("serbench").toFile();
+        FileSystem fs = new FileSystem(new FileHandle(dir));
+
+        LuaString luaText = g.get("lua_save").call(acyclic).checkstring();
+        LuaString bin = LuaSerializer.encode(cyclic);
+        LuaString json = LuaJson.encode(acyclic, false);
+        System.out.printf("sizes: lua text %d bytes, binary %d bytes, json %d bytes%n", luaText.m_length, bin.m_length, json.m_length);
+
+        LuaValue copy = LuaSerializer.decode(bin);
+        check(copy);
+        if (copy.get("player").get("world") != copy) throw new IllegalStateException("cycle lost");
+        check(LuaJson.decode(json));
+
+        double[] luaRt = new double[RUNS], binRt = new double[RUNS], fileRt = new double[RUNS], jsonRt = new double[RUNS];
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            long t0 = System.nanoTime();
+            g.get("lua_load").call(g.get("lua_save").call(acyclic));
+            long t1 = System.nanoTime();
+            LuaSerializer.decode(LuaSerializer.encode(cyclic));
+            long t2 = System.nanoTime();
+            try (OutputStream out = fs.openWrite("state.bin")) { LuaSerializer.encode(cyclic, out); }
+            try (InputStream in = fs.openRead("state.bin")) { LuaSerializer.decode(in); }
+            long t3 = System.nanoTime();
+            LuaJson.decode(LuaJson.encode(acyclic, false));
+            long t4 = System.nanoTime();
+            if (i >= WARMUP) {
+                int r = i - WARMUP;
+                luaRt[r] = (t1 - t0) / 1e6;
+                binRt[r] = (t2 - t1) / 1e6;
+                fileRt[r] = (t3 - t2) / 1e6;
+                jsonRt[r] = (t4 - t3) / 1e6;
+            }
+        }
+        report("lua string building + load", luaRt);
+        report("serialize/deserialize", binRt);
+        report("fs.save/fs.load (binary file)", fileRt);
+        report("json encode/decode", jsonRt);
+
+        new File(dir, "state.bin").delete();
+        dir.delete();
+    }
+
+    private static void check(LuaValue s) {
+        LuaValue e = s.get("ents").get(4500);
+        if (s.get("ents").length() != 9000 || e.get("x").todouble() != 4500 * 1.25 || !e.get("kind").tojstring().equals("slime")) {
+            throw new IllegalStateException("round trip mismatch");
+        }
+    }
+
+    private static void report(String name, double[] ms) {
+        double[] sorted = ms.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-30s median %8.2f ms  p90 %8.2f ms%n", name, sorted[sorted.length / 2], sorted[sorted.length * 9 / 10]);
+    }
+}
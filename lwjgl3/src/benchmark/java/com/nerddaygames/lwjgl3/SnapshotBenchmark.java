@@ -0,0 +1,134 @@
+package com.nerddaygames.lwjgl3;
+
+import com.nerddaygames.engine.Ram;
+import com.nerddaygames.engine.TypedArrayLuaBindings;
+import com.nerddaygames.engine.VmSnapshot;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LoadState;
+import org.luaj.vm2.LuaClosure;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.compiler.DumpState;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Restart cost of a cart whose _init generates a level: compile + main chunk + _init
+ * (what a restart did before) vs restoring the post-_init globals with VmSnapshot, and
+ * resuming in a fresh Lua state from bytecode (suspend/resume). Checks that metatables,
+ * closures with upvalues and engine functions come back. Lua state only (no GL context).
+ * Run `gradlew lwjgl3:bench -Pbench=SnapshotBenchmark`.
+ */
+public class SnapshotBenchmark {
+    private static final int WARMUP = 5;
+    private static final int RUNS = 20;
+
+    private static final String CART = String.join("\n",
+        "Enemy = {}",
+        "Enemy.__index = Enemy",
+        "function Enemy.new(x, y) return setmetatable({ x = x, y = y, hp = 3 }, Enemy) end",
+        "function Enemy:hit() self.hp = self.hp - 1 end",
+        "local counter = 0",
+        "function next_id() counter = counter + 1; return counter end",
+        "function _init()",
+        "  world = {}",
+        "  for y = 1, 192 do local row = {} for x = 1, 192 do row[x] = (x * 7 + y * 13 + (x * y) % 17) % 5 end world[y] = row end",
+        "  for pass = 1, 8 do",
+        "    for y = 2, 191 do local up, row, down = world[y - 1], world[y], world[y + 1]",
+        "      for x = 2, 191 do row[x] = math.floor((up[x] + down[x] + row[x - 1] + row[x + 1] + row[x] * 4) / 8) end",
+        "    end",
+        "  end",
+        "  enemies = {}",
+        "  for i = 1, 3000 do enemies[i] = Enemy.new(i % 192, math.floor(i / 192)) end",
+        "  score = 0",
+        "  enemies[1].on_death = function() score = score + 10 end",
+        "  hud = typed.u8(1024)",
+        "  say = print",
+        "  for i = 1, 5 do next_id() end",
+        "end");
+
+    public static void main(String[] args) throws Exception {
+        // Cold restart: compile, run the main chunk, _init
+        Globals g = newGlobals();
+        Map<LuaValue, String> engineNames = VmSnapshot.names(g);
+        double[] cold = new double[RUNS];
+        Prototype main = null;
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            long t0 = System.nanoTime();
+            LuaClosure chunk = (LuaClosure) g.load(CART, "main.lua");
+            chunk.call();
+            g.get("_init").call();
+            if (i >= WARMUP) cold[i - WARMUP] = (System.nanoTime() - t0) / 1e6;
+            main = chunk.p;
+        }
+
+        long t0 = System.nanoTime();
+        VmSnapshot.Bindings bindings = new VmSnapshot.Bindings(g, engineNames, main);
+        LuaString state = VmSnapshot.saveGlobals(bindings);
+        double captureMs = (System.nanoTime() - t0) / 1e6;
+        System.out.printf("snapshot: %d bytes, captured in %.2f ms, %d unbound%n", state.m_length, captureMs, bindings.unbound);
+
+        // Restart: the cart plays a bit, then state goes back to post-_init
+        double[] warm = new double[RUNS];
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            play(g);
+            long t1 = System.nanoTime();
+            VmSnapshot.loadGlobals(new VmSnapshot.Bindings(g, engineNames, main), state);
+            if (i >= WARMUP) warm[i - WARMUP] = (System.nanoTime() - t1) / 1e6;
+            check(g, "restart");
+        }
+
+        // Resume: fresh Lua state, main chunk from bytecode, then the saved globals
+        ByteArrayOutputStream bytecode = new ByteArrayOutputStream();
+        DumpState.dump(main, bytecode, false);
+        double[] resume = new double[RUNS];
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            long t1 = System.nanoTime();
+            Globals fresh = newGlobals();
+            Map<LuaValue, String> names = VmSnapshot.names(fresh);
+            Prototype p = LoadState.undump(new ByteArrayInputStream(bytecode.toByteArray()), "main.lua");
+            new LuaClosure(p, fresh).call();
+            VmSnapshot.loadGlobals(new VmSnapshot.Bindings(fresh, names, p), state);
+            if (i >= WARMUP) resume[i - WARMUP] = (System.nanoTime() - t1) / 1e6;
+            check(fresh, "resume");
+        }
+
+        report("compile + chunk + _init", cold);
+        report("snapshot restart", warm);
+        report("resume (fresh state)", resume);
+    }
+
+    private static Globals newGlobals() {
+        Globals g = JsePlatform.standardGlobals();
+        new TypedArrayLuaBindings(g, new Ram()).register();
+        return g;
+    }
+
+    private static void play(Globals g) {
+        g.load("for i = 1, 100 do enemies[i]:hit() end enemies[1].on_death() next_id() world[5][5] = 99 junk = {}", "play").call();
+    }
+
+    private static void check(Globals g, String what) {
+        LuaValue r = g.load(String.join("\n",
+            "assert(junk == nil, 'stale global')",
+            "assert(world[5][5] ~= 99 and #world == 192, 'world')",
+            "assert(enemies[7].hp == 3, 'hp')",
+            "enemies[7]:hit(); assert(enemies[7].hp == 2, 'metatable')",
+            "assert(next_id() == 6, 'upvalue')",
+            "enemies[1].on_death(); assert(score == 10, 'closure env')",
+            "assert(say == print and #hud == 1024, 'bound values')",
+            "return true"), "check").call();
+        if (!r.toboolean()) throw new IllegalStateException(what + " check failed");
+    }
+
+    private static void report(String name, double[] ms) {
+        double[] sorted = ms.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-26s median %8.2f ms  p90 %8.2f ms%n", name, sorted[sorted.length / 2], sorted[sorted.length * 9 / 10]);
+    }
+}
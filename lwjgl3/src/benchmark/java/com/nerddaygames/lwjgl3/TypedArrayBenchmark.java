@@ -0,0 +1,61 @@
+package com.nerddaygames.lwjgl3;
+
+import com.nerddaygames.engine.Ram;
+import com.nerddaygames.engine.TypedArrayLuaBindings;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+/**
+ * 10k-element particle update (px[i] = px[i] + vx[i] * dt) per frame:
+ * Lua tables vs typed.f32 indexed from Lua vs typed.f32 map_add.
+ * Run `gradlew lwjgl3:bench -Pbench=TypedArrayBenchmark`.
+ */
+public class TypedArrayBenchmark {
+    private static final int FRAMES = 200;
+
+    private static final String SCRIPT = String.join("\n",
+        "N = 10000",
+        "function setup_tables()",
+        "  px, vx = {}, {}",
+        "  for i = 1, N do px[i] = 0; vx[i] = i * 0.001 end",
+        "end",
+        "function frame_tables()",
+        "  for i = 1, N do px[i] = px[i] + vx[i] * 0.016 end",
+        "end",
+        "function setup_typed()",
+        "  px, vx = typed.f32(N), typed.f32(N)",
+        "  for i = 1, N do vx[i] = i * 0.001 end",
+        "end",
+        "function frame_typed()",
+        "  for i = 1, N do px[i] = px[i] + vx[i] * 0.016 end",
+        "end",
+        "function frame_bulk()",
+        "  px:map_add(vx, 0.016)",
+        "end");
+
+    public static void main(String[] args) {
+        Globals globals = JsePlatform.standardGlobals();
+        new TypedArrayLuaBindings(globals, new Ram()).register();
+        globals.load(SCRIPT, "bench").call();
+
+        double tables = run(globals, "setup_tables", "frame_tables");
+        double typed = run(globals, "setup_typed", "frame_typed");
+        double bulk = run(globals, "setup_typed", "frame_bulk");
+
+        System.out.printf("tables         %.3f ms/frame%n", tables);
+        System.out.printf("typed a[i]     %.3f ms/frame  (%.1fx)%n", typed, tables / typed);
+        System.out.printf("typed map_add  %.3f ms/frame  (%.1fx)%n", bulk, tables / bulk);
+    }
+
+    // Warm up, then average ms per frame
+    private static double run(Globals g, String setup, String frame) {
+        LuaValue f = g.get(frame);
+        g.get(setup).call();
+        for (int i = 0; i < FRAMES; i++) f.call();
+        g.get(setup).call();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) f.call();
+        return (System.nanoTime() - t0) / 1e6 / FRAMES;
+    }
+}
@@ -0,0 +1,116 @@
+package com.nerddaygames.lwjgl3;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Files;
+import com.badlogic.gdx.files.FileHandle;
+import com.nerddaygames.engine.CartFile;
+import com.nerddaygames.engine.FileSystem;
+import com.nerddaygames.engine.Vfs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A system pack of 2000 small files (20 carts x 100 files): mount + read every file as
+ * loose files (DirMount) vs one zip (ArchiveMount, central directory indexed once).
+ * Then checks layering through FileSystem (user file over the pack over internal assets,
+ * merged listings) and a .cart mounted with its sections as files.
+ * Run `gradlew lwjgl3:bench -Pbench=VfsBenchmark`.
+ */
+public class VfsBenchmark {
+    private static final int CARTS = 20;
+    private static final int FILES = 100;
+    private static final int WARMUP = 3;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        Gdx.files = new Lwjgl3Files();
+        File dir = Files.createTempDirectory("vfsbench").toFile();
+        File loose = new File(dir, "loose");
+        File zipFile = new File(dir, "pack.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(zipFile))) {
+            for (int c = 0; c < CARTS; c++) {
+                for (int f = 0; f < FILES; f++) {
+                    String name = "carts/c" + c + "/f" + f + ".lua";
+                    byte[] body = ("-- " + name + "\nreturn " + (c * FILES + f) + "\n").getBytes(StandardCharsets.UTF_8);
+                    zip.putNextEntry(new ZipEntry(name));
+                    zip.write(body);
+                    zip.closeEntry();
+                    File out = new File(loose, name);
+                    out.getParentFile().mkdirs();
+                    Files.write(out.toPath(), body);
+                }
+            }
+        }
+
+        double[] looseMs = new double[RUNS], zipMs = new double[RUNS];
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            long t0 = System.nanoTime();
+            readAll(new Vfs.DirMount(new FileHandle(loose)));
+            long t1 = System.nanoTime();
+            try (Vfs.ArchiveMount m = Vfs.ArchiveMount.open(zipFile)) { readAll(m); }
+            long t2 = System.nanoTime();
+            if (i >= WARMUP) {
+                looseMs[i - WARMUP] = (t1 - t0) / 1e6;
+                zipMs[i - WARMUP] = (t2 - t1) / 1e6;
+            }
+        }
+        report("loose files (DirMount)", looseMs);
+        report("zip (ArchiveMount)", zipMs);
+
+        // Layers: project folder over the pack (at system/) over internal assets
+        Vfs vfs = Vfs.shared();
+        Vfs.ArchiveMount pack = Vfs.ArchiveMount.open(zipFile);
+        vfs.mount("system/", pack, true);
+        File project = new File(dir, "project");
+        new File(project, "system/carts/c0").mkdirs();
+        Files.write(new File(project, "system/carts/c0/f1.lua").toPath(), "return 'mine'".getBytes(StandardCharsets.UTF_8));
+        FileSystem fs = new FileSystem(new FileHandle(project));
+        check(fs.read("system/carts/c3/f7.lua").contains("return 307"), "read from the pack");
+        check(fs.read("system/carts/c0/f1.lua").equals("return 'mine'"), "user file shadows the pack");
+        List<String> carts = fs.list("system/carts");
+        check(carts.size() == CARTS && carts.contains("c19/"), "pack listing " + carts);
+        List<String> system = fs.list("system");
+        check(system.contains("carts/") && system.contains("tools/"), "pack merged with internal system/ " + system);
+        check(fs.read("system/desktop.lua") != null, "internal assets below the pack");
+        vfs.unmount(pack);
+
+        // A cart's sections as files
+        File cartFile = new File(dir, "game.cart");
+        new CartFile.Writer().add(CartFile.CODE, "print('hi')").add(CartFile.META, "{\"name\":\"game\"}").write(cartFile);
+        Vfs.ArchiveMount cart = Vfs.ArchiveMount.open(cartFile);
+        vfs.mount("carts/game/", cart, true);
+        check("print('hi')".equals(fs.read("carts/game/main.lua")), "cart CODE as main.lua");
+        check(fs.list("carts/game").contains("project.json"), "cart listing");
+        vfs.unmount(cart);
+        System.out.println("layering checks passed");
+
+        new FileHandle(dir).deleteDirectory();
+    }
+
+    private static void readAll(Vfs.Mount m) {
+        for (int c = 0; c < CARTS; c++) {
+            for (int f = 0; f < FILES; f++) {
+                FileHandle h = m.find("carts/c" + c + "/f" + f + ".lua");
+                if (h == null || h.readBytes().length == 0) throw new IllegalStateException("missing c" + c + "/f" + f);
+            }
+        }
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) throw new IllegalStateException("failed: " + what);
+    }
+
+    private static void report(String name, double[] ms) {
+        double[] sorted = ms.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-24s median %8.2f ms  p90 %8.2f ms  (%d files)%n",
+            name, sorted[sorted.length / 2], sorted[sorted.length * 9 / 10], CARTS * FILES);
+    }
+}
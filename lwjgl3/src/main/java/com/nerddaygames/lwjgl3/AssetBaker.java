@@ -0,0 +1,208 @@
+package com.nerddaygames.lwjgl3;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Files;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.BitmapFontData;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.Glyph;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonWriter;
+import com.nerddaygames.engine.BakedAssets;
+import com.nerddaygames.engine.CartFile;
+import com.nerddaygames.engine.FantasyVM;
+import com.nerddaygames.engine.LuaSyntaxCandy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Build-time baking of the system assets into assets/system/baked (read by BakedAssets):
+ * both system fonts rasterized with FantasyVM's settings into a BMFont + PNG page each, and
+ * every system Lua script (boot.lua, system/**.lua) sugared and compiled to luaj bytecode.
+ * Run by `gradlew lwjgl3:bakeAssets` (and before lwjgl3's processResources and run).
+ * Args: [assetsDir] (default: assets)
+ */
+public class AssetBaker {
+
+    public static void main(String[] args) throws Exception {
+        Gdx.files = new Lwjgl3Files();
+        GdxNativesLoader.load();
+        File assets = new File(args.length > 0 ? args[0] : "assets").getAbsoluteFile();
+        File out = new File(assets, BakedAssets.DIR);
+        long t0 = System.nanoTime();
+        clean(out);
+        BakedAssets.Manifest m = new BakedAssets.Manifest();
+        m.scripts = bakeScripts(assets, out);
+        m.fonts = bakeFonts(assets, out);
+        writeManifest(out, m);
+        System.out.printf("Baked %d fonts and %d scripts into %s in %.0f ms%n",
+            m.fonts.length, m.scripts.length, out, (System.nanoTime() - t0) / 1e6);
+    }
+
+    // --- SCRIPTS ---
+
+    public static BakedAssets.ScriptEntry[] bakeScripts(File assets, File out) throws IOException {
+        List<File> sources = new ArrayList<>();
+        File boot = new File(assets, "boot.lua");
+        if (boot.isFile()) sources.add(boot);
+        collectLua(new File(assets, "system"), new File(assets, BakedAssets.DIR), sources);
+
+        List<BakedAssets.ScriptEntry> entries = new ArrayList<>();
+        for (File f : sources) {
+            String path = relative(assets, f);
+            byte[] bytes = Files.readAllBytes(f.toPath());
+            String source = new String(bytes, StandardCharsets.UTF_8);
+            byte[] luac = CartFile.compile(LuaSyntaxCandy.process(source), path);
+            if (luac == null) continue; // does not compile: left to the runtime (and its error message)
+            BakedAssets.ScriptEntry e = new BakedAssets.ScriptEntry();
+            e.path = path;
+            e.luac = "lua/" + path + "c";
+            byte[] utf8 = source.getBytes(StandardCharsets.UTF_8); // what BakedAssets.chunk hashes
+            e.sha256 = BakedAssets.sha256(utf8);
+            e.length = utf8.length;
+            write(new File(out, e.luac), luac);
+            entries.add(e);
+        }
+        return entries.toArray(new BakedAssets.ScriptEntry[0]);
+    }
+
+    private static void collectLua(File dir, File skip, List<File> into) {
+        File[] children = dir.listFiles();
+        if (children == null) return;
+        Arrays.sort(children);
+        for (File c : children) {
+            if (c.equals(skip)) continue;
+            if (c.isDirectory()) collectLua(c, skip, into);
+            else if (c.getName().endsWith(".lua")) into.add(c);
+        }
+    }
+
+    // --- FONTS ---
+
+    public static BakedAssets.FontEntry[] bakeFonts(File assets, File out) throws IOException {
+        return new BakedAssets.FontEntry[] {
+            bakeFont(assets, out, "os", FantasyVM.OS_FONT, FantasyVM.osFontParameter()),
+            bakeFont(assets, out, "game", FantasyVM.GAME_FONT, FantasyVM.gameFontParameter())
+        };
+    }
+
+    private static BakedAssets.FontEntry bakeFont(File assets, File out, String name, String file, FreeTypeFontParameter p) throws IOException {
+        FileHandle ttf = new FileHandle(new File(assets, file));
+        FreeTypeFontGenerator gen = new FreeTypeFontGenerator(ttf);
+        try {
+            // Smallest power-of-two page that holds every glyph
+            for (int size = 128; size <= 4096; size *= 2) {
+                PixmapPacker packer = new PixmapPacker(size, size, Pixmap.Format.RGBA8888, 1, false, new PixmapPacker.GuillotineStrategy());
+                // As FreeTypeFontGenerator does with its own packer: fringe pixels take the glyph color
+                packer.setTransparentColor(new Color(p.color.r, p.color.g, p.color.b, 0));
+                try {
+                    p.packer = packer;
+                    BitmapFontData data = gen.generateData(p);
+                    if (packer.getPages().size != 1) continue;
+
+                    BakedAssets.FontEntry e = new BakedAssets.FontEntry();
+                    e.name = name;
+                    e.source = file;
+                    e.spec = BakedAssets.spec(p);
+                    e.fnt = name + ".fnt";
+                    e.page = name + ".png";
+                    byte[] ttfBytes = ttf.readBytes();
+                    e.sourceCrc = BakedAssets.crc(ttfBytes, ttfBytes.length);
+                    e.sourceLength = ttfBytes.length;
+                    PixmapIO.writePNG(new FileHandle(new File(out, e.page)), packer.getPages().get(0).getPixmap());
+                    write(new File(out, e.fnt), fnt(data, name, p.size, e.page, size).getBytes(StandardCharsets.UTF_8));
+                    return e;
+                } finally {
+                    p.packer = null;
+                    packer.dispose();
+                }
+            }
+            throw new IOException(file + " does not fit a 4096 page");
+        } finally {
+            gen.dispose();
+        }
+    }
+
+    // BMFont text format as BitmapFontData reads it; the metrics line keeps FreeType's values
+    private static String fnt(BitmapFontData data, String face, int size, String page, int pageSize) {
+        List<Glyph> glyphs = new ArrayList<>();
+        if (data.missingGlyph != null) glyphs.add(data.missingGlyph); // id 0
+        for (Glyph[] pageGlyphs : data.glyphs) {
+            if (pageGlyphs == null) continue;
+            for (Glyph g : pageGlyphs) if (g != null && g != data.missingGlyph) glyphs.add(g);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("info face=\"").append(face).append("\" size=").append(size)
+            .append(" bold=0 italic=0 charset=\"\" unicode=1 stretchH=100 smooth=1 aa=1 padding=")
+            .append((int) data.padTop).append(',').append((int) data.padRight).append(',')
+            .append((int) data.padBottom).append(',').append((int) data.padLeft).append(" spacing=0,0\n");
+        sb.append("common lineHeight=").append(Math.round(data.lineHeight)).append(" base=").append(Math.round(data.ascent + data.capHeight))
+            .append(" scaleW=").append(pageSize).append(" scaleH=").append(pageSize).append(" pages=1 packed=0\n");
+        sb.append("page id=0 file=\"").append(page).append("\"\n");
+        sb.append("chars count=").append(glyphs.size()).append('\n');
+        for (Glyph g : glyphs) {
+            int id = (g == data.missingGlyph) ? 0 : g.id;
+            // BitmapFontData stores yoffset from the baseline up; the file counts down from the top
+            sb.append("char id=").append(id).append(" x=").append(g.srcX).append(" y=").append(g.srcY)
+                .append(" width=").append(g.width).append(" height=").append(g.height)
+                .append(" xoffset=").append(g.xoffset).append(" yoffset=").append(-(g.height + g.yoffset))
+                .append(" xadvance=").append(g.xadvance).append(" page=0 chnl=0\n");
+        }
+        StringBuilder kernings = new StringBuilder();
+        int count = 0;
+        for (Glyph a : glyphs) {
+            if (a.kerning == null) continue;
+            for (Glyph b : glyphs) {
+                int amount = a.getKerning((char) b.id);
+                if (amount == 0) continue;
+                kernings.append("kerning first=").append(a.id).append(" second=").append(b.id).append(" amount=").append(amount).append('\n');
+                count++;
+            }
+        }
+        sb.append("kernings count=").append(count).append('\n').append(kernings);
+        sb.append("metrics ascent=").append(data.ascent).append(" descent=").append(data.descent)
+            .append(" down=").append(data.down).append(" capHeight=").append(data.capHeight)
+            .append(" lineHeight=").append(data.lineHeight).append(" spaceXAdvance=").append(data.spaceXadvance)
+            .append(" xHeight=").append(data.xHeight).append('\n');
+        return sb.toString();
+    }
+
+    // --- MANIFEST ---
+
+    public static void writeManifest(File out, BakedAssets.Manifest m) throws IOException {
+        Json json = new Json(JsonWriter.OutputType.json);
+        write(new File(out, BakedAssets.MANIFEST), json.prettyPrint(m).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void write(File f, byte[] bytes) throws IOException {
+        f.getParentFile().mkdirs();
+        Files.write(f.toPath(), bytes);
+    }
+
+    private static String relative(File root, File f) {
+        return root.toPath().relativize(f.toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    private static void clean(File dir) {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                if (c.isDirectory()) clean(c);
+                c.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.nerddaygames.lwjgl3;
+
+import com.nerddaygames.engine.FantasyVM;
+import com.nerddaygames.engine.Profile;
+import com.nerddaygames.engine.Ram;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Live terminal view of a running VM's RAM (separate process, no copying).
+ * Start the VM with -Dfantasyos.ram=mapped, then run `gradlew lwjgl3:memoryViewer`.
+ * Optional args: [ramFile] [refreshMs]
+ */
+public class MemoryViewer {
+    private static final int ROW = 16;
+
+    public static void main(String[] args) throws Exception {
+        File file = new File(args.length > 0 ? args[0] : Profile.defaultRamFile());
+        int refreshMs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        while (!file.exists() || file.length() < Ram.MEMORY_SIZE) {
+            System.out.println("Waiting for " + file + " (start the VM with -Dfantasyos.ram=mapped)");
+            Thread.sleep(1000);
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            // Map only the base address space; bank storage follows it in the file
+            MappedByteBuffer mem = channel.map(FileChannel.MapMode.READ_ONLY, 0, Ram.MEMORY_SIZE);
+            mem.order(ByteOrder.LITTLE_ENDIAN);
+
+            StringBuilder sb = new StringBuilder(8192);
+            while (true) {
+                sb.setLength(0);
+                sb.append("\u001b[H\u001b[2J"); // home + clear
+                sb.append("FantasyOS RAM  ").append(file).append('\n');
+
+                sb.append("\nMEM_INPUT 0x").append(hex(FantasyVM.MEM_INPUT, 4)).append('\n');
+                sb.append("  buttons ");
+                for (int i = 0; i < 8; i++) sb.append(mem.get(FantasyVM.MEM_INPUT + i) != 0 ? '1' : '0');
+                sb.append("  mouse ").append(mem.getShort(FantasyVM.MEM_INPUT + 16) & 0xFFFF)
+                  .append(',').append(mem.getShort(FantasyVM.MEM_INPUT + 18) & 0xFFFF)
+                  .append("  left ").append(mem.get(FantasyVM.MEM_INPUT + 20)).append('\n');
+                dump(sb, mem, FantasyVM.MEM_INPUT, 32);
+
+                sb.append("\nSPRITE_BASE 0x").append(hex(Ram.SPRITE_BASE, 4)).append('\n');
+                dump(sb, mem, Ram.SPRITE_BASE, 128);
+
+                sb.append("\nMAP_BASE 0x").append(hex(Ram.MAP_BASE, 4)).append('\n');
+                dump(sb, mem, Ram.MAP_BASE, 128);
+
+                System.out.print(sb);
+                System.out.flush();
+                Thread.sleep(refreshMs);
+            }
+        }
+    }
+
+    private static void dump(StringBuilder sb, ByteBuffer mem, int base, int len) {
+        for (int row = 0; row < len; row += ROW) {
+            sb.append("  ").append(hex(base + row, 4)).append(": ");
+            for (int i = 0; i < ROW; i++) sb.append(hex(mem.get(base + row + i) & 0xFF, 2)).append(' ');
+            sb.append('\n');
+        }
+    }
+
+    private static String hex(int v, int digits) {
+        String s = Integer.toHexString(v).toUpperCase();
+        while (s.length() < digits) s = "0" + s;
+        return s;
+    }
+}